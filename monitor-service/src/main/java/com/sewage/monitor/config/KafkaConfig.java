@@ -1,9 +1,17 @@
 package com.sewage.monitor.config;
 
+import com.sewage.monitor.kafka.codec.LabPayloadCodec;
+import com.sewage.monitor.kafka.codec.LabPayloadDeserializer;
+import com.sewage.monitor.kafka.codec.LabPayloadSerializer;
 import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 
 /**
  * Kafka 配置类
@@ -20,6 +28,7 @@ public class KafkaConfig {
     public static final String TOPIC_LAB_ALARM = "lab-alarm-data";                // 实验室告警数据
     public static final String TOPIC_LAB_ENV_DATA_DLQ = "lab-environment-data-dlq";  // 环境数据死信队列
     public static final String TOPIC_LAB_ALARM_DLQ = "lab-alarm-data-dlq";          // 告警死信队列
+    public static final String TOPIC_LAB_ENV_DATA_LOADTEST = "lab-environment-data-loadtest";  // 生产者压测（无消费者）
 
     /**
      * 创建实验室环境数据 Topic
@@ -94,4 +103,44 @@ public class KafkaConfig {
                 .replicas(1)             // 1个副本
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * 创建生产者压测 Topic
+     *
+     * 分区数与环境数据 Topic 一致，压测数据不会被消费落库
+     */
+    @Bean
+    public NewTopic labEnvironmentDataLoadTestTopic() {
+        return TopicBuilder
+                .name(TOPIC_LAB_ENV_DATA_LOADTEST)
+                .partitions(5)           // 与环境数据 Topic 一致
+                .replicas(1)             // 1个副本
+                .build();
+    }
+
+    /**
+     * 生产者工厂：消息值使用 LabPayloadSerializer
+     *
+     * 配置说明:
+     * - String 消息按原样发送，LabEnvironmentData / LabAlarm 对象按二进制编码发送
+     * - 覆盖 Spring Boot 默认的生产者工厂，其余配置仍取自 spring.kafka.producer
+     */
+    @Bean
+    public DefaultKafkaProducerFactory<?, ?> kafkaProducerFactory(KafkaProperties properties, LabPayloadCodec codec) {
+        return new DefaultKafkaProducerFactory<>(properties.buildProducerProperties(),
+                new StringSerializer(), new LabPayloadSerializer(codec));
+    }
+
+    /**
+     * 消费者工厂：消息值使用 LabPayloadDeserializer
+     *
+     * 配置说明:
+     * - 二进制消息解码为对象，其他消息仍为 JSON 字符串，监听方法通过 LabPayloadCodec.read 统一转换
+     * - 覆盖 Spring Boot 默认的消费者工厂，其余配置仍取自 spring.kafka.consumer
+     */
+    @Bean
+    public DefaultKafkaConsumerFactory<?, ?> kafkaConsumerFactory(KafkaProperties properties, LabPayloadCodec codec) {
+        return new DefaultKafkaConsumerFactory<>(properties.buildConsumerProperties(),
+                new StringDeserializer(), new LabPayloadDeserializer(codec));
+    }
+}
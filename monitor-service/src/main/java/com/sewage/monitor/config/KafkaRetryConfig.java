@@ -4,6 +4,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.listener.DefaultErrorHandler;
 import org.springframework.kafka.support.ExponentialBackOffWithMaxRetries;
 import org.springframework.util.backoff.FixedBackOff;
@@ -57,4 +58,32 @@ public class KafkaRetryConfig {
 
         return factory;
     }
-}
\ No newline at end of file
+
+    /**
+     * 配置批量Kafka监听器容器工厂
+     *
+     * 配置说明：
+     * 1. 监听方法一次接收一个poll的全部消息（List<ConsumerRecord>）
+     * 2. AckMode.BATCH：监听方法返回后才提交本批次位点，保证数据落库后再提交
+     * 3. 单条失败由监听方法自行路由到死信队列，这里只对整批异常做有限重试
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, String> batchKafkaListenerContainerFactory(
+            ConsumerFactory<String, String> consumerFactory) {
+
+        ConcurrentKafkaListenerContainerFactory<String, String> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory);
+
+        // 开启批量监听
+        factory.setBatchListener(true);
+
+        // 整批处理完成后提交位点
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+
+        // 整批异常时固定间隔重试2次
+        factory.setCommonErrorHandler(new DefaultErrorHandler(new FixedBackOff(1000L, 2L)));
+
+        return factory;
+    }
+}
@@ -3,8 +3,13 @@ package com.sewage.monitor.controller;
 import com.sewage.common.context.UserContext;
 import com.sewage.common.result.Result;
 import com.sewage.monitor.entity.LabAlarm;
+import com.sewage.monitor.entity.LabAlarmRule;
 import com.sewage.monitor.mapper.LabAlarmMapper;
+import com.sewage.monitor.mapper.LabAlarmRuleMapper;
+import com.sewage.monitor.service.AlarmRuleEngine;
+import com.sewage.monitor.service.AlarmRuleSet;
 import com.sewage.monitor.service.AlarmService;
+import com.sewage.monitor.service.AlarmStateTracker;
 import com.sewage.monitor.service.WebSocketPushService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -17,7 +22,7 @@ import java.util.Map;
 
 /**
  * 告警管理控制器
- * 提供告警的确认、解决、历史查询等功能
+ * 提供告警的确认、解决、历史查询、告警规则配置等功能
  *
  * @author system
  */
@@ -29,6 +34,9 @@ public class AlarmManagementController {
 
     private final LabAlarmMapper labAlarmMapper;
     private final WebSocketPushService webSocketPushService;
+    private final LabAlarmRuleMapper labAlarmRuleMapper;
+    private final AlarmRuleEngine alarmRuleEngine;
+    private final AlarmStateTracker alarmStateTracker;
 
     /**
      * 确认告警
@@ -333,4 +341,115 @@ public class AlarmManagementController {
             return Result.failure("告警批量操作失败: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 查询告警规则
+     *
+     * 传 labId 时返回该实验室当前生效的规则（含未被覆盖的默认规则），否则返回规则表中的全部规则
+     *
+     * GET http://localhost:8083/alarm-management/rules?labId=1
+     */
+    @GetMapping("/rules")
+    public Result<List<LabAlarmRule>> getRules(@RequestParam(required = false) Long labId) {
+        try {
+            if (labId != null) {
+                return Result.success(alarmRuleEngine.getEffectiveRules(labId));
+            }
+            return Result.success(labAlarmRuleMapper.selectList(null));
+        } catch (Exception e) {
+            log.error("❌ 查询告警规则失败", e);
+            return Result.failure("查询告警规则失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 新增或修改告警规则（保存后立即重新加载）
+     *
+     * POST http://localhost:8083/alarm-management/rules
+     */
+    @PostMapping("/rules")
+    public Result<LabAlarmRule> saveRule(@RequestBody LabAlarmRule rule) {
+        try {
+            if (AlarmRuleSet.compile(List.of(rule)).size() == 0) {
+                return Result.badRequest("规则无效，请检查指标、运算符、阈值、告警类型和级别");
+            }
+            if (rule.getPriority() == null) {
+                rule.setPriority(100);
+            }
+            if (rule.getEnabled() == null) {
+                rule.setEnabled(true);
+            }
+            rule.setUpdatedTime(LocalDateTime.now());
+
+            if (rule.getId() == null) {
+                labAlarmRuleMapper.insert(rule);
+            } else if (labAlarmRuleMapper.updateById(rule) == 0) {
+                return Result.failure("告警规则不存在");
+            }
+            alarmRuleEngine.reload();
+
+            log.info("✅ 告警规则已保存 - 规则ID: {}, 实验室ID: {}, {} {} {}",
+                    rule.getId(), rule.getLabId(), rule.getMetric(), rule.getOperator(), rule.getThreshold());
+            return Result.success(rule);
+        } catch (Exception e) {
+            log.error("❌ 保存告警规则失败", e);
+            return Result.failure("保存告警规则失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 删除告警规则
+     *
+     * DELETE http://localhost:8083/alarm-management/rules/{id}
+     */
+    @DeleteMapping("/rules/{id}")
+    public Result<String> deleteRule(@PathVariable Long id) {
+        try {
+            if (labAlarmRuleMapper.deleteById(id) == 0) {
+                return Result.failure("告警规则不存在");
+            }
+            alarmRuleEngine.reload();
+            log.info("🗑️ 告警规则已删除 - 规则ID: {}", id);
+            return Result.success("告警规则删除成功");
+        } catch (Exception e) {
+            log.error("❌ 删除告警规则失败 - 规则ID: {}", id, e);
+            return Result.failure("删除告警规则失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 立即重新加载告警规则（直接修改数据库后使用，否则等待定时检查）
+     *
+     * POST http://localhost:8083/alarm-management/rules/reload
+     */
+    @PostMapping("/rules/reload")
+    public Result<Map<String, Object>> reloadRules() {
+        if (!alarmRuleEngine.reload()) {
+            return Result.failure("告警规则加载失败，继续使用当前规则");
+        }
+        return Result.success(alarmRuleEngine.getStats());
+    }
+
+    /**
+     * 告警规则引擎统计
+     *
+     * GET http://localhost:8083/alarm-management/rules/stats
+     */
+    @GetMapping("/rules/stats")
+    public Result<Map<String, Object>> getRuleStats() {
+        return Result.success(alarmRuleEngine.getStats());
+    }
+
+    /**
+     * 当前处于告警中的状态（实验室 + 告警类型）及去重统计
+     *
+     * GET http://localhost:8083/alarm-management/alarm-states
+     */
+    @GetMapping("/alarm-states")
+    public Result<Map<String, Object>> getAlarmStates() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("active", alarmStateTracker.getActiveAlarms());
+        result.put("stats", alarmStateTracker.getStats());
+        return Result.success(result);
+    }
+}
@@ -0,0 +1,188 @@
+package com.sewage.monitor.controller;
+
+import com.sewage.common.result.Result;
+import com.sewage.monitor.entity.LabAlarm;
+import com.sewage.monitor.entity.LabAlarmRule;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.service.AlarmRuleSet;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 告警规则性能测试控制器
+ *
+ * 功能说明：
+ * 1. 随机生成 10 / 100 条规则和一批环境数据，只测量规则检查本身（命中时只计数，不发送告警）
+ * 2. 对比逐条解释规则实体（每次比较都解析字符串、查找枚举、装箱）和编译后扁平数组的耗时与内存分配
+ */
+@Slf4j
+@RestController
+@RequestMapping("/alarm-test")
+public class AlarmTestController {
+
+    private static final LabAlarmRule.Metric[] METRICS = LabAlarmRule.Metric.values();
+    private static final LabAlarmRule.Operator[] OPERATORS = LabAlarmRule.Operator.values();
+
+    /**
+     * 规则检查性能对比
+     *
+     * GET /alarm-test/rule-benchmark?iterations=200000
+     */
+    @GetMapping("/rule-benchmark")
+    public Result<Map<String, Object>> ruleBenchmark(@RequestParam(defaultValue = "200000") int iterations) {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        Random random = new Random(42);
+        LabEnvironmentData[] samples = new LabEnvironmentData[1024];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = sampleData(random);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("iterations", iterations);
+        for (int ruleCount : new int[]{10, 100}) {
+            List<LabAlarmRule> rules = randomRules(random, ruleCount);
+            AlarmRuleSet compiled = AlarmRuleSet.compile(rules);
+            long[] hits = new long[1];
+            AlarmRuleSet.MatchHandler counter = (data, rule, value) -> hits[0]++;
+
+            // 预热
+            for (int n = 0; n < 20000; n++) {
+                interpret(rules, samples[n & 1023]);
+                compiled.evaluate(samples[n & 1023], counter);
+            }
+
+            long interpretedHits = 0;
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            for (int n = 0; n < iterations; n++) {
+                interpretedHits += interpret(rules, samples[n & 1023]);
+            }
+            long interpretedNanos = System.nanoTime() - start;
+            long interpretedBytes = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+            hits[0] = 0;
+            before = threadBean.getThreadAllocatedBytes(threadId);
+            start = System.nanoTime();
+            for (int n = 0; n < iterations; n++) {
+                compiled.evaluate(samples[n & 1023], counter);
+            }
+            long compiledNanos = System.nanoTime() - start;
+            long compiledBytes = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("matches", interpretedHits + "/" + hits[0]);
+            stats.put("interpretedNanosPerEval", interpretedNanos / iterations);
+            stats.put("compiledNanosPerEval", compiledNanos / iterations);
+            stats.put("interpretedBytesPerEval", interpretedBytes / iterations);
+            stats.put("compiledBytesPerEval", compiledBytes / iterations);
+            stats.put("speedup", String.format("%.1fx", (double) interpretedNanos / Math.max(1, compiledNanos)));
+            result.put("rules_" + ruleCount, stats);
+        }
+
+        log.info("🧪 告警规则性能测试完成 - {}", result);
+        return Result.success(result);
+    }
+
+    /**
+     * 原方式：逐条解释规则实体（字符串解析指标/运算符/枚举，Double 装箱比较）
+     */
+    private static int interpret(List<LabAlarmRule> rules, LabEnvironmentData data) {
+        int matched = 0;
+        List<String> fired = new ArrayList<>();
+        for (LabAlarmRule rule : rules) {
+            if (fired.contains(rule.getMetric())) {
+                continue;
+            }
+            Double value;
+            switch (LabAlarmRule.Metric.valueOf(rule.getMetric())) {
+                case TEMPERATURE:
+                    value = data.getTemperature();
+                    break;
+                case HUMIDITY:
+                    value = data.getHumidity();
+                    break;
+                case PM25:
+                    value = data.getPm25();
+                    break;
+                case CO2:
+                    value = data.getCo2();
+                    break;
+                case ILLUMINANCE:
+                    value = data.getIlluminance();
+                    break;
+                default:
+                    value = data.getCurrentPeopleCount() != null ? data.getCurrentPeopleCount().doubleValue() : null;
+            }
+            if (value == null) {
+                continue;
+            }
+            int cmp = value.compareTo(rule.getThreshold());
+            boolean hit;
+            switch (LabAlarmRule.Operator.valueOf(rule.getOperator())) {
+                case GT:
+                    hit = cmp > 0;
+                    break;
+                case GE:
+                    hit = cmp >= 0;
+                    break;
+                case LT:
+                    hit = cmp < 0;
+                    break;
+                default:
+                    hit = cmp <= 0;
+            }
+            if (hit) {
+                LabAlarm.AlarmLevel.valueOf(rule.getAlarmLevel());
+                fired.add(rule.getMetric());
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 随机规则：阈值大多落在正常数据范围之外，模拟绝大多数数据不触发告警的稳态
+     */
+    private static List<LabAlarmRule> randomRules(Random random, int count) {
+        List<LabAlarmRule> rules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LabAlarmRule.Operator operator = OPERATORS[random.nextInt(OPERATORS.length)];
+            boolean upper = operator == LabAlarmRule.Operator.GT || operator == LabAlarmRule.Operator.GE;
+            rules.add(LabAlarmRule.builder()
+                    .id((long) i)
+                    .metric(METRICS[random.nextInt(METRICS.length)].name())
+                    .operator(operator.name())
+                    .threshold((double) (upper ? 900 + random.nextInt(2000) : -random.nextInt(20)))
+                    .alarmType("TEMP_HIGH")
+                    .alarmLevel(i % 2 == 0 ? "DANGER" : "WARNING")
+                    .priority(i)
+                    .enabled(true)
+                    .build());
+        }
+        return rules;
+    }
+
+    private static LabEnvironmentData sampleData(Random random) {
+        LabEnvironmentData data = new LabEnvironmentData();
+        data.setLabId(1L);
+        data.setTemperature(15 + random.nextDouble() * 15);
+        data.setHumidity(30 + random.nextDouble() * 50);
+        data.setPm25(random.nextDouble() * 100);
+        data.setCo2(400 + random.nextDouble() * 1200);
+        data.setIlluminance(200 + random.nextDouble() * 600);
+        data.setCurrentPeopleCount(random.nextInt(40));
+        return data;
+    }
+}
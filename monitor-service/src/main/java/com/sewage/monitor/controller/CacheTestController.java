@@ -3,7 +3,9 @@ package com.sewage.monitor.controller;
 import com.sewage.common.result.Result;
 import com.sewage.monitor.entity.LabEnvironmentData;
 import com.sewage.monitor.service.CacheService;
+import com.sewage.monitor.service.CacheWriteBehindService;
 import com.sewage.monitor.service.LabEnvironmentDataService;
+import com.sewage.monitor.service.LatestDataNearCache;
 import com.sewage.monitor.service.StatisticsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -30,6 +32,8 @@ import java.util.Map;
 public class CacheTestController {
 
     private final CacheService cacheService;
+    private final CacheWriteBehindService cacheWriteBehindService;
+    private final LatestDataNearCache latestDataNearCache;
     private final LabEnvironmentDataService labEnvironmentDataService;
     private final StatisticsService statisticsService;
 
@@ -362,6 +366,26 @@ public class CacheTestController {
         return Result.success(result);
     }
 
+    /**
+     * 查询缓存合并写入指标（Pipeline命令数、刷新耗时、合并条数）
+     *
+     * GET /cache-test/write-behind/stats
+     */
+    @GetMapping("/write-behind/stats")
+    public Result<Map<String, Object>> writeBehindStats() {
+        return Result.success(cacheWriteBehindService.getStats());
+    }
+
+    /**
+     * 查询近端缓存（Caffeine）命中率统计
+     *
+     * GET /cache-test/near-cache/stats
+     */
+    @GetMapping("/near-cache/stats")
+    public Result<Map<String, Object>> nearCacheStats() {
+        return Result.success(latestDataNearCache.getStats());
+    }
+
     /**
      * 健康检查
      *
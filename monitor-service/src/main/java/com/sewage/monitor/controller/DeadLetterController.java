@@ -0,0 +1,131 @@
+package com.sewage.monitor.controller;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.sewage.common.result.Result;
+import com.sewage.monitor.entity.DeadLetterRecord;
+import com.sewage.monitor.mapper.DeadLetterRecordMapper;
+import com.sewage.monitor.service.AsyncTaskManager;
+import com.sewage.monitor.service.DeadLetterService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 死信管理控制器
+ * 提供死信记录的查询、统计、丢弃和分批限速重放
+ */
+@Slf4j
+@RestController
+@RequestMapping("/dead-letters")
+@RequiredArgsConstructor
+public class DeadLetterController {
+
+    private final DeadLetterRecordMapper deadLetterRecordMapper;
+    private final DeadLetterService deadLetterService;
+    private final AsyncTaskManager asyncTaskManager;
+
+    /**
+     * 分页查询死信记录
+     *
+     * GET http://localhost:8083/dead-letters?current=1&size=20&sourceTopic=lab-environment-data&status=PENDING
+     */
+    @GetMapping
+    public Result<Page<DeadLetterRecord>> list(
+            @RequestParam(defaultValue = "1") int current,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(required = false) String sourceTopic,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startTime,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endTime) {
+        try {
+            LambdaQueryWrapper<DeadLetterRecord> wrapper = new LambdaQueryWrapper<DeadLetterRecord>()
+                    .eq(sourceTopic != null, DeadLetterRecord::getSourceTopic, sourceTopic)
+                    .eq(status != null, DeadLetterRecord::getStatus, status)
+                    .ge(startTime != null, DeadLetterRecord::getCreatedTime, startTime)
+                    .lt(endTime != null, DeadLetterRecord::getCreatedTime, endTime)
+                    .orderByDesc(DeadLetterRecord::getId);
+            return Result.success(deadLetterRecordMapper.selectPage(new Page<>(current, size), wrapper));
+        } catch (Exception e) {
+            log.error("❌ 查询死信记录失败", e);
+            return Result.failure("查询死信记录失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 死信统计（按原始Topic + 状态）
+     *
+     * GET http://localhost:8083/dead-letters/stats
+     */
+    @GetMapping("/stats")
+    public Result<Map<String, Object>> stats() {
+        try {
+            return Result.success(deadLetterService.getStats());
+        } catch (Exception e) {
+            log.error("❌ 查询死信统计失败", e);
+            return Result.failure("查询死信统计失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 启动重放任务（同一时间只允许一个）
+     *
+     * POST http://localhost:8083/dead-letters/redrive
+     * {"sourceTopic": "lab-environment-data", "startTime": "2024-01-01T00:00:00", "maxAttempts": 3,
+     *  "maxRecords": 10000, "batchSize": 100, "maxPerSecond": 200}
+     */
+    @PostMapping("/redrive")
+    public Result<Map<String, Object>> redrive(@RequestBody(required = false) DeadLetterService.RedriveRequest request) {
+        String taskId = deadLetterService.startRedrive(request != null ? request : new DeadLetterService.RedriveRequest());
+        if (taskId == null) {
+            return Result.failure("已有重放任务正在运行: " + deadLetterService.getRunningTaskId());
+        }
+        log.info("🔁 死信重放任务已提交 - 任务ID: {}", taskId);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("taskId", taskId);
+        result.put("statusUrl", "/dead-letters/redrive/" + taskId);
+        return Result.success(result);
+    }
+
+    /**
+     * 查询重放任务进度
+     *
+     * GET http://localhost:8083/dead-letters/redrive/{taskId}
+     */
+    @GetMapping("/redrive/{taskId}")
+    public Result<AsyncTaskManager.AsyncTask> redriveStatus(@PathVariable String taskId) {
+        AsyncTaskManager.AsyncTask task = asyncTaskManager.getTask(taskId);
+        if (task == null || !DeadLetterService.TASK_TYPE_REDRIVE.equals(task.getTaskType())) {
+            return Result.failure("重放任务不存在");
+        }
+        return Result.success(task);
+    }
+
+    /**
+     * 丢弃死信记录（只丢弃 PENDING 状态的记录）
+     *
+     * POST http://localhost:8083/dead-letters/discard
+     * {"ids": [1, 2, 3]}
+     */
+    @PostMapping("/discard")
+    public Result<String> discard(@RequestBody Map<String, List<Long>> request) {
+        List<Long> ids = request.get("ids");
+        if (ids == null || ids.isEmpty()) {
+            return Result.badRequest("请选择要丢弃的死信记录");
+        }
+        try {
+            int discarded = deadLetterService.discard(ids);
+            return Result.success(String.format("已丢弃 %d/%d 条死信记录", discarded, ids.size()));
+        } catch (Exception e) {
+            log.error("❌ 丢弃死信记录失败", e);
+            return Result.failure("丢弃死信记录失败: " + e.getMessage());
+        }
+    }
+}
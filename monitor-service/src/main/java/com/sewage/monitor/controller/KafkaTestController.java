@@ -1,13 +1,31 @@
 package com.sewage.monitor.controller;
 
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sewage.common.result.Result;
+import com.sewage.monitor.entity.LabAlarm;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.config.KafkaConfig;
+import com.sewage.monitor.kafka.codec.LabPayloadCodec;
+import com.sewage.monitor.kafka.producer.KafkaProducerProfiles;
 import com.sewage.monitor.kafka.producer.LabEnvironmentProducer;
+import com.sewage.monitor.mapper.LabEnvironmentDataMapper;
+import com.sewage.monitor.util.LatencyHistogram;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
  * Kafka测试控制器
@@ -20,6 +38,10 @@ import java.util.Map;
 public class KafkaTestController {
 
     private final LabEnvironmentProducer labEnvironmentProducer;
+    private final LabEnvironmentDataMapper labEnvironmentDataMapper;
+    private final LabPayloadCodec labPayloadCodec;
+    private final ObjectMapper objectMapper;
+    private final KafkaProducerProfiles kafkaProducerProfiles;
 
     /**
      * 测试发送简单文本消息
@@ -79,6 +101,258 @@ public class KafkaTestController {
         }
     }
 
+    /**
+     * 逐条写入与批量写入吞吐量对比
+     *
+     * 分别用逐条insert和多值insertBatch写入count条测试数据，
+     * 对比两种消费模式下的数据库写入耗时，测试完成后删除测试数据
+     *
+     * GET /kafka-test/insert-compare?count=1000&batchSize=500
+     */
+    @GetMapping("/insert-compare")
+    public Result<Map<String, Object>> compareInsertThroughput(@RequestParam(defaultValue = "1000") int count,
+                                                               @RequestParam(defaultValue = "500") int batchSize) {
+        Map<String, Object> result = new HashMap<>();
+
+        try {
+            log.info("🧪 [Kafka测试] 开始写入吞吐量对比 - 数量: {}, 批次大小: {}", count, batchSize);
+
+            // 1. 逐条写入
+            List<LabEnvironmentData> singleList = buildBenchmarkData(count);
+            long singleStart = System.currentTimeMillis();
+            for (LabEnvironmentData data : singleList) {
+                labEnvironmentDataMapper.insert(data);
+            }
+            long singleTime = Math.max(System.currentTimeMillis() - singleStart, 1);
+
+            // 2. 批量写入
+            List<LabEnvironmentData> batchList = buildBenchmarkData(count);
+            long batchStart = System.currentTimeMillis();
+            for (int i = 0; i < batchList.size(); i += batchSize) {
+                labEnvironmentDataMapper.insertBatch(batchList.subList(i, Math.min(i + batchSize, batchList.size())));
+            }
+            long batchTime = Math.max(System.currentTimeMillis() - batchStart, 1);
+
+            // 3. 清理测试数据
+            labEnvironmentDataMapper.delete(new LambdaQueryWrapper<LabEnvironmentData>()
+                    .eq(LabEnvironmentData::getDataSource, "BENCHMARK"));
+
+            result.put("count", count);
+            result.put("batchSize", batchSize);
+            result.put("singleInsertTime", singleTime + "ms");
+            result.put("batchInsertTime", batchTime + "ms");
+            result.put("singleThroughput", String.format("%.0f条/秒", count * 1000.0 / singleTime));
+            result.put("batchThroughput", String.format("%.0f条/秒", count * 1000.0 / batchTime));
+            result.put("speedRatio", String.format("%.1fx", (double) singleTime / batchTime));
+
+            log.info("🧪 [Kafka测试] 写入吞吐量对比完成 - 逐条: {}ms, 批量: {}ms", singleTime, batchTime);
+
+        } catch (Exception e) {
+            log.error("❌ [Kafka测试] 写入吞吐量对比失败: {}", e.getMessage(), e);
+            result.put("error", e.getMessage());
+        }
+
+        return Result.success(result);
+    }
+
+    /**
+     * 生产者持续压测
+     *
+     * 按目标速率持续批量发送环境数据（默认发送到无消费者的压测 Topic），统计实际发送速率、
+     * 每批从提交到全部确认的耗时分布、失败条数，并附带压测结束时的生产者客户端指标
+     *
+     * GET /kafka-test/producer-load?ratePerSecond=20000&seconds=10&batchSize=500
+     */
+    @GetMapping("/producer-load")
+    public Result<Map<String, Object>> producerLoadTest(@RequestParam(defaultValue = "20000") int ratePerSecond,
+                                                        @RequestParam(defaultValue = "10") int seconds,
+                                                        @RequestParam(defaultValue = "500") int batchSize,
+                                                        @RequestParam(defaultValue = KafkaConfig.TOPIC_LAB_ENV_DATA_LOADTEST) String topic) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("topic", topic);
+        result.put("profile", kafkaProducerProfiles.profileOf(topic));
+        result.put("targetRatePerSecond", ratePerSecond);
+
+        try {
+            log.info("🧪 [Kafka测试] 开始生产者压测 - Topic: {}, 目标速率: {}条/秒, 时长: {}s, 批次: {}",
+                    topic, ratePerSecond, seconds, batchSize);
+
+            List<LabEnvironmentData> template = buildBenchmarkData(batchSize);
+            LatencyHistogram ackLatency = new LatencyHistogram();
+            AtomicLong failed = new AtomicLong();
+            List<CompletableFuture<Integer>> batches = new ArrayList<>();
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) * batchSize / Math.max(1, ratePerSecond);
+            long start = System.nanoTime();
+            long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+            long sent = 0;
+
+            for (long next = start; next < deadline; next += intervalNanos) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+                LocalDateTime now = LocalDateTime.now();
+                template.forEach(data -> data.setMonitorTime(now));
+                long submitted = System.nanoTime();
+                batches.add(labEnvironmentProducer.sendEnvironmentDataBatch(topic, template)
+                        .whenComplete((failures, e) -> {
+                            failed.addAndGet(failures != null ? failures : template.size());
+                            ackLatency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - submitted));
+                        }));
+                sent += template.size();
+            }
+            long submitNanos = System.nanoTime() - start;
+
+            CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).get(60, TimeUnit.SECONDS);
+            long totalNanos = System.nanoTime() - start;
+
+            result.put("sent", sent);
+            result.put("failed", failed.get());
+            result.put("submitRatePerSecond", Math.round(sent * 1e9 / submitNanos));
+            result.put("ackedRatePerSecond", Math.round((sent - failed.get()) * 1e9 / totalNanos));
+            result.put("batchAckLatency", ackLatency.snapshot());
+            result.put("producerMetrics", kafkaProducerProfiles.getMetrics());
+
+            log.info("🧪 [Kafka测试] 生产者压测完成 - 发送: {}, 失败: {}, 耗时: {}ms",
+                    sent, failed.get(), TimeUnit.NANOSECONDS.toMillis(totalNanos));
+
+        } catch (Exception e) {
+            log.error("❌ [Kafka测试] 生产者压测失败: {}", e.getMessage(), e);
+            result.put("error", e.getMessage());
+        }
+
+        return Result.success(result);
+    }
+
+    /**
+     * JSON 与二进制编码对比（单条编码/解码耗时、消息大小）
+     *
+     * GET /kafka-test/codec-benchmark?iterations=100000
+     */
+    @GetMapping("/codec-benchmark")
+    public Result<Map<String, Object>> codecBenchmark(@RequestParam(defaultValue = "100000") int iterations) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("iterations", iterations);
+        try {
+            List<LabEnvironmentData> envList = buildBenchmarkData(1024);
+            result.put("environment", compareCodec(envList, iterations, LabEnvironmentData.class,
+                    labPayloadCodec::encodeEnvironment));
+
+            LocalDateTime now = LocalDateTime.now();
+            List<LabAlarm> alarmList = new ArrayList<>(1024);
+            for (int i = 0; i < 1024; i++) {
+                alarmList.add(LabAlarm.builder()
+                        .labId((long) (i % 5 + 1))
+                        .labName("吞吐量测试实验室")
+                        .alarmType("TEMP_HIGH")
+                        .alarmLevel("WARNING")
+                        .alarmMessage("温度过高: " + (30.0 + i % 10) + "°C")
+                        .alarmValue(30.0 + i % 10)
+                        .thresholdValue(30.0)
+                        .alarmTime(now)
+                        .status(LabAlarm.HandleStatus.PENDING)
+                        .occurrenceCount(1)
+                        .lastAlarmTime(now)
+                        .event(LabAlarm.AlarmEvent.FIRING)
+                        .build());
+            }
+            result.put("alarm", compareCodec(alarmList, iterations, LabAlarm.class, labPayloadCodec::encodeAlarm));
+
+            log.info("🧪 [Kafka测试] 编码对比完成 - {}", result);
+        } catch (Exception e) {
+            log.error("❌ [Kafka测试] 编码对比失败: {}", e.getMessage(), e);
+            result.put("error", e.getMessage());
+        }
+        return Result.success(result);
+    }
+
+    /**
+     * 对同一批样本分别测量 JSON 和二进制的编码、解码耗时和平均大小
+     */
+    private <T> Map<String, Object> compareCodec(List<T> samples, int iterations, Class<T> type,
+                                                 Function<T, byte[]> binaryEncoder) throws Exception {
+        int size = samples.size();
+        byte[][] jsonBytes = new byte[size][];
+        byte[][] binaryBytes = new byte[size][];
+        long jsonTotal = 0;
+        long binaryTotal = 0;
+        for (int i = 0; i < size; i++) {
+            jsonBytes[i] = objectMapper.writeValueAsString(samples.get(i)).getBytes(StandardCharsets.UTF_8);
+            binaryBytes[i] = binaryEncoder.apply(samples.get(i));
+            jsonTotal += jsonBytes[i].length;
+            binaryTotal += binaryBytes[i].length;
+        }
+
+        // 预热
+        for (int n = 0; n < 20000; n++) {
+            objectMapper.writeValueAsString(samples.get(n % size));
+            objectMapper.readValue(new String(jsonBytes[n % size], StandardCharsets.UTF_8), type);
+            binaryEncoder.apply(samples.get(n % size));
+            labPayloadCodec.decode(binaryBytes[n % size]);
+        }
+
+        long start = System.nanoTime();
+        for (int n = 0; n < iterations; n++) {
+            objectMapper.writeValueAsString(samples.get(n % size)).getBytes(StandardCharsets.UTF_8);
+        }
+        long jsonEncodeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int n = 0; n < iterations; n++) {
+            objectMapper.readValue(new String(jsonBytes[n % size], StandardCharsets.UTF_8), type);
+        }
+        long jsonDecodeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int n = 0; n < iterations; n++) {
+            binaryEncoder.apply(samples.get(n % size));
+        }
+        long binaryEncodeNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int n = 0; n < iterations; n++) {
+            labPayloadCodec.decode(binaryBytes[n % size]);
+        }
+        long binaryDecodeNanos = System.nanoTime() - start;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("jsonBytesPerRecord", jsonTotal / size);
+        stats.put("binaryBytesPerRecord", binaryTotal / size);
+        stats.put("jsonEncodeNanos", jsonEncodeNanos / iterations);
+        stats.put("binaryEncodeNanos", binaryEncodeNanos / iterations);
+        stats.put("jsonDecodeNanos", jsonDecodeNanos / iterations);
+        stats.put("binaryDecodeNanos", binaryDecodeNanos / iterations);
+        stats.put("sizeRatio", String.format("%.2f", (double) binaryTotal / jsonTotal));
+        stats.put("decodeSpeedup", String.format("%.1fx", (double) jsonDecodeNanos / Math.max(1, binaryDecodeNanos)));
+        return stats;
+    }
+
+    /**
+     * 构造吞吐量测试数据
+     */
+    private List<LabEnvironmentData> buildBenchmarkData(int count) {
+        List<LabEnvironmentData> list = new ArrayList<>(count);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < count; i++) {
+            list.add(LabEnvironmentData.builder()
+                    .labId((long) (i % 5 + 1))
+                    .labName("吞吐量测试实验室")
+                    .temperature(22.0 + i % 10)
+                    .humidity(50.0)
+                    .pm25(30.0)
+                    .illuminance(500.0)
+                    .co2(600.0)
+                    .onlineDeviceCount(15)
+                    .totalDeviceCount(20)
+                    .currentPeopleCount(10)
+                    .monitorTime(now)
+                    .createdTime(now)
+                    .dataSource("BENCHMARK")
+                    .build());
+        }
+        return list;
+    }
+
     /**
      * 健康检查
      *
@@ -1,22 +1,45 @@
 package com.sewage.monitor.controller;
 
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sewage.common.context.UserContext;
 import com.sewage.common.result.Result;
 import com.sewage.monitor.entity.LabDailyStatistics;
 import com.sewage.monitor.entity.LabAlarm;
+import com.sewage.monitor.entity.LabAttendanceEvent;
 import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.kafka.consumer.LabAlarmConsumer;
+import com.sewage.monitor.kafka.consumer.LabAttendanceConsumer;
+import com.sewage.monitor.kafka.producer.KafkaProducerProfiles;
+import com.sewage.monitor.kafka.producer.LabAttendanceProducer;
 import com.sewage.monitor.kafka.producer.LabEnvironmentProducer;
 import com.sewage.monitor.mapper.LabDailyStatisticsMapper;
 import com.sewage.monitor.mapper.LabAlarmMapper;
 import com.sewage.monitor.mapper.LabEnvironmentDataMapper;
+import com.sewage.monitor.service.AlarmService;
+import com.sewage.monitor.service.DailyStatisticsEngine;
+import com.sewage.monitor.service.EnvironmentPipeline;
+import com.sewage.monitor.service.HistoryDownsampleService;
 import com.sewage.monitor.service.LabEnvironmentDataService;
+import com.sewage.monitor.service.PartitionRotationService;
+import com.sewage.monitor.service.RollupEngine;
+import com.sewage.monitor.service.StatisticsService;
+import com.sewage.monitor.service.StreamingExportService;
+import com.sewage.monitor.service.StreamingIngestService;
 import com.sewage.monitor.service.WebSocketPushService;
+import com.sewage.monitor.util.KeysetPage;
+import com.sewage.monitor.util.TimeSeriesDownsampler;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -40,18 +63,42 @@ public class MonitorController {
 
     // 实验室环境数据服务
     private final LabEnvironmentDataService labEnvironmentDataService;
+    private final HistoryDownsampleService historyDownsampleService;
+    private final StreamingExportService streamingExportService;
 
     // Kafka生产者
     private final LabEnvironmentProducer labEnvironmentProducer;
+    private final LabAttendanceProducer labAttendanceProducer;
+    private final KafkaProducerProfiles kafkaProducerProfiles;
+    private final StreamingIngestService streamingIngestService;
+    private final ObjectMapper objectMapper;
+
+    // Kafka消费者
+    private final LabAlarmConsumer labAlarmConsumer;
+    private final LabAttendanceConsumer labAttendanceConsumer;
 
     // Mapper依赖
     private final LabEnvironmentDataMapper labEnvironmentDataMapper;
     private final LabAlarmMapper labAlarmMapper;
     private final LabDailyStatisticsMapper dailyStatisticsMapper;
 
+    // 告警服务
+    private final AlarmService alarmService;
+
+    // 统计服务
+    private final StatisticsService statisticsService;
+    private final DailyStatisticsEngine dailyStatisticsEngine;
+    private final RollupEngine rollupEngine;
+
+    // 环境数据处理流水线
+    private final EnvironmentPipeline environmentPipeline;
+
     // WebSocket推送服务
     private final WebSocketPushService webSocketPushService;
 
+    // 环境数据表分区轮转
+    private final PartitionRotationService partitionRotationService;
+
     // ========================================
     // 数据上传接口 (改造重点！)
     // ========================================
@@ -70,8 +117,10 @@ public class MonitorController {
             log.info("📥 接收到实验室环境数据 - 实验室ID: {}, 名称: {}",
                     data.getLabId(), data.getLabName());
 
-            // 设置当前时间和数据来源
-            data.setMonitorTime(LocalDateTime.now());
+            // 保留设备上报的监测时间（统计按事件时间归入所属日期），未上报时使用当前时间
+            if (data.getMonitorTime() == null) {
+                data.setMonitorTime(LocalDateTime.now());
+            }
             if (data.getDataSource() == null) {
                 data.setDataSource("SENSOR");
             }
@@ -98,7 +147,6 @@ public class MonitorController {
         try {
             log.info("📦 批量接收实验室环境数据 - 数量: {}", dataList.size());
 
-            // 设置数据并直接保存到数据库
             for (LabEnvironmentData data : dataList) {
                 if (data.getMonitorTime() == null) {
                     data.setMonitorTime(LocalDateTime.now());
@@ -106,11 +154,11 @@ public class MonitorController {
                 if (data.getDataSource() == null) {
                     data.setDataSource("SENSOR");
                 }
-
-                // 发送到Kafka
-                labEnvironmentProducer.sendEnvironmentDataAsync(data);
             }
 
+            // 整批发送到Kafka，由生产者凑批压缩
+            labEnvironmentProducer.sendEnvironmentDataBatch(dataList);
+
             return Result.success("已发送 " + dataList.size() + " 条实验室环境数据到消息队列");
 
         } catch (Exception e) {
@@ -119,6 +167,111 @@ public class MonitorController {
         }
     }
 
+    /**
+     * 流式批量上传实验室环境数据（网关断线重连后补传积压数据）
+     *
+     * 请求体边读边解析，每凑满一批发送到Kafka并等待确认，不把整个请求体读入内存；
+     * 响应为 NDJSON：每批一行确认（记录序号范围、接受/拒绝/发送失败条数），最后一行为汇总（done=true 表示完整读完）
+     *
+     * POST http://localhost:8083/lab-monitor/data/stream
+     * Content-Type: application/x-ndjson（每行一条JSON）或 application/octet-stream（4字节长度 + 二进制编码）
+     */
+    @PostMapping("/data/stream")
+    public void uploadStreamData(@RequestParam(required = false) String format,
+                                 HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String resolvedFormat = format;
+        if (resolvedFormat == null) {
+            String contentType = request.getContentType();
+            resolvedFormat = contentType != null && contentType.startsWith("application/octet-stream")
+                    ? StreamingIngestService.FORMAT_BINARY : StreamingIngestService.FORMAT_NDJSON;
+        }
+        log.info("📦 开始流式接收实验室环境数据 - 格式: {}, 长度: {}", resolvedFormat, request.getContentLengthLong());
+
+        response.setContentType("application/x-ndjson;charset=UTF-8");
+        OutputStream out = response.getOutputStream();
+        Map<String, Object> summary = streamingIngestService.ingest(request.getInputStream(), resolvedFormat,
+                ack -> writeLine(out, ack));
+        writeLine(out, summary);
+    }
+
+    /**
+     * 写一行 NDJSON 并立即刷出，网关可以边上传边读取确认
+     */
+    private void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(value));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 查询环境数据处理流水线各阶段统计（积压量、吞吐量、耗时分布）
+     *
+     * GET http://localhost:8083/lab-monitor/pipeline/stats
+     */
+    @GetMapping("/pipeline/stats")
+    public Result<Map<String, Object>> getPipelineStats() {
+        return Result.success(environmentPipeline.getStats());
+    }
+
+    /**
+     * 查询Kafka生产者指标（发送速率、平均批次大小、请求延迟等，按配置档和 Topic 汇总）
+     *
+     * GET http://localhost:8083/lab-monitor/kafka/producer-metrics
+     */
+    @GetMapping("/kafka/producer-metrics")
+    public Result<Map<String, Object>> getProducerMetrics() {
+        return Result.success(kafkaProducerProfiles.getMetrics());
+    }
+
+    /**
+     * 批量上传考勤事件（预约 / 刷卡签到）
+     *
+     * 事件发送到 lab-attendance-data Topic，由考勤消费者在内存中去重计数后随日统计定时写入
+     *
+     * POST http://localhost:8083/lab-monitor/attendance/batch
+     * [{"labId": 1, "labName": "化学实验室", "userId": "20230001", "eventType": "CHECK_IN"}]
+     */
+    @PostMapping("/attendance/batch")
+    public Result<String> uploadAttendanceBatch(@RequestBody List<LabAttendanceEvent> events) {
+        if (events == null || events.isEmpty()) {
+            return Result.badRequest("考勤事件不能为空");
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            List<LabAttendanceEvent> validEvents = new ArrayList<>(events.size());
+            for (LabAttendanceEvent event : events) {
+                if (event.getLabId() == null || event.getUserId() == null || event.getEventType() == null) {
+                    continue;
+                }
+                if (event.getEventTime() == null) {
+                    event.setEventTime(now);
+                }
+                validEvents.add(event);
+            }
+
+            int sent = labAttendanceProducer.sendBatch(validEvents);
+            log.info("📦 考勤事件已发送到Kafka - 接收: {}, 发送: {}", events.size(), sent);
+            return Result.success(String.format("已发送 %d/%d 条考勤事件到消息队列", sent, events.size()));
+        } catch (Exception e) {
+            log.error("❌ 考勤事件上传失败: {}", e.getMessage(), e);
+            return Result.failure("考勤事件上传失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 查询考勤消费者统计
+     *
+     * GET http://localhost:8083/lab-monitor/attendance/consumer-stats
+     */
+    @GetMapping("/attendance/consumer-stats")
+    public Result<Map<String, Object>> getAttendanceConsumerStats() {
+        return Result.success(labAttendanceConsumer.getStats());
+    }
+
     // ========================================
     // 原有查询接口 (保持不变)
     // ========================================
@@ -137,17 +290,106 @@ public class MonitorController {
     /**
      * 查询历史数据
      *
+     * 不带 maxPoints 时返回范围内的全部原始数据；带 maxPoints 时在服务端流式降采样，
+     * 返回列式结果（每个指标最多 maxPoints 个点，mode: LTTB 保留曲线形状 / MIN_MAX 保留每段的极值）
+     *
      * GET http://localhost:8083/monitor/history/1?startTime=2025-01-01 00:00:00&endTime=2025-12-31 23:59:59
+     * GET http://localhost:8083/lab-monitor/history/1?startTime=2025-01-01 00:00:00&endTime=2025-12-31 23:59:59&maxPoints=500&mode=LTTB
      */
     @GetMapping("/history/{plantId}")
-    public Result<List<LabEnvironmentData>> getHistoryData(
+    public Result<?> getHistoryData(
             @PathVariable Long plantId,
             @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime startTime,
-            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime endTime) {
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime endTime,
+            @RequestParam(required = false) Integer maxPoints,
+            @RequestParam(defaultValue = "LTTB") TimeSeriesDownsampler.Mode mode) {
+        if (maxPoints != null) {
+            if (!endTime.isAfter(startTime)) {
+                return Result.failure("结束时间必须晚于开始时间");
+            }
+            return Result.success(historyDownsampleService.downsample(plantId, startTime, endTime, maxPoints, mode));
+        }
         List<LabEnvironmentData> list = labEnvironmentDataService.getHistoryData(plantId, startTime, endTime);
         return Result.success(list);
     }
 
+    /**
+     * 查询历史曲线（按点数自动选择 小时汇总 / 分钟汇总 / 原始数据，按时间升序）
+     *
+     * GET http://localhost:8083/lab-monitor/history/1/series?startTime=2025-01-01 00:00:00&endTime=2025-01-31 00:00:00&points=720
+     */
+    @GetMapping("/history/{labId}/series")
+    public Result<Map<String, Object>> getHistorySeries(
+            @PathVariable Long labId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime endTime,
+            @RequestParam(defaultValue = "720") int points) {
+        if (!endTime.isAfter(startTime)) {
+            return Result.failure("结束时间必须晚于开始时间");
+        }
+        try {
+            return Result.success(labEnvironmentDataService.getHistorySeries(labId, startTime, endTime, points));
+        } catch (Exception e) {
+            log.error("❌ 查询历史曲线失败 - 实验室ID: {}", labId, e);
+            return Result.failure("查询历史曲线失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 流式导出时间范围内的原始环境数据（按时间升序，CSV / JSON）
+     *
+     * 边查询边写入响应，不限制时间范围；中途失败时响应被截断（CSV 缺少后续行，JSON 缺少结尾的 ]）
+     *
+     * GET http://localhost:8083/lab-monitor/history/1/export?startTime=2025-01-01 00:00:00&endTime=2025-12-31 23:59:59&format=CSV
+     */
+    @GetMapping("/history/{labId}/export")
+    public void exportHistory(
+            @PathVariable Long labId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime endTime,
+            @RequestParam(defaultValue = "CSV") StreamingExportService.Format format,
+            HttpServletResponse response) throws IOException {
+        if (!endTime.isAfter(startTime)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "结束时间必须晚于开始时间");
+            return;
+        }
+        String fileName = "lab_" + labId + "_" + startTime.toLocalDate() + "_" + endTime.toLocalDate()
+                + "." + format.getExtension();
+        response.setContentType(format.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        log.info("📥 开始导出环境数据 - 实验室ID: {}, 时间范围: {} 到 {}, 格式: {}", labId, startTime, endTime, format);
+        try {
+            streamingExportService.exportEnvironmentData(labId, startTime, endTime, format, response.getOutputStream());
+        } catch (Exception e) {
+            log.error("❌ 导出环境数据失败 - 实验室ID: {}", labId, e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "导出失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 从原始数据重建时间范围内的分钟/小时汇总（补建汇总表上线前的历史数据），labId 为空时重建所有实验室
+     *
+     * POST http://localhost:8083/lab-monitor/history/rollup/rebuild?startTime=2025-01-01 00:00:00&endTime=2025-01-08 00:00:00
+     */
+    @PostMapping("/history/rollup/rebuild")
+    public Result<Map<String, Object>> rebuildRollup(
+            @RequestParam(required = false) Long labId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime startTime,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") LocalDateTime endTime) {
+        if (!endTime.isAfter(startTime) || startTime.plusDays(31).isBefore(endTime)) {
+            return Result.failure("时间范围需大于0且不超过31天，更长的范围请分多次执行");
+        }
+        try {
+            return Result.success(rollupEngine.rebuild(labId, startTime, endTime));
+        } catch (Exception e) {
+            log.error("❌ 重建汇总数据失败", e);
+            return Result.failure("重建汇总数据失败: " + e.getMessage());
+        }
+    }
+
     /**
      * 分页查询
      *
@@ -162,6 +404,26 @@ public class MonitorController {
         return Result.success(page);
     }
 
+    /**
+     * 游标分页查询监测数据（按监测时间倒序，深页与第一页代价相同）
+     *
+     * 第一页不传 token，之后传上一页返回的 nextToken；nextToken 为空表示没有下一页
+     *
+     * GET http://localhost:8083/lab-monitor/page/keyset?plantId=1&size=20&token=xxx&withTotal=true
+     */
+    @GetMapping("/page/keyset")
+    public Result<KeysetPage<LabEnvironmentData>> getKeysetPageData(
+            @RequestParam(required = false) Long plantId,
+            @RequestParam(required = false) String token,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        try {
+            return Result.success(labEnvironmentDataService.getKeysetPage(plantId, token, size, withTotal));
+        } catch (IllegalArgumentException e) {
+            return Result.badRequest(e.getMessage());
+        }
+    }
+
     // ========================================
     // 新增：告警查询接口
     // ========================================
@@ -189,6 +451,23 @@ public class MonitorController {
         }
     }
 
+    /**
+     * 游标分页查询告警（按告警时间倒序，深页与第一页代价相同）
+     *
+     * GET http://localhost:8083/lab-monitor/alarms/keyset?size=20&token=xxx&withTotal=true
+     */
+    @GetMapping("/alarms/keyset")
+    public Result<KeysetPage<LabAlarm>> getKeysetAlarms(
+            @RequestParam(required = false) String token,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        try {
+            return Result.success(alarmService.getKeysetPage(token, size, withTotal));
+        } catch (IllegalArgumentException e) {
+            return Result.badRequest(e.getMessage());
+        }
+    }
+
     /**
      * 查询未处理的告警
      *
@@ -231,6 +510,16 @@ public class MonitorController {
         return Result.success(stats);
     }
 
+    /**
+     * 查询告警消费者统计（写入条数、死信数、批处理耗时分布）
+     *
+     * GET http://localhost:8083/lab-monitor/alarms/consumer-stats
+     */
+    @GetMapping("/alarms/consumer-stats")
+    public Result<Map<String, Object>> getAlarmConsumerStats() {
+        return Result.success(labAlarmConsumer.getStats());
+    }
+
     // ========================================
     // 新增：统计查询接口
     // ========================================
@@ -278,6 +567,106 @@ public class MonitorController {
         return Result.success(result);
     }
 
+    /**
+     * 游标分页查询日统计（按统计日期倒序，深页与第一页代价相同）
+     *
+     * GET http://localhost:8083/lab-monitor/stats/keyset?size=10&token=xxx&withTotal=true
+     */
+    @GetMapping("/stats/keyset")
+    public Result<KeysetPage<LabDailyStatistics>> getKeysetStats(
+            @RequestParam(required = false) String token,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        try {
+            return Result.success(statisticsService.getKeysetPage(token, size, withTotal));
+        } catch (IllegalArgumentException e) {
+            return Result.badRequest(e.getMessage());
+        }
+    }
+
+    /**
+     * 查询指标分位数（p50/p90/p95/p99）
+     *
+     * 由每日分位数草图合并得到，不扫描原始数据；不传labId时统计所有实验室
+     *
+     * GET http://localhost:8083/lab-monitor/stats/percentiles?metric=co2&labId=1&startDate=2024-01-01&endDate=2024-01-31
+     */
+    @GetMapping("/stats/percentiles")
+    public Result<Map<String, Object>> getPercentiles(
+            @RequestParam String metric,
+            @RequestParam(required = false) Long labId,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
+        LocalDate end = endDate != null ? endDate : LocalDate.now();
+        LocalDate start = startDate != null ? startDate : end.minusDays(6);
+        if (start.isAfter(end)) {
+            return Result.badRequest("开始日期不能晚于结束日期");
+        }
+        try {
+            return Result.success(statisticsService.getPercentiles(labId, metric, start, end));
+        } catch (IllegalArgumentException e) {
+            return Result.badRequest(e.getMessage());
+        }
+    }
+
+    /**
+     * 查询日统计聚合引擎状态
+     *
+     * GET http://localhost:8083/lab-monitor/stats/engine
+     */
+    @GetMapping("/stats/engine")
+    public Result<Map<String, Object>> getStatisticsEngineStats() {
+        return Result.success(dailyStatisticsEngine.getStats());
+    }
+
+    /**
+     * 查询各实验室的事件时间水位线（早于水位线的乱序数据不再计入日统计）
+     *
+     * GET http://localhost:8083/lab-monitor/stats/watermarks
+     */
+    @GetMapping("/stats/watermarks")
+    public Result<Map<Long, Map<String, Object>>> getStatisticsWatermarks() {
+        return Result.success(dailyStatisticsEngine.getWatermarks());
+    }
+
+    /**
+     * 查询分钟/小时汇总引擎指标（待写入的桶数、写入行数、过期清理行数）
+     *
+     * GET http://localhost:8083/lab-monitor/stats/rollup
+     */
+    @GetMapping("/stats/rollup")
+    public Result<Map<String, Object>> getRollupStats() {
+        return Result.success(rollupEngine.getStats());
+    }
+
+    // ========================================
+    // 存储分区接口
+    // ========================================
+
+    /**
+     * 查询环境数据表的分区状态（分区列表、估算行数、轮转配置和最近一次执行结果）
+     *
+     * GET http://localhost:8083/lab-monitor/storage/partitions
+     */
+    @GetMapping("/storage/partitions")
+    public Result<Map<String, Object>> getPartitionStatus() {
+        return Result.success(partitionRotationService.getStatus());
+    }
+
+    /**
+     * 立即执行一次分区轮转（创建未来分区、删除/归档过期分区）
+     *
+     * POST http://localhost:8083/lab-monitor/storage/partitions/rotate
+     */
+    @PostMapping("/storage/partitions/rotate")
+    public Result<Map<String, Object>> rotatePartitions() {
+        Map<String, Object> result = partitionRotationService.rotate();
+        if (result.containsKey("error")) {
+            return Result.failure("分区轮转失败: " + result.get("error"));
+        }
+        return Result.success(result);
+    }
+
     // ========================================
     // 测试接口
     // ========================================
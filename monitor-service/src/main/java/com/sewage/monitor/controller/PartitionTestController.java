@@ -0,0 +1,310 @@
+package com.sewage.monitor.controller;
+
+import com.sewage.common.result.Result;
+import com.sewage.monitor.mapper.TablePartitionMapper;
+import com.sewage.monitor.service.AsyncTaskManager;
+import com.sewage.monitor.util.LatencyHistogram;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.*;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分区表查询性能测试控制器
+ *
+ * 功能说明：
+ * 1. prepare：生成两张结构相同的压测表，普通表 lab_environment_data_bench_flat 和按天分区的
+ *    lab_environment_data_bench_part，写入相同的千万级数据（异步执行，通过 /report/task/{taskId} 查询进度）
+ * 2. range-benchmark：在两张表上执行相同的 1天/7天 时间范围查询和最新数据查询，对比耗时，
+ *    并返回 EXPLAIN 的 partitions 列确认分区裁剪是否生效
+ * 3. cleanup：删除压测表
+ *
+ * 压测表不参与业务，不影响 lab_environment_data
+ */
+@Slf4j
+@RestController
+@RequestMapping("/partition-test")
+@RequiredArgsConstructor
+public class PartitionTestController {
+
+    public static final String TASK_TYPE_PREPARE = "PARTITION_BENCH_PREPARE";
+
+    private static final String FLAT_TABLE = "lab_environment_data_bench_flat";
+    private static final String PART_TABLE = "lab_environment_data_bench_part";
+    private static final String DIGITS_TABLE = "lab_bench_digits";
+    private static final int CHUNK_ROWS = 1_000_000;
+    private static final DateTimeFormatter SQL_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final TablePartitionMapper tablePartitionMapper;
+    private final AsyncTaskManager asyncTaskManager;
+
+    private final ExecutorService prepareExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "partition-bench-prepare");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 生成压测数据（数据时间均匀分布在最近 days 天内）
+     *
+     * POST http://localhost:8083/partition-test/prepare?rows=10000000&days=30&labs=100
+     */
+    @PostMapping("/prepare")
+    public Result<String> prepare(@RequestParam(defaultValue = "10000000") long rows,
+                                  @RequestParam(defaultValue = "30") int days,
+                                  @RequestParam(defaultValue = "100") int labs) {
+        if (rows <= 0 || days <= 0 || labs <= 0) {
+            return Result.failure("rows、days、labs 必须大于0");
+        }
+        String taskId = asyncTaskManager.createTask(TASK_TYPE_PREPARE);
+        prepareExecutor.execute(() -> {
+            try {
+                doPrepare(taskId, rows, days, labs);
+            } catch (Exception e) {
+                log.error("❌ 分区压测数据生成失败 - 任务ID: {}", taskId, e);
+                asyncTaskManager.failTask(taskId, e.getMessage());
+            }
+        });
+        return Result.success(taskId);
+    }
+
+    /**
+     * 时间范围查询对比：每轮随机选取实验室和结束日期，分别在普通表和分区表上执行
+     *
+     * GET http://localhost:8083/partition-test/range-benchmark?iterations=50&days=30&labs=100
+     */
+    @GetMapping("/range-benchmark")
+    public Result<Map<String, Object>> rangeBenchmark(@RequestParam(defaultValue = "50") int iterations,
+                                                      @RequestParam(defaultValue = "30") int days,
+                                                      @RequestParam(defaultValue = "100") int labs) {
+        if (days <= 7) {
+            return Result.failure("days 需大于7，与 prepare 时保持一致");
+        }
+        try {
+            Random random = new Random(42);
+            LocalDateTime today = LocalDate.now().atStartOfDay();
+            Map<String, LatencyHistogram> flat = newHistograms();
+            Map<String, LatencyHistogram> part = newHistograms();
+            long flatRows = 0;
+            long partRows = 0;
+
+            for (int i = 0; i < iterations; i++) {
+                long labId = random.nextInt(labs) + 1;
+                LocalDateTime end = today.minusDays(random.nextInt(days - 7));
+                // 交替先后顺序，避免总是第二张表享受 Buffer Pool 预热
+                if (i % 2 == 0) {
+                    flatRows += runQueries(FLAT_TABLE, labId, end, flat);
+                    partRows += runQueries(PART_TABLE, labId, end, part);
+                } else {
+                    partRows += runQueries(PART_TABLE, labId, end, part);
+                    flatRows += runQueries(FLAT_TABLE, labId, end, flat);
+                }
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("iterations", iterations);
+            result.put("flat", summarize(FLAT_TABLE, flat, flatRows));
+            result.put("partitioned", summarize(PART_TABLE, part, partRows));
+
+            LocalDateTime end = today.minusDays(1);
+            Map<String, Object> explain = new LinkedHashMap<>();
+            explain.put("range1d", explainPartitions(rangeSql(PART_TABLE, 1L, end.minusDays(1), end)));
+            explain.put("range7d", explainPartitions(rangeSql(PART_TABLE, 1L, end.minusDays(7), end)));
+            explain.put("latest", explainPartitions(latestSql(PART_TABLE, 1L, null)));
+            explain.put("latestSince", explainPartitions(latestSql(PART_TABLE, 1L, today.minusDays(1))));
+            result.put("explainPartitions", explain);
+
+            log.info("📊 分区查询对比完成 - 轮数: {}, 结果: {}", iterations, result);
+            return Result.success(result);
+
+        } catch (Exception e) {
+            log.error("❌ 分区查询对比失败", e);
+            return Result.failure("分区查询对比失败（请先调用 /partition-test/prepare）: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 删除压测表
+     *
+     * DELETE http://localhost:8083/partition-test/cleanup
+     */
+    @DeleteMapping("/cleanup")
+    public Result<String> cleanup() {
+        try {
+            dropBenchTables();
+            return Result.success("✅ 压测表已删除");
+        } catch (Exception e) {
+            log.error("❌ 删除压测表失败", e);
+            return Result.failure("删除压测表失败: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        prepareExecutor.shutdownNow();
+    }
+
+    // =============================数据生成=============================
+
+    private void doPrepare(String taskId, long rows, int days, int labs) {
+        long startMillis = System.currentTimeMillis();
+        LocalDate firstDay = LocalDate.now().minusDays(days);
+        asyncTaskManager.updateTask(taskId, AsyncTaskManager.TaskStatus.PROCESSING, 0, "创建压测表");
+
+        dropBenchTables();
+        tablePartitionMapper.executeDdl("CREATE TABLE " + DIGITS_TABLE + " (n TINYINT NOT NULL PRIMARY KEY)");
+        tablePartitionMapper.executeDdl("INSERT INTO " + DIGITS_TABLE + " VALUES (0),(1),(2),(3),(4),(5),(6),(7),(8),(9)");
+        tablePartitionMapper.executeDdl(createTableSql(FLAT_TABLE) + " ENGINE=InnoDB");
+        tablePartitionMapper.executeDdl(createTableSql(PART_TABLE) + " ENGINE=InnoDB " + dailyPartitions(firstDay, days));
+
+        // 1. 普通表：数字表6次自连接得到每批100万个序号，按序号计算实验室、读数和时间（均匀分布在 days 天内）
+        long spanSeconds = TimeUnit.DAYS.toSeconds(days);
+        String firstTime = firstDay.atStartOfDay().format(SQL_TIME);
+        int chunks = (int) ((rows + CHUNK_ROWS - 1) / CHUNK_ROWS);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            long offset = (long) chunk * CHUNK_ROWS;
+            tablePartitionMapper.executeDdl("INSERT INTO " + FLAT_TABLE
+                    + " (lab_id, temperature, humidity, pm25, co2, monitor_time, data_source)"
+                    + " SELECT seq % " + labs + " + 1, 18 + (seq % 97) / 10, 40 + (seq % 301) / 10,"
+                    + " 10 + (seq % 113) / 2, 400 + seq % 900,"
+                    + " TIMESTAMP('" + firstTime + "') + INTERVAL (seq * " + spanSeconds + " DIV " + rows + ") SECOND,"
+                    + " 'BENCH'"
+                    + " FROM (SELECT " + offset + " + a.n + b.n * 10 + c.n * 100 + d.n * 1000 + e.n * 10000"
+                    + " + f.n * 100000 AS seq FROM " + digitsJoin() + ") s"
+                    + " WHERE seq < " + rows);
+            asyncTaskManager.updateTask(taskId, AsyncTaskManager.TaskStatus.PROCESSING,
+                    (chunk + 1) * 50 / chunks, String.format("普通表已写入 %d 条", Math.min(rows, offset + CHUNK_ROWS)));
+        }
+
+        // 2. 分区表：按ID分段从普通表复制，两张表数据完全相同
+        long maxId = tablePartitionMapper.selectMaxId(FLAT_TABLE);
+        for (long from = 0; from < maxId; from += CHUNK_ROWS) {
+            tablePartitionMapper.executeDdl("INSERT INTO " + PART_TABLE + " SELECT * FROM " + FLAT_TABLE
+                    + " WHERE id > " + from + " AND id <= " + (from + CHUNK_ROWS));
+            asyncTaskManager.updateTask(taskId, AsyncTaskManager.TaskStatus.PROCESSING,
+                    50 + (int) (Math.min(maxId, from + CHUNK_ROWS) * 49 / maxId),
+                    String.format("分区表已复制 %d 条", Math.min(maxId, from + CHUNK_ROWS)));
+        }
+        tablePartitionMapper.executeDdl("ANALYZE TABLE " + FLAT_TABLE + ", " + PART_TABLE);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("rows", maxId);
+        result.put("days", days);
+        result.put("labs", labs);
+        result.put("costMillis", System.currentTimeMillis() - startMillis);
+        asyncTaskManager.completeTask(taskId, result);
+        log.info("✅ 分区压测数据生成完成 - 任务ID: {}, 结果: {}", taskId, result);
+    }
+
+    private static String createTableSql(String table) {
+        return "CREATE TABLE " + table + " ("
+                + "id BIGINT NOT NULL AUTO_INCREMENT,"
+                + "lab_id BIGINT NOT NULL,"
+                + "temperature DOUBLE, humidity DOUBLE, pm25 DOUBLE, co2 DOUBLE,"
+                + "monitor_time DATETIME NOT NULL,"
+                + "data_source VARCHAR(20),"
+                + "PRIMARY KEY (id, monitor_time),"
+                + "KEY idx_lab_time (lab_id, monitor_time))";
+    }
+
+    /**
+     * 按天分区：覆盖 [firstDay, 明天)，另加 p_max
+     */
+    private static String dailyPartitions(LocalDate firstDay, int days) {
+        StringBuilder sql = new StringBuilder("PARTITION BY RANGE COLUMNS (monitor_time) (");
+        for (int i = 0; i <= days; i++) {
+            LocalDate day = firstDay.plusDays(i);
+            sql.append("PARTITION p").append(day.format(PARTITION_NAME))
+                    .append(" VALUES LESS THAN ('").append(day.plusDays(1).atStartOfDay().format(SQL_TIME)).append("'), ");
+        }
+        return sql.append("PARTITION p_max VALUES LESS THAN (MAXVALUE))").toString();
+    }
+
+    private static String digitsJoin() {
+        StringBuilder join = new StringBuilder();
+        for (char alias = 'a'; alias <= 'f'; alias++) {
+            if (join.length() > 0) {
+                join.append(" CROSS JOIN ");
+            }
+            join.append(DIGITS_TABLE).append(' ').append(alias);
+        }
+        return join.toString();
+    }
+
+    private void dropBenchTables() {
+        tablePartitionMapper.executeDdl("DROP TABLE IF EXISTS " + FLAT_TABLE + ", " + PART_TABLE + ", " + DIGITS_TABLE);
+    }
+
+    // =============================查询对比=============================
+
+    private static Map<String, LatencyHistogram> newHistograms() {
+        Map<String, LatencyHistogram> histograms = new LinkedHashMap<>();
+        histograms.put("range1d", new LatencyHistogram());
+        histograms.put("range7d", new LatencyHistogram());
+        histograms.put("latest", new LatencyHistogram());
+        histograms.put("latestSince", new LatencyHistogram());
+        return histograms;
+    }
+
+    /**
+     * 执行一轮查询，返回读取的行数
+     */
+    private long runQueries(String table, long labId, LocalDateTime end, Map<String, LatencyHistogram> histograms) {
+        long[] rows = new long[1];
+        time(histograms.get("range1d"), () ->
+                rows[0] += tablePartitionMapper.selectRange(table, labId, end.minusDays(1), end).size());
+        time(histograms.get("range7d"), () ->
+                rows[0] += tablePartitionMapper.selectRange(table, labId, end.minusDays(7), end).size());
+        time(histograms.get("latest"), () -> tablePartitionMapper.selectLatest(table, labId, null));
+        time(histograms.get("latestSince"), () ->
+                tablePartitionMapper.selectLatest(table, labId, LocalDate.now().minusDays(1).atStartOfDay()));
+        return rows[0];
+    }
+
+    private static void time(LatencyHistogram histogram, Runnable query) {
+        long start = System.nanoTime();
+        query.run();
+        histogram.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private Map<String, Object> summarize(String table, Map<String, LatencyHistogram> histograms, long rows) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("table", table);
+        summary.put("rowsRead", rows);
+        histograms.forEach((name, histogram) -> summary.put(name, histogram.snapshot()));
+        return summary;
+    }
+
+    private List<Object> explainPartitions(String query) {
+        List<Object> partitions = new ArrayList<>();
+        for (Map<String, Object> row : tablePartitionMapper.explain(query)) {
+            partitions.add(row.get("partitions"));
+        }
+        return partitions;
+    }
+
+    private static String rangeSql(String table, long labId, LocalDateTime start, LocalDateTime end) {
+        return "SELECT * FROM " + table + " WHERE lab_id = " + labId
+                + " AND monitor_time BETWEEN '" + start.format(SQL_TIME) + "' AND '" + end.format(SQL_TIME) + "'"
+                + " ORDER BY monitor_time DESC";
+    }
+
+    private static String latestSql(String table, long labId, LocalDateTime since) {
+        return "SELECT * FROM " + table + " WHERE lab_id = " + labId
+                + (since != null ? " AND monitor_time >= '" + since.format(SQL_TIME) + "'" : "")
+                + " ORDER BY monitor_time DESC LIMIT 1";
+    }
+}
@@ -3,16 +3,20 @@ package com.sewage.monitor.controller;
 import com.sewage.common.result.Result;
 import com.sewage.monitor.schedule.ScheduledReportService;
 import com.sewage.monitor.service.AsyncTaskManager;
+import com.sewage.monitor.service.StreamingExportService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
 import java.io.File;
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
@@ -30,6 +34,7 @@ public class ReportController {
 
     private final ScheduledReportService scheduledReportService;
     private final AsyncTaskManager asyncTaskManager;
+    private final StreamingExportService streamingExportService;
 
     /**
      * 手动触发报表生成
@@ -146,6 +151,36 @@ public class ReportController {
         }
     }
 
+    /**
+     * 流式导出日期范围内的日统计（CSV / JSON），边查询边写入响应，不生成文件
+     *
+     * GET http://localhost:8083/report/export/daily?startDate=2025-01-01&endDate=2025-12-31&format=CSV
+     */
+    @GetMapping("/export/daily")
+    public void exportDailyStatistics(
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @RequestParam(defaultValue = "CSV") StreamingExportService.Format format,
+            HttpServletResponse response) throws IOException {
+        if (endDate.isBefore(startDate)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "结束日期不能早于开始日期");
+            return;
+        }
+        String fileName = "daily_statistics_" + startDate + "_" + endDate + "." + format.getExtension();
+        response.setContentType(format.getContentType());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"");
+        log.info("📥 开始导出日统计 - 日期范围: {} 到 {}, 格式: {}", startDate, endDate, format);
+        try {
+            streamingExportService.exportDailyStatistics(startDate, endDate, format, response.getOutputStream());
+        } catch (Exception e) {
+            log.error("❌ 导出日统计失败 - 日期范围: {} 到 {}", startDate, endDate, e);
+            if (!response.isCommitted()) {
+                response.reset();
+                response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "导出失败: " + e.getMessage());
+            }
+        }
+    }
+
     /**
      * 测试接口 - 立即生成昨日报表
      *
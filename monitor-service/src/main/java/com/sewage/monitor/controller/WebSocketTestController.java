@@ -0,0 +1,289 @@
+package com.sewage.monitor.controller;
+
+import com.alibaba.fastjson.JSON;
+import com.sewage.common.result.Result;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.websocket.SessionSender;
+import com.sewage.monitor.websocket.WebSocketFrameEncoder;
+import com.sewage.monitor.websocket.WebSocketSessionRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.Session;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocket性能测试控制器
+ *
+ * 功能说明：
+ * 1. 使用内存中的模拟会话（发送为空操作），只测量服务端遍历和分发的开销
+ * 2. 对比原全量扫描方式和按实验室索引方式的推送、连接耗时
+ * 3. 对比原Map信封编码方式和单次编码方式的每次推送内存分配量
+ */
+@Slf4j
+@RestController
+@RequestMapping("/websocket-test")
+public class WebSocketTestController {
+
+    /**
+     * 保存基线循环的结果，防止JIT把只创建数据对象的循环优化掉
+     */
+    private static volatile long sink;
+
+    /**
+     * 推送分发性能对比
+     *
+     * 模拟 sessions 个连接平均分布在 labs 个实验室，向其中一个实验室推送 iterations 次
+     *
+     * GET /websocket-test/fanout-benchmark?labs=20&iterations=20000
+     */
+    @GetMapping("/fanout-benchmark")
+    public Result<Map<String, Object>> fanoutBenchmark(
+            @RequestParam(defaultValue = "20") int labs,
+            @RequestParam(defaultValue = "20000") int iterations) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("labs", labs);
+        result.put("iterations", iterations);
+
+        for (int sessionCount : new int[]{10, 100, 1000}) {
+            result.put("sessions_" + sessionCount, runFanout(sessionCount, Math.max(1, labs), iterations));
+        }
+
+        log.info("🧪 WebSocket分发性能测试完成 - {}", result);
+        return Result.success(result);
+    }
+
+    /**
+     * 推送内存分配对比
+     *
+     * 统计当前线程每次推送分配的字节数（编码 + 放入订阅者发送队列），订阅人数分别为1/10/100
+     * 每次推送都是新的数据对象（与真实推送一致），创建数据对象的分配量单独测量后扣除
+     *
+     * GET /websocket-test/frame-allocation?iterations=20000
+     */
+    @GetMapping("/frame-allocation")
+    public Result<Map<String, Object>> frameAllocation(@RequestParam(defaultValue = "20000") int iterations) {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("iterations", iterations);
+        for (int audience : new int[]{1, 10, 100}) {
+            // 订阅者的第一帧一直处于发送中，后续帧在发送队列中合并，模拟浏览器消费慢于推送的稳态
+            List<SessionSender> senders = new ArrayList<>(audience);
+            for (int i = 0; i < audience; i++) {
+                SessionSender sender = new SessionSender(stubSession("alloc-" + i, new AtomicLong()), 1L, 64, () -> { });
+                sender.enqueue("{}", true);
+                senders.add(sender);
+            }
+
+            // 预热
+            for (int n = 0; n < 1000; n++) {
+                pushLegacy(sampleData(), senders);
+                pushEncoded(sampleData(), senders);
+            }
+
+            // 只创建数据对象的分配量（基线）
+            long before = threadBean.getThreadAllocatedBytes(threadId);
+            long checksum = 0;
+            for (int n = 0; n < iterations; n++) {
+                checksum += sampleData().hashCode();
+            }
+            long dataBytes = threadBean.getThreadAllocatedBytes(threadId) - before;
+            sink = checksum;
+
+            before = threadBean.getThreadAllocatedBytes(threadId);
+            for (int n = 0; n < iterations; n++) {
+                pushLegacy(sampleData(), senders);
+            }
+            long legacyBytes = threadBean.getThreadAllocatedBytes(threadId) - before - dataBytes;
+
+            before = threadBean.getThreadAllocatedBytes(threadId);
+            for (int n = 0; n < iterations; n++) {
+                pushEncoded(sampleData(), senders);
+            }
+            long encodedBytes = threadBean.getThreadAllocatedBytes(threadId) - before - dataBytes;
+
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("dataBytesPerPush", dataBytes / iterations);
+            stats.put("legacyBytesPerPush", legacyBytes / iterations);
+            stats.put("encodedBytesPerPush", encodedBytes / iterations);
+            stats.put("frameLength", WebSocketFrameEncoder.encode("ENVIRONMENT_DATA", "环境数据更新", 1L, sampleData()).length());
+            result.put("audience_" + audience, stats);
+        }
+
+        log.info("🧪 WebSocket推送内存分配测试完成 - {}", result);
+        return Result.success(result);
+    }
+
+    /**
+     * 原方式：ConcurrentHashMap信封 + JSON.toJSONString
+     */
+    private static void pushLegacy(LabEnvironmentData data, List<SessionSender> senders) {
+        Map<String, Object> msgObj = new ConcurrentHashMap<>();
+        msgObj.put("type", "ENVIRONMENT_DATA");
+        msgObj.put("message", "环境数据更新");
+        msgObj.put("labId", data.getLabId());
+        msgObj.put("timestamp", System.currentTimeMillis());
+        msgObj.put("data", data);
+        String frame = JSON.toJSONString(msgObj);
+        for (SessionSender sender : senders) {
+            sender.enqueue(frame, true);
+        }
+    }
+
+    /**
+     * 新方式：直接编码一次，所有订阅者共享
+     */
+    private static void pushEncoded(LabEnvironmentData data, List<SessionSender> senders) {
+        String frame = WebSocketFrameEncoder.encode("ENVIRONMENT_DATA", "环境数据更新", data.getLabId(), data);
+        for (SessionSender sender : senders) {
+            sender.enqueue(frame, true);
+        }
+    }
+
+    private static LabEnvironmentData sampleData() {
+        LabEnvironmentData data = new LabEnvironmentData();
+        data.setLabId(1L);
+        data.setLabName("测试实验室");
+        data.setTemperature(23.5);
+        data.setHumidity(45.2);
+        data.setPm25(12.0);
+        data.setIlluminance(500.0);
+        data.setCo2(620.0);
+        data.setOnlineDeviceCount(10);
+        data.setTotalDeviceCount(12);
+        data.setCurrentPeopleCount(8);
+        data.setMonitorTime(LocalDateTime.now());
+        data.setDataSource("BENCHMARK");
+        data.setQualityLevel("GOOD");
+        return data;
+    }
+
+    private Map<String, Object> runFanout(int sessionCount, int labs, int iterations) {
+        AtomicLong sent = new AtomicLong();
+        List<Session> sessions = new ArrayList<>(sessionCount);
+        for (int i = 0; i < sessionCount; i++) {
+            sessions.add(stubSession("bench-" + i, sent));
+        }
+        Long targetLab = 0L;
+        String frame = "{\"type\":\"ENVIRONMENT_DATA\"}";
+
+        // 原方式：CopyOnWriteArraySet 全量扫描 + labId.equals
+        long start = System.nanoTime();
+        CopyOnWriteArraySet<LegacyEntry> legacySet = new CopyOnWriteArraySet<>();
+        for (int i = 0; i < sessionCount; i++) {
+            legacySet.add(new LegacyEntry((long) (i % labs), sessions.get(i)));
+        }
+        long legacyConnectNanos = System.nanoTime() - start;
+
+        sent.set(0);
+        start = System.nanoTime();
+        for (int n = 0; n < iterations; n++) {
+            for (LegacyEntry entry : legacySet) {
+                if (entry.labId.equals(targetLab)) {
+                    send(entry.session, frame);
+                }
+            }
+        }
+        long legacyPushNanos = System.nanoTime() - start;
+        long legacySent = sent.get();
+
+        // 新方式：按实验室索引
+        WebSocketSessionRegistry<Session> registry = new WebSocketSessionRegistry<>();
+        start = System.nanoTime();
+        for (int i = 0; i < sessionCount; i++) {
+            registry.register((long) (i % labs), sessions.get(i));
+        }
+        long registryConnectNanos = System.nanoTime() - start;
+
+        sent.set(0);
+        start = System.nanoTime();
+        for (int n = 0; n < iterations; n++) {
+            for (Session session : registry.sessionsOf(targetLab)) {
+                send(session, frame);
+            }
+        }
+        long registryPushNanos = System.nanoTime() - start;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("subscribersOfTargetLab", registry.count(targetLab));
+        stats.put("framesSent", legacySent + "/" + sent.get());
+        stats.put("legacyNanosPerPush", legacyPushNanos / iterations);
+        stats.put("registryNanosPerPush", registryPushNanos / iterations);
+        stats.put("legacyConnectMicros", legacyConnectNanos / 1000);
+        stats.put("registryConnectMicros", registryConnectNanos / 1000);
+        stats.put("pushSpeedup", String.format("%.1fx", (double) legacyPushNanos / Math.max(1, registryPushNanos)));
+        return stats;
+    }
+
+    private static void send(Session session, String frame) {
+        try {
+            session.getBasicRemote().sendText(frame);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 构造模拟会话：同步发送只计数，异步发送永不完成，不做网络IO
+     */
+    private static Session stubSession(String id, AtomicLong sent) {
+        RemoteEndpoint.Basic basic = (RemoteEndpoint.Basic) Proxy.newProxyInstance(
+                RemoteEndpoint.Basic.class.getClassLoader(), new Class<?>[]{RemoteEndpoint.Basic.class},
+                (proxy, method, args) -> {
+                    if ("sendText".equals(method.getName())) {
+                        sent.incrementAndGet();
+                    }
+                    return null;
+                });
+        RemoteEndpoint.Async async = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+                RemoteEndpoint.Async.class.getClassLoader(), new Class<?>[]{RemoteEndpoint.Async.class},
+                (proxy, method, args) -> null);
+        return (Session) Proxy.newProxyInstance(
+                Session.class.getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getBasicRemote":
+                            return basic;
+                        case "getAsyncRemote":
+                            return async;
+                        case "getId":
+                        case "toString":
+                            return id;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "isOpen":
+                            return true;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    private static final class LegacyEntry {
+        private final Long labId;
+        private final Session session;
+
+        LegacyEntry(Long labId, Session session) {
+            this.labId = labId;
+            this.session = session;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.sewage.monitor.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 死信记录实体
+ *
+ * 死信消费者把死信 Topic 中的每条消息保存为一条记录（原始消息、失败原因、原始位置），
+ * 管理接口按条件筛选后重放，重放失败时累加尝试次数并记录最近一次的失败原因
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("dead_letter_record")
+public class DeadLetterRecord {
+
+    /**
+     * 主键ID
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 死信 Topic
+     */
+    @TableField("dlq_topic")
+    private String dlqTopic;
+
+    /**
+     * 死信分区
+     */
+    @TableField("dlq_partition")
+    private Integer dlqPartition;
+
+    /**
+     * 死信位点（与死信 Topic、分区一起唯一，重复投递时只保留一条）
+     */
+    @TableField("dlq_offset")
+    private Long dlqOffset;
+
+    /**
+     * 原始 Topic（决定重放时写入环境数据还是告警）
+     */
+    @TableField("source_topic")
+    private String sourceTopic;
+
+    /**
+     * 原始分区（旧消息没有消息头时为空）
+     */
+    @TableField("source_partition")
+    private Integer sourcePartition;
+
+    /**
+     * 原始位点（旧消息没有消息头时为空）
+     */
+    @TableField("source_offset")
+    private Long sourceOffset;
+
+    /**
+     * 消息 Key
+     */
+    @TableField("message_key")
+    private String messageKey;
+
+    /**
+     * 原始消息内容
+     */
+    @TableField("payload")
+    private String payload;
+
+    /**
+     * 消息内容编码：为空表示 JSON，BASE64 表示无法解码的原始二进制消息
+     */
+    @TableField("payload_encoding")
+    private String payloadEncoding;
+
+    /**
+     * 最近一次的失败原因
+     */
+    @TableField("error_message")
+    private String errorMessage;
+
+    /**
+     * 处理尝试次数（进入死信队列计 1 次，之后每次重放失败加 1）
+     */
+    @TableField("attempt_count")
+    private Integer attemptCount;
+
+    /**
+     * 状态，见 Status
+     */
+    @TableField("status")
+    private String status;
+
+    /**
+     * 进入死信队列的时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @TableField("created_time")
+    private LocalDateTime createdTime;
+
+    /**
+     * 最近一次处理时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @TableField("last_attempt_time")
+    private LocalDateTime lastAttemptTime;
+
+    /**
+     * 死信状态
+     */
+    public enum Status {
+        /** 待处理 */
+        PENDING,
+        /** 已重放成功 */
+        REPLAYED,
+        /** 已人工丢弃 */
+        DISCARDED
+    }
+}
@@ -163,6 +163,25 @@ public class LabAlarm {
     @TableField("remark")
     private String remark;
 
+    /**
+     * 本次告警持续期间的超限次数（同一告警未恢复时累加，不再每次插入新记录）
+     */
+    @TableField("occurrence_count")
+    private Integer occurrenceCount;
+
+    /**
+     * 最近一次超限时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @TableField("last_alarm_time")
+    private LocalDateTime lastAlarmTime;
+
+    /**
+     * 告警事件（只在Kafka消息中传递，不入库）
+     */
+    @TableField(exist = false)
+    private AlarmEvent event;
+
     /**
      * 告警级别枚举
      */
@@ -247,6 +266,31 @@ public class LabAlarm {
         }
     }
 
+    /**
+     * 告警事件枚举（告警状态机的状态变化）
+     */
+    public enum AlarmEvent {
+        FIRING("FIRING", "开始告警"),
+        UPDATE("UPDATE", "持续告警"),
+        RECOVERED("RECOVERED", "已恢复");
+
+        private final String code;
+        private final String desc;
+
+        AlarmEvent(String code, String desc) {
+            this.code = code;
+            this.desc = desc;
+        }
+
+        public String getCode() {
+            return code;
+        }
+
+        public String getDesc() {
+            return desc;
+        }
+    }
+
     // 为了兼容性，保留原有字段名（向后兼容）
     @Deprecated
     public Long getStationId() { return labId; }
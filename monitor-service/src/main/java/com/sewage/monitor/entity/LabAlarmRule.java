@@ -0,0 +1,131 @@
+package com.sewage.monitor.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+/**
+ * 实验室告警规则实体
+ *
+ * 一条规则是一次比较：指标 运算符 阈值，例如 TEMPERATURE GT 35 → TEMP_HIGH / DANGER
+ * - labId 为空表示全局默认规则；实验室配置了某个指标的规则时，该指标不再使用默认规则
+ * - 同一指标按 priority 从小到大匹配，命中第一条后不再检查该指标的其他规则（严重级别的规则应排在前面）
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("lab_alarm_rule")
+public class LabAlarmRule {
+
+    /**
+     * 主键ID
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 实验室ID（为空表示全局默认规则）
+     */
+    @TableField("lab_id")
+    private Long labId;
+
+    /**
+     * 指标，见 Metric
+     */
+    @NotBlank(message = "指标不能为空")
+    @TableField("metric")
+    private String metric;
+
+    /**
+     * 比较运算符，见 Operator
+     */
+    @NotBlank(message = "运算符不能为空")
+    @TableField("operator")
+    private String operator;
+
+    /**
+     * 阈值
+     */
+    @NotNull(message = "阈值不能为空")
+    @TableField("threshold")
+    private Double threshold;
+
+    /**
+     * 告警类型，见 LabAlarm.AlarmType
+     */
+    @NotBlank(message = "告警类型不能为空")
+    @TableField("alarm_type")
+    private String alarmType;
+
+    /**
+     * 告警级别，见 LabAlarm.AlarmLevel
+     */
+    @NotBlank(message = "告警级别不能为空")
+    @TableField("alarm_level")
+    private String alarmLevel;
+
+    /**
+     * 告警消息模板，支持占位符 {value}、{threshold}，只在告警触发时渲染
+     */
+    @TableField("message_template")
+    private String messageTemplate;
+
+    /**
+     * 同一指标内的匹配顺序，越小越先匹配
+     */
+    @TableField("priority")
+    private Integer priority;
+
+    /**
+     * 是否启用
+     */
+    @TableField("enabled")
+    private Boolean enabled;
+
+    /**
+     * 更新时间（热加载据此判断规则是否变化）
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @TableField("updated_time")
+    private LocalDateTime updatedTime;
+
+    /**
+     * 规则指标
+     */
+    public enum Metric {
+        TEMPERATURE("°C"),
+        HUMIDITY("%"),
+        PM25(" μg/m³"),
+        CO2(" ppm"),
+        ILLUMINANCE(" lux"),
+        PEOPLE_COUNT("人");
+
+        private final String unit;
+
+        Metric(String unit) {
+            this.unit = unit;
+        }
+
+        public String getUnit() {
+            return unit;
+        }
+    }
+
+    /**
+     * 比较运算符（当前值 运算符 阈值）
+     */
+    public enum Operator {
+        GT, GE, LT, LE
+    }
+}
@@ -0,0 +1,64 @@
+package com.sewage.monitor.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+
+/**
+ * 实验室考勤事件（预约 / 刷卡签到）
+ *
+ * 只作为 lab-attendance-data Topic 的消息体，不单独落库：
+ * DailyStatisticsEngine 在内存中按 实验室 + 日期 去重计数，定时写入 lab_daily_statistics 的
+ * reservation_count、attendance_count、usage_rate
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LabAttendanceEvent {
+
+    /**
+     * 实验室ID
+     */
+    @NotNull(message = "实验室ID不能为空")
+    private Long labId;
+
+    /**
+     * 实验室名称
+     */
+    private String labName;
+
+    /**
+     * 人员标识（学号/工号/卡号），同一人同一天多次刷卡只计一次
+     */
+    @NotBlank(message = "人员标识不能为空")
+    private String userId;
+
+    /**
+     * 事件类型，见 EventType
+     */
+    @NotNull(message = "事件类型不能为空")
+    private EventType eventType;
+
+    /**
+     * 事件时间（为空时使用接收时间），决定计入哪一天的统计
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime eventTime;
+
+    /**
+     * 考勤事件类型
+     */
+    public enum EventType {
+        /** 预约 */
+        RESERVATION,
+        /** 刷卡签到 */
+        CHECK_IN
+    }
+}
@@ -5,6 +5,7 @@ import com.baomidou.mybatisplus.annotation.TableField;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -164,6 +165,35 @@ public class LabDailyStatistics {
     @TableField("device_fault_count")
     private Integer deviceFaultCount;
 
+    // 分位数草图（QuantileSketch序列化，可跨天、跨实验室合并后查询p50/p95/p99）
+    /**
+     * 温度分位数草图
+     */
+    @JsonIgnore
+    @TableField("temperature_sketch")
+    private byte[] temperatureSketch;
+
+    /**
+     * 湿度分位数草图
+     */
+    @JsonIgnore
+    @TableField("humidity_sketch")
+    private byte[] humiditySketch;
+
+    /**
+     * PM2.5分位数草图
+     */
+    @JsonIgnore
+    @TableField("pm25_sketch")
+    private byte[] pm25Sketch;
+
+    /**
+     * CO2分位数草图
+     */
+    @JsonIgnore
+    @TableField("co2_sketch")
+    private byte[] co2Sketch;
+
     /**
      * 创建时间
      */
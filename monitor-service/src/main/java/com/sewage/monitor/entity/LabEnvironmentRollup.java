@@ -0,0 +1,208 @@
+package com.sewage.monitor.entity;
+
+import com.baomidou.mybatisplus.annotation.TableField;
+import com.baomidou.mybatisplus.annotation.TableName;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 环境数据分钟/小时汇总实体
+ * 每个 (实验室, 分辨率, 桶起始时间) 一行，由 RollupEngine 增量维护
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@TableName("lab_environment_rollup")
+public class LabEnvironmentRollup {
+
+    public static final int RESOLUTION_MINUTE = 60;
+    public static final int RESOLUTION_HOUR = 3600;
+
+    /**
+     * 实验室ID
+     */
+    @TableField("lab_id")
+    private Long labId;
+
+    /**
+     * 分辨率（秒）
+     */
+    @TableField("resolution")
+    private Integer resolution;
+
+    /**
+     * 桶起始时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @TableField("bucket_time")
+    private LocalDateTime bucketTime;
+
+    /**
+     * 桶内数据条数
+     */
+    @TableField("sample_count")
+    private Integer sampleCount;
+
+    /**
+     * 桶内最后一条数据的时间
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    @TableField("last_time")
+    private LocalDateTime lastTime;
+
+    /**
+     * 温度有效读数条数
+     */
+    @TableField("temperature_count")
+    private Integer temperatureCount;
+
+    /**
+     * 温度总和
+     */
+    @TableField("temperature_sum")
+    private Double temperatureSum;
+
+    /**
+     * 温度最小值
+     */
+    @TableField("temperature_min")
+    private Double temperatureMin;
+
+    /**
+     * 温度最大值
+     */
+    @TableField("temperature_max")
+    private Double temperatureMax;
+
+    /**
+     * 温度桶内最后一个读数
+     */
+    @TableField("temperature_last")
+    private Double temperatureLast;
+
+    /**
+     * 湿度有效读数条数
+     */
+    @TableField("humidity_count")
+    private Integer humidityCount;
+
+    /**
+     * 湿度总和
+     */
+    @TableField("humidity_sum")
+    private Double humiditySum;
+
+    /**
+     * 湿度最小值
+     */
+    @TableField("humidity_min")
+    private Double humidityMin;
+
+    /**
+     * 湿度最大值
+     */
+    @TableField("humidity_max")
+    private Double humidityMax;
+
+    /**
+     * 湿度桶内最后一个读数
+     */
+    @TableField("humidity_last")
+    private Double humidityLast;
+
+    /**
+     * PM2.5有效读数条数
+     */
+    @TableField("pm25_count")
+    private Integer pm25Count;
+
+    /**
+     * PM2.5总和
+     */
+    @TableField("pm25_sum")
+    private Double pm25Sum;
+
+    /**
+     * PM2.5最小值
+     */
+    @TableField("pm25_min")
+    private Double pm25Min;
+
+    /**
+     * PM2.5最大值
+     */
+    @TableField("pm25_max")
+    private Double pm25Max;
+
+    /**
+     * PM2.5桶内最后一个读数
+     */
+    @TableField("pm25_last")
+    private Double pm25Last;
+
+    /**
+     * 光照有效读数条数
+     */
+    @TableField("illuminance_count")
+    private Integer illuminanceCount;
+
+    /**
+     * 光照总和
+     */
+    @TableField("illuminance_sum")
+    private Double illuminanceSum;
+
+    /**
+     * 光照最小值
+     */
+    @TableField("illuminance_min")
+    private Double illuminanceMin;
+
+    /**
+     * 光照最大值
+     */
+    @TableField("illuminance_max")
+    private Double illuminanceMax;
+
+    /**
+     * 光照桶内最后一个读数
+     */
+    @TableField("illuminance_last")
+    private Double illuminanceLast;
+
+    /**
+     * CO2有效读数条数
+     */
+    @TableField("co2_count")
+    private Integer co2Count;
+
+    /**
+     * CO2总和
+     */
+    @TableField("co2_sum")
+    private Double co2Sum;
+
+    /**
+     * CO2最小值
+     */
+    @TableField("co2_min")
+    private Double co2Min;
+
+    /**
+     * CO2最大值
+     */
+    @TableField("co2_max")
+    private Double co2Max;
+
+    /**
+     * CO2桶内最后一个读数
+     */
+    @TableField("co2_last")
+    private Double co2Last;
+}
@@ -0,0 +1,108 @@
+package com.sewage.monitor.kafka.codec;
+
+import com.sewage.monitor.mapper.LabCodecDictionaryMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于 MySQL 的实验室名称字典
+ *
+ * 功能说明：
+ * 1. 名称与编号保存在 lab_codec_dictionary，编号由自增主键分配，所有实例共享且持久保存
+ *    （Redis 在本服务中只作缓存，可能被清空或淘汰，不能保存一经分配就不能改变的编号）
+ * 2. 编号分配后不再改变，本地缓存永不失效；每个实例每个名称只访问一次数据库
+ * 3. 并发分配同一名称时唯一键冲突被忽略，双方重新查询得到同一个编号
+ * 4. 数据库不可用时 codeOf 返回 null，编码方直接写入名称，不影响发送；
+ *    nameOf 返回 null，解码失败的消息保留原始字节进入死信队列，数据库恢复后可重放
+ * 5. 启动时把旧版本 Redis 字典中的编号按原编号导入，升级前发出的消息仍能解析
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DatabaseLabNameDictionary implements LabNameDictionary {
+
+    /**
+     * 旧版本 Redis 字典（编号 → 名称）
+     */
+    private static final String LEGACY_CODE_TO_NAME_KEY = "lab:codec:dict:code2name";
+
+    private final LabCodecDictionaryMapper dictionaryMapper;
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        importLegacyDictionary();
+    }
+
+    @Override
+    public Integer codeOf(String labName) {
+        Integer code = codes.get(labName);
+        if (code != null) {
+            return code;
+        }
+        try {
+            code = dictionaryMapper.selectCode(labName);
+            if (code == null) {
+                dictionaryMapper.insertIgnore(labName);
+                code = dictionaryMapper.selectCode(labName);
+                if (code == null) {
+                    return null;
+                }
+            }
+            codes.put(labName, code);
+            names.put(code, labName);
+            return code;
+        } catch (Exception e) {
+            log.warn("⚠️ 实验室名称字典不可用，直接写入名称 - 名称: {}, Error: {}", labName, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public String nameOf(int code) {
+        String name = names.get(code);
+        if (name != null) {
+            return name;
+        }
+        try {
+            name = dictionaryMapper.selectName(code);
+            if (name != null) {
+                names.put(code, name);
+                codes.put(name, code);
+            }
+            return name;
+        } catch (Exception e) {
+            log.warn("⚠️ 实验室名称字典不可用，无法解析编号 - 编号: {}, Error: {}", code, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 按原编号导入旧版本 Redis 字典（已存在的编号或名称忽略），Redis 中没有旧字典时不做任何事
+     */
+    private void importLegacyDictionary() {
+        try {
+            Map<Object, Object> legacy = redisTemplate.opsForHash().entries(LEGACY_CODE_TO_NAME_KEY);
+            if (legacy == null || legacy.isEmpty()) {
+                return;
+            }
+            int imported = 0;
+            for (Map.Entry<Object, Object> entry : legacy.entrySet()) {
+                imported += dictionaryMapper.insertIgnoreWithCode(
+                        Integer.parseInt(entry.getKey().toString()), entry.getValue().toString());
+            }
+            log.info("📖 已导入旧版实验室名称字典 - 总数: {}, 新增: {}", legacy.size(), imported);
+        } catch (Exception e) {
+            log.warn("⚠️ 导入旧版实验室名称字典失败 - Error: {}", e.getMessage());
+        }
+    }
+}
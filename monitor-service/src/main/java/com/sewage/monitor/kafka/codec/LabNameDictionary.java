@@ -0,0 +1,19 @@
+package com.sewage.monitor.kafka.codec;
+
+/**
+ * 实验室名称字典（二进制编码时用整数编号代替实验室名称）
+ *
+ * 编号一旦分配不再改变，生产者和消费者必须使用同一份字典
+ */
+public interface LabNameDictionary {
+
+    /**
+     * 获取名称的编号，字典不可用时返回 null（编码时改为直接写入名称）
+     */
+    Integer codeOf(String labName);
+
+    /**
+     * 根据编号获取名称，未知编号或字典不可用时返回 null（解码方据此让消息失败，进入死信队列）
+     */
+    String nameOf(int code);
+}
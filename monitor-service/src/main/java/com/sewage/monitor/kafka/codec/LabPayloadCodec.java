@@ -0,0 +1,463 @@
+package com.sewage.monitor.kafka.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sewage.monitor.entity.LabAlarm;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * 环境数据 / 告警的紧凑二进制编码
+ *
+ * 格式（schema v1）：
+ * <pre>
+ * [0]     魔数 0xCB（JSON 文本的 UTF-8 首字节不可能是 0xCB，据此区分二进制和 JSON）
+ * [1]     schema 版本
+ * [2]     记录类型：1 环境数据，2 告警
+ * [3..6]  字段存在位图（int，第 n 位对应下方第 n 个字段，为 0 的字段不写入）
+ * [7..]   按字段顺序写入存在的字段：
+ *         - 数值定长：Long 8 字节、Double 8 字节、Integer 4 字节、枚举 1 字节（序号）
+ *         - 时间：本地时间按 UTC 换算的毫秒数（8 字节），不涉及时区，与 JSON 中的本地时间语义一致
+ *         - 实验室名称：字典编号（变长整数）；字典不可用时改用名称位，直接写入名称；
+ *           解码时编号无法解析直接失败（消息进入死信队列），不会得到没有名称的数据
+ *         - 其他字符串：变长整数长度 + UTF-8
+ * </pre>
+ *
+ * 字段顺序和枚举序号属于 schema 的一部分：只能在末尾追加字段，修改顺序或删除字段必须提升版本号
+ */
+@Component
+@RequiredArgsConstructor
+public class LabPayloadCodec {
+
+    public static final byte MAGIC = (byte) 0xCB;
+    public static final byte VERSION = 1;
+    public static final byte TYPE_ENVIRONMENT = 1;
+    public static final byte TYPE_ALARM = 2;
+
+    private static final int HEADER_LENGTH = 7;
+
+    private static final LabAlarm.HandleStatus[] HANDLE_STATUSES = LabAlarm.HandleStatus.values();
+    private static final LabAlarm.AlarmEvent[] ALARM_EVENTS = LabAlarm.AlarmEvent.values();
+
+    private final LabNameDictionary labNameDictionary;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 是否为二进制编码的消息
+     */
+    public static boolean isBinary(byte[] bytes) {
+        return bytes != null && bytes.length >= HEADER_LENGTH && bytes[0] == MAGIC;
+    }
+
+    /**
+     * 把消息值转换为指定类型：二进制消息已由反序列化器解码为对象，JSON 消息在这里解析
+     */
+    public <T> T read(Object value, Class<T> type) throws IOException {
+        if (type.isInstance(value)) {
+            return type.cast(value);
+        }
+        if (value instanceof UndecodedPayload) {
+            throw new IOException("二进制消息解码失败: " + ((UndecodedPayload) value).getError());
+        }
+        if (value instanceof String) {
+            return objectMapper.readValue((String) value, type);
+        }
+        throw new IOException("无法转换的消息类型: " + (value != null ? value.getClass().getName() : "null"));
+    }
+
+    /**
+     * 把消息值转换为 JSON 文本（死信队列统一保存 JSON，便于查看和重放）
+     */
+    public String toJson(Object value) throws IOException {
+        if (value == null || value instanceof String) {
+            return (String) value;
+        }
+        return objectMapper.writeValueAsString(value);
+    }
+
+    /**
+     * 解码二进制消息
+     */
+    public Object decode(byte[] bytes) {
+        Reader reader = new Reader(bytes);
+        if (reader.readByte() != MAGIC) {
+            throw new IllegalArgumentException("不是二进制编码的消息");
+        }
+        byte version = reader.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("不支持的 schema 版本: " + version);
+        }
+        byte type = reader.readByte();
+        switch (type) {
+            case TYPE_ENVIRONMENT:
+                return decodeEnvironment(reader);
+            case TYPE_ALARM:
+                return decodeAlarm(reader);
+            default:
+                throw new IllegalArgumentException("未知的记录类型: " + type);
+        }
+    }
+
+    // =============================环境数据=============================
+
+    /**
+     * 编码环境数据
+     */
+    public byte[] encodeEnvironment(LabEnvironmentData data) {
+        Writer writer = new Writer(128);
+        writer.writeHeader(TYPE_ENVIRONMENT);
+        int maskPosition = writer.reserveInt();
+        int mask = 0;
+
+        mask |= writer.writeLong(0, data.getId());
+        mask |= writer.writeLong(1, data.getLabId());
+        mask |= writeLabName(writer, 2, data.getLabName());
+        mask |= writer.writeDouble(4, data.getTemperature());
+        mask |= writer.writeDouble(5, data.getHumidity());
+        mask |= writer.writeDouble(6, data.getPm25());
+        mask |= writer.writeDouble(7, data.getIlluminance());
+        mask |= writer.writeDouble(8, data.getCo2());
+        mask |= writer.writeInt(9, data.getOnlineDeviceCount());
+        mask |= writer.writeInt(10, data.getTotalDeviceCount());
+        mask |= writer.writeTime(11, data.getMonitorTime());
+        mask |= writer.writeString(12, data.getDataSource());
+        mask |= writer.writeInt(13, data.getAlarmStatus());
+        mask |= writer.writeString(14, data.getAlarmMessage());
+        mask |= writer.writeString(15, data.getQualityLevel());
+        mask |= writer.writeInt(16, data.getCurrentPeopleCount());
+        mask |= writer.writeTime(17, data.getCreatedTime());
+        mask |= writer.writeString(18, data.getRemark());
+
+        writer.putInt(maskPosition, mask);
+        return writer.toByteArray();
+    }
+
+    private LabEnvironmentData decodeEnvironment(Reader reader) {
+        int mask = reader.readInt();
+        LabEnvironmentData data = new LabEnvironmentData();
+        data.setId(reader.readLong(mask, 0));
+        data.setLabId(reader.readLong(mask, 1));
+        data.setLabName(readLabName(reader, mask, 2));
+        data.setTemperature(reader.readDouble(mask, 4));
+        data.setHumidity(reader.readDouble(mask, 5));
+        data.setPm25(reader.readDouble(mask, 6));
+        data.setIlluminance(reader.readDouble(mask, 7));
+        data.setCo2(reader.readDouble(mask, 8));
+        data.setOnlineDeviceCount(reader.readInt(mask, 9));
+        data.setTotalDeviceCount(reader.readInt(mask, 10));
+        data.setMonitorTime(reader.readTime(mask, 11));
+        data.setDataSource(reader.readString(mask, 12));
+        data.setAlarmStatus(reader.readInt(mask, 13));
+        data.setAlarmMessage(reader.readString(mask, 14));
+        data.setQualityLevel(reader.readString(mask, 15));
+        data.setCurrentPeopleCount(reader.readInt(mask, 16));
+        data.setCreatedTime(reader.readTime(mask, 17));
+        data.setRemark(reader.readString(mask, 18));
+        return data;
+    }
+
+    // =============================告警=============================
+
+    /**
+     * 编码告警
+     */
+    public byte[] encodeAlarm(LabAlarm alarm) {
+        Writer writer = new Writer(192);
+        writer.writeHeader(TYPE_ALARM);
+        int maskPosition = writer.reserveInt();
+        int mask = 0;
+
+        mask |= writer.writeLong(0, alarm.getId());
+        mask |= writer.writeLong(1, alarm.getLabId());
+        mask |= writeLabName(writer, 2, alarm.getLabName());
+        mask |= writer.writeString(4, alarm.getAlarmType());
+        mask |= writer.writeString(5, alarm.getAlarmLevel());
+        mask |= writer.writeString(6, alarm.getAlarmMessage());
+        mask |= writer.writeDouble(7, alarm.getAlarmValue());
+        mask |= writer.writeDouble(8, alarm.getThresholdValue());
+        mask |= writer.writeTime(9, alarm.getAlarmTime());
+        mask |= writer.writeOrdinal(10, alarm.getStatus());
+        mask |= writer.writeString(11, alarm.getHandler());
+        mask |= writer.writeTime(12, alarm.getHandleTime());
+        mask |= writer.writeString(13, alarm.getHandleRemark());
+        mask |= writer.writeTime(14, alarm.getCreatedTime());
+        mask |= writer.writeTime(15, alarm.getConfirmedAt());
+        mask |= writer.writeString(16, alarm.getConfirmedBy());
+        mask |= writer.writeTime(17, alarm.getResolvedAt());
+        mask |= writer.writeString(18, alarm.getResolvedBy());
+        mask |= writer.writeTime(19, alarm.getIgnoredAt());
+        mask |= writer.writeString(20, alarm.getIgnoredBy());
+        mask |= writer.writeString(21, alarm.getRemark());
+        mask |= writer.writeInt(22, alarm.getOccurrenceCount());
+        mask |= writer.writeTime(23, alarm.getLastAlarmTime());
+        mask |= writer.writeOrdinal(24, alarm.getEvent());
+
+        writer.putInt(maskPosition, mask);
+        return writer.toByteArray();
+    }
+
+    private LabAlarm decodeAlarm(Reader reader) {
+        int mask = reader.readInt();
+        LabAlarm alarm = new LabAlarm();
+        alarm.setId(reader.readLong(mask, 0));
+        alarm.setLabId(reader.readLong(mask, 1));
+        alarm.setLabName(readLabName(reader, mask, 2));
+        alarm.setAlarmType(reader.readString(mask, 4));
+        alarm.setAlarmLevel(reader.readString(mask, 5));
+        alarm.setAlarmMessage(reader.readString(mask, 6));
+        alarm.setAlarmValue(reader.readDouble(mask, 7));
+        alarm.setThresholdValue(reader.readDouble(mask, 8));
+        alarm.setAlarmTime(reader.readTime(mask, 9));
+        Integer status = reader.readOrdinal(mask, 10);
+        alarm.setStatus(status != null ? HANDLE_STATUSES[status] : null);
+        alarm.setHandler(reader.readString(mask, 11));
+        alarm.setHandleTime(reader.readTime(mask, 12));
+        alarm.setHandleRemark(reader.readString(mask, 13));
+        alarm.setCreatedTime(reader.readTime(mask, 14));
+        alarm.setConfirmedAt(reader.readTime(mask, 15));
+        alarm.setConfirmedBy(reader.readString(mask, 16));
+        alarm.setResolvedAt(reader.readTime(mask, 17));
+        alarm.setResolvedBy(reader.readString(mask, 18));
+        alarm.setIgnoredAt(reader.readTime(mask, 19));
+        alarm.setIgnoredBy(reader.readString(mask, 20));
+        alarm.setRemark(reader.readString(mask, 21));
+        alarm.setOccurrenceCount(reader.readInt(mask, 22));
+        alarm.setLastAlarmTime(reader.readTime(mask, 23));
+        Integer event = reader.readOrdinal(mask, 24);
+        alarm.setEvent(event != null ? ALARM_EVENTS[event] : null);
+        return alarm;
+    }
+
+    // =============================实验室名称=============================
+
+    /**
+     * 写入实验室名称：有字典编号时写编号（第 bit 位），否则直接写名称（第 bit + 1 位）
+     */
+    private int writeLabName(Writer writer, int bit, String labName) {
+        if (labName == null) {
+            return 0;
+        }
+        Integer code = labNameDictionary.codeOf(labName);
+        if (code != null) {
+            writer.writeVarInt(code);
+            return 1 << bit;
+        }
+        return writer.writeString(bit + 1, labName);
+    }
+
+    private String readLabName(Reader reader, int mask, int bit) {
+        if ((mask & (1 << bit)) != 0) {
+            int code = reader.readVarInt();
+            String labName = labNameDictionary.nameOf(code);
+            if (labName == null) {
+                throw new IllegalStateException("无法解析的实验室名称编号: " + code);
+            }
+            return labName;
+        }
+        return reader.readString(mask, bit + 1);
+    }
+
+    // =============================读写工具=============================
+
+    /**
+     * 顺序写入（大端序），写入可空字段时返回该字段的位图标记，为空时返回 0
+     */
+    private static final class Writer {
+        private byte[] buffer;
+        private int position;
+
+        Writer(int initialCapacity) {
+            this.buffer = new byte[initialCapacity];
+        }
+
+        void writeHeader(byte type) {
+            ensure(3);
+            buffer[position++] = MAGIC;
+            buffer[position++] = VERSION;
+            buffer[position++] = type;
+        }
+
+        int reserveInt() {
+            ensure(4);
+            int reserved = position;
+            position += 4;
+            return reserved;
+        }
+
+        void putInt(int at, int value) {
+            buffer[at] = (byte) (value >>> 24);
+            buffer[at + 1] = (byte) (value >>> 16);
+            buffer[at + 2] = (byte) (value >>> 8);
+            buffer[at + 3] = (byte) value;
+        }
+
+        int writeLong(int bit, Long value) {
+            if (value == null) {
+                return 0;
+            }
+            rawLong(value);
+            return 1 << bit;
+        }
+
+        int writeDouble(int bit, Double value) {
+            if (value == null) {
+                return 0;
+            }
+            rawLong(Double.doubleToRawLongBits(value));
+            return 1 << bit;
+        }
+
+        int writeInt(int bit, Integer value) {
+            if (value == null) {
+                return 0;
+            }
+            ensure(4);
+            putInt(position, value);
+            position += 4;
+            return 1 << bit;
+        }
+
+        int writeTime(int bit, LocalDateTime value) {
+            if (value == null) {
+                return 0;
+            }
+            rawLong(value.toInstant(ZoneOffset.UTC).toEpochMilli());
+            return 1 << bit;
+        }
+
+        int writeOrdinal(int bit, Enum<?> value) {
+            if (value == null) {
+                return 0;
+            }
+            ensure(1);
+            buffer[position++] = (byte) value.ordinal();
+            return 1 << bit;
+        }
+
+        int writeString(int bit, String value) {
+            if (value == null) {
+                return 0;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+            return 1 << bit;
+        }
+
+        void writeVarInt(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void rawLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[position++] = (byte) (value >>> shift);
+            }
+        }
+
+        private void ensure(int bytes) {
+            if (position + bytes > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+    }
+
+    /**
+     * 顺序读取，可空字段在位图中没有标记时返回 null 且不移动位置
+     */
+    private static final class Reader {
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        byte readByte() {
+            return buffer[position++];
+        }
+
+        int readInt() {
+            int value = ((buffer[position] & 0xFF) << 24) | ((buffer[position + 1] & 0xFF) << 16)
+                    | ((buffer[position + 2] & 0xFF) << 8) | (buffer[position + 3] & 0xFF);
+            position += 4;
+            return value;
+        }
+
+        long rawLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (buffer[position++] & 0xFF);
+            }
+            return value;
+        }
+
+        Long readLong(int mask, int bit) {
+            return has(mask, bit) ? rawLong() : null;
+        }
+
+        Double readDouble(int mask, int bit) {
+            return has(mask, bit) ? Double.longBitsToDouble(rawLong()) : null;
+        }
+
+        Integer readInt(int mask, int bit) {
+            return has(mask, bit) ? readInt() : null;
+        }
+
+        LocalDateTime readTime(int mask, int bit) {
+            if (!has(mask, bit)) {
+                return null;
+            }
+            long millis = rawLong();
+            return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000L),
+                    (int) Math.floorMod(millis, 1000L) * 1_000_000, ZoneOffset.UTC);
+        }
+
+        Integer readOrdinal(int mask, int bit) {
+            return has(mask, bit) ? buffer[position++] & 0xFF : null;
+        }
+
+        String readString(int mask, int bit) {
+            if (!has(mask, bit)) {
+                return null;
+            }
+            int length = readVarInt();
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        private static boolean has(int mask, int bit) {
+            return (mask & (1 << bit)) != 0;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.sewage.monitor.kafka.codec;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Kafka 消息值反序列化器
+ *
+ * 功能说明：
+ * 1. 以魔数开头的二进制消息解码为 LabEnvironmentData / LabAlarm 对象
+ * 2. 其他消息按 UTF-8 转为 String，由监听方法按 JSON 解析（兼容切换前和未切换的生产者）
+ * 3. 解码失败时返回 UndecodedPayload（保留原始字节），由监听方法转入死信队列，避免在反序列化阶段反复失败阻塞分区；
+ *    不能转为 String，二进制内容按 UTF-8 转换会丢失字节，死信无法重放
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class LabPayloadDeserializer implements Deserializer<Object> {
+
+    private final LabPayloadCodec codec;
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (LabPayloadCodec.isBinary(data)) {
+            try {
+                return codec.decode(data);
+            } catch (RuntimeException e) {
+                log.error("❌ 二进制消息解码失败 - Topic: {}, 长度: {}, Error: {}", topic, data.length, e.getMessage());
+                return new UndecodedPayload(data, e.getMessage());
+            }
+        }
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,43 @@
+package com.sewage.monitor.kafka.codec;
+
+import com.sewage.monitor.entity.LabAlarm;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Kafka 消息值序列化器
+ *
+ * 功能说明：
+ * 1. String（JSON 文本）按 UTF-8 写入，与原 StringSerializer 完全一致
+ * 2. LabEnvironmentData / LabAlarm 对象按 {@link LabPayloadCodec} 二进制编码
+ * 3. byte[] 原样写入
+ */
+@RequiredArgsConstructor
+public class LabPayloadSerializer implements Serializer<Object> {
+
+    private final LabPayloadCodec codec;
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        if (data == null) {
+            return null;
+        }
+        if (data instanceof String) {
+            return ((String) data).getBytes(StandardCharsets.UTF_8);
+        }
+        if (data instanceof LabEnvironmentData) {
+            return codec.encodeEnvironment((LabEnvironmentData) data);
+        }
+        if (data instanceof LabAlarm) {
+            return codec.encodeAlarm((LabAlarm) data);
+        }
+        if (data instanceof byte[]) {
+            return (byte[]) data;
+        }
+        throw new SerializationException("不支持的消息类型: " + data.getClass().getName() + ", Topic: " + topic);
+    }
+}
@@ -0,0 +1,27 @@
+package com.sewage.monitor.kafka.codec;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * 无法解码的二进制消息
+ *
+ * 功能说明：
+ * 1. 反序列化器解码失败时返回该对象，保留完整的原始字节和失败原因，不在反序列化阶段反复失败阻塞分区
+ * 2. 监听方法读取时抛出异常，消息进入死信队列；死信中以 Base64 保存原始字节，
+ *    修复原因（如实验室名称字典恢复）后可以原样解码重放
+ */
+@Getter
+@RequiredArgsConstructor
+public class UndecodedPayload {
+
+    /**
+     * 原始消息字节
+     */
+    private final byte[] bytes;
+
+    /**
+     * 解码失败原因
+     */
+    private final String error;
+}
@@ -1,12 +1,11 @@
 package com.sewage.monitor.kafka.consumer;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sewage.monitor.config.KafkaConfig;
+import com.sewage.monitor.service.DeadLetterService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.annotation.RetryableTopic;
-import org.springframework.retry.annotation.Backoff;
 import org.springframework.stereotype.Component;
 
 /**
@@ -14,67 +13,45 @@ import org.springframework.stereotype.Component;
  *
  * 功能：
  * 1. 处理失败的消息会自动进入死信队列
- * 2. 可以对死信消息进行人工处理或重新处理
- * 3. 记录详细的错误信息便于分析
+ * 2. 死信消息连同失败原因、原始位置保存到 dead_letter_record，由 /dead-letters 接口查询、丢弃或限速重放
+ * 3. 保存失败时抛出异常，由监听容器退避重试，保存成功前不提交死信位点
  */
 @Slf4j
 @Component  // 恢复Kafka消费者
 @RequiredArgsConstructor
 public class DeadLetterQueueConsumer {
 
-    private final ObjectMapper objectMapper;
+    private final DeadLetterService deadLetterService;
 
     /**
      * 处理实验室环境数据死信队列消息
      */
     @KafkaListener(  // 恢复Kafka消费者
-            topics = "lab-environment-data-dlq",
+            topics = KafkaConfig.TOPIC_LAB_ENV_DATA_DLQ,
             groupId = "dlq-lab-data-group",
             concurrency = "1"
     )
     public void handleLabDataDlq(ConsumerRecord<String, String> record) {
-        try {
-            log.error("💀 [死信队列-实验室数据] 收到失败消息 - Partition: {}, Offset: {}, Key: {}",
-                    record.partition(), record.offset(), record.key());
+        log.error("💀 [死信队列-实验室数据] 收到失败消息 - Partition: {}, Offset: {}, Key: {}",
+                record.partition(), record.offset(), record.key());
 
-            String message = record.value();
-            log.error("💀 [死信队列-实验室数据] 消息内容: {}", message);
-
-            // TODO: 这里可以添加死信消息的处理逻辑
-            // 1. 保存到专门的失败消息表
-            // 2. 发送告警通知管理员
-            // 3. 尝试重新处理（如果可恢复）
-            // 4. 人工干预处理
-
-        } catch (Exception e) {
-            log.error("💀 [死信队列-实验室数据] 处理死信消息失败: {}", e.getMessage(), e);
-        }
+        deadLetterService.capture(record);
+        log.info("💾 [死信队列-实验室数据] 已保存死信记录 - Offset: {}", record.offset());
     }
 
     /**
      * 处理告警死信队列消息
      */
     @KafkaListener(  // 恢复Kafka消费者
-            topics = "lab-alarm-data-dlq",
+            topics = KafkaConfig.TOPIC_LAB_ALARM_DLQ,
             groupId = "dlq-lab-alarm-group",
             concurrency = "1"
     )
     public void handleLabAlarmDlq(ConsumerRecord<String, String> record) {
-        try {
-            log.error("🚨 [死信队列-告警] 收到失败消息 - Partition: {}, Offset: {}, Key: {}",
-                    record.partition(), record.offset(), record.key());
-
-            String message = record.value();
-            log.error("🚨 [死信队列-告警] 消息内容: {}", message);
-
-            // TODO: 这里可以添加死信消息的处理逻辑
-            // 1. 保存到专门的失败消息表
-            // 2. 发送告警通知管理员
-            // 3. 尝试重新处理（如果可恢复）
-            // 4. 人工干预处理
+        log.error("🚨 [死信队列-告警] 收到失败消息 - Partition: {}, Offset: {}, Key: {}",
+                record.partition(), record.offset(), record.key());
 
-        } catch (Exception e) {
-            log.error("🚨 [死信队列-告警] 处理死信消息失败: {}", e.getMessage(), e);
-        }
+        deadLetterService.capture(record);
+        log.info("💾 [死信队列-告警] 已保存死信记录 - Offset: {}", record.offset());
     }
-}
\ No newline at end of file
+}
@@ -1,23 +1,35 @@
 package com.sewage.monitor.kafka.consumer;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sewage.monitor.config.KafkaConfig;
 import com.sewage.monitor.entity.LabAlarm;
+import com.sewage.monitor.kafka.codec.LabPayloadCodec;
+import com.sewage.monitor.kafka.producer.DeadLetterPublisher;
 import com.sewage.monitor.mapper.LabAlarmMapper;
+import com.sewage.monitor.service.LabAlarmWriter;
+import com.sewage.monitor.util.LatencyHistogram;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * 实验室告警消费者
  *
  * 功能：
  * 1. 接收告警数据
- * 2. 保存告警到数据库
+ * 2. 保存告警到数据库（按告警事件：开始/持续告警更新未关闭的告警记录，没有时插入；恢复时自动解决）
  * 3. 可扩展：发送通知、触发其他处理流程
+ *
+ * 消费模式（monitor.kafka.alarm-batch.enabled）：
+ * - true：批量模式，一次拉取一批消息，需要插入的告警整批多值INSERT，只有失败的消息进入死信队列
+ * - false：逐条模式，每条消息单独处理
  */
 @Slf4j
 @Component  // 恢复Kafka消费者
@@ -25,8 +37,19 @@ import org.springframework.stereotype.Component;
 public class LabAlarmConsumer {
 
     private final LabAlarmMapper labAlarmMapper;
-    private final ObjectMapper objectMapper;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final LabPayloadCodec labPayloadCodec;
+    private final LabAlarmWriter labAlarmWriter;
+    private final DeadLetterPublisher deadLetterPublisher;
+
+    /**
+     * 批处理耗时分布（从收到一批消息到全部落库）
+     */
+    private final LatencyHistogram batchLatency = new LatencyHistogram();
+    private final AtomicLong recordCount = new AtomicLong();
+    private final AtomicLong insertedCount = new AtomicLong();
+    private final AtomicLong updatedCount = new AtomicLong();
+    private final AtomicLong resolvedCount = new AtomicLong();
+    private final AtomicLong dlqCount = new AtomicLong();
 
     /**
      * 监听实验室告警数据 Topic
@@ -34,31 +57,24 @@ public class LabAlarmConsumer {
     @KafkaListener(
             topics = KafkaConfig.TOPIC_LAB_ALARM,
             groupId = "lab-alarm-consumer-group",
-            concurrency = "2"  // 2个并发消费者，对应2个分区
+            concurrency = "2",  // 2个并发消费者，对应2个分区
+            autoStartup = "#{'${monitor.kafka.alarm-batch.enabled:true}' != 'true'}"  // 批量模式关闭时启用
     )
-    public void consume(ConsumerRecord<String, String> record) {
+    public void consume(ConsumerRecord<String, Object> record) {
         try {
             // 1. 打印消息信息
             log.info("📨 [告警消费者] 收到消息 - Partition: {}, Offset: {}, Key: {}",
                     record.partition(), record.offset(), record.key());
 
             // 2. 解析告警数据
-            String message = record.value();
-            LabAlarm alarm = objectMapper.readValue(message, LabAlarm.class);
+            LabAlarm alarm = labPayloadCodec.read(record.value(), LabAlarm.class);
 
             log.info("🚨 [告警消费者] 处理告警 - 实验室: {}, 类型: {}, 级别: {}, 消息: {}",
                     alarm.getLabName(), alarm.getAlarmType(),
                     alarm.getAlarmLevel(), alarm.getAlarmMessage());
 
             // 3. 保存告警到数据库
-            int result = labAlarmMapper.insert(alarm);
-            if (result > 0) {
-                log.info("💾 [告警消费者] 告警已保存到数据库 - 告警ID: {}, LabId: {}",
-                        alarm.getId(), alarm.getLabId());
-            } else {
-                log.error("❌ [告警消费者] 告警保存失败 - LabId: {}, AlarmType: {}",
-                        alarm.getLabId(), alarm.getAlarmType());
-            }
+            saveAlarm(alarm);
 
             // 4. TODO: 可以在这里添加其他告警处理逻辑
             // - 发送邮件/短信通知
@@ -66,18 +82,120 @@ public class LabAlarmConsumer {
             // - 调用第三方告警平台API
             // - 记录操作日志
 
-            log.info("✅ [告警消费者] 告警处理完成 - 告警ID: {}", alarm.getId());
+            log.info("✅ [告警消费者] 告警处理完成 - LabId: {}, 事件: {}", alarm.getLabId(), alarm.getEvent());
 
         } catch (Exception e) {
             log.error("❌ [告警消费者] 消息处理失败: {}", e.getMessage(), e);
+            sendToDlq(record, String.valueOf(e));
+        }
+    }
 
-            // 发送失败消息到死信队列
+    /**
+     * 批量监听实验室告警 Topic
+     *
+     * 处理流程：
+     * 1. 整批反序列化，解析失败的消息单独进入死信队列
+     * 2. 由 LabAlarmWriter 按消息顺序处理告警事件（同一实验室同一类型的告警在同一分区内有序）：
+     *    本批次内的后续事件合并到待插入的记录上，其他事件更新/解决未关闭的告警，需要插入的告警整批多值INSERT
+     * 3. 只有写入失败的告警对应的消息进入死信队列（附带失败原因）
+     * 4. 方法返回后由容器统一提交本批次位点（AckMode.BATCH）
+     */
+    @KafkaListener(
+            topics = KafkaConfig.TOPIC_LAB_ALARM,
+            groupId = "lab-alarm-consumer-group",
+            concurrency = "2",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "${monitor.kafka.alarm-batch.enabled:true}",
+            properties = {
+                    "max.poll.records=${monitor.kafka.alarm-batch.max-records:500}",
+                    "fetch.max.wait.ms=${monitor.kafka.alarm-batch.max-wait-ms:200}",
+                    "fetch.min.bytes=${monitor.kafka.alarm-batch.min-bytes:1}"
+            }
+    )
+    public void consumeBatch(List<ConsumerRecord<String, Object>> records) {
+        long startTime = System.currentTimeMillis();
+        recordCount.addAndGet(records.size());
+
+        List<LabAlarm> alarms = new ArrayList<>(records.size());
+        List<ConsumerRecord<String, Object>> parsedRecords = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, Object> record : records) {
             try {
-                kafkaTemplate.send(KafkaConfig.TOPIC_LAB_ALARM_DLQ, record.key(), record.value());
-                log.error("💀 [告警消费者] 已发送到死信队列 - Key: {}", record.key());
-            } catch (Exception dlqException) {
-                log.error("❌ [告警消费者] 发送到死信队列失败: {}", dlqException.getMessage(), dlqException);
+                alarms.add(labPayloadCodec.read(record.value(), LabAlarm.class));
+                parsedRecords.add(record);
+            } catch (Exception e) {
+                log.error("❌ [告警消费者] 消息解析失败 - Partition: {}, Offset: {}, Error: {}",
+                        record.partition(), record.offset(), e.getMessage());
+                sendToDlq(record, "消息解析失败: " + e.getMessage());
             }
         }
+
+        LabAlarmWriter.WriteResult result = labAlarmWriter.write(alarms);
+        result.getFailures().forEach((index, error) -> sendToDlq(parsedRecords.get(index), error));
+        insertedCount.addAndGet(result.getInserted());
+        updatedCount.addAndGet(result.getUpdated());
+        resolvedCount.addAndGet(result.getResolved());
+
+        long costMillis = System.currentTimeMillis() - startTime;
+        batchLatency.record(costMillis);
+        log.info("✅ [告警消费者] 批量处理完成 - 消息数: {}, 插入: {}, 更新: {}, 恢复: {}, 耗时: {}ms",
+                records.size(), result.getInserted(), result.getUpdated(), result.getResolved(), costMillis);
+    }
+
+    /**
+     * 获取消费统计（含批处理耗时分布）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("recordCount", recordCount.get());
+        stats.put("insertedCount", insertedCount.get());
+        stats.put("updatedCount", updatedCount.get());
+        stats.put("resolvedCount", resolvedCount.get());
+        stats.put("dlqCount", dlqCount.get());
+        stats.put("batchLatency", batchLatency.snapshot());
+        return stats;
+    }
+
+    /**
+     * 按告警事件写入数据库
+     *
+     * - RECOVERED：解决同一实验室同一类型的未关闭告警
+     * - FIRING / UPDATE：优先更新未关闭的告警（服务重启后状态机重新FIRING也不会重复插入），没有时插入新记录
+     * - 无事件（旧版本消息）：直接插入
+     */
+    private void saveAlarm(LabAlarm alarm) {
+        if (alarm.getEvent() == LabAlarm.AlarmEvent.RECOVERED) {
+            int resolved = labAlarmMapper.resolveOpenAlarm(alarm);
+            log.info("✅ [告警消费者] 告警已自动恢复 - LabId: {}, AlarmType: {}, 更新记录数: {}",
+                    alarm.getLabId(), alarm.getAlarmType(), resolved);
+            return;
+        }
+
+        if (alarm.getEvent() != null && labAlarmMapper.updateOpenAlarm(alarm) > 0) {
+            log.info("🔁 [告警消费者] 已更新未关闭的告警 - LabId: {}, AlarmType: {}, 新增超限次数: {}",
+                    alarm.getLabId(), alarm.getAlarmType(), alarm.getOccurrenceCount());
+            return;
+        }
+
+        int result = labAlarmMapper.insert(alarm);
+        if (result > 0) {
+            log.info("💾 [告警消费者] 告警已保存到数据库 - 告警ID: {}, LabId: {}",
+                    alarm.getId(), alarm.getLabId());
+        } else {
+            log.error("❌ [告警消费者] 告警保存失败 - LabId: {}, AlarmType: {}",
+                    alarm.getLabId(), alarm.getAlarmType());
+        }
+    }
+
+    /**
+     * 发送失败消息到死信队列（附带失败原因）
+     */
+    private void sendToDlq(ConsumerRecord<String, Object> record, String error) {
+        dlqCount.incrementAndGet();
+        try {
+            deadLetterPublisher.publish(KafkaConfig.TOPIC_LAB_ALARM_DLQ, record, error);
+            log.error("💀 [告警消费者] 已发送到死信队列 - Key: {}", record.key());
+        } catch (Exception dlqException) {
+            log.error("❌ [告警消费者] 发送到死信队列失败: {}", dlqException.getMessage(), dlqException);
+        }
     }
-}
\ No newline at end of file
+}
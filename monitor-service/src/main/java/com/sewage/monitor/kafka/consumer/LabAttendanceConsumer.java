@@ -0,0 +1,90 @@
+package com.sewage.monitor.kafka.consumer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sewage.monitor.config.KafkaConfig;
+import com.sewage.monitor.entity.LabAttendanceEvent;
+import com.sewage.monitor.service.DailyStatisticsEngine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 实验室考勤消费者
+ *
+ * 功能：
+ * 1. 批量接收预约、刷卡签到事件
+ * 2. 整批交给 DailyStatisticsEngine 按实验室分片在内存中去重计数，不逐条写数据库
+ * 3. 预约人数、签到人数、使用率由 DailyStatisticsEngine 定时随日统计批量写入
+ *
+ * 上下课换班时的刷卡高峰只增加内存计数，数据库写入量只和实验室数量、刷新周期相关
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LabAttendanceConsumer {
+
+    private final DailyStatisticsEngine dailyStatisticsEngine;
+    private final ObjectMapper objectMapper;
+
+    private final AtomicLong recordCount = new AtomicLong();
+    private final AtomicLong invalidCount = new AtomicLong();
+
+    /**
+     * 批量监听实验室考勤 Topic
+     *
+     * 位点在方法返回后提交（AckMode.BATCH），此时事件已进入内存聚合，
+     * 进程在下次刷新前退出时 @PreDestroy 会先刷新一次
+     */
+    @KafkaListener(
+            topics = KafkaConfig.TOPIC_LAB_ATTENDANCE,
+            groupId = "lab-attendance-consumer-group",
+            concurrency = "3",  // 3个并发消费者，对应3个分区
+            containerFactory = "batchKafkaListenerContainerFactory",
+            properties = {
+                    "max.poll.records=${monitor.kafka.attendance-batch.max-records:1000}",
+                    "fetch.max.wait.ms=${monitor.kafka.attendance-batch.max-wait-ms:500}",
+                    "fetch.min.bytes=${monitor.kafka.attendance-batch.min-bytes:16384}"
+            }
+    )
+    public void consumeBatch(List<ConsumerRecord<String, String>> records) {
+        recordCount.addAndGet(records.size());
+
+        List<LabAttendanceEvent> events = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, String> record : records) {
+            try {
+                LabAttendanceEvent event = objectMapper.readValue(record.value(), LabAttendanceEvent.class);
+                if (event.getLabId() == null || event.getUserId() == null || event.getEventType() == null) {
+                    invalidCount.incrementAndGet();
+                    log.warn("⚠️ [考勤消费者] 考勤事件缺少必填字段，已跳过 - Offset: {}", record.offset());
+                    continue;
+                }
+                events.add(event);
+            } catch (Exception e) {
+                invalidCount.incrementAndGet();
+                log.error("❌ [考勤消费者] 消息解析失败 - Partition: {}, Offset: {}, Error: {}",
+                        record.partition(), record.offset(), e.getMessage());
+            }
+        }
+
+        dailyStatisticsEngine.recordAttendance(events);
+        log.debug("✅ [考勤消费者] 批量处理完成 - 消息数: {}, 有效事件: {}", records.size(), events.size());
+    }
+
+    /**
+     * 获取消费统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("recordCount", recordCount.get());
+        stats.put("invalidCount", invalidCount.get());
+        return stats;
+    }
+}
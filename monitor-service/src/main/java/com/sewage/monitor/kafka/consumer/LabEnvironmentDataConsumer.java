@@ -1,24 +1,33 @@
 package com.sewage.monitor.kafka.consumer;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sewage.monitor.config.KafkaConfig;
 import com.sewage.monitor.entity.LabEnvironmentData;
-import com.sewage.monitor.service.AlarmService;
+import com.sewage.monitor.kafka.codec.LabPayloadCodec;
+import com.sewage.monitor.kafka.producer.DeadLetterPublisher;
+import com.sewage.monitor.service.EnvironmentPipeline;
 import com.sewage.monitor.service.LabEnvironmentDataService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * 实验室环境数据消费者
  *
  * 功能：
- * 1. 接收实验室环境数据
+ * 1. 接收实验室环境数据，每条消息只反序列化一次（二进制消息已由反序列化器解码，JSON 消息在这里解析）
  * 2. 保存数据到数据库
- * 3. 触发告警检查
+ * 3. 落库后交给 EnvironmentPipeline 分发到缓存、告警、统计、推送各阶段（monitor.pipeline.enabled）；
+ *    关闭流水线时在消费线程内依次处理，统计由 StatisticsConsumer 单独消费
+ *
+ * 消费模式（monitor.kafka.env-batch.enabled）：
+ * - true：批量模式，一次拉取一批消息，整批多值INSERT落库后再提交位点
+ * - false：逐条模式，每条消息单独落库
  */
 @Slf4j
 @Component  // 恢复Kafka消费者
@@ -26,9 +35,15 @@ import org.springframework.stereotype.Component;
 public class LabEnvironmentDataConsumer {
 
     private final LabEnvironmentDataService labEnvironmentDataService;
-    private final AlarmService alarmService;
-    private final ObjectMapper objectMapper;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final EnvironmentPipeline environmentPipeline;
+    private final LabPayloadCodec labPayloadCodec;
+    private final DeadLetterPublisher deadLetterPublisher;
+
+    /**
+     * 是否启用处理流水线
+     */
+    @Value("${monitor.pipeline.enabled:true}")
+    private boolean pipelineEnabled;
 
     /**
      * 监听实验室环境数据 Topic
@@ -40,41 +55,138 @@ public class LabEnvironmentDataConsumer {
     @KafkaListener(
             topics = KafkaConfig.TOPIC_LAB_ENV_DATA,
             groupId = "lab-data-consumer-group",
-            concurrency = "3"  // 3个并发消费者，对应5个分区
+            concurrency = "3",  // 3个并发消费者，对应5个分区
+            autoStartup = "#{'${monitor.kafka.env-batch.enabled:true}' != 'true'}"  // 批量模式关闭时启用
     )
-    public void consume(ConsumerRecord<String, String> record) {
+    public void consume(ConsumerRecord<String, Object> record) {
         try {
             // 1. 打印消息信息
             log.info("📨 [环境数据消费者] 收到消息 - Partition: {}, Offset: {}, Key: {}",
                     record.partition(), record.offset(), record.key());
 
             // 2. 解析实验室环境数据
-            String message = record.value();
-            LabEnvironmentData environmentData = objectMapper.readValue(message, LabEnvironmentData.class);
+            LabEnvironmentData environmentData = labPayloadCodec.read(record.value(), LabEnvironmentData.class);
 
             log.info("📊 [环境数据消费者] 处理数据 - 实验室: {}, 时间: {}, 温度: {}°C",
                     environmentData.getLabName(), environmentData.getMonitorTime(), environmentData.getTemperature());
 
             // 3. 保存数据到数据库
-            labEnvironmentDataService.saveMonitorData(environmentData);
+            labEnvironmentDataService.persist(environmentData);
             log.info("💾 [环境数据消费者] 数据已保存到数据库 - LabId: {}", environmentData.getLabId());
 
-            // 4. 触发告警检查
-            alarmService.checkAndSendAlarm(environmentData);
-            log.info("🚨 [环境数据消费者] 告警检查完成 - LabId: {}", environmentData.getLabId());
+            // 4. 处理缓存、告警（只检查一次）、统计和推送；已落库的数据失败时不进入死信队列，避免重放时重复插入
+            process(environmentData);
 
             log.info("✅ [环境数据消费者] 消息处理完成 - 实验室: {}", environmentData.getLabName());
 
         } catch (Exception e) {
             log.error("❌ [环境数据消费者] 消息处理失败: {}", e.getMessage(), e);
+            sendToDlq(record, e);
+        }
+    }
 
-            // 发送失败消息到死信队列
+    /**
+     * 批量监听实验室环境数据 Topic
+     *
+     * 处理流程：
+     * 1. 一次poll拉取的消息整批反序列化，解析失败的消息单独进入死信队列
+     * 2. 解析成功的数据通过一条多值INSERT写入数据库
+     * 3. 批量写入失败时降级为逐条写入，只有真正写入失败的消息进入死信队列
+     * 4. 落库成功的数据再逐条处理缓存、告警、统计和推送；这一步失败只记录日志，不重新写入也不进入死信队列
+     * 5. 方法返回后由容器统一提交本批次位点（AckMode.BATCH）
+     *
+     * 批次大小和等待时间：
+     * - max-records：单次poll最多拉取的消息数
+     * - max-wait-ms / min-bytes：Broker最多等待max-wait-ms凑够min-bytes再返回
+     */
+    @KafkaListener(
+            topics = KafkaConfig.TOPIC_LAB_ENV_DATA,
+            groupId = "lab-data-consumer-group",
+            concurrency = "3",
+            containerFactory = "batchKafkaListenerContainerFactory",
+            autoStartup = "${monitor.kafka.env-batch.enabled:true}",
+            properties = {
+                    "max.poll.records=${monitor.kafka.env-batch.max-records:500}",
+                    "fetch.max.wait.ms=${monitor.kafka.env-batch.max-wait-ms:200}",
+                    "fetch.min.bytes=${monitor.kafka.env-batch.min-bytes:16384}"
+            }
+    )
+    public void consumeBatch(List<ConsumerRecord<String, Object>> records) {
+        long startTime = System.currentTimeMillis();
+        log.info("📨 [环境数据消费者] 收到批量消息 - 数量: {}", records.size());
+
+        // 1. 整批反序列化
+        List<LabEnvironmentData> dataList = new ArrayList<>(records.size());
+        List<ConsumerRecord<String, Object>> parsedRecords = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, Object> record : records) {
             try {
-                kafkaTemplate.send(KafkaConfig.TOPIC_LAB_ENV_DATA_DLQ, record.key(), record.value());
-                log.error("💀 [环境数据消费者] 已发送到死信队列 - Key: {}", record.key());
-            } catch (Exception dlqException) {
-                log.error("❌ [环境数据消费者] 发送到死信队列失败: {}", dlqException.getMessage(), dlqException);
+                dataList.add(labPayloadCodec.read(record.value(), LabEnvironmentData.class));
+                parsedRecords.add(record);
+            } catch (Exception e) {
+                log.error("❌ [环境数据消费者] 消息解析失败 - Partition: {}, Offset: {}, Error: {}",
+                        record.partition(), record.offset(), e.getMessage());
+                sendToDlq(record, e);
             }
         }
+
+        if (dataList.isEmpty()) {
+            return;
+        }
+
+        // 2. 整批写入（一条多值INSERT）
+        List<LabEnvironmentData> persisted = dataList;
+        try {
+            labEnvironmentDataService.persistBatch(dataList);
+        } catch (Exception e) {
+            log.error("❌ [环境数据消费者] 批量保存失败，降级为逐条保存 - 数量: {}, Error: {}",
+                    dataList.size(), e.getMessage(), e);
+
+            // 3. 降级：逐条保存，定位写入失败的消息
+            persisted = new ArrayList<>(dataList.size());
+            for (int i = 0; i < dataList.size(); i++) {
+                try {
+                    labEnvironmentDataService.persist(dataList.get(i));
+                    persisted.add(dataList.get(i));
+                } catch (Exception single) {
+                    sendToDlq(parsedRecords.get(i), single);
+                }
+            }
+        }
+
+        // 4. 落库后处理缓存、告警、统计和推送（失败不重新写入）
+        for (LabEnvironmentData data : persisted) {
+            try {
+                process(data);
+            } catch (Exception e) {
+                log.error("❌ [环境数据消费者] 落库后处理失败 - 实验室ID: {}, Error: {}",
+                        data.getLabId(), e.getMessage(), e);
+            }
+        }
+
+        log.info("✅ [环境数据消费者] 批量处理完成 - 数量: {}, 落库: {}, 耗时: {}ms",
+                dataList.size(), persisted.size(), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 处理已落库的数据：流水线模式分发到各阶段，否则在消费线程内由 processPersisted 同步处理
+     */
+    private void process(LabEnvironmentData data) {
+        if (pipelineEnabled) {
+            environmentPipeline.dispatch(data);
+        } else {
+            labEnvironmentDataService.processPersisted(data);
+        }
+    }
+
+    /**
+     * 发送失败消息到死信队列（附带失败原因）
+     */
+    private void sendToDlq(ConsumerRecord<String, Object> record, Exception cause) {
+        try {
+            deadLetterPublisher.publish(KafkaConfig.TOPIC_LAB_ENV_DATA_DLQ, record, String.valueOf(cause));
+            log.error("💀 [环境数据消费者] 已发送到死信队列 - Key: {}", record.key());
+        } catch (Exception dlqException) {
+            log.error("❌ [环境数据消费者] 发送到死信队列失败: {}", dlqException.getMessage(), dlqException);
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,8 +1,8 @@
 package com.sewage.monitor.kafka.consumer;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.sewage.monitor.config.KafkaConfig;
 import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.kafka.codec.LabPayloadCodec;
 import com.sewage.monitor.service.StatisticsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -16,7 +16,10 @@ import org.springframework.stereotype.Component;
  * 功能：
  * 1. 接收实验室环境数据
  * 2. 实时更新统计数据
- * 3. 更新日统计表
+ * 3. 更新日统计表（由 DailyStatisticsEngine 定时批量写入）
+ *
+ * 启用处理流水线（monitor.pipeline.enabled）时不启动：统计由 EnvironmentPipeline 的 statistics 阶段处理，
+ * 避免同一条消息在两个消费者组中各反序列化一次
  */
 @Slf4j
 @Component  // 恢复Kafka消费者
@@ -24,7 +27,7 @@ import org.springframework.stereotype.Component;
 public class StatisticsConsumer {
 
     private final StatisticsService statisticsService;
-    private final ObjectMapper objectMapper;
+    private final LabPayloadCodec labPayloadCodec;
 
     /**
      * 监听实验室环境数据 Topic
@@ -36,22 +39,22 @@ public class StatisticsConsumer {
     @KafkaListener(  // 恢复Kafka消费者
             topics = KafkaConfig.TOPIC_LAB_ENV_DATA,
             groupId = "lab-statistics-consumer-group",  // 不同的 groupId
-            concurrency = "2"
+            concurrency = "2",
+            autoStartup = "#{'${monitor.pipeline.enabled:true}' != 'true'}"  // 流水线关闭时启用
     )
-    public void consume(ConsumerRecord<String, String> record) {
+    public void consume(ConsumerRecord<String, Object> record) {
         try {
             // 1. 打印消息信息
             log.debug("📨 [统计消费者] 收到消息 - Partition: {}, Offset: {}",
                     record.partition(), record.offset());
 
             // 2. 解析实验室环境数据
-            String message = record.value();
-            LabEnvironmentData environmentData = objectMapper.readValue(message, LabEnvironmentData.class);
+            LabEnvironmentData environmentData = labPayloadCodec.read(record.value(), LabEnvironmentData.class);
 
             log.debug("📊 [统计消费者] 处理数据 - 实验室: {}, 时间: {}",
                     environmentData.getLabName(), environmentData.getMonitorTime());
 
-            // 3. 更新统计数据（实时统计）
+            // 3. 更新统计数据（内存聚合，定时批量写入日统计表）
             statisticsService.updateStatistics(environmentData);
 
             log.debug("✅ [统计消费者] 统计已更新 - 实验室: {}",
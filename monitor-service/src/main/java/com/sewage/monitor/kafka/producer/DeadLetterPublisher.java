@@ -0,0 +1,86 @@
+package com.sewage.monitor.kafka.producer;
+
+import com.sewage.monitor.kafka.codec.LabPayloadCodec;
+import com.sewage.monitor.kafka.codec.UndecodedPayload;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 死信消息发送
+ *
+ * 功能说明：
+ * 1. 把处理失败的消息发送到死信 Topic（Key 不变；二进制消息已解码为对象，转为 JSON 保存；
+ *    无法解码的二进制消息以 Base64 保存原始字节，并通过 dlq-payload-encoding 消息头标记）
+ * 2. 通过消息头携带失败原因和原始位置（Topic / 分区 / 位点），死信消费者据此落库，便于排查和重放
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DeadLetterPublisher {
+
+    public static final String HEADER_ERROR = "dlq-error";
+    public static final String HEADER_ORIGINAL_TOPIC = "dlq-original-topic";
+    public static final String HEADER_ORIGINAL_PARTITION = "dlq-original-partition";
+    public static final String HEADER_ORIGINAL_OFFSET = "dlq-original-offset";
+    public static final String HEADER_PAYLOAD_ENCODING = "dlq-payload-encoding";
+
+    /**
+     * 死信内容为 Base64 编码的原始二进制消息（没有该消息头时为 JSON）
+     */
+    public static final String ENCODING_BASE64 = "BASE64";
+
+    /**
+     * 失败原因最大长度（与 dead_letter_record.error_message 一致）
+     */
+    public static final int MAX_ERROR_LENGTH = 1000;
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final LabPayloadCodec labPayloadCodec;
+
+    /**
+     * 发送失败消息到死信 Topic
+     *
+     * @param dlqTopic 死信 Topic
+     * @param record   原始消息
+     * @param error    失败原因
+     * @throws IOException 消息对象转换 JSON 失败
+     */
+    public void publish(String dlqTopic, ConsumerRecord<String, ?> record, String error) throws IOException {
+        boolean undecoded = record.value() instanceof UndecodedPayload;
+        String payload = undecoded
+                ? Base64.getEncoder().encodeToString(((UndecodedPayload) record.value()).getBytes())
+                : labPayloadCodec.toJson(record.value());
+        ProducerRecord<String, String> dlqRecord = new ProducerRecord<>(dlqTopic, record.key(), payload);
+        dlqRecord.headers()
+                .add(HEADER_ERROR, bytes(truncate(error)))
+                .add(HEADER_ORIGINAL_TOPIC, bytes(record.topic()))
+                .add(HEADER_ORIGINAL_PARTITION, bytes(String.valueOf(record.partition())))
+                .add(HEADER_ORIGINAL_OFFSET, bytes(String.valueOf(record.offset())));
+        if (undecoded) {
+            dlqRecord.headers().add(HEADER_PAYLOAD_ENCODING, bytes(ENCODING_BASE64));
+        }
+        kafkaTemplate.send(dlqRecord);
+    }
+
+    /**
+     * 截断过长的失败原因
+     */
+    public static String truncate(String error) {
+        if (error == null) {
+            return "unknown";
+        }
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,178 @@
+package com.sewage.monitor.kafka.producer;
+
+import com.sewage.monitor.kafka.codec.LabPayloadCodec;
+import com.sewage.monitor.kafka.codec.LabPayloadSerializer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Kafka 生产者配置档（按 Topic 选择）
+ *
+ * 功能说明：
+ * 1. default：Spring Boot 默认生产者（spring.kafka.producer.*），不等待凑批，适合告警、死信等低延迟消息
+ * 2. ingest：高吞吐生产者（monitor.kafka.producer.ingest.*），等待 linger-ms 凑批、整批压缩、开启幂等，
+ *    适合传感器读数、考勤等持续大量写入的 Topic；使用哪个配置档由 ingest.topics 决定
+ * 3. 汇总两个生产者的客户端指标（发送速率、平均批次大小、请求延迟等），便于调优 linger / batch-size
+ *
+ * 注意：ingest 生产者不注册为 Bean，避免 Spring Boot 因已存在 KafkaTemplate 而不再创建默认 KafkaTemplate
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KafkaProducerProfiles {
+
+    public static final String PROFILE_DEFAULT = "default";
+    public static final String PROFILE_INGEST = "ingest";
+
+    /**
+     * 对外暴露的生产者指标（producer-metrics 分组）
+     */
+    private static final List<String> PRODUCER_METRICS = Arrays.asList(
+            "record-send-rate", "record-send-total", "record-error-rate", "record-retry-rate",
+            "batch-size-avg", "batch-size-max", "records-per-request-avg", "compression-rate-avg",
+            "record-queue-time-avg", "record-queue-time-max", "request-latency-avg", "request-latency-max",
+            "outgoing-byte-rate", "buffer-available-bytes", "bufferpool-wait-ratio");
+
+    /**
+     * 对外暴露的 Topic 级指标（producer-topic-metrics 分组）
+     */
+    private static final List<String> TOPIC_METRICS = Arrays.asList(
+            "record-send-rate", "byte-rate", "compression-rate", "record-error-rate");
+
+    private final KafkaTemplate<String, Object> defaultTemplate;
+    private final KafkaProperties kafkaProperties;
+    private final LabPayloadCodec labPayloadCodec;
+
+    @Value("${monitor.kafka.producer.ingest.topics:lab-environment-data,lab-attendance-data}")
+    private String ingestTopics;
+
+    @Value("${monitor.kafka.producer.ingest.linger-ms:20}")
+    private int lingerMs;
+
+    @Value("${monitor.kafka.producer.ingest.batch-size:65536}")
+    private int batchSize;
+
+    @Value("${monitor.kafka.producer.ingest.compression-type:lz4}")
+    private String compressionType;
+
+    @Value("${monitor.kafka.producer.ingest.acks:all}")
+    private String acks;
+
+    @Value("${monitor.kafka.producer.ingest.enable-idempotence:true}")
+    private boolean enableIdempotence;
+
+    @Value("${monitor.kafka.producer.ingest.max-in-flight:5}")
+    private int maxInFlight;
+
+    @Value("${monitor.kafka.producer.ingest.buffer-memory:67108864}")
+    private long bufferMemory;
+
+    private Set<String> ingestTopicSet;
+    private DefaultKafkaProducerFactory<String, Object> ingestFactory;
+    private KafkaTemplate<String, Object> ingestTemplate;
+
+    @PostConstruct
+    public void init() {
+        ingestTopicSet = new HashSet<>();
+        for (String topic : ingestTopics.split(",")) {
+            if (!topic.trim().isEmpty()) {
+                ingestTopicSet.add(topic.trim());
+            }
+        }
+
+        Map<String, Object> props = kafkaProperties.buildProducerProperties();
+        props.put(ProducerConfig.CLIENT_ID_CONFIG, "monitor-ingest-producer");
+        props.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        props.put(ProducerConfig.ACKS_CONFIG, acks);
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, enableIdempotence);
+        // 幂等生产者要求在途请求数不超过5，否则无法保证分区内顺序
+        props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION,
+                enableIdempotence ? Math.min(maxInFlight, 5) : maxInFlight);
+        props.put(ProducerConfig.BUFFER_MEMORY_CONFIG, bufferMemory);
+
+        ingestFactory = new DefaultKafkaProducerFactory<>(props, new StringSerializer(),
+                new LabPayloadSerializer(labPayloadCodec));
+        ingestTemplate = new KafkaTemplate<>(ingestFactory);
+
+        log.info("📤 高吞吐生产者配置完成 - Topics: {}, linger: {}ms, batch: {}B, 压缩: {}, acks: {}, 幂等: {}",
+                ingestTopicSet, lingerMs, batchSize, compressionType, acks, enableIdempotence);
+    }
+
+    /**
+     * 获取发送指定 Topic 使用的 KafkaTemplate
+     */
+    public KafkaTemplate<String, Object> templateFor(String topic) {
+        return ingestTopicSet.contains(topic) ? ingestTemplate : defaultTemplate;
+    }
+
+    /**
+     * 指定 Topic 使用的配置档名称
+     */
+    public String profileOf(String topic) {
+        return ingestTopicSet.contains(topic) ? PROFILE_INGEST : PROFILE_DEFAULT;
+    }
+
+    /**
+     * 两个生产者的客户端指标（首次调用时会创建尚未使用过的生产者）
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put(PROFILE_INGEST, collect(ingestTemplate));
+        metrics.put(PROFILE_DEFAULT, collect(defaultTemplate));
+        return metrics;
+    }
+
+    private Map<String, Object> collect(KafkaTemplate<String, Object> template) {
+        Map<String, Object> producer = new TreeMap<>();
+        Map<String, Map<String, Object>> topics = new TreeMap<>();
+        for (Map.Entry<MetricName, ? extends Metric> entry : template.metrics().entrySet()) {
+            MetricName name = entry.getKey();
+            if ("producer-metrics".equals(name.group()) && PRODUCER_METRICS.contains(name.name())) {
+                producer.put(name.name(), round(entry.getValue().metricValue()));
+            } else if ("producer-topic-metrics".equals(name.group()) && TOPIC_METRICS.contains(name.name())) {
+                topics.computeIfAbsent(name.tags().get("topic"), t -> new TreeMap<>())
+                        .put(name.name(), round(entry.getValue().metricValue()));
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("producer", producer);
+        result.put("topics", topics);
+        return result;
+    }
+
+    private static Object round(Object value) {
+        if (value instanceof Double) {
+            double d = (Double) value;
+            return Double.isFinite(d) ? Math.round(d * 100) / 100.0 : null;
+        }
+        return value;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (ingestFactory != null) {
+            ingestFactory.destroy();
+        }
+    }
+}
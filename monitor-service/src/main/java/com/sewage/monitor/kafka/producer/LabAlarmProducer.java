@@ -8,8 +8,8 @@ import com.sewage.monitor.entity.LabAlarm;
 import com.sewage.monitor.entity.LabEnvironmentData;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.EnableKafka;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import java.util.concurrent.CompletableFuture;
 import org.springframework.stereotype.Component;
@@ -17,6 +17,7 @@ import org.springframework.stereotype.Component;
 /**
  * 实验室告警生产者
  * 负责将实验室告警数据发送到Kafka
+ * 消息格式由 monitor.kafka.codec.format 决定（json / binary），与 LabEnvironmentProducer 一致
  */
 @Slf4j
 @Component
@@ -24,25 +25,32 @@ import org.springframework.stereotype.Component;
 @RequiredArgsConstructor
 public class LabAlarmProducer {
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final KafkaProducerProfiles producerProfiles;
 
     /**
      * 创建ObjectMapper实例以避免循环引用
      */
     private final ObjectMapper objectMapper = new ObjectMapper().disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
 
+    /**
+     * 消息格式：json / binary
+     */
+    @Value("${monitor.kafka.codec.format:json}")
+    private String codecFormat;
+
     /**
      * 发送实验室告警数据
      */
     public void sendAlarm(LabAlarm alarm) {
         try {
-            String jsonMessage = objectMapper.writeValueAsString(alarm);
+            Object message = "binary".equalsIgnoreCase(codecFormat)
+                    ? alarm : objectMapper.writeValueAsString(alarm);
             String key = alarm.getLabId() + ":" + alarm.getAlarmType();
 
             log.info("🚨 实验室告警异步发送成功 - LabId: {}, AlarmType: {}",
                     alarm.getLabId(), alarm.getAlarmType());
 
-            kafkaTemplate.send(KafkaConfig.TOPIC_LAB_ALARM, key, jsonMessage)
+            producerProfiles.templateFor(KafkaConfig.TOPIC_LAB_ALARM).send(KafkaConfig.TOPIC_LAB_ALARM, key, message)
                     .addCallback(
                             result -> log.debug("🚨 实验室告警异步发送成功 - LabId: {}, AlarmType: {}",
                                     alarm.getLabId(), alarm.getAlarmType()),
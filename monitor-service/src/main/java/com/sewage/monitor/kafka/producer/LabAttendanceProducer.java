@@ -0,0 +1,53 @@
+package com.sewage.monitor.kafka.producer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sewage.monitor.config.KafkaConfig;
+import com.sewage.monitor.entity.LabAttendanceEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 实验室考勤事件生产者
+ * 负责将预约、刷卡签到事件发送到Kafka
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LabAttendanceProducer {
+
+    private final KafkaProducerProfiles producerProfiles;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 批量异步发送考勤事件（不等待结果，由生产者按分区攒批发送）
+     *
+     * @param events 考勤事件列表
+     * @return 已提交发送的条数（序列化失败的事件被跳过）
+     */
+    public int sendBatch(List<LabAttendanceEvent> events) {
+        int sent = 0;
+        for (LabAttendanceEvent event : events) {
+            try {
+                String jsonMessage = objectMapper.writeValueAsString(event);
+                // 使用实验室ID作为key，同一实验室的考勤事件进入同一分区
+                String key = String.valueOf(event.getLabId());
+
+                producerProfiles.templateFor(KafkaConfig.TOPIC_LAB_ATTENDANCE).send(KafkaConfig.TOPIC_LAB_ATTENDANCE, key, jsonMessage)
+                        .addCallback(
+                                result -> { },
+                                failure -> log.error("❌ 考勤事件发送失败 - LabId: {}, UserId: {}, Error: {}",
+                                        event.getLabId(), event.getUserId(), failure.getMessage())
+                        );
+                sent++;
+            } catch (JsonProcessingException e) {
+                log.error("❌ 考勤事件JSON序列化失败: {}", e.getMessage(), e);
+            }
+        }
+        log.debug("📤 考勤事件批量发送完成 - 数量: {}", sent);
+        return sent;
+    }
+}
@@ -6,28 +6,50 @@ import com.sewage.monitor.config.KafkaConfig;
 import com.sewage.monitor.entity.LabEnvironmentData;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Component;
 import org.springframework.util.concurrent.ListenableFuture;
 import org.springframework.util.concurrent.ListenableFutureCallback;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * 实验室环境数据生产者
  * 负责将实验室环境数据发送到Kafka
  * 对应原WaterDataProducer，改造为实验室环境数据生产者
+ *
+ * 消息格式（monitor.kafka.codec.format）：
+ * - json：JSON 文本（默认）
+ * - binary：LabPayloadCodec 紧凑二进制编码，消费者两种格式都能处理
  */
 @Slf4j
 @Component  // 恢复Kafka生产者
 @RequiredArgsConstructor
 public class LabEnvironmentProducer {
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final KafkaProducerProfiles producerProfiles;
     private final ObjectMapper objectMapper;
 
-    // 提供对KafkaTemplate的访问（用于测试）
-    public KafkaTemplate<String, String> getKafkaTemplate() {
-        return kafkaTemplate;
+    /**
+     * 消息格式：json / binary
+     */
+    @Value("${monitor.kafka.codec.format:json}")
+    private String codecFormat;
+
+    // 提供对KafkaTemplate的访问（用于测试），环境数据 Topic 默认使用高吞吐配置档
+    public KafkaTemplate<String, Object> getKafkaTemplate() {
+        return producerProfiles.templateFor(KafkaConfig.TOPIC_LAB_ENV_DATA);
+    }
+
+    /**
+     * 按配置的格式生成消息：binary 直接发送对象（由 LabPayloadSerializer 编码），json 发送 JSON 文本
+     */
+    private Object toMessage(LabEnvironmentData data) throws JsonProcessingException {
+        return "binary".equalsIgnoreCase(codecFormat) ? data : objectMapper.writeValueAsString(data);
     }
 
     /**
@@ -37,16 +59,16 @@ public class LabEnvironmentProducer {
      */
     public void sendEnvironmentData(LabEnvironmentData data) {
         try {
-            String jsonMessage = objectMapper.writeValueAsString(data);
+            Object message = toMessage(data);
             // 使用实验室ID作为key，保证同一实验室的数据有序
             String key = String.valueOf(data.getLabId());
 
-            ListenableFuture<SendResult<String, String>> future = kafkaTemplate
-                    .send(KafkaConfig.TOPIC_LAB_ENV_DATA, key, jsonMessage);
+            ListenableFuture<SendResult<String, Object>> future = getKafkaTemplate()
+                    .send(KafkaConfig.TOPIC_LAB_ENV_DATA, key, message);
 
-            future.addCallback(new ListenableFutureCallback<SendResult<String, String>>() {
+            future.addCallback(new ListenableFutureCallback<SendResult<String, Object>>() {
                 @Override
-                public void onSuccess(SendResult<String, String> result) {
+                public void onSuccess(SendResult<String, Object> result) {
                     log.debug("✅ 实验室环境数据发送成功 - Topic: {}, LabId: {}, Partition: {}, Offset: {}",
                             KafkaConfig.TOPIC_LAB_ENV_DATA, data.getLabId(),
                             result.getRecordMetadata().partition(),
@@ -72,10 +94,10 @@ public class LabEnvironmentProducer {
      */
     public void sendEnvironmentDataAsync(LabEnvironmentData data) {
         try {
-            String jsonMessage = objectMapper.writeValueAsString(data);
+            Object message = toMessage(data);
             String key = String.valueOf(data.getLabId());
 
-            kafkaTemplate.send(KafkaConfig.TOPIC_LAB_ENV_DATA, key, jsonMessage)
+            getKafkaTemplate().send(KafkaConfig.TOPIC_LAB_ENV_DATA, key, message)
                     .addCallback(
                             result -> log.debug("✅ 实验室环境数据异步发送成功 - LabId: {}", data.getLabId()),
                             failure -> log.error("❌ 实验室环境数据异步发送失败 - LabId: {}, Error: {}",
@@ -90,19 +112,60 @@ public class LabEnvironmentProducer {
     /**
      * 批量发送实验室环境数据
      *
+     * 整批提交给生产者后立即返回，由生产者按分区凑批、压缩后发送（见 KafkaProducerProfiles 的 ingest 配置档）；
+     * 不逐条打印日志，整批全部确认后汇总一次结果
+     *
      * @param dataList 环境数据列表
+     * @return 整批发送完成（全部确认或失败）时完成，结果为失败条数
      */
-    public void sendEnvironmentDataBatch(java.util.List<LabEnvironmentData> dataList) {
+    public CompletableFuture<Integer> sendEnvironmentDataBatch(List<LabEnvironmentData> dataList) {
+        return sendEnvironmentDataBatch(KafkaConfig.TOPIC_LAB_ENV_DATA, dataList);
+    }
+
+    /**
+     * 批量发送实验室环境数据到指定 Topic（压测时发送到压测 Topic，不进入正式消费链路）
+     *
+     * @param topic    目标 Topic
+     * @param dataList 环境数据列表
+     * @return 整批发送完成（全部确认或失败）时完成，结果为失败条数
+     */
+    public CompletableFuture<Integer> sendEnvironmentDataBatch(String topic, List<LabEnvironmentData> dataList) {
         if (dataList == null || dataList.isEmpty()) {
             log.warn("⚠️ 实验室环境数据列表为空，跳过发送");
-            return;
+            return CompletableFuture.completedFuture(0);
         }
 
-        log.info("📤 开始批量发送实验室环境数据，数量: {}", dataList.size());
-
-        dataList.forEach(this::sendEnvironmentDataAsync);
+        KafkaTemplate<String, Object> template = producerProfiles.templateFor(topic);
+        AtomicInteger pending = new AtomicInteger(dataList.size());
+        AtomicInteger failed = new AtomicInteger();
+        CompletableFuture<Integer> done = new CompletableFuture<>();
+        Runnable complete = () -> {
+            if (pending.decrementAndGet() == 0) {
+                if (failed.get() > 0) {
+                    log.error("❌ 实验室环境数据批量发送部分失败 - Topic: {}, 数量: {}, 失败: {}",
+                            topic, dataList.size(), failed.get());
+                }
+                done.complete(failed.get());
+            }
+        };
+
+        for (LabEnvironmentData data : dataList) {
+            try {
+                template.send(topic, String.valueOf(data.getLabId()), toMessage(data))
+                        .addCallback(result -> complete.run(), failure -> {
+                            failed.incrementAndGet();
+                            complete.run();
+                        });
+            } catch (Exception e) {
+                // 序列化失败，或缓冲区已满且等待超过 max.block.ms
+                log.error("❌ 实验室环境数据提交发送失败 - LabId: {}, Error: {}", data.getLabId(), e.getMessage());
+                failed.incrementAndGet();
+                complete.run();
+            }
+        }
 
-        log.info("📤 实验室环境数据批量发送完成，数量: {}", dataList.size());
+        log.debug("📤 实验室环境数据批量提交完成 - Topic: {}, 数量: {}", topic, dataList.size());
+        return done;
     }
 
     /**
@@ -113,11 +176,11 @@ public class LabEnvironmentProducer {
      */
     public boolean sendEnvironmentDataSync(LabEnvironmentData data) {
         try {
-            String jsonMessage = objectMapper.writeValueAsString(data);
+            Object message = toMessage(data);
             String key = String.valueOf(data.getLabId());
 
-            SendResult<String, String> result = kafkaTemplate
-                    .send(KafkaConfig.TOPIC_LAB_ENV_DATA, key, jsonMessage)
+            SendResult<String, Object> result = getKafkaTemplate()
+                    .send(KafkaConfig.TOPIC_LAB_ENV_DATA, key, message)
                     .get(); // 同步等待结果
 
             log.info("✅ 实验室环境数据同步发送成功 - LabId: {}, Partition: {}, Offset: {}",
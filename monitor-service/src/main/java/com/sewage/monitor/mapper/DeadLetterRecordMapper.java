@@ -0,0 +1,76 @@
+package com.sewage.monitor.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.sewage.monitor.entity.DeadLetterRecord;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 死信记录 Mapper
+ */
+@Mapper
+public interface DeadLetterRecordMapper extends BaseMapper<DeadLetterRecord> {
+
+    /**
+     * 保存死信记录（同一死信位置重复投递时忽略）
+     */
+    @Insert("INSERT IGNORE INTO dead_letter_record " +
+            "(dlq_topic, dlq_partition, dlq_offset, source_topic, source_partition, source_offset, " +
+            "message_key, payload, payload_encoding, error_message, attempt_count, status, created_time) VALUES " +
+            "(#{dlqTopic}, #{dlqPartition}, #{dlqOffset}, #{sourceTopic}, #{sourcePartition}, #{sourceOffset}, " +
+            "#{messageKey}, #{payload}, #{payloadEncoding}, #{errorMessage}, #{attemptCount}, #{status}, #{createdTime})")
+    int insertIgnore(DeadLetterRecord record);
+
+    /**
+     * 按 id 递增读取一批待重放的记录（afterId 之后，按条件筛选）
+     */
+    @Select("<script>" +
+            "SELECT * FROM dead_letter_record WHERE status = #{status} AND id &gt; #{afterId} " +
+            "<if test='sourceTopic != null'>AND source_topic = #{sourceTopic} </if>" +
+            "<if test='startTime != null'>AND created_time &gt;= #{startTime} </if>" +
+            "<if test='endTime != null'>AND created_time &lt; #{endTime} </if>" +
+            "<if test='maxAttempts != null'>AND attempt_count &lt;= #{maxAttempts} </if>" +
+            "ORDER BY id LIMIT #{limit}" +
+            "</script>")
+    List<DeadLetterRecord> selectBatchAfter(@Param("status") String status,
+                                            @Param("afterId") long afterId,
+                                            @Param("sourceTopic") String sourceTopic,
+                                            @Param("startTime") LocalDateTime startTime,
+                                            @Param("endTime") LocalDateTime endTime,
+                                            @Param("maxAttempts") Integer maxAttempts,
+                                            @Param("limit") int limit);
+
+    /**
+     * 批量修改状态（只修改仍处于 fromStatus 的记录，避免覆盖并发的人工操作）
+     */
+    @Update("<script>" +
+            "UPDATE dead_letter_record SET status = #{toStatus}, last_attempt_time = #{now} " +
+            "WHERE status = #{fromStatus} AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int updateStatus(@Param("ids") List<Long> ids,
+                     @Param("fromStatus") String fromStatus,
+                     @Param("toStatus") String toStatus,
+                     @Param("now") LocalDateTime now);
+
+    /**
+     * 记录一次重放失败：尝试次数 + 1，保存失败原因
+     */
+    @Update("UPDATE dead_letter_record SET attempt_count = attempt_count + 1, error_message = #{error}, " +
+            "last_attempt_time = #{now} WHERE id = #{id}")
+    int recordFailure(@Param("id") Long id, @Param("error") String error, @Param("now") LocalDateTime now);
+
+    /**
+     * 按 原始Topic + 状态 统计数量
+     */
+    @Select("SELECT source_topic AS sourceTopic, status, COUNT(*) AS count, MIN(created_time) AS oldest " +
+            "FROM dead_letter_record GROUP BY source_topic, status")
+    List<Map<String, Object>> countByTopicAndStatus();
+}
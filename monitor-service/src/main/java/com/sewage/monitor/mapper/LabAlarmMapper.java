@@ -2,11 +2,16 @@ package com.sewage.monitor.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.sewage.monitor.entity.LabAlarm;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 实验室告警 Mapper
@@ -32,6 +37,27 @@ public interface LabAlarmMapper extends BaseMapper<LabAlarm> {
     @Select("SELECT * FROM lab_alarm WHERE lab_id = #{stationId} ORDER BY alarm_time DESC LIMIT #{limit}")
     List<LabAlarm> selectByStationId(Long stationId, Integer limit);
 
+    /**
+     * 游标分页：按 (alarm_time, id) 倒序取 afterTime/afterId 之后的 limit 行，afterTime 为空时为第一页
+     */
+    @Select("<script>" +
+            "SELECT * FROM lab_alarm" +
+            "<where>" +
+            "<if test='afterTime != null'>alarm_time &lt; #{afterTime} " +
+            "OR (alarm_time = #{afterTime} AND id &lt; #{afterId})</if>" +
+            "</where>" +
+            " ORDER BY alarm_time DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    List<LabAlarm> selectKeyset(@Param("afterTime") LocalDateTime afterTime,
+                                @Param("afterId") Long afterId,
+                                @Param("limit") int limit);
+
+    /**
+     * 估算告警总数（EXPLAIN 的 rows 列，不扫描数据）
+     */
+    @Select("EXPLAIN SELECT id FROM lab_alarm")
+    List<Map<String, Object>> explainCount();
+
     /**
      * 统计某天的告警次数
      */
@@ -53,4 +79,42 @@ public interface LabAlarmMapper extends BaseMapper<LabAlarm> {
             "AND alarm_time <= #{endTime} " +
             "ORDER BY alarm_time DESC")
     List<LabAlarm> selectAlarmHistory(Long labId, LocalDateTime startTime, LocalDateTime endTime);
+
+    /**
+     * 更新同一实验室同一类型的未关闭告警（未解决、未忽略的最新一条），累加超限次数
+     *
+     * @return 更新的行数，0 表示没有未关闭的告警
+     */
+    @Update("UPDATE lab_alarm SET alarm_level = #{alarmLevel}, alarm_message = #{alarmMessage}, " +
+            "alarm_value = #{alarmValue}, threshold_value = #{thresholdValue}, " +
+            "occurrence_count = occurrence_count + #{occurrenceCount}, last_alarm_time = #{lastAlarmTime} " +
+            "WHERE lab_id = #{labId} AND alarm_type = #{alarmType} AND resolved_at IS NULL AND ignored_at IS NULL " +
+            "ORDER BY id DESC LIMIT 1")
+    int updateOpenAlarm(LabAlarm alarm);
+
+    /**
+     * 告警恢复：自动解决同一实验室同一类型的未关闭告警
+     *
+     * @return 更新的行数
+     */
+    @Update("UPDATE lab_alarm SET status = #{status}, resolved_at = #{resolvedAt}, resolved_by = #{resolvedBy}, " +
+            "remark = #{remark}, occurrence_count = occurrence_count + #{occurrenceCount}, last_alarm_time = #{lastAlarmTime} " +
+            "WHERE lab_id = #{labId} AND alarm_type = #{alarmType} AND resolved_at IS NULL AND ignored_at IS NULL " +
+            "ORDER BY id DESC LIMIT 1")
+    int resolveOpenAlarm(LabAlarm alarm);
+
+    /**
+     * 批量插入告警（单条多值INSERT，一次数据库往返）
+     */
+    @Insert("<script>" +
+            "INSERT INTO lab_alarm (lab_id, lab_name, alarm_type, alarm_level, alarm_message, alarm_value, " +
+            "threshold_value, alarm_time, status, resolved_at, resolved_by, remark, occurrence_count, last_alarm_time) VALUES " +
+            "<foreach collection='list' item='a' separator=','>" +
+            "(#{a.labId}, #{a.labName}, #{a.alarmType}, #{a.alarmLevel}, #{a.alarmMessage}, #{a.alarmValue}, " +
+            "#{a.thresholdValue}, #{a.alarmTime}, #{a.status}, #{a.resolvedAt}, #{a.resolvedBy}, #{a.remark}, " +
+            "#{a.occurrenceCount}, #{a.lastAlarmTime})" +
+            "</foreach>" +
+            "</script>")
+    @Options(useGeneratedKeys = true, keyProperty = "id", keyColumn = "id")
+    int insertBatch(@Param("list") List<LabAlarm> list);
 }
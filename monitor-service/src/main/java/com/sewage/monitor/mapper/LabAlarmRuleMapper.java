@@ -0,0 +1,28 @@
+package com.sewage.monitor.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.sewage.monitor.entity.LabAlarmRule;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 告警规则 Mapper
+ */
+@Mapper
+public interface LabAlarmRuleMapper extends BaseMapper<LabAlarmRule> {
+
+    /**
+     * 查询所有启用的规则（按实验室、指标、优先级排序）
+     */
+    @Select("SELECT * FROM lab_alarm_rule WHERE enabled = 1 ORDER BY lab_id, metric, priority, id")
+    List<LabAlarmRule> selectEnabledRules();
+
+    /**
+     * 规则表版本：规则数 + 最近更新时间，热加载时用于判断规则是否变化
+     */
+    @Select("SELECT COUNT(*) AS cnt, MAX(updated_time) AS lastUpdated FROM lab_alarm_rule")
+    Map<String, Object> selectVersion();
+}
@@ -0,0 +1,37 @@
+package com.sewage.monitor.mapper;
+
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+/**
+ * 实验室名称字典 Mapper（lab_codec_dictionary）
+ */
+@Mapper
+public interface LabCodecDictionaryMapper {
+
+    /**
+     * 查询名称的编号，不存在时返回 null
+     */
+    @Select("SELECT code FROM lab_codec_dictionary WHERE lab_name = #{labName}")
+    Integer selectCode(@Param("labName") String labName);
+
+    /**
+     * 查询编号对应的名称，不存在时返回 null
+     */
+    @Select("SELECT lab_name FROM lab_codec_dictionary WHERE code = #{code}")
+    String selectName(@Param("code") int code);
+
+    /**
+     * 分配新编号（自增主键）；并发分配同一名称时唯一键冲突被忽略，调用方重新查询
+     */
+    @Insert("INSERT IGNORE INTO lab_codec_dictionary (lab_name) VALUES (#{labName})")
+    int insertIgnore(@Param("labName") String labName);
+
+    /**
+     * 按指定编号写入（导入旧字典），编号或名称已存在时忽略
+     */
+    @Insert("INSERT IGNORE INTO lab_codec_dictionary (code, lab_name) VALUES (#{code}, #{labName})")
+    int insertIgnoreWithCode(@Param("code") int code, @Param("labName") String labName);
+}
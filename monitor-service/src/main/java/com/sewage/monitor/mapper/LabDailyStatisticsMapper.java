@@ -2,39 +2,151 @@ package com.sewage.monitor.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.sewage.monitor.entity.LabDailyStatistics;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Result;
+import org.apache.ibatis.annotations.ResultMap;
+import org.apache.ibatis.annotations.Results;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 日统计 Mapper
+ *
+ * 自定义查询不经过 @TableField 映射，实体中字段名与列名不一致的列（lab_id → stationId、lab_name → stationName、
+ * environment_normal_rate → normalRate）统一使用 RESULT_MAP，其余列按下划线转驼峰自动映射
  */
 @Mapper
 public interface LabDailyStatisticsMapper extends BaseMapper<LabDailyStatistics> {
 
+    String RESULT_MAP = "labDailyStatisticsMap";
+
     /**
      * 查询某个实验室的统计数据
      */
     @Select("SELECT * FROM lab_daily_statistics WHERE lab_id = #{labId} ORDER BY stat_date DESC LIMIT #{days}")
+    @Results(id = RESULT_MAP, value = {
+            @Result(column = "id", property = "id", id = true),
+            @Result(column = "lab_id", property = "stationId"),
+            @Result(column = "lab_name", property = "stationName"),
+            @Result(column = "environment_normal_rate", property = "normalRate")
+    })
     List<LabDailyStatistics> selectByLabId(Long labId, Integer days);
 
     /**
      * 查询某一天的统计数据
      */
     @Select("SELECT * FROM lab_daily_statistics WHERE stat_date = #{date}")
+    @ResultMap(RESULT_MAP)
     List<LabDailyStatistics> selectByDate(LocalDate date);
 
     /**
      * 查询某个实验室某一天的统计
      */
     @Select("SELECT * FROM lab_daily_statistics WHERE lab_id = #{labId} AND stat_date = #{date}")
+    @ResultMap(RESULT_MAP)
     LabDailyStatistics selectByLabAndDate(Long labId, LocalDate date);
 
     /**
      * 查询日期范围内的统计数据
      */
     @Select("SELECT * FROM lab_daily_statistics WHERE stat_date >= #{startDate} AND stat_date <= #{endDate} ORDER BY stat_date DESC, lab_id ASC")
+    @ResultMap(RESULT_MAP)
     List<LabDailyStatistics> selectByDateRange(LocalDate startDate, LocalDate endDate);
-}
\ No newline at end of file
+
+    /**
+     * 流式导出日期范围内的统计数据（排序与 selectByDateRange 一致，不读取分位数草图列）
+     *
+     * 每读到一行回调一次 handler，MySQL 驱动逐行返回，内存占用与日期范围无关
+     */
+    @Select("SELECT id, lab_id, lab_name, stat_date, " +
+            "avg_temperature, max_temperature, min_temperature, avg_humidity, max_humidity, min_humidity, " +
+            "avg_pm25, max_pm25, avg_co2, max_co2, reservation_count, attendance_count, max_people_count, usage_rate, " +
+            "avg_online_devices, device_offline_minutes, device_online_rate, data_count, alarm_count, " +
+            "critical_alarm_count, environment_normal_rate, device_fault_count, created_time, updated_time " +
+            "FROM lab_daily_statistics WHERE stat_date >= #{startDate} AND stat_date <= #{endDate} " +
+            "ORDER BY stat_date DESC, lab_id ASC")
+    @Options(fetchSize = Integer.MIN_VALUE, resultSetType = ResultSetType.FORWARD_ONLY)
+    @ResultMap(RESULT_MAP)
+    void exportByDateRange(@Param("startDate") LocalDate startDate,
+                           @Param("endDate") LocalDate endDate,
+                           ResultHandler<LabDailyStatistics> handler);
+
+    /**
+     * 游标分页：按 (stat_date, id) 倒序取 afterDate/afterId 之后的 limit 行，afterDate 为空时为第一页
+     */
+    @Select("<script>" +
+            "SELECT * FROM lab_daily_statistics" +
+            "<where>" +
+            "<if test='afterDate != null'>stat_date &lt; #{afterDate} " +
+            "OR (stat_date = #{afterDate} AND id &lt; #{afterId})</if>" +
+            "</where>" +
+            " ORDER BY stat_date DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    @ResultMap(RESULT_MAP)
+    List<LabDailyStatistics> selectKeyset(@Param("afterDate") LocalDate afterDate,
+                                          @Param("afterId") Long afterId,
+                                          @Param("limit") int limit);
+
+    /**
+     * 估算日统计总数（EXPLAIN 的 rows 列，不扫描数据）
+     */
+    @Select("EXPLAIN SELECT id FROM lab_daily_statistics")
+    List<Map<String, Object>> explainCount();
+
+    /**
+     * 查询日期范围内的分位数草图（只取草图列，不读取其他统计字段）
+     *
+     * @param labId 实验室ID，为空时查询所有实验室
+     */
+    @Select("<script>" +
+            "SELECT lab_id, stat_date, temperature_sketch, humidity_sketch, pm25_sketch, co2_sketch " +
+            "FROM lab_daily_statistics WHERE stat_date &gt;= #{startDate} AND stat_date &lt;= #{endDate}" +
+            "<if test='labId != null'> AND lab_id = #{labId}</if>" +
+            "</script>")
+    @ResultMap(RESULT_MAP)
+    List<LabDailyStatistics> selectSketches(@Param("labId") Long labId,
+                                            @Param("startDate") LocalDate startDate,
+                                            @Param("endDate") LocalDate endDate);
+
+    /**
+     * 批量写入日统计（按 lab_id + stat_date 唯一索引插入或覆盖）
+     *
+     * 覆盖 DailyStatisticsEngine 聚合的字段（环境数据 + 预约、签到、使用率），设备离线时长等其他来源的字段保持不变
+     */
+    @Insert("<script>" +
+            "INSERT INTO lab_daily_statistics (lab_id, lab_name, stat_date, " +
+            "avg_temperature, max_temperature, min_temperature, avg_humidity, max_humidity, min_humidity, " +
+            "avg_pm25, max_pm25, avg_co2, max_co2, max_people_count, avg_online_devices, " +
+            "reservation_count, attendance_count, usage_rate, " +
+            "data_count, alarm_count, environment_normal_rate, " +
+            "temperature_sketch, humidity_sketch, pm25_sketch, co2_sketch, created_time, updated_time) VALUES " +
+            "<foreach collection='list' item='s' separator=','>" +
+            "(#{s.stationId}, #{s.stationName}, #{s.statDate}, " +
+            "#{s.avgTemperature}, #{s.maxTemperature}, #{s.minTemperature}, #{s.avgHumidity}, #{s.maxHumidity}, #{s.minHumidity}, " +
+            "#{s.avgPm25}, #{s.maxPm25}, #{s.avgCo2}, #{s.maxCo2}, #{s.maxPeopleCount}, #{s.avgOnlineDevices}, " +
+            "#{s.reservationCount}, #{s.attendanceCount}, #{s.usageRate}, " +
+            "#{s.dataCount}, #{s.alarmCount}, #{s.normalRate}, " +
+            "#{s.temperatureSketch}, #{s.humiditySketch}, #{s.pm25Sketch}, #{s.co2Sketch}, #{s.createdTime}, #{s.updatedTime})" +
+            "</foreach>" +
+            " ON DUPLICATE KEY UPDATE lab_name = VALUES(lab_name), " +
+            "avg_temperature = VALUES(avg_temperature), max_temperature = VALUES(max_temperature), min_temperature = VALUES(min_temperature), " +
+            "avg_humidity = VALUES(avg_humidity), max_humidity = VALUES(max_humidity), min_humidity = VALUES(min_humidity), " +
+            "avg_pm25 = VALUES(avg_pm25), max_pm25 = VALUES(max_pm25), avg_co2 = VALUES(avg_co2), max_co2 = VALUES(max_co2), " +
+            "max_people_count = VALUES(max_people_count), avg_online_devices = VALUES(avg_online_devices), " +
+            "reservation_count = VALUES(reservation_count), attendance_count = VALUES(attendance_count), " +
+            "usage_rate = VALUES(usage_rate), " +
+            "data_count = VALUES(data_count), alarm_count = VALUES(alarm_count), " +
+            "environment_normal_rate = VALUES(environment_normal_rate), " +
+            "temperature_sketch = VALUES(temperature_sketch), humidity_sketch = VALUES(humidity_sketch), " +
+            "pm25_sketch = VALUES(pm25_sketch), co2_sketch = VALUES(co2_sketch), updated_time = VALUES(updated_time)" +
+            "</script>")
+    int upsertBatch(@Param("list") List<LabDailyStatistics> list);
+}
@@ -2,11 +2,18 @@ package com.sewage.monitor.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.sewage.monitor.entity.LabEnvironmentData;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.ResultType;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface LabEnvironmentDataMapper extends BaseMapper<LabEnvironmentData> {
@@ -16,6 +23,11 @@ public interface LabEnvironmentDataMapper extends BaseMapper<LabEnvironmentData>
             "ORDER BY monitor_time DESC LIMIT 1")
     LabEnvironmentData getLatestData(@Param("labId") Long labId);
 
+    // 查询指定时间之后的最新数据（表按 monitor_time 分区时只扫描 since 之后的分区）
+    @Select("SELECT * FROM lab_environment_data WHERE lab_id = #{labId} AND monitor_time >= #{since} " +
+            "ORDER BY monitor_time DESC LIMIT 1")
+    LabEnvironmentData getLatestDataSince(@Param("labId") Long labId, @Param("since") LocalDateTime since);
+
     // 查询时间范围内的数据
     @Select("SELECT * FROM lab_environment_data WHERE lab_id = #{labId} " +
             "AND monitor_time BETWEEN #{startTime} AND #{endTime} " +
@@ -23,4 +35,62 @@ public interface LabEnvironmentDataMapper extends BaseMapper<LabEnvironmentData>
     List<LabEnvironmentData> getDataByTimeRange(@Param("labId") Long labId,
                                           @Param("startTime") LocalDateTime startTime,
                                           @Param("endTime") LocalDateTime endTime);
-}
\ No newline at end of file
+
+    // 按时间升序流式读取时间范围内的数据（只取曲线需要的列）
+    // fetchSize = Integer.MIN_VALUE 让 MySQL 驱动逐行返回，不把整个结果集读入内存；需要在事务内遍历
+    @Select("SELECT monitor_time, temperature, humidity, pm25, illuminance, co2 FROM lab_environment_data " +
+            "WHERE lab_id = #{labId} AND monitor_time BETWEEN #{startTime} AND #{endTime} " +
+            "ORDER BY monitor_time")
+    @Options(fetchSize = Integer.MIN_VALUE, resultSetType = ResultSetType.FORWARD_ONLY)
+    Cursor<LabEnvironmentData> streamByTimeRange(@Param("labId") Long labId,
+                                                 @Param("startTime") LocalDateTime startTime,
+                                                 @Param("endTime") LocalDateTime endTime);
+
+    // 按时间升序流式导出时间范围内的全部列，每读到一行回调一次 handler，不累积结果列表
+    // 与游标不同，回调方式不需要在事务内执行，语句结束时连接即归还
+    @Select("SELECT * FROM lab_environment_data WHERE lab_id = #{labId} " +
+            "AND monitor_time BETWEEN #{startTime} AND #{endTime} " +
+            "ORDER BY monitor_time")
+    @Options(fetchSize = Integer.MIN_VALUE, resultSetType = ResultSetType.FORWARD_ONLY)
+    @ResultType(LabEnvironmentData.class)
+    void exportByTimeRange(@Param("labId") Long labId,
+                           @Param("startTime") LocalDateTime startTime,
+                           @Param("endTime") LocalDateTime endTime,
+                           ResultHandler<LabEnvironmentData> handler);
+
+    // 游标分页：按 (monitor_time, id) 倒序取 afterTime/afterId 之后的 limit 行，afterTime 为空时为第一页
+    @Select("<script>" +
+            "SELECT * FROM lab_environment_data" +
+            "<where>" +
+            "<if test='labId != null'>lab_id = #{labId}</if>" +
+            "<if test='afterTime != null'> AND (monitor_time &lt; #{afterTime} " +
+            "OR (monitor_time = #{afterTime} AND id &lt; #{afterId}))</if>" +
+            "</where>" +
+            " ORDER BY monitor_time DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    List<LabEnvironmentData> selectKeyset(@Param("labId") Long labId,
+                                          @Param("afterTime") LocalDateTime afterTime,
+                                          @Param("afterId") Long afterId,
+                                          @Param("limit") int limit);
+
+    // 估算行数（EXPLAIN 的 rows 列，来自索引统计，不扫描数据）
+    @Select("<script>" +
+            "EXPLAIN SELECT id FROM lab_environment_data" +
+            "<where><if test='labId != null'>lab_id = #{labId}</if></where>" +
+            "</script>")
+    List<Map<String, Object>> explainCount(@Param("labId") Long labId);
+
+    // 批量插入环境数据（单条多值INSERT，一次数据库往返）
+    @Insert("<script>" +
+            "INSERT INTO lab_environment_data (lab_id, lab_name, temperature, humidity, pm25, illuminance, co2, " +
+            "online_device_count, total_device_count, monitor_time, data_source, alarm_status, alarm_message, " +
+            "quality_level, current_people_count, created_time, remark) VALUES " +
+            "<foreach collection='list' item='d' separator=','>" +
+            "(#{d.labId}, #{d.labName}, #{d.temperature}, #{d.humidity}, #{d.pm25}, #{d.illuminance}, #{d.co2}, " +
+            "#{d.onlineDeviceCount}, #{d.totalDeviceCount}, #{d.monitorTime}, #{d.dataSource}, #{d.alarmStatus}, " +
+            "#{d.alarmMessage}, #{d.qualityLevel}, #{d.currentPeopleCount}, #{d.createdTime}, #{d.remark})" +
+            "</foreach>" +
+            "</script>")
+    @Options(useGeneratedKeys = true, keyProperty = "id", keyColumn = "id")
+    int insertBatch(@Param("list") List<LabEnvironmentData> list);
+}
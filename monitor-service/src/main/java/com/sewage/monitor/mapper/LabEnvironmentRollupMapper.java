@@ -0,0 +1,130 @@
+package com.sewage.monitor.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.sewage.monitor.entity.LabEnvironmentRollup;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 环境数据分钟/小时汇总 Mapper
+ */
+@Mapper
+public interface LabEnvironmentRollupMapper extends BaseMapper<LabEnvironmentRollup> {
+
+    /**
+     * 批量合并增量（按 lab_id + resolution + bucket_time 主键插入或累加）
+     *
+     * 条数、总和累加，最小/最大取两者之一，最后一个读数取桶内时间更晚的一方；last_time 最后更新，
+     * 前面的 IF(VALUES(last_time) >= last_time ...) 比较的是更新前的值
+     */
+    @Insert("<script>" +
+            "INSERT INTO lab_environment_rollup (" +
+            "lab_id, resolution, bucket_time, sample_count, last_time, " +
+            "temperature_count, temperature_sum, temperature_min, temperature_max, temperature_last, " +
+            "humidity_count, humidity_sum, humidity_min, humidity_max, humidity_last, " +
+            "pm25_count, pm25_sum, pm25_min, pm25_max, pm25_last, " +
+            "illuminance_count, illuminance_sum, illuminance_min, illuminance_max, illuminance_last, " +
+            "co2_count, co2_sum, co2_min, co2_max, co2_last" +
+            ") VALUES " +
+            "<foreach collection='list' item='r' separator=','>(" +
+            "#{r.labId}, #{r.resolution}, #{r.bucketTime}, #{r.sampleCount}, #{r.lastTime}, " +
+            "#{r.temperatureCount}, #{r.temperatureSum}, #{r.temperatureMin}, #{r.temperatureMax}, #{r.temperatureLast}, " +
+            "#{r.humidityCount}, #{r.humiditySum}, #{r.humidityMin}, #{r.humidityMax}, #{r.humidityLast}, " +
+            "#{r.pm25Count}, #{r.pm25Sum}, #{r.pm25Min}, #{r.pm25Max}, #{r.pm25Last}, " +
+            "#{r.illuminanceCount}, #{r.illuminanceSum}, #{r.illuminanceMin}, #{r.illuminanceMax}, #{r.illuminanceLast}, " +
+            "#{r.co2Count}, #{r.co2Sum}, #{r.co2Min}, #{r.co2Max}, #{r.co2Last}" +
+            ")</foreach>" +
+            " ON DUPLICATE KEY UPDATE sample_count = sample_count + VALUES(sample_count), " +
+            "temperature_count = temperature_count + VALUES(temperature_count), temperature_sum = COALESCE(temperature_sum, 0) + COALESCE(VALUES(temperature_sum), 0), " +
+            "temperature_min = LEAST(COALESCE(temperature_min, VALUES(temperature_min)), COALESCE(VALUES(temperature_min), temperature_min)), " +
+            "temperature_max = GREATEST(COALESCE(temperature_max, VALUES(temperature_max)), COALESCE(VALUES(temperature_max), temperature_max)), " +
+            "temperature_last = IF(VALUES(last_time) >= last_time, COALESCE(VALUES(temperature_last), temperature_last), temperature_last), " +
+            "humidity_count = humidity_count + VALUES(humidity_count), humidity_sum = COALESCE(humidity_sum, 0) + COALESCE(VALUES(humidity_sum), 0), " +
+            "humidity_min = LEAST(COALESCE(humidity_min, VALUES(humidity_min)), COALESCE(VALUES(humidity_min), humidity_min)), " +
+            "humidity_max = GREATEST(COALESCE(humidity_max, VALUES(humidity_max)), COALESCE(VALUES(humidity_max), humidity_max)), " +
+            "humidity_last = IF(VALUES(last_time) >= last_time, COALESCE(VALUES(humidity_last), humidity_last), humidity_last), " +
+            "pm25_count = pm25_count + VALUES(pm25_count), pm25_sum = COALESCE(pm25_sum, 0) + COALESCE(VALUES(pm25_sum), 0), " +
+            "pm25_min = LEAST(COALESCE(pm25_min, VALUES(pm25_min)), COALESCE(VALUES(pm25_min), pm25_min)), " +
+            "pm25_max = GREATEST(COALESCE(pm25_max, VALUES(pm25_max)), COALESCE(VALUES(pm25_max), pm25_max)), " +
+            "pm25_last = IF(VALUES(last_time) >= last_time, COALESCE(VALUES(pm25_last), pm25_last), pm25_last), " +
+            "illuminance_count = illuminance_count + VALUES(illuminance_count), illuminance_sum = COALESCE(illuminance_sum, 0) + COALESCE(VALUES(illuminance_sum), 0), " +
+            "illuminance_min = LEAST(COALESCE(illuminance_min, VALUES(illuminance_min)), COALESCE(VALUES(illuminance_min), illuminance_min)), " +
+            "illuminance_max = GREATEST(COALESCE(illuminance_max, VALUES(illuminance_max)), COALESCE(VALUES(illuminance_max), illuminance_max)), " +
+            "illuminance_last = IF(VALUES(last_time) >= last_time, COALESCE(VALUES(illuminance_last), illuminance_last), illuminance_last), " +
+            "co2_count = co2_count + VALUES(co2_count), co2_sum = COALESCE(co2_sum, 0) + COALESCE(VALUES(co2_sum), 0), " +
+            "co2_min = LEAST(COALESCE(co2_min, VALUES(co2_min)), COALESCE(VALUES(co2_min), co2_min)), " +
+            "co2_max = GREATEST(COALESCE(co2_max, VALUES(co2_max)), COALESCE(VALUES(co2_max), co2_max)), " +
+            "co2_last = IF(VALUES(last_time) >= last_time, COALESCE(VALUES(co2_last), co2_last), co2_last), " +
+            "last_time = GREATEST(last_time, VALUES(last_time))" +
+            "</script>")
+    int upsertDeltaBatch(@Param("list") List<LabEnvironmentRollup> list);
+
+    /**
+     * 查询某个实验室某个分辨率在时间范围内的汇总（按桶时间升序）
+     */
+    @Select("SELECT * FROM lab_environment_rollup WHERE lab_id = #{labId} AND resolution = #{resolution} " +
+            "AND bucket_time >= #{startTime} AND bucket_time <= #{endTime} ORDER BY bucket_time")
+    List<LabEnvironmentRollup> selectSeries(@Param("labId") Long labId,
+                                            @Param("resolution") int resolution,
+                                            @Param("startTime") LocalDateTime startTime,
+                                            @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 删除某个分辨率早于指定时间的汇总（每次最多删除 limit 行，避免大事务）
+     */
+    @Delete("DELETE FROM lab_environment_rollup WHERE resolution = #{resolution} AND bucket_time < #{before} LIMIT #{limit}")
+    int deleteBefore(@Param("resolution") int resolution,
+                     @Param("before") LocalDateTime before,
+                     @Param("limit") int limit);
+
+    /**
+     * 从原始数据重建时间范围内的汇总（覆盖已有值），用于补建上线前的历史数据
+     *
+     * 最后一个读数取 GROUP_CONCAT 按时间倒序的第一个值（GROUP_CONCAT 跳过空值）
+     */
+    @Insert("<script>" +
+            "INSERT INTO lab_environment_rollup (" +
+            "lab_id, resolution, bucket_time, sample_count, last_time, " +
+            "temperature_count, temperature_sum, temperature_min, temperature_max, temperature_last, " +
+            "humidity_count, humidity_sum, humidity_min, humidity_max, humidity_last, " +
+            "pm25_count, pm25_sum, pm25_min, pm25_max, pm25_last, " +
+            "illuminance_count, illuminance_sum, illuminance_min, illuminance_max, illuminance_last, " +
+            "co2_count, co2_sum, co2_min, co2_max, co2_last" +
+            ") SELECT lab_id, #{resolution}, " +
+            "FROM_UNIXTIME(FLOOR(UNIX_TIMESTAMP(monitor_time) / #{resolution}) * #{resolution}) AS bucket, " +
+            "COUNT(*), MAX(monitor_time), " +
+            "COUNT(temperature), SUM(temperature), MIN(temperature), MAX(temperature), " +
+            "SUBSTRING_INDEX(GROUP_CONCAT(temperature ORDER BY monitor_time DESC), ',', 1) + 0, " +
+            "COUNT(humidity), SUM(humidity), MIN(humidity), MAX(humidity), " +
+            "SUBSTRING_INDEX(GROUP_CONCAT(humidity ORDER BY monitor_time DESC), ',', 1) + 0, " +
+            "COUNT(pm25), SUM(pm25), MIN(pm25), MAX(pm25), " +
+            "SUBSTRING_INDEX(GROUP_CONCAT(pm25 ORDER BY monitor_time DESC), ',', 1) + 0, " +
+            "COUNT(illuminance), SUM(illuminance), MIN(illuminance), MAX(illuminance), " +
+            "SUBSTRING_INDEX(GROUP_CONCAT(illuminance ORDER BY monitor_time DESC), ',', 1) + 0, " +
+            "COUNT(co2), SUM(co2), MIN(co2), MAX(co2), " +
+            "SUBSTRING_INDEX(GROUP_CONCAT(co2 ORDER BY monitor_time DESC), ',', 1) + 0 " +
+            "FROM lab_environment_data WHERE monitor_time &gt;= #{startTime} AND monitor_time &lt; #{endTime}" +
+            "<if test='labId != null'> AND lab_id = #{labId}</if>" +
+            " GROUP BY lab_id, bucket" +
+            " ON DUPLICATE KEY UPDATE " +
+            "sample_count = VALUES(sample_count), last_time = VALUES(last_time), temperature_count = VALUES(temperature_count), " +
+            "temperature_sum = VALUES(temperature_sum), temperature_min = VALUES(temperature_min), temperature_max = VALUES(temperature_max), " +
+            "temperature_last = VALUES(temperature_last), humidity_count = VALUES(humidity_count), humidity_sum = VALUES(humidity_sum), " +
+            "humidity_min = VALUES(humidity_min), humidity_max = VALUES(humidity_max), humidity_last = VALUES(humidity_last), " +
+            "pm25_count = VALUES(pm25_count), pm25_sum = VALUES(pm25_sum), pm25_min = VALUES(pm25_min), " +
+            "pm25_max = VALUES(pm25_max), pm25_last = VALUES(pm25_last), illuminance_count = VALUES(illuminance_count), " +
+            "illuminance_sum = VALUES(illuminance_sum), illuminance_min = VALUES(illuminance_min), illuminance_max = VALUES(illuminance_max), " +
+            "illuminance_last = VALUES(illuminance_last), co2_count = VALUES(co2_count), co2_sum = VALUES(co2_sum), " +
+            "co2_min = VALUES(co2_min), co2_max = VALUES(co2_max), co2_last = VALUES(co2_last)" +
+            "</script>")
+    int rebuildFromRaw(@Param("resolution") int resolution,
+                       @Param("labId") Long labId,
+                       @Param("startTime") LocalDateTime startTime,
+                       @Param("endTime") LocalDateTime endTime);
+}
@@ -0,0 +1,70 @@
+package com.sewage.monitor.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 表分区维护（MySQL RANGE COLUMNS 分区）
+ *
+ * DDL 语句由 PartitionRotationService 根据分区边界生成，表名和分区名不来自外部输入；
+ * 带 table 参数的查询供 /partition-test 在分区表和普通表上对比同一查询
+ */
+@Mapper
+public interface TablePartitionMapper {
+
+    /**
+     * 查询表的分区（按分区顺序）：name 分区名，bound 上界（PARTITION_DESCRIPTION），rowEstimate 估算行数，bytes 数据和索引大小
+     * 未分区的表返回一行 name 为空的记录
+     */
+    @Select("SELECT PARTITION_NAME AS name, PARTITION_DESCRIPTION AS bound, TABLE_ROWS AS rowEstimate, " +
+            "DATA_LENGTH + INDEX_LENGTH AS bytes " +
+            "FROM information_schema.PARTITIONS " +
+            "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = #{table} " +
+            "ORDER BY PARTITION_ORDINAL_POSITION")
+    List<Map<String, Object>> selectPartitions(@Param("table") String table);
+
+    /**
+     * 执行分区 DDL（REORGANIZE / ADD / DROP / EXCHANGE PARTITION 等）
+     */
+    @Update("${ddl}")
+    void executeDdl(@Param("ddl") String ddl);
+
+    /**
+     * 查看查询实际访问的分区（EXPLAIN 结果的 partitions 列）
+     */
+    @Select("EXPLAIN ${query}")
+    List<Map<String, Object>> explain(@Param("query") String query);
+
+    /**
+     * 时间范围查询（与 LabEnvironmentDataMapper.getDataByTimeRange 相同，表名可指定）
+     */
+    @Select("SELECT * FROM ${table} WHERE lab_id = #{labId} " +
+            "AND monitor_time BETWEEN #{startTime} AND #{endTime} " +
+            "ORDER BY monitor_time DESC")
+    List<Map<String, Object>> selectRange(@Param("table") String table,
+                                          @Param("labId") Long labId,
+                                          @Param("startTime") LocalDateTime startTime,
+                                          @Param("endTime") LocalDateTime endTime);
+
+    /**
+     * 最新一条数据，since 为空时不限时间下界（与 getLatestData / getLatestDataSince 相同，表名可指定）
+     */
+    @Select("<script>SELECT * FROM ${table} WHERE lab_id = #{labId} " +
+            "<if test='since != null'>AND monitor_time &gt;= #{since} </if>" +
+            "ORDER BY monitor_time DESC LIMIT 1</script>")
+    Map<String, Object> selectLatest(@Param("table") String table,
+                                     @Param("labId") Long labId,
+                                     @Param("since") LocalDateTime since);
+
+    /**
+     * 表中最大的自增ID
+     */
+    @Select("SELECT COALESCE(MAX(id), 0) FROM ${table}")
+    long selectMaxId(@Param("table") String table);
+}
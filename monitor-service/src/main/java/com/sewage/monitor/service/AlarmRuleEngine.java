@@ -0,0 +1,211 @@
+package com.sewage.monitor.service;
+
+import com.sewage.monitor.entity.LabAlarmRule;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.mapper.LabAlarmRuleMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 告警规则引擎
+ *
+ * 功能说明：
+ * 1. 从 lab_alarm_rule 表加载规则，按实验室编译为 AlarmRuleSet（扁平基本类型数组）
+ * 2. 实验室配置了某个指标的规则时覆盖该指标的全局默认规则，其他指标继续使用默认规则
+ * 3. 热加载：定时检查规则表版本（规则数 + 最近更新时间），变化时重新编译并整体替换，不需要重启；
+ *    修改规则的接口也会立即触发加载
+ * 4. 规则表为空或加载失败时使用内置默认规则（与原固定阈值一致）/ 保留上一次加载成功的规则
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AlarmRuleEngine {
+
+    private final LabAlarmRuleMapper labAlarmRuleMapper;
+
+    /**
+     * 当前生效的规则（整体替换，检查数据时无锁读取）
+     */
+    private volatile CompiledRules compiledRules = CompiledRules.of(builtinRules(), "builtin");
+
+    private final AtomicLong evaluatedCount = new AtomicLong();
+    private final AtomicLong matchedCount = new AtomicLong();
+    private final AtomicLong reloadCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        reload();
+    }
+
+    /**
+     * 检查一条数据，命中的规则通过 handler 回调
+     *
+     * @return 命中的规则数
+     */
+    public int evaluate(LabEnvironmentData data, AlarmRuleSet.MatchHandler handler) {
+        int matched = compiledRules.forLab(data.getLabId()).evaluate(data, handler);
+        evaluatedCount.incrementAndGet();
+        if (matched > 0) {
+            matchedCount.addAndGet(matched);
+        }
+        return matched;
+    }
+
+    /**
+     * 定时检查规则表是否变化
+     */
+    @Scheduled(fixedDelayString = "${monitor.alarm.rule-reload-interval-ms:30000}")
+    public void reloadIfChanged() {
+        try {
+            String version = String.valueOf(labAlarmRuleMapper.selectVersion());
+            if (!Objects.equals(version, compiledRules.version)) {
+                reload();
+            }
+        } catch (Exception e) {
+            log.debug("检查告警规则版本失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 重新加载并编译全部规则
+     *
+     * @return 是否加载成功（失败时继续使用当前规则）
+     */
+    public synchronized boolean reload() {
+        try {
+            String version = String.valueOf(labAlarmRuleMapper.selectVersion());
+            List<LabAlarmRule> rules = labAlarmRuleMapper.selectEnabledRules();
+            compiledRules = CompiledRules.of(rules, version);
+            reloadCount.incrementAndGet();
+            log.info("✅ 告警规则已加载 - 规则数: {}, 单独配置的实验室数: {}",
+                    rules.size(), compiledRules.labRules.size());
+            return true;
+        } catch (Exception e) {
+            log.warn("⚠️ 加载告警规则失败，继续使用当前规则: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 某实验室当前生效的规则（编译后的顺序）
+     */
+    public List<LabAlarmRule> getEffectiveRules(Long labId) {
+        return compiledRules.forLab(labId).getRules();
+    }
+
+    /**
+     * 获取引擎统计信息
+     */
+    public Map<String, Object> getStats() {
+        CompiledRules current = compiledRules;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("version", current.version);
+        stats.put("loadedAt", current.loadedAt);
+        stats.put("defaultRuleCount", current.defaultRules.size());
+        stats.put("customizedLabCount", current.labRules.size());
+        stats.put("reloadCount", reloadCount.get());
+        stats.put("evaluatedCount", evaluatedCount.get());
+        stats.put("matchedCount", matchedCount.get());
+        return stats;
+    }
+
+    /**
+     * 内置默认规则（与原 AlarmService 中的固定阈值一致，规则表为空时使用）
+     */
+    static List<LabAlarmRule> builtinRules() {
+        List<LabAlarmRule> rules = new ArrayList<>();
+        rules.add(rule("TEMPERATURE", "LT", 10.0, "TEMP_LOW", "DANGER", "温度严重异常: {value}°C", 10));
+        rules.add(rule("TEMPERATURE", "GT", 35.0, "TEMP_HIGH", "DANGER", "温度严重异常: {value}°C", 20));
+        rules.add(rule("TEMPERATURE", "LT", 18.0, "TEMP_LOW", "WARNING", "温度超出正常范围: {value}°C", 30));
+        rules.add(rule("TEMPERATURE", "GT", 28.0, "TEMP_HIGH", "WARNING", "温度超出正常范围: {value}°C", 40));
+        rules.add(rule("HUMIDITY", "LT", 20.0, "HUMIDITY_LOW", "DANGER", "湿度严重异常: {value}%", 10));
+        rules.add(rule("HUMIDITY", "GT", 90.0, "HUMIDITY_HIGH", "DANGER", "湿度严重异常: {value}%", 20));
+        rules.add(rule("HUMIDITY", "LT", 40.0, "HUMIDITY_LOW", "WARNING", "湿度超出正常范围: {value}%", 30));
+        rules.add(rule("HUMIDITY", "GT", 70.0, "HUMIDITY_HIGH", "WARNING", "湿度超出正常范围: {value}%", 40));
+        rules.add(rule("PM25", "GT", 150.0, "PM25_HIGH", "DANGER", "PM2.5严重超标: {value} μg/m³", 10));
+        rules.add(rule("PM25", "GT", 75.0, "PM25_HIGH", "WARNING", "PM2.5超标: {value} μg/m³", 20));
+        rules.add(rule("CO2", "GT", 2000.0, "CO2_HIGH", "DANGER", "CO2浓度严重过高: {value} ppm", 10));
+        rules.add(rule("CO2", "GT", 1000.0, "CO2_HIGH", "WARNING", "CO2浓度过高: {value} ppm", 20));
+        rules.add(rule("ILLUMINANCE", "LT", 300.0, "ILLUMINANCE_LOW", "WARNING", "照度过低: {value} lux", 10));
+        rules.add(rule("PEOPLE_COUNT", "GT", 30.0, "PEOPLE_EXCEED", "WARNING", "人数超载: {value}人", 10));
+        return rules;
+    }
+
+    private static LabAlarmRule rule(String metric, String operator, double threshold,
+                                     String alarmType, String alarmLevel, String template, int priority) {
+        return LabAlarmRule.builder()
+                .metric(metric)
+                .operator(operator)
+                .threshold(threshold)
+                .alarmType(alarmType)
+                .alarmLevel(alarmLevel)
+                .messageTemplate(template)
+                .priority(priority)
+                .enabled(true)
+                .build();
+    }
+
+    /**
+     * 一次加载的编译结果
+     */
+    private static final class CompiledRules {
+        private final String version;
+        private final LocalDateTime loadedAt = LocalDateTime.now();
+        private final AlarmRuleSet defaultRules;
+        private final Map<Long, AlarmRuleSet> labRules;
+
+        private CompiledRules(String version, AlarmRuleSet defaultRules, Map<Long, AlarmRuleSet> labRules) {
+            this.version = version;
+            this.defaultRules = defaultRules;
+            this.labRules = labRules;
+        }
+
+        static CompiledRules of(List<LabAlarmRule> rules, String version) {
+            List<LabAlarmRule> globalRules = new ArrayList<>();
+            Map<Long, List<LabAlarmRule>> rulesByLab = new HashMap<>();
+            for (LabAlarmRule rule : rules) {
+                if (rule.getLabId() == null) {
+                    globalRules.add(rule);
+                } else {
+                    rulesByLab.computeIfAbsent(rule.getLabId(), k -> new ArrayList<>()).add(rule);
+                }
+            }
+            if (globalRules.isEmpty()) {
+                globalRules = builtinRules();
+            }
+
+            Map<Long, AlarmRuleSet> labRules = new HashMap<>();
+            for (Map.Entry<Long, List<LabAlarmRule>> entry : rulesByLab.entrySet()) {
+                List<LabAlarmRule> merged = new ArrayList<>(entry.getValue());
+                Set<String> overridden = new HashSet<>();
+                entry.getValue().forEach(rule -> overridden.add(rule.getMetric()));
+                for (LabAlarmRule rule : globalRules) {
+                    if (!overridden.contains(rule.getMetric())) {
+                        merged.add(rule);
+                    }
+                }
+                labRules.put(entry.getKey(), AlarmRuleSet.compile(merged));
+            }
+            return new CompiledRules(version, AlarmRuleSet.compile(globalRules), labRules);
+        }
+
+        AlarmRuleSet forLab(Long labId) {
+            AlarmRuleSet rules = labId != null ? labRules.get(labId) : null;
+            return rules != null ? rules : defaultRules;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.sewage.monitor.service;
+
+import com.sewage.monitor.entity.LabAlarm;
+import com.sewage.monitor.entity.LabAlarmRule;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 编译后的告警规则集（一个实验室一份，不可变）
+ *
+ * 功能说明：
+ * 1. 规则在加载时编译为扁平的基本类型数组（指标、运算符、阈值），告警类型/级别在编译时校验，
+ *    检查每条数据时不再解析字符串、查找枚举
+ * 2. 每条数据只读取一次各指标值，逐条比较阈值，没有告警时不分配任何对象
+ * 3. 同一指标命中第一条规则后跳过该指标的其余规则（规则按 指标、priority 排序，严重级别在前）
+ * 4. 告警消息只在命中时由 renderMessage 渲染
+ */
+@Slf4j
+public final class AlarmRuleSet {
+
+    /**
+     * 规则命中回调
+     */
+    public interface MatchHandler {
+        void onMatch(LabEnvironmentData data, LabAlarmRule rule, double value);
+    }
+
+    private static final int OP_GT = 0;
+    private static final int OP_GE = 1;
+    private static final int OP_LT = 2;
+    private static final int OP_LE = 3;
+
+    private final int[] metrics;
+    private final int[] operators;
+    private final double[] thresholds;
+    private final LabAlarmRule[] rules;
+
+    private AlarmRuleSet(int[] metrics, int[] operators, double[] thresholds, LabAlarmRule[] rules) {
+        this.metrics = metrics;
+        this.operators = operators;
+        this.thresholds = thresholds;
+        this.rules = rules;
+    }
+
+    /**
+     * 编译规则，无效的规则记录日志后跳过
+     */
+    public static AlarmRuleSet compile(List<LabAlarmRule> source) {
+        List<CompiledRule> compiled = new ArrayList<>(source.size());
+        for (LabAlarmRule rule : source) {
+            try {
+                if (rule.getThreshold() == null) {
+                    throw new IllegalArgumentException("阈值为空");
+                }
+                LabAlarm.AlarmType.valueOf(rule.getAlarmType());
+                LabAlarm.AlarmLevel.valueOf(rule.getAlarmLevel());
+                compiled.add(new CompiledRule(rule,
+                        LabAlarmRule.Metric.valueOf(rule.getMetric()).ordinal(),
+                        LabAlarmRule.Operator.valueOf(rule.getOperator()).ordinal()));
+            } catch (Exception e) {
+                log.warn("⚠️ 忽略无效的告警规则 - ID: {}, 原因: {}", rule.getId(), e.getMessage());
+            }
+        }
+        compiled.sort(Comparator.<CompiledRule>comparingInt(c -> c.metric)
+                .thenComparingInt(c -> c.rule.getPriority() != null ? c.rule.getPriority() : Integer.MAX_VALUE)
+                .thenComparing(c -> c.rule.getId(), Comparator.nullsLast(Comparator.naturalOrder())));
+
+        int size = compiled.size();
+        int[] metrics = new int[size];
+        int[] operators = new int[size];
+        double[] thresholds = new double[size];
+        LabAlarmRule[] rules = new LabAlarmRule[size];
+        for (int i = 0; i < size; i++) {
+            CompiledRule c = compiled.get(i);
+            metrics[i] = c.metric;
+            operators[i] = c.operator;
+            thresholds[i] = c.rule.getThreshold();
+            rules[i] = c.rule;
+        }
+        return new AlarmRuleSet(metrics, operators, thresholds, rules);
+    }
+
+    /**
+     * 检查一条数据
+     *
+     * @return 命中的规则数
+     */
+    public int evaluate(LabEnvironmentData data, MatchHandler handler) {
+        double temperature = valueOf(data.getTemperature());
+        double humidity = valueOf(data.getHumidity());
+        double pm25 = valueOf(data.getPm25());
+        double co2 = valueOf(data.getCo2());
+        double illuminance = valueOf(data.getIlluminance());
+        double peopleCount = data.getCurrentPeopleCount() != null ? data.getCurrentPeopleCount() : Double.NaN;
+
+        int fired = 0;
+        int matched = 0;
+        for (int i = 0; i < metrics.length; i++) {
+            int metric = metrics[i];
+            if ((fired & (1 << metric)) != 0) {
+                continue;
+            }
+            // 下标与 LabAlarmRule.Metric 的声明顺序一致
+            double value;
+            switch (metric) {
+                case 0:
+                    value = temperature;
+                    break;
+                case 1:
+                    value = humidity;
+                    break;
+                case 2:
+                    value = pm25;
+                    break;
+                case 3:
+                    value = co2;
+                    break;
+                case 4:
+                    value = illuminance;
+                    break;
+                default:
+                    value = peopleCount;
+            }
+            // 数据缺失时为 NaN，任何比较都不成立
+            double threshold = thresholds[i];
+            boolean hit;
+            switch (operators[i]) {
+                case OP_GT:
+                    hit = value > threshold;
+                    break;
+                case OP_GE:
+                    hit = value >= threshold;
+                    break;
+                case OP_LT:
+                    hit = value < threshold;
+                    break;
+                case OP_LE:
+                    hit = value <= threshold;
+                    break;
+                default:
+                    hit = false;
+            }
+            if (hit) {
+                fired |= 1 << metric;
+                matched++;
+                handler.onMatch(data, rules[i], value);
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 渲染告警消息（只在告警触发时调用）
+     */
+    public static String renderMessage(LabAlarmRule rule, double value) {
+        LabAlarmRule.Metric metric = LabAlarmRule.Metric.valueOf(rule.getMetric());
+        String formattedValue = metric == LabAlarmRule.Metric.PEOPLE_COUNT
+                ? String.valueOf((long) value) : String.format("%.1f", value);
+        String template = rule.getMessageTemplate();
+        if (template == null || template.isEmpty()) {
+            return LabAlarm.AlarmType.valueOf(rule.getAlarmType()).getDesc() + ": " + formattedValue + metric.getUnit();
+        }
+        return template.replace("{value}", formattedValue)
+                .replace("{threshold}", String.valueOf(rule.getThreshold()));
+    }
+
+    public int size() {
+        return rules.length;
+    }
+
+    public List<LabAlarmRule> getRules() {
+        return List.of(rules);
+    }
+
+    /**
+     * 读取单个指标值（按 LabAlarmRule.Metric 下标），数据缺失时返回 NaN
+     */
+    static double metricValue(LabEnvironmentData data, int metric) {
+        switch (metric) {
+            case 0:
+                return valueOf(data.getTemperature());
+            case 1:
+                return valueOf(data.getHumidity());
+            case 2:
+                return valueOf(data.getPm25());
+            case 3:
+                return valueOf(data.getCo2());
+            case 4:
+                return valueOf(data.getIlluminance());
+            default:
+                return data.getCurrentPeopleCount() != null ? data.getCurrentPeopleCount() : Double.NaN;
+        }
+    }
+
+    private static double valueOf(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+
+    private static final class CompiledRule {
+        private final LabAlarmRule rule;
+        private final int metric;
+        private final int operator;
+
+        CompiledRule(LabAlarmRule rule, int metric, int operator) {
+            this.rule = rule;
+            this.metric = metric;
+            this.operator = operator;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.sewage.monitor.service;
+
+import com.sewage.monitor.entity.LabAlarm;
+import com.sewage.monitor.entity.LabAlarmRule;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 告警状态机（按 实验室 + 告警类型）
+ *
+ * 功能说明：
+ * 1. OK → FIRING：首次命中规则时发出 FIRING，告警记录插入一次
+ * 2. FIRING 期间继续超限只累加次数，以下情况发出 UPDATE（更新同一条告警记录并重新提醒）：
+ *    - 告警级别升高（如 WARNING → DANGER）
+ *    - 距上次通知超过 renotify-interval-ms
+ * 3. FIRING → RECOVERED：数值回到阈值以内且超出回差（阈值 × hysteresis-ratio），
+ *    连续 clear-readings 条数据后发出 RECOVERED，自动解决告警记录，状态回到 OK
+ * 4. 数据缺失（指标为空）不改变状态
+ *
+ * 同一实验室的数据串行处理；没有状态变化的数据不创建对象
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AlarmStateTracker {
+
+    private final AlarmRuleEngine alarmRuleEngine;
+
+    /**
+     * 回差比例：越限方向的反方向再回退 阈值 × 比例 才算恢复，避免在阈值附近反复告警/恢复
+     */
+    @Value("${monitor.alarm.hysteresis-ratio:0.02}")
+    private double hysteresisRatio;
+
+    /**
+     * 持续告警的重复提醒间隔
+     */
+    @Value("${monitor.alarm.renotify-interval-ms:300000}")
+    private long renotifyIntervalMillis;
+
+    /**
+     * 连续多少条数据回到正常范围才算恢复
+     */
+    @Value("${monitor.alarm.clear-readings:2}")
+    private int clearReadings;
+
+    /**
+     * 状态变化回调
+     */
+    public interface TransitionListener {
+        void onTransition(LabEnvironmentData data, AlarmState state, LabAlarm.AlarmEvent event);
+    }
+
+    private final Map<Long, LabAlarmStates> labStates = new ConcurrentHashMap<>();
+
+    private final AtomicLong firedCount = new AtomicLong();
+    private final AtomicLong updatedCount = new AtomicLong();
+    private final AtomicLong suppressedCount = new AtomicLong();
+    private final AtomicLong recoveredCount = new AtomicLong();
+
+    /**
+     * 检查一条数据并推进该实验室的告警状态
+     */
+    public void evaluate(LabEnvironmentData data, TransitionListener listener) {
+        Long labId = data.getLabId();
+        if (labId == null) {
+            return;
+        }
+        LabAlarmStates states = labStates.get(labId);
+        if (states == null) {
+            states = labStates.computeIfAbsent(labId, key -> new LabAlarmStates());
+        }
+        synchronized (states) {
+            states.begin(data, listener);
+            try {
+                alarmRuleEngine.evaluate(data, states);
+                states.checkRecovered();
+            } finally {
+                states.end();
+            }
+        }
+    }
+
+    /**
+     * 当前处于告警中的状态
+     */
+    public List<Map<String, Object>> getActiveAlarms() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        labStates.forEach((labId, states) -> {
+            synchronized (states) {
+                for (AlarmState state : states.active) {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("labId", labId);
+                    item.put("alarmType", state.alarmType);
+                    item.put("alarmLevel", state.rule.getAlarmLevel());
+                    item.put("lastValue", state.value);
+                    item.put("threshold", state.rule.getThreshold());
+                    item.put("firedAt", state.firedAt);
+                    item.put("occurrences", state.totalOccurrences);
+                    result.add(item);
+                }
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 获取状态机统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("firedCount", firedCount.get());
+        stats.put("updatedCount", updatedCount.get());
+        stats.put("suppressedCount", suppressedCount.get());
+        stats.put("recoveredCount", recoveredCount.get());
+        stats.put("hysteresisRatio", hysteresisRatio);
+        stats.put("renotifyIntervalMillis", renotifyIntervalMillis);
+        stats.put("clearReadings", clearReadings);
+        return stats;
+    }
+
+    /**
+     * 单个告警（实验室 + 告警类型）的状态
+     */
+    public static final class AlarmState {
+        private final String alarmType;
+        private LabAlarmRule rule;
+        private int metric;
+        private boolean upper;
+        private int levelRank;
+        private int peakLevelRank;
+        private double value;
+        private LocalDateTime firedAt;
+        private long lastNotifiedAt;
+        private long lastMatchedEpoch;
+        private int clearCount;
+        private int pendingOccurrences;
+        private long totalOccurrences;
+
+        AlarmState(String alarmType) {
+            this.alarmType = alarmType;
+        }
+
+        /**
+         * 当前生效的规则（级别、阈值、消息模板）
+         */
+        public LabAlarmRule getRule() {
+            return rule;
+        }
+
+        /**
+         * 最近一次的指标值
+         */
+        public double getValue() {
+            return value;
+        }
+
+        /**
+         * 上次通知以来的超限次数（通知后清零）
+         */
+        public int getPendingOccurrences() {
+            return pendingOccurrences;
+        }
+
+        public LocalDateTime getFiredAt() {
+            return firedAt;
+        }
+
+        /**
+         * 切换到新规则（规则变化时才解析指标、方向和级别）
+         */
+        private void applyRule(LabAlarmRule newRule) {
+            rule = newRule;
+            metric = LabAlarmRule.Metric.valueOf(newRule.getMetric()).ordinal();
+            LabAlarmRule.Operator operator = LabAlarmRule.Operator.valueOf(newRule.getOperator());
+            upper = operator == LabAlarmRule.Operator.GT || operator == LabAlarmRule.Operator.GE;
+            levelRank = LabAlarm.AlarmLevel.valueOf(newRule.getAlarmLevel()).ordinal();
+        }
+    }
+
+    /**
+     * 一个实验室的所有告警状态（调用方持有该对象的锁）
+     */
+    private final class LabAlarmStates implements AlarmRuleSet.MatchHandler {
+        private final Map<String, AlarmState> byType = new HashMap<>();
+        private final List<AlarmState> active = new ArrayList<>();
+
+        private long epoch;
+        private long now;
+        private LabEnvironmentData data;
+        private TransitionListener listener;
+
+        void begin(LabEnvironmentData data, TransitionListener listener) {
+            this.epoch++;
+            this.now = System.currentTimeMillis();
+            this.data = data;
+            this.listener = listener;
+        }
+
+        void end() {
+            this.data = null;
+            this.listener = null;
+        }
+
+        @Override
+        public void onMatch(LabEnvironmentData data, LabAlarmRule rule, double value) {
+            AlarmState state = byType.get(rule.getAlarmType());
+            if (state == null) {
+                // OK → FIRING
+                state = new AlarmState(rule.getAlarmType());
+                state.applyRule(rule);
+                state.peakLevelRank = state.levelRank;
+                state.firedAt = LocalDateTime.now();
+                byType.put(rule.getAlarmType(), state);
+                active.add(state);
+                record(state, value);
+                firedCount.incrementAndGet();
+                notify(state, LabAlarm.AlarmEvent.FIRING);
+                return;
+            }
+
+            record(state, value);
+            boolean escalated = false;
+            if (state.rule != rule) {
+                state.applyRule(rule);
+                if (state.levelRank > state.peakLevelRank) {
+                    state.peakLevelRank = state.levelRank;
+                    escalated = true;
+                }
+            }
+            if (escalated || now - state.lastNotifiedAt >= renotifyIntervalMillis) {
+                updatedCount.incrementAndGet();
+                notify(state, LabAlarm.AlarmEvent.UPDATE);
+            } else {
+                suppressedCount.incrementAndGet();
+            }
+        }
+
+        /**
+         * 本条数据没有命中的告警：超出回差连续 clearReadings 次则恢复
+         */
+        void checkRecovered() {
+            for (int i = active.size() - 1; i >= 0; i--) {
+                AlarmState state = active.get(i);
+                if (state.lastMatchedEpoch == epoch) {
+                    continue;
+                }
+                double value = AlarmRuleSet.metricValue(data, state.metric);
+                if (Double.isNaN(value)) {
+                    continue;
+                }
+                double threshold = state.rule.getThreshold();
+                double margin = Math.abs(threshold) * hysteresisRatio;
+                boolean cleared = state.upper ? value < threshold - margin : value > threshold + margin;
+                if (!cleared) {
+                    // 回到阈值以内但仍在回差范围内，保持告警
+                    state.clearCount = 0;
+                    continue;
+                }
+                if (++state.clearCount < clearReadings) {
+                    continue;
+                }
+
+                // FIRING → RECOVERED → OK
+                state.value = value;
+                active.remove(i);
+                byType.remove(state.alarmType);
+                recoveredCount.incrementAndGet();
+                notify(state, LabAlarm.AlarmEvent.RECOVERED);
+            }
+        }
+
+        private void record(AlarmState state, double value) {
+            state.value = value;
+            state.lastMatchedEpoch = epoch;
+            state.clearCount = 0;
+            state.pendingOccurrences++;
+            state.totalOccurrences++;
+        }
+
+        private void notify(AlarmState state, LabAlarm.AlarmEvent event) {
+            try {
+                listener.onTransition(data, state, event);
+            } finally {
+                state.lastNotifiedAt = now;
+                state.pendingOccurrences = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.sewage.monitor.service;
+
+import com.sewage.monitor.entity.LabEnvironmentData;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 缓存异步合并写入服务（Write-Behind）
+ *
+ * 功能说明：
+ * 1. 收集一段时间内的实时数据缓存、历史数据缓存写操作
+ * 2. 定时将收集到的写操作合并成一次Redis Pipeline提交
+ * 3. 同一实验室的实时数据只保留最新一条，中间数据直接丢弃
+ * 4. 实时数据写入后在同一Pipeline中发布近端缓存失效通知
+ *
+ * 与逐条写入的对比：
+ * - 逐条写入：每条数据 hSetAll + expire + zAdd + zSize + zRemoveRangeByScore + expire，5~6次往返
+ * - 合并写入：每个刷新周期1次往返，不随数据条数增长
+ *
+ * 监控指标：
+ * - 最近一次Pipeline命令数、刷新耗时
+ * - 累计刷新次数、累计命令数、被合并丢弃的实时数据条数
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CacheWriteBehindService {
+
+    private static final String REALTIME_KEY_PREFIX = "lab:latest:";
+    private static final String HISTORY_KEY_PREFIX = "lab:history:";
+
+    private static final long REALTIME_TTL_SECONDS = 30;
+    private static final long HISTORY_TTL_SECONDS = 600;
+    private static final long HISTORY_MAX_SIZE = 1000;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final LatestDataNearCache latestDataNearCache;
+
+    /**
+     * 单个刷新周期最多写入的历史数据条数，超出部分留到下个周期
+     */
+    @Value("${monitor.cache.write-behind.max-batch:2000}")
+    private int maxBatch;
+
+    /**
+     * 待写入历史数据的最大积压量，超出后丢弃最旧的数据（Redis故障时保护堆内存）
+     */
+    @Value("${monitor.cache.write-behind.max-pending:20000}")
+    private int maxPending;
+
+    /**
+     * 每个实验室待写入的最新实时数据
+     */
+    private final Map<Long, PendingRealtime> pendingRealtime = new ConcurrentHashMap<>();
+
+    /**
+     * 待写入的历史数据
+     */
+    private final ConcurrentLinkedQueue<LabEnvironmentData> pendingHistory = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingHistoryCount = new AtomicInteger();
+
+    // 监控指标
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong totalCommands = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong failedFlushCount = new AtomicLong();
+    private volatile int lastPipelineSize;
+    private volatile long lastFlushMillis;
+    private volatile long maxFlushMillis;
+
+    /**
+     * 提交一条环境数据的缓存写入
+     *
+     * @param data         环境数据
+     * @param realtimeHash 实时数据Hash结构
+     */
+    public void submit(LabEnvironmentData data, Map<String, Object> realtimeHash) {
+        submitRealtime(data, realtimeHash);
+        submitHistory(data);
+    }
+
+    /**
+     * 提交实时数据缓存写入，同一实验室只保留监测时间最新的一条
+     */
+    public void submitRealtime(LabEnvironmentData data, Map<String, Object> realtimeHash) {
+        if (data.getLabId() == null) {
+            return;
+        }
+        PendingRealtime incoming = new PendingRealtime(data, realtimeHash);
+        pendingRealtime.merge(data.getLabId(), incoming, (old, cur) -> {
+            coalescedCount.incrementAndGet();
+            return isNewer(old.data, cur.data) ? old : cur;
+        });
+    }
+
+    /**
+     * 提交历史数据缓存写入
+     */
+    public void submitHistory(LabEnvironmentData data) {
+        if (data.getLabId() == null || data.getMonitorTime() == null) {
+            return;
+        }
+        pendingHistory.offer(data);
+        if (pendingHistoryCount.incrementAndGet() > maxPending) {
+            if (pendingHistory.poll() != null) {
+                pendingHistoryCount.decrementAndGet();
+                droppedCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 定时刷新：把积压的写操作合并成一次Pipeline提交
+     */
+    @Scheduled(fixedDelayString = "${monitor.cache.write-behind.flush-interval-ms:100}")
+    public void flush() {
+        if (pendingRealtime.isEmpty() && pendingHistoryCount.get() == 0) {
+            return;
+        }
+
+        // 1. 取出每个实验室的最新实时数据
+        List<PendingRealtime> realtimeBatch = new ArrayList<>(pendingRealtime.size());
+        for (Long labId : pendingRealtime.keySet()) {
+            PendingRealtime pending = pendingRealtime.remove(labId);
+            if (pending != null) {
+                realtimeBatch.add(pending);
+            }
+        }
+
+        // 2. 取出历史数据（单次最多maxBatch条）
+        List<LabEnvironmentData> historyBatch = new ArrayList<>();
+        LabEnvironmentData item;
+        while (historyBatch.size() < maxBatch && (item = pendingHistory.poll()) != null) {
+            pendingHistoryCount.decrementAndGet();
+            historyBatch.add(item);
+        }
+
+        long startTime = System.nanoTime();
+        try {
+            int commands = executePipeline(realtimeBatch, historyBatch);
+
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            flushCount.incrementAndGet();
+            totalCommands.addAndGet(commands);
+            lastPipelineSize = commands;
+            lastFlushMillis = elapsedMillis;
+            if (elapsedMillis > maxFlushMillis) {
+                maxFlushMillis = elapsedMillis;
+            }
+
+            log.debug("🔄 缓存合并写入完成 - 实时: {}, 历史: {}, 命令数: {}, 耗时: {}ms",
+                    realtimeBatch.size(), historyBatch.size(), commands, elapsedMillis);
+
+        } catch (Exception e) {
+            failedFlushCount.incrementAndGet();
+            log.error("❌ 缓存合并写入失败 - 实时: {}, 历史: {}", realtimeBatch.size(), historyBatch.size(), e);
+        }
+    }
+
+    /**
+     * 执行Pipeline
+     *
+     * @return Pipeline中的命令数
+     */
+    private int executePipeline(List<PendingRealtime> realtimeBatch, List<LabEnvironmentData> historyBatch) {
+        int[] commands = {0};
+
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+
+                // 实时数据：每个实验室一次 HMSET + EXPIRE
+                for (PendingRealtime pending : realtimeBatch) {
+                    String key = REALTIME_KEY_PREFIX + pending.data.getLabId();
+                    ops.opsForHash().putAll(key, pending.hash);
+                    ops.expire(key, REALTIME_TTL_SECONDS, TimeUnit.SECONDS);
+                    commands[0] += 2;
+                }
+
+                // 实时数据写入之后发布近端缓存失效通知，其他实例回源时读到的一定是新数据
+                if (!realtimeBatch.isEmpty()) {
+                    List<Long> labIds = new ArrayList<>(realtimeBatch.size());
+                    for (PendingRealtime pending : realtimeBatch) {
+                        labIds.add(pending.data.getLabId());
+                    }
+                    ops.convertAndSend(LatestDataNearCache.INVALIDATE_CHANNEL,
+                            latestDataNearCache.buildInvalidateMessage(labIds));
+                    commands[0]++;
+                }
+
+                // 历史数据：逐条ZADD，每个Key只做一次裁剪和过期设置
+                Set<String> touchedKeys = new HashSet<>();
+                for (LabEnvironmentData data : historyBatch) {
+                    String key = historyKey(data);
+                    double score = data.getMonitorTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+                    ops.opsForZSet().add(key, data, score);
+                    touchedKeys.add(key);
+                    commands[0]++;
+                }
+                for (String key : touchedKeys) {
+                    // 保留分数最高（最新）的HISTORY_MAX_SIZE条
+                    ops.opsForZSet().removeRange(key, 0, -HISTORY_MAX_SIZE - 1);
+                    ops.expire(key, HISTORY_TTL_SECONDS, TimeUnit.SECONDS);
+                    commands[0] += 2;
+                }
+                return null;
+            }
+        });
+
+        return commands[0];
+    }
+
+    /**
+     * 应用关闭前把积压的数据写完
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        long failedBefore = failedFlushCount.get();
+        while ((!pendingRealtime.isEmpty() || pendingHistoryCount.get() > 0)
+                && failedFlushCount.get() == failedBefore) {
+            flush();
+        }
+    }
+
+    /**
+     * 获取合并写入的监控指标
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long flushes = flushCount.get();
+        stats.put("flushCount", flushes);
+        stats.put("failedFlushCount", failedFlushCount.get());
+        stats.put("totalCommands", totalCommands.get());
+        stats.put("avgPipelineSize", flushes > 0 ? totalCommands.get() / flushes : 0);
+        stats.put("lastPipelineSize", lastPipelineSize);
+        stats.put("lastFlushMillis", lastFlushMillis);
+        stats.put("maxFlushMillis", maxFlushMillis);
+        stats.put("coalescedRealtimeCount", coalescedCount.get());
+        stats.put("droppedHistoryCount", droppedCount.get());
+        stats.put("pendingRealtime", pendingRealtime.size());
+        stats.put("pendingHistory", pendingHistoryCount.get());
+        return stats;
+    }
+
+    private static String historyKey(LabEnvironmentData data) {
+        String dateKey = data.getMonitorTime().toLocalDate().toString().replace("-", "");
+        return HISTORY_KEY_PREFIX + data.getLabId() + ":" + dateKey;
+    }
+
+    private static boolean isNewer(LabEnvironmentData a, LabEnvironmentData b) {
+        if (a.getMonitorTime() == null) {
+            return false;
+        }
+        return b.getMonitorTime() == null || a.getMonitorTime().isAfter(b.getMonitorTime());
+    }
+
+    /**
+     * 待写入的实时数据
+     */
+    private static class PendingRealtime {
+        private final LabEnvironmentData data;
+        private final Map<String, Object> hash;
+
+        PendingRealtime(LabEnvironmentData data, Map<String, Object> hash) {
+            this.data = data;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,656 @@
+package com.sewage.monitor.service;
+
+import com.sewage.monitor.entity.LabAttendanceEvent;
+import com.sewage.monitor.entity.LabDailyStatistics;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.mapper.LabDailyStatisticsMapper;
+import com.sewage.monitor.util.QuantileSketch;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 日统计内存聚合引擎
+ *
+ * 功能说明：
+ * 1. 每个实验室每天的统计聚合值常驻内存，环境数据到达时只更新内存
+ * 2. 按实验室ID分片，每个分片一个单线程执行器，同一实验室的数据始终由同一线程处理（单写者），
+ *    不再出现并发读-改-写丢失增量的问题
+ * 3. 定时把有变化的聚合值快照出来，一条批量UPSERT写入 lab_daily_statistics
+ * 4. 考勤事件（预约 / 刷卡签到）在同一分片线程上按人员去重计数，随环境统计一起写入，
+ *    刷卡高峰不产生逐条数据库写入
+ *
+ * 与逐条读-改-写的对比：
+ * - 原来：每条数据 hGetAll + selectByLabAndDate + updateById + hSetAll
+ * - 现在：每个刷新周期每个有变化的实验室写一行，数据库写入量只和实验室数量相关
+ *
+ * 事件时间（按设备上报的 monitorTime 归入所属日期）：
+ * - 每个实验室维护水位线 = 已见过的最大事件时间 - allowed-lateness-ms
+ * - 晚于水位线的乱序数据（网关补传的积压数据）直接累加到所属日期的聚合值上，
+ *   该日期已从内存移除时从数据库加载后继续累加，只重写受影响的那一天，不需要夜间全量重算
+ * - 早于水位线的数据不再计入统计（数据本身照常落库），超过 max-future-skew-ms 的未来时间视为设备时钟错误，同样不计入
+ *
+ * 重启恢复：
+ * - 某实验室某天第一次出现时从数据库加载已有统计继续累加
+ * - 水位线只在内存中，重启后从每个实验室的第一条数据重新开始
+ * - 考勤去重集合只在内存中，重启前已签到的人重启后再次刷卡会重复计数一次
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DailyStatisticsEngine {
+
+    private static final String CACHE_KEY_PREFIX = "lab:stats:daily:";
+
+    /**
+     * 单条UPSERT语句最多包含的行数
+     */
+    private static final int UPSERT_BATCH_SIZE = 500;
+
+    private final LabDailyStatisticsMapper dailyStatisticsMapper;
+    private final CacheService cacheService;
+
+    /**
+     * 分片数量（单写者线程数）
+     */
+    @Value("${monitor.statistics.shards:4}")
+    private int shardCount;
+
+    /**
+     * 每个分片的待处理队列容量，队列满时阻塞消费者线程形成背压
+     */
+    @Value("${monitor.statistics.queue-capacity:10000}")
+    private int queueCapacity;
+
+    /**
+     * 内存中保留聚合值的天数（今天 + 前N天），更早的数据刷新后从内存移除
+     */
+    @Value("${monitor.statistics.retain-days:1}")
+    private int retainDays;
+
+    /**
+     * 允许的乱序延迟：事件时间不早于 (该实验室最大事件时间 - 延迟) 的数据计入统计
+     */
+    @Value("${monitor.statistics.allowed-lateness-ms:21600000}")
+    private long allowedLatenessMs;
+
+    /**
+     * 允许的设备时钟超前量，事件时间超过当前时间加该值的数据不计入统计
+     */
+    @Value("${monitor.statistics.max-future-skew-ms:300000}")
+    private long maxFutureSkewMs;
+
+    private Shard[] shards;
+
+    // 监控指标
+    private final AtomicLong recordedCount = new AtomicLong();
+    private final AtomicLong attendanceEventCount = new AtomicLong();
+    private final AtomicLong lateAcceptedCount = new AtomicLong();
+    private final AtomicLong lateDroppedCount = new AtomicLong();
+    private final AtomicLong futureDroppedCount = new AtomicLong();
+    private final AtomicLong reopenedCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong failedFlushCount = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private volatile int lastFlushRows;
+    private volatile long lastFlushMillis;
+
+    @PostConstruct
+    public void init() {
+        shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, queueCapacity);
+        }
+        log.info("📊 日统计聚合引擎初始化完成 - 分片数: {}, 队列容量: {}, 允许延迟: {}ms",
+                shardCount, queueCapacity, allowedLatenessMs);
+    }
+
+    /**
+     * 记录一条环境数据（异步，在实验室所属分片的线程上执行）
+     *
+     * 按事件时间归入所属日期，并推进该实验室的水位线；早于水位线或时间在未来的数据不计入统计
+     */
+    public void record(LabEnvironmentData data) {
+        if (data == null || data.getLabId() == null) {
+            return;
+        }
+        LocalDateTime eventTime = data.getMonitorTime() != null ? data.getMonitorTime() : LocalDateTime.now();
+        Shard shard = shardOf(data.getLabId());
+        shard.executor.execute(() -> {
+            if (eventTime.isAfter(LocalDateTime.now().plusNanos(maxFutureSkewMs * 1_000_000L))) {
+                futureDroppedCount.incrementAndGet();
+                log.warn("⚠️ 事件时间超前，不计入统计 - 实验室ID: {}, 事件时间: {}", data.getLabId(), eventTime);
+                return;
+            }
+            LocalDateTime maxEventTime = shard.maxEventTimes.merge(data.getLabId(), eventTime,
+                    (old, cur) -> cur.isAfter(old) ? cur : old);
+            if (eventTime.isBefore(maxEventTime)) {
+                if (eventTime.isBefore(maxEventTime.minusNanos(allowedLatenessMs * 1_000_000L))) {
+                    lateDroppedCount.incrementAndGet();
+                    log.warn("⚠️ 数据晚于水位线，不计入统计 - 实验室ID: {}, 事件时间: {}, 最大事件时间: {}",
+                            data.getLabId(), eventTime, maxEventTime);
+                    return;
+                }
+                lateAcceptedCount.incrementAndGet();
+            }
+            shard.aggregateOf(data.getLabId(), data.getLabName(), eventTime.toLocalDate()).add(data);
+            recordedCount.incrementAndGet();
+        });
+    }
+
+    /**
+     * 记录一批考勤事件（按分片分组，每个分片提交一个任务，在分片线程上去重计数）
+     */
+    public void recordAttendance(List<LabAttendanceEvent> events) {
+        if (events == null || events.isEmpty()) {
+            return;
+        }
+        Map<Shard, List<LabAttendanceEvent>> eventsByShard = new HashMap<>();
+        for (LabAttendanceEvent event : events) {
+            if (event.getLabId() != null && event.getUserId() != null && event.getEventType() != null) {
+                eventsByShard.computeIfAbsent(shardOf(event.getLabId()), key -> new ArrayList<>()).add(event);
+            }
+        }
+        eventsByShard.forEach((shard, shardEvents) -> shard.executor.execute(() -> {
+            for (LabAttendanceEvent event : shardEvents) {
+                LocalDate date = event.getEventTime() != null ? event.getEventTime().toLocalDate() : LocalDate.now();
+                shard.aggregateOf(event.getLabId(), event.getLabName(), date).addAttendance(event);
+            }
+            attendanceEventCount.addAndGet(shardEvents.size());
+        }));
+    }
+
+    /**
+     * 定时刷新：收集所有分片中有变化的聚合值，批量UPSERT
+     */
+    @Scheduled(fixedDelayString = "${monitor.statistics.flush-interval-ms:5000}")
+    public void flush() {
+        long startTime = System.currentTimeMillis();
+
+        // 1. 在各分片线程上做快照，保证读到的是一致的聚合值
+        List<Future<List<LabDailyStatistics>>> futures = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            futures.add(shard.executor.submit(shard::snapshotDirty));
+        }
+        List<LabDailyStatistics> rows = new ArrayList<>();
+        for (Future<List<LabDailyStatistics>> future : futures) {
+            try {
+                rows.addAll(future.get(30, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException | TimeoutException e) {
+                log.error("❌ 日统计快照失败", e);
+            }
+        }
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        // 2. 批量UPSERT
+        try {
+            for (int from = 0; from < rows.size(); from += UPSERT_BATCH_SIZE) {
+                dailyStatisticsMapper.upsertBatch(rows.subList(from, Math.min(from + UPSERT_BATCH_SIZE, rows.size())));
+            }
+        } catch (Exception e) {
+            failedFlushCount.incrementAndGet();
+            log.error("❌ 日统计批量写入失败，下个周期重试 - 行数: {}", rows.size(), e);
+            markDirtyAgain(rows);
+            return;
+        }
+
+        // 3. 清理统计缓存，下次查询回源读取最新值
+        List<String> cacheKeys = new ArrayList<>(rows.size());
+        for (LabDailyStatistics row : rows) {
+            cacheKeys.add(CACHE_KEY_PREFIX + row.getStationId() + ":" + row.getStatDate().format(DateTimeFormatter.BASIC_ISO_DATE));
+        }
+        cacheService.delete(cacheKeys);
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        flushCount.incrementAndGet();
+        rowsWritten.addAndGet(rows.size());
+        lastFlushRows = rows.size();
+        lastFlushMillis = elapsed;
+        log.debug("📊 日统计刷新完成 - 行数: {}, 耗时: {}ms", rows.size(), elapsed);
+    }
+
+    /**
+     * 写入失败时重新标记为待刷新
+     */
+    private void markDirtyAgain(List<LabDailyStatistics> rows) {
+        for (LabDailyStatistics row : rows) {
+            Shard shard = shardOf(row.getStationId());
+            shard.executor.execute(() -> {
+                LabDailyAggregate aggregate = shard.aggregates.get(new AggregateKey(row.getStationId(), row.getStatDate()));
+                if (aggregate != null) {
+                    aggregate.dirty = true;
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        for (Shard shard : shards) {
+            shard.executor.shutdown();
+        }
+        for (Shard shard : shards) {
+            try {
+                shard.executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 获取聚合引擎监控指标
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        int aggregates = 0;
+        int pending = 0;
+        for (Shard shard : shards) {
+            aggregates += shard.aggregateCount.get();
+            pending += shard.executor.getQueue().size();
+        }
+        stats.put("shards", shards.length);
+        stats.put("aggregatesInMemory", aggregates);
+        stats.put("pendingTasks", pending);
+        stats.put("recordedCount", recordedCount.get());
+        stats.put("attendanceEventCount", attendanceEventCount.get());
+        stats.put("allowedLatenessMs", allowedLatenessMs);
+        stats.put("lateAcceptedCount", lateAcceptedCount.get());
+        stats.put("lateDroppedCount", lateDroppedCount.get());
+        stats.put("futureDroppedCount", futureDroppedCount.get());
+        stats.put("reopenedCount", reopenedCount.get());
+        stats.put("flushCount", flushCount.get());
+        stats.put("failedFlushCount", failedFlushCount.get());
+        stats.put("rowsWritten", rowsWritten.get());
+        stats.put("lastFlushRows", lastFlushRows);
+        stats.put("lastFlushMillis", lastFlushMillis);
+        return stats;
+    }
+
+    /**
+     * 各实验室的最大事件时间和水位线（在各分片线程上读取）
+     */
+    public Map<Long, Map<String, Object>> getWatermarks() {
+        List<Future<Map<Long, LocalDateTime>>> futures = new ArrayList<>(shards.length);
+        for (Shard shard : shards) {
+            futures.add(shard.executor.submit(() -> new HashMap<>(shard.maxEventTimes)));
+        }
+        Map<Long, Map<String, Object>> watermarks = new TreeMap<>();
+        for (Future<Map<Long, LocalDateTime>> future : futures) {
+            try {
+                future.get(10, TimeUnit.SECONDS).forEach((labId, maxEventTime) -> {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("maxEventTime", maxEventTime);
+                    item.put("watermark", maxEventTime.minusNanos(allowedLatenessMs * 1_000_000L));
+                    watermarks.put(labId, item);
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException | TimeoutException e) {
+                log.error("❌ 读取水位线失败", e);
+            }
+        }
+        return watermarks;
+    }
+
+    /**
+     * 早于该日期且已写入的聚合值从内存移除（保留天数之外再覆盖允许的乱序延迟）
+     */
+    private LocalDate evictBefore() {
+        return LocalDateTime.now().minusNanos(allowedLatenessMs * 1_000_000L).toLocalDate().minusDays(retainDays);
+    }
+
+    private Shard shardOf(Long labId) {
+        return shards[Math.floorMod(labId.hashCode(), shards.length)];
+    }
+
+    // =============================内部类=============================
+
+    /**
+     * 分片：单线程执行器 + 只由该线程访问的聚合表
+     */
+    private class Shard {
+        private final ThreadPoolExecutor executor;
+        private final Map<AggregateKey, LabDailyAggregate> aggregates = new HashMap<>();
+        private final Map<Long, LocalDateTime> maxEventTimes = new HashMap<>();
+        private final AtomicInteger aggregateCount = new AtomicInteger();
+
+        Shard(int index, int capacity) {
+            AtomicInteger threadCount = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(capacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "stats-shard-" + index + "-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    (runnable, pool) -> {
+                        // 队列已满：阻塞提交方，不能交给调用线程执行（会破坏单写者）
+                        if (pool.isShutdown()) {
+                            return;
+                        }
+                        try {
+                            pool.getQueue().put(runnable);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    });
+        }
+
+        LabDailyAggregate aggregateOf(Long labId, String labName, LocalDate date) {
+            return aggregates.computeIfAbsent(new AggregateKey(labId, date), key -> {
+                aggregateCount.incrementAndGet();
+                if (date.isBefore(evictBefore())) {
+                    // 已移出内存的日期收到乱序数据：从数据库加载后继续累加，只重写这一天
+                    reopenedCount.incrementAndGet();
+                }
+                LabDailyStatistics existing = null;
+                try {
+                    existing = dailyStatisticsMapper.selectByLabAndDate(labId, date);
+                } catch (Exception e) {
+                    log.error("❌ 加载已有日统计失败，从零开始累加 - 实验室ID: {}, 日期: {}", labId, date, e);
+                }
+                return existing != null
+                        ? LabDailyAggregate.from(labId, labName, date, existing)
+                        : new LabDailyAggregate(labId, labName, date);
+            });
+        }
+
+        List<LabDailyStatistics> snapshotDirty() {
+            List<LabDailyStatistics> rows = new ArrayList<>();
+            LocalDate oldest = evictBefore();
+            Iterator<LabDailyAggregate> iterator = aggregates.values().iterator();
+            while (iterator.hasNext()) {
+                LabDailyAggregate aggregate = iterator.next();
+                if (aggregate.dirty) {
+                    rows.add(aggregate.toEntity());
+                    aggregate.dirty = false;
+                } else if (aggregate.date.isBefore(oldest)) {
+                    iterator.remove();
+                    aggregateCount.decrementAndGet();
+                }
+            }
+            return rows;
+        }
+    }
+
+    private static final class AggregateKey {
+        private final Long labId;
+        private final LocalDate date;
+
+        AggregateKey(Long labId, LocalDate date) {
+            this.labId = labId;
+            this.date = date;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof AggregateKey)) {
+                return false;
+            }
+            AggregateKey that = (AggregateKey) o;
+            return labId.equals(that.labId) && date.equals(that.date);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(labId, date);
+        }
+    }
+
+    /**
+     * 单个指标的聚合值
+     */
+    private static final class MetricAggregate {
+        private long count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private final QuantileSketch sketch;
+
+        MetricAggregate(QuantileSketch sketch) {
+            this.sketch = sketch;
+        }
+
+        void add(Double value) {
+            if (value == null) {
+                return;
+            }
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            if (sketch != null) {
+                sketch.add(value);
+            }
+        }
+
+        /**
+         * 从数据库已有统计恢复（平均值 * 条数还原总和）
+         */
+        void restore(BigDecimal avg, BigDecimal maxValue, BigDecimal minValue, int dataCount) {
+            if (avg == null || dataCount <= 0) {
+                return;
+            }
+            count = dataCount;
+            sum = avg.doubleValue() * dataCount;
+            max = maxValue != null ? maxValue.doubleValue() : avg.doubleValue();
+            min = minValue != null ? minValue.doubleValue() : avg.doubleValue();
+        }
+
+        BigDecimal avg() {
+            return count > 0 ? scale(sum / count) : null;
+        }
+
+        BigDecimal maxValue() {
+            return count > 0 ? scale(max) : null;
+        }
+
+        BigDecimal minValue() {
+            return count > 0 ? scale(min) : null;
+        }
+
+        byte[] sketchBytes() {
+            return sketch != null && sketch.getCount() > 0 ? sketch.toBytes() : null;
+        }
+
+        private static BigDecimal scale(double value) {
+            return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+        }
+    }
+
+    /**
+     * 实验室日统计聚合值（只由所属分片线程访问）
+     */
+    private static final class LabDailyAggregate {
+        private final Long labId;
+        private String labName;
+        private final LocalDate date;
+
+        private final MetricAggregate temperature;
+        private final MetricAggregate humidity;
+        private final MetricAggregate pm25;
+        private final MetricAggregate co2;
+        private final MetricAggregate onlineDevices = new MetricAggregate(null);
+
+        private int dataCount;
+        private int alarmCount;
+        private Integer maxPeopleCount;
+
+        /**
+         * 考勤计数 = 数据库已有计数（重启前）+ 本进程内去重后的人数
+         */
+        private int reservationBase;
+        private int attendanceBase;
+        private final Set<String> reservedUsers = new HashSet<>();
+        private final Set<String> attendedUsers = new HashSet<>();
+        private LocalDateTime createdTime = LocalDateTime.now();
+        private boolean dirty;
+
+        LabDailyAggregate(Long labId, String labName, LocalDate date) {
+            this(labId, labName, date, new QuantileSketch(), new QuantileSketch(), new QuantileSketch(), new QuantileSketch());
+        }
+
+        private LabDailyAggregate(Long labId, String labName, LocalDate date, QuantileSketch temperatureSketch,
+                                  QuantileSketch humiditySketch, QuantileSketch pm25Sketch, QuantileSketch co2Sketch) {
+            this.labId = labId;
+            this.labName = labName;
+            this.date = date;
+            this.temperature = new MetricAggregate(temperatureSketch);
+            this.humidity = new MetricAggregate(humiditySketch);
+            this.pm25 = new MetricAggregate(pm25Sketch);
+            this.co2 = new MetricAggregate(co2Sketch);
+        }
+
+        /**
+         * 从数据库已有统计恢复；实验室ID和日期取自查询条件，不依赖结果行的列映射
+         */
+        static LabDailyAggregate from(Long labId, String labName, LocalDate date, LabDailyStatistics stats) {
+            String name = stats.getStationName() != null ? stats.getStationName() : labName;
+            LabDailyAggregate aggregate = new LabDailyAggregate(labId, name, date,
+                    QuantileSketch.fromBytes(stats.getTemperatureSketch()),
+                    QuantileSketch.fromBytes(stats.getHumiditySketch()),
+                    QuantileSketch.fromBytes(stats.getPm25Sketch()),
+                    QuantileSketch.fromBytes(stats.getCo2Sketch()));
+            int count = stats.getDataCount() != null ? stats.getDataCount() : 0;
+            aggregate.dataCount = count;
+            aggregate.alarmCount = stats.getAlarmCount() != null ? stats.getAlarmCount() : 0;
+            aggregate.maxPeopleCount = stats.getMaxPeopleCount();
+            aggregate.reservationBase = stats.getReservationCount() != null ? stats.getReservationCount() : 0;
+            aggregate.attendanceBase = stats.getAttendanceCount() != null ? stats.getAttendanceCount() : 0;
+            if (stats.getCreatedTime() != null) {
+                aggregate.createdTime = stats.getCreatedTime();
+            }
+            aggregate.temperature.restore(stats.getAvgTemperature(), stats.getMaxTemperature(), stats.getMinTemperature(), count);
+            aggregate.humidity.restore(stats.getAvgHumidity(), stats.getMaxHumidity(), stats.getMinHumidity(), count);
+            aggregate.pm25.restore(stats.getAvgPm25(), stats.getMaxPm25(), null, count);
+            aggregate.co2.restore(stats.getAvgCo2(), stats.getMaxCo2(), null, count);
+            aggregate.onlineDevices.restore(stats.getAvgOnlineDevices(), null, null, count);
+            return aggregate;
+        }
+
+        void add(LabEnvironmentData data) {
+            if (data.getLabName() != null) {
+                labName = data.getLabName();
+            }
+            temperature.add(data.getTemperature());
+            humidity.add(data.getHumidity());
+            pm25.add(data.getPm25());
+            co2.add(data.getCo2());
+            if (data.getOnlineDeviceCount() != null) {
+                onlineDevices.add(data.getOnlineDeviceCount().doubleValue());
+            }
+            if (data.getCurrentPeopleCount() != null) {
+                maxPeopleCount = maxPeopleCount == null ? data.getCurrentPeopleCount()
+                        : Math.max(maxPeopleCount, data.getCurrentPeopleCount());
+            }
+            dataCount++;
+            if (data.getAlarmStatus() != null && data.getAlarmStatus() > 0) {
+                alarmCount++;
+            }
+            dirty = true;
+        }
+
+        /**
+         * 记录一条考勤事件，同一人同一天重复刷卡/预约不重复计数
+         */
+        void addAttendance(LabAttendanceEvent event) {
+            if (labName == null && event.getLabName() != null) {
+                labName = event.getLabName();
+            }
+            Set<String> users = event.getEventType() == LabAttendanceEvent.EventType.RESERVATION
+                    ? reservedUsers : attendedUsers;
+            if (users.add(event.getUserId())) {
+                dirty = true;
+            }
+        }
+
+        LabDailyStatistics toEntity() {
+            // 环境达标率 = (总数 - 告警数) / 总数 * 100
+            BigDecimal normalRate = dataCount > 0
+                    ? BigDecimal.valueOf(dataCount - alarmCount)
+                            .divide(BigDecimal.valueOf(dataCount), 4, RoundingMode.HALF_UP)
+                            .multiply(BigDecimal.valueOf(100))
+                            .setScale(2, RoundingMode.HALF_UP)
+                    : null;
+
+            // 使用率 = 签到人数 / 预约人数 * 100（无预约时为空，未预约直接签到的人使超出部分按100%计）
+            int reservationCount = reservationBase + reservedUsers.size();
+            int attendanceCount = attendanceBase + attendedUsers.size();
+            BigDecimal usageRate = reservationCount > 0
+                    ? BigDecimal.valueOf(Math.min(attendanceCount, reservationCount))
+                            .divide(BigDecimal.valueOf(reservationCount), 4, RoundingMode.HALF_UP)
+                            .multiply(BigDecimal.valueOf(100))
+                            .setScale(2, RoundingMode.HALF_UP)
+                    : null;
+
+            return LabDailyStatistics.builder()
+                    .stationId(labId)
+                    .stationName(labName)
+                    .statDate(date)
+                    .avgTemperature(temperature.avg())
+                    .maxTemperature(temperature.maxValue())
+                    .minTemperature(temperature.minValue())
+                    .avgHumidity(humidity.avg())
+                    .maxHumidity(humidity.maxValue())
+                    .minHumidity(humidity.minValue())
+                    .avgPm25(pm25.avg())
+                    .maxPm25(pm25.maxValue())
+                    .avgCo2(co2.avg())
+                    .maxCo2(co2.maxValue())
+                    .reservationCount(reservationCount)
+                    .attendanceCount(attendanceCount)
+                    .usageRate(usageRate)
+                    .maxPeopleCount(maxPeopleCount)
+                    .avgOnlineDevices(onlineDevices.avg())
+                    .dataCount(dataCount)
+                    .alarmCount(alarmCount)
+                    .normalRate(normalRate)
+                    .temperatureSketch(temperature.sketchBytes())
+                    .humiditySketch(humidity.sketchBytes())
+                    .pm25Sketch(pm25.sketchBytes())
+                    .co2Sketch(co2.sketchBytes())
+                    .createdTime(createdTime)
+                    .updatedTime(LocalDateTime.now())
+                    .build();
+        }
+    }
+}
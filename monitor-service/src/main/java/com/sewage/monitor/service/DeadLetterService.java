@@ -0,0 +1,450 @@
+package com.sewage.monitor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sewage.monitor.config.KafkaConfig;
+import com.sewage.monitor.entity.DeadLetterRecord;
+import com.sewage.monitor.entity.LabAlarm;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.kafka.codec.LabPayloadCodec;
+import com.sewage.monitor.kafka.producer.DeadLetterPublisher;
+import com.sewage.monitor.mapper.DeadLetterRecordMapper;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 死信存储与重放服务
+ *
+ * 功能说明：
+ * 1. 保存：死信消费者把死信消息连同失败原因、原始位置写入 dead_letter_record（按死信位置去重）
+ * 2. 重放：按条件（原始Topic、进入时间、最大尝试次数）筛选 PENDING 记录，异步分批重新写入：
+ *    - 环境数据：persistBatch 整批写入，只有写入失败时才降级为 persist 逐条写入；
+ *      落库后与环境数据消费者相同：流水线模式交给 EnvironmentPipeline 分发（包括日统计和汇总），
+ *      否则同步处理缓存、告警和推送；这一步失败只记录日志，不重新写入
+ *    - 告警：LabAlarmWriter 按事件更新/插入，与告警消费者的批量写入逻辑一致
+ *    - 成功的记录置为 REPLAYED；失败的记录尝试次数 + 1 并记录失败原因，保持 PENDING 供下次重放
+ * 3. 限速：按 maxPerSecond 控制每秒重放条数，避免积压的死信一次性压垮数据库和告警推送
+ * 4. 同一时间只运行一个重放任务，进度通过 AsyncTaskManager 查询
+ *
+ * 注意：重放的环境数据和正常数据走同一条链路（缓存、告警检查、统计、WebSocket推送），
+ * 只应重放仍有意义的数据，过旧的数据建议按时间范围筛选后丢弃
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeadLetterService {
+
+    public static final String TASK_TYPE_REDRIVE = "DLQ_REDRIVE";
+
+    private final DeadLetterRecordMapper deadLetterRecordMapper;
+    private final LabEnvironmentDataService labEnvironmentDataService;
+    private final EnvironmentPipeline environmentPipeline;
+    private final LabAlarmWriter labAlarmWriter;
+    private final AsyncTaskManager asyncTaskManager;
+    private final ObjectMapper objectMapper;
+    private final LabPayloadCodec labPayloadCodec;
+
+    /**
+     * 是否启用处理流水线（与环境数据消费者一致）
+     */
+    @Value("${monitor.pipeline.enabled:true}")
+    private boolean pipelineEnabled;
+
+    /**
+     * 重放默认每批条数
+     */
+    @Value("${monitor.dlq.redrive.batch-size:100}")
+    private int defaultBatchSize;
+
+    /**
+     * 重放默认每秒最多条数
+     */
+    @Value("${monitor.dlq.redrive.max-per-second:200}")
+    private int defaultMaxPerSecond;
+
+    /**
+     * 重放线程（单线程，同一时间只有一个重放任务）
+     */
+    private final ExecutorService redriveExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dlq-redrive");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * 正在运行的重放任务ID
+     */
+    private final AtomicReference<String> runningTaskId = new AtomicReference<>();
+
+    private final AtomicLong capturedCount = new AtomicLong();
+    private final AtomicLong replayedCount = new AtomicLong();
+    private final AtomicLong replayFailedCount = new AtomicLong();
+
+    /**
+     * 重放条件
+     */
+    @Data
+    public static class RedriveRequest {
+        /** 原始Topic，为空表示全部 */
+        private String sourceTopic;
+        /** 进入死信队列的时间范围 [startTime, endTime) */
+        private LocalDateTime startTime;
+        private LocalDateTime endTime;
+        /** 只重放尝试次数不超过该值的记录 */
+        private Integer maxAttempts;
+        /** 本次最多重放条数，为空表示全部 */
+        private Integer maxRecords;
+        /** 每批条数 */
+        private Integer batchSize;
+        /** 每秒最多条数 */
+        private Integer maxPerSecond;
+    }
+
+    /**
+     * 保存一条死信消息
+     *
+     * 写入失败时抛出异常，由监听容器重试，不提交死信位点
+     */
+    public void capture(ConsumerRecord<String, String> record) {
+        String sourceTopic = header(record, DeadLetterPublisher.HEADER_ORIGINAL_TOPIC);
+        String partition = header(record, DeadLetterPublisher.HEADER_ORIGINAL_PARTITION);
+        String offset = header(record, DeadLetterPublisher.HEADER_ORIGINAL_OFFSET);
+        String error = header(record, DeadLetterPublisher.HEADER_ERROR);
+        String payloadEncoding = header(record, DeadLetterPublisher.HEADER_PAYLOAD_ENCODING);
+
+        DeadLetterRecord deadLetter = DeadLetterRecord.builder()
+                .dlqTopic(record.topic())
+                .dlqPartition(record.partition())
+                .dlqOffset(record.offset())
+                .sourceTopic(sourceTopic != null ? sourceTopic : sourceTopicOf(record.topic()))
+                .sourcePartition(partition != null ? Integer.valueOf(partition) : null)
+                .sourceOffset(offset != null ? Long.valueOf(offset) : null)
+                .messageKey(record.key())
+                .payload(record.value() != null ? record.value() : "")
+                .payloadEncoding(payloadEncoding)
+                .errorMessage(error != null ? error : "未知（消息没有失败原因）")
+                .attemptCount(1)
+                .status(DeadLetterRecord.Status.PENDING.name())
+                .createdTime(LocalDateTime.now())
+                .build();
+
+        if (deadLetterRecordMapper.insertIgnore(deadLetter) > 0) {
+            capturedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 启动重放任务
+     *
+     * @return 任务ID；已有任务在运行时返回 null
+     */
+    public String startRedrive(RedriveRequest request) {
+        String taskId = asyncTaskManager.createTask(TASK_TYPE_REDRIVE);
+        if (!runningTaskId.compareAndSet(null, taskId)) {
+            asyncTaskManager.removeTask(taskId);
+            return null;
+        }
+        try {
+            redriveExecutor.execute(() -> {
+                try {
+                    redrive(taskId, request);
+                } finally {
+                    runningTaskId.set(null);
+                }
+            });
+        } catch (Exception e) {
+            runningTaskId.set(null);
+            asyncTaskManager.failTask(taskId, "重放任务启动失败: " + e.getMessage());
+        }
+        return taskId;
+    }
+
+    /**
+     * 正在运行的重放任务ID
+     */
+    public String getRunningTaskId() {
+        return runningTaskId.get();
+    }
+
+    /**
+     * 丢弃死信记录（只丢弃 PENDING 状态的记录）
+     *
+     * @return 丢弃的条数
+     */
+    public int discard(List<Long> ids) {
+        int discarded = deadLetterRecordMapper.updateStatus(ids, DeadLetterRecord.Status.PENDING.name(),
+                DeadLetterRecord.Status.DISCARDED.name(), LocalDateTime.now());
+        log.info("🗑️ 死信记录已丢弃 - 请求数: {}, 丢弃数: {}", ids.size(), discarded);
+        return discarded;
+    }
+
+    /**
+     * 获取统计信息
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("capturedCount", capturedCount.get());
+        stats.put("replayedCount", replayedCount.get());
+        stats.put("replayFailedCount", replayFailedCount.get());
+        stats.put("runningTaskId", runningTaskId.get());
+        stats.put("byTopicAndStatus", deadLetterRecordMapper.countByTopicAndStatus());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        redriveExecutor.shutdownNow();
+    }
+
+    // =============================重放=============================
+
+    private void redrive(String taskId, RedriveRequest request) {
+        int batchSize = positive(request.getBatchSize(), defaultBatchSize);
+        int maxPerSecond = positive(request.getMaxPerSecond(), defaultMaxPerSecond);
+        int maxRecords = positive(request.getMaxRecords(), Integer.MAX_VALUE);
+        // 每批不超过每秒限额，避免单批就超出速率
+        batchSize = Math.min(batchSize, maxPerSecond);
+
+        asyncTaskManager.updateTask(taskId, AsyncTaskManager.TaskStatus.PROCESSING, 0, "开始重放死信");
+        log.info("🔁 开始重放死信 - 任务ID: {}, 条件: {}, 每批: {}, 每秒最多: {}",
+                taskId, request, batchSize, maxPerSecond);
+
+        long startNanos = System.nanoTime();
+        long afterId = 0;
+        int processed = 0;
+        int replayed = 0;
+        int failed = 0;
+        try {
+            while (processed < maxRecords) {
+                List<DeadLetterRecord> batch = deadLetterRecordMapper.selectBatchAfter(
+                        DeadLetterRecord.Status.PENDING.name(), afterId, request.getSourceTopic(),
+                        request.getStartTime(), request.getEndTime(), request.getMaxAttempts(),
+                        Math.min(batchSize, maxRecords - processed));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                afterId = batch.get(batch.size() - 1).getId();
+
+                int batchFailed = replayBatch(batch);
+                processed += batch.size();
+                failed += batchFailed;
+                replayed += batch.size() - batchFailed;
+
+                int progress = maxRecords == Integer.MAX_VALUE ? 50 : (int) (processed * 99L / maxRecords);
+                asyncTaskManager.updateTask(taskId, AsyncTaskManager.TaskStatus.PROCESSING, progress,
+                        String.format("已处理 %d 条，成功 %d，失败 %d", processed, replayed, failed));
+
+                // 限速：按已处理条数计算应耗时间，提前完成则等待
+                long expectedNanos = processed * TimeUnit.SECONDS.toNanos(1) / maxPerSecond;
+                long aheadNanos = expectedNanos - (System.nanoTime() - startNanos);
+                if (aheadNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(aheadNanos);
+                }
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("processed", processed);
+            result.put("replayed", replayed);
+            result.put("failed", failed);
+            result.put("costMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+            asyncTaskManager.completeTask(taskId, result);
+            log.info("✅ 死信重放完成 - 任务ID: {}, 结果: {}", taskId, result);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            asyncTaskManager.failTask(taskId, String.format("重放被中断，已处理 %d 条", processed));
+        } catch (Exception e) {
+            log.error("❌ 死信重放失败 - 任务ID: {}", taskId, e);
+            asyncTaskManager.failTask(taskId, String.format("重放失败（已处理 %d 条）: %s", processed, e.getMessage()));
+        }
+    }
+
+    /**
+     * 重放一批记录（按原始Topic分组写入，同组内保持 id 顺序）
+     *
+     * @return 失败条数
+     */
+    private int replayBatch(List<DeadLetterRecord> batch) {
+        List<DeadLetterRecord> envRecords = new ArrayList<>();
+        List<DeadLetterRecord> alarmRecords = new ArrayList<>();
+        List<Long> succeeded = new ArrayList<>();
+        int failed = 0;
+
+        for (DeadLetterRecord record : batch) {
+            if (KafkaConfig.TOPIC_LAB_ENV_DATA.equals(record.getSourceTopic())) {
+                envRecords.add(record);
+            } else if (KafkaConfig.TOPIC_LAB_ALARM.equals(record.getSourceTopic())) {
+                alarmRecords.add(record);
+            } else {
+                markFailed(record, "不支持重放的Topic: " + record.getSourceTopic());
+                failed++;
+            }
+        }
+
+        failed += replayEnvironmentData(envRecords, succeeded);
+        failed += replayAlarms(alarmRecords, succeeded);
+
+        if (!succeeded.isEmpty()) {
+            deadLetterRecordMapper.updateStatus(succeeded, DeadLetterRecord.Status.PENDING.name(),
+                    DeadLetterRecord.Status.REPLAYED.name(), LocalDateTime.now());
+            replayedCount.addAndGet(succeeded.size());
+        }
+        return failed;
+    }
+
+    private int replayEnvironmentData(List<DeadLetterRecord> records, List<Long> succeeded) {
+        if (records.isEmpty()) {
+            return 0;
+        }
+        int failed = 0;
+        List<LabEnvironmentData> dataList = new ArrayList<>(records.size());
+        List<DeadLetterRecord> parsed = new ArrayList<>(records.size());
+        for (DeadLetterRecord record : records) {
+            try {
+                dataList.add(parsePayload(record, LabEnvironmentData.class));
+                parsed.add(record);
+            } catch (Exception e) {
+                markFailed(record, "消息解析失败: " + e.getMessage());
+                failed++;
+            }
+        }
+        if (dataList.isEmpty()) {
+            return failed;
+        }
+
+        // 只有写入失败才降级为逐条写入；落库后的处理失败不能再重新写入，否则会重复插入
+        List<LabEnvironmentData> persisted = dataList;
+        try {
+            labEnvironmentDataService.persistBatch(dataList);
+            parsed.forEach(record -> succeeded.add(record.getId()));
+        } catch (Exception e) {
+            log.warn("⚠️ 死信环境数据批量重放失败，降级为逐条重放 - 数量: {}, Error: {}", dataList.size(), e.getMessage());
+            persisted = new ArrayList<>(dataList.size());
+            for (int i = 0; i < dataList.size(); i++) {
+                try {
+                    labEnvironmentDataService.persist(dataList.get(i));
+                    persisted.add(dataList.get(i));
+                    succeeded.add(parsed.get(i).getId());
+                } catch (Exception single) {
+                    markFailed(parsed.get(i), single.getMessage());
+                    failed++;
+                }
+            }
+        }
+
+        for (LabEnvironmentData data : persisted) {
+            try {
+                process(data);
+            } catch (Exception e) {
+                log.error("❌ 死信环境数据落库后处理失败 - 实验室ID: {}, Error: {}", data.getLabId(), e.getMessage(), e);
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * 处理已落库的重放数据：流水线模式分发到缓存、告警、统计、推送各阶段（StatisticsConsumer 不启动，
+     * 统计只能由流水线更新），否则由 processPersisted 同步处理
+     */
+    private void process(LabEnvironmentData data) {
+        if (pipelineEnabled) {
+            environmentPipeline.dispatch(data);
+        } else {
+            labEnvironmentDataService.processPersisted(data);
+        }
+    }
+
+    private int replayAlarms(List<DeadLetterRecord> records, List<Long> succeeded) {
+        if (records.isEmpty()) {
+            return 0;
+        }
+        int failed = 0;
+        List<LabAlarm> alarms = new ArrayList<>(records.size());
+        List<DeadLetterRecord> parsed = new ArrayList<>(records.size());
+        for (DeadLetterRecord record : records) {
+            try {
+                alarms.add(parsePayload(record, LabAlarm.class));
+                parsed.add(record);
+            } catch (Exception e) {
+                markFailed(record, "消息解析失败: " + e.getMessage());
+                failed++;
+            }
+        }
+        if (alarms.isEmpty()) {
+            return failed;
+        }
+
+        LabAlarmWriter.WriteResult result = labAlarmWriter.write(alarms);
+        for (int i = 0; i < parsed.size(); i++) {
+            String error = result.getFailures().get(i);
+            if (error == null) {
+                succeeded.add(parsed.get(i).getId());
+            } else {
+                markFailed(parsed.get(i), error);
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * 解析死信内容：JSON 直接解析；Base64 保存的原始二进制消息重新解码（字典恢复后可以解析当时失败的编号）
+     */
+    private <T> T parsePayload(DeadLetterRecord record, Class<T> type) throws IOException {
+        if (DeadLetterPublisher.ENCODING_BASE64.equals(record.getPayloadEncoding())) {
+            return labPayloadCodec.read(labPayloadCodec.decode(Base64.getDecoder().decode(record.getPayload())), type);
+        }
+        return objectMapper.readValue(record.getPayload(), type);
+    }
+
+    private void markFailed(DeadLetterRecord record, String error) {
+        replayFailedCount.incrementAndGet();
+        try {
+            deadLetterRecordMapper.recordFailure(record.getId(), DeadLetterPublisher.truncate(error), LocalDateTime.now());
+        } catch (Exception e) {
+            log.error("❌ 记录死信重放失败原因失败 - 死信ID: {}, Error: {}", record.getId(), e.getMessage());
+        }
+    }
+
+    // =============================工具方法=============================
+
+    /**
+     * 没有原始Topic消息头的旧消息，按死信Topic推断原始Topic
+     */
+    private static String sourceTopicOf(String dlqTopic) {
+        if (KafkaConfig.TOPIC_LAB_ENV_DATA_DLQ.equals(dlqTopic)) {
+            return KafkaConfig.TOPIC_LAB_ENV_DATA;
+        }
+        if (KafkaConfig.TOPIC_LAB_ALARM_DLQ.equals(dlqTopic)) {
+            return KafkaConfig.TOPIC_LAB_ALARM;
+        }
+        return dlqTopic;
+    }
+
+    private static String header(ConsumerRecord<String, String> record, String key) {
+        Header header = record.headers().lastHeader(key);
+        return header != null && header.value() != null ? new String(header.value(), StandardCharsets.UTF_8) : null;
+    }
+
+    private static int positive(Integer value, int defaultValue) {
+        return value != null && value > 0 ? value : defaultValue;
+    }
+}
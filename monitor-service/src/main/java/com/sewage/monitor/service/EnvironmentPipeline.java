@@ -0,0 +1,116 @@
+package com.sewage.monitor.service;
+
+import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.util.PipelineStage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 环境数据处理流水线
+ *
+ * 功能说明：
+ * 1. 环境数据消费者解析一次、落库后调用 dispatch，同一个对象分发到各阶段，不再重复反序列化：
+ *    - cache：实时/历史缓存、近端缓存
+ *    - alarm：告警规则检查和状态机
+ *    - statistics：日统计内存聚合、分钟/小时汇总增量（替代单独消费同一 Topic 的 StatisticsConsumer）
+ *    - push：WebSocket实时推送
+ * 2. 每个阶段独立的有界队列和工作线程数（monitor.pipeline.<阶段>.*），慢阶段只阻塞自己的队列，
+ *    队列满时阻塞消费者线程形成背压
+ * 3. 同一实验室的数据在每个阶段内由同一工作线程按顺序处理（告警状态机、增量推送依赖顺序）
+ *
+ * 注意：各阶段只读数据对象，不能修改；位点在落库后提交，进程崩溃时队列中未处理完的数据只影响缓存/告警/推送/统计
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class EnvironmentPipeline {
+
+    private final LabEnvironmentDataService labEnvironmentDataService;
+    private final AlarmService alarmService;
+    private final StatisticsService statisticsService;
+    private final WebSocketPushService webSocketPushService;
+
+    @Value("${monitor.pipeline.cache.workers:2}")
+    private int cacheWorkers;
+
+    @Value("${monitor.pipeline.cache.queue-capacity:5000}")
+    private int cacheQueueCapacity;
+
+    @Value("${monitor.pipeline.alarm.workers:4}")
+    private int alarmWorkers;
+
+    @Value("${monitor.pipeline.alarm.queue-capacity:5000}")
+    private int alarmQueueCapacity;
+
+    @Value("${monitor.pipeline.statistics.workers:1}")
+    private int statisticsWorkers;
+
+    @Value("${monitor.pipeline.statistics.queue-capacity:10000}")
+    private int statisticsQueueCapacity;
+
+    @Value("${monitor.pipeline.push.workers:2}")
+    private int pushWorkers;
+
+    @Value("${monitor.pipeline.push.queue-capacity:5000}")
+    private int pushQueueCapacity;
+
+    private PipelineStage<LabEnvironmentData> cacheStage;
+    private PipelineStage<LabEnvironmentData> alarmStage;
+    private PipelineStage<LabEnvironmentData> statisticsStage;
+    private PipelineStage<LabEnvironmentData> pushStage;
+
+    @PostConstruct
+    public void init() {
+        cacheStage = new PipelineStage<>("cache", cacheWorkers, cacheQueueCapacity,
+                labEnvironmentDataService::updateCaches);
+        alarmStage = new PipelineStage<>("alarm", alarmWorkers, alarmQueueCapacity,
+                alarmService::checkAndSendAlarm);
+        statisticsStage = new PipelineStage<>("statistics", statisticsWorkers, statisticsQueueCapacity,
+                statisticsService::updateStatistics);
+        pushStage = new PipelineStage<>("push", pushWorkers, pushQueueCapacity,
+                webSocketPushService::pushEnvironmentData);
+        log.info("🔀 环境数据流水线初始化完成 - cache: {}, alarm: {}, statistics: {}, push: {}",
+                cacheWorkers, alarmWorkers, statisticsWorkers, pushWorkers);
+    }
+
+    /**
+     * 分发一条已落库的环境数据到各阶段
+     */
+    public void dispatch(LabEnvironmentData data) {
+        long key = data.getLabId() != null ? data.getLabId() : 0L;
+        cacheStage.submit(key, data);
+        alarmStage.submit(key, data);
+        statisticsStage.submit(key, data);
+        pushStage.submit(key, data);
+    }
+
+    /**
+     * 各阶段统计（积压量、吞吐量、耗时分布）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cache", cacheStage.getStats());
+        stats.put("alarm", alarmStage.getStats());
+        stats.put("statistics", statisticsStage.getStats());
+        stats.put("push", pushStage.getStats());
+        return stats;
+    }
+
+    /**
+     * 关闭时处理完队列中的数据（统计阶段先于日统计引擎的最后一次刷新完成）
+     */
+    @PreDestroy
+    public void shutdown() {
+        cacheStage.shutdown(5000);
+        alarmStage.shutdown(5000);
+        statisticsStage.shutdown(5000);
+        pushStage.shutdown(5000);
+    }
+}
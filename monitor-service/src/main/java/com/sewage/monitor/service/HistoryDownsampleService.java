@@ -0,0 +1,116 @@
+package com.sewage.monitor.service;
+
+import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.mapper.LabEnvironmentDataMapper;
+import com.sewage.monitor.util.TimeSeriesDownsampler;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 历史数据服务端降采样
+ *
+ * 功能说明：
+ * 1. 通过 MyBatis 游标按时间升序逐行读取原始数据（MySQL 流式结果集），边读边交给每个指标的降采样器，
+ *    不在内存中保留整个时间范围的数据
+ * 2. 每个指标输出不超过 maxPoints 个点（LTTB 或每桶最小/最大值），响应大小与时间范围长短无关
+ * 3. 列式响应：每个指标一组时间戳数组（毫秒）和数值数组，比逐行对象的 JSON 小一个数量级
+ *
+ * 游标只能在打开它的会话内遍历，因此查询方法在只读事务中执行
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class HistoryDownsampleService {
+
+    /**
+     * 降采样的指标：名称 → 取值函数
+     */
+    private static final Map<String, Function<LabEnvironmentData, Double>> METRICS = new LinkedHashMap<>();
+
+    static {
+        METRICS.put("temperature", LabEnvironmentData::getTemperature);
+        METRICS.put("humidity", LabEnvironmentData::getHumidity);
+        METRICS.put("pm25", LabEnvironmentData::getPm25);
+        METRICS.put("illuminance", LabEnvironmentData::getIlluminance);
+        METRICS.put("co2", LabEnvironmentData::getCo2);
+    }
+
+    private final LabEnvironmentDataMapper labEnvironmentDataMapper;
+
+    @Value("${monitor.history.max-points:5000}")
+    private int maxPointsLimit;
+
+    /**
+     * 查询并降采样时间范围内的历史数据
+     *
+     * @param labId     实验室ID
+     * @param startTime 开始时间
+     * @param endTime   结束时间
+     * @param maxPoints 每个指标最多返回的点数
+     * @param mode      LTTB / MIN_MAX
+     * @return 列式结果：series.<指标>.t 时间戳数组、series.<指标>.v 数值数组
+     */
+    @Transactional(readOnly = true)
+    public Map<String, Object> downsample(Long labId, LocalDateTime startTime, LocalDateTime endTime,
+                                          int maxPoints, TimeSeriesDownsampler.Mode mode) {
+        long startMillis = System.currentTimeMillis();
+        int points = Math.max(4, Math.min(maxPoints, maxPointsLimit));
+        ZoneId zone = ZoneId.systemDefault();
+        long start = startTime.atZone(zone).toInstant().toEpochMilli();
+        long end = endTime.atZone(zone).toInstant().toEpochMilli();
+
+        Map<String, TimeSeriesDownsampler> samplers = new LinkedHashMap<>();
+        METRICS.keySet().forEach(name -> samplers.put(name, TimeSeriesDownsampler.create(mode, start, end, points)));
+
+        long rows = 0;
+        try (Cursor<LabEnvironmentData> cursor = labEnvironmentDataMapper.streamByTimeRange(labId, startTime, endTime)) {
+            for (LabEnvironmentData row : cursor) {
+                rows++;
+                if (row.getMonitorTime() == null) {
+                    continue;
+                }
+                long time = row.getMonitorTime().atZone(zone).toInstant().toEpochMilli();
+                METRICS.forEach((name, getter) -> {
+                    Double value = getter.apply(row);
+                    if (value != null) {
+                        samplers.get(name).add(time, value);
+                    }
+                });
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("关闭历史数据游标失败", e);
+        }
+
+        Map<String, Object> series = new LinkedHashMap<>();
+        samplers.forEach((name, sampler) -> {
+            sampler.finish();
+            Map<String, Object> column = new LinkedHashMap<>();
+            column.put("t", sampler.times());
+            column.put("v", sampler.values());
+            series.put(name, column);
+        });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("labId", labId);
+        result.put("mode", mode);
+        result.put("maxPoints", points);
+        result.put("rawCount", rows);
+        result.put("series", series);
+        long elapsed = System.currentTimeMillis() - startMillis;
+        log.debug("📉 历史数据降采样完成 - 实验室ID: {}, 原始: {}条, 每指标最多: {}点, 耗时: {}ms",
+                labId, rows, points, elapsed);
+        return result;
+    }
+}
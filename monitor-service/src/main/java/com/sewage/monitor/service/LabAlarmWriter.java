@@ -0,0 +1,167 @@
+package com.sewage.monitor.service;
+
+import com.sewage.monitor.entity.LabAlarm;
+import com.sewage.monitor.mapper.LabAlarmMapper;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 告警批量写入
+ *
+ * 功能说明：
+ * 1. 按顺序处理一批告警事件（同一实验室同一类型的告警必须保持原始顺序）：
+ *    - RECOVERED：解决数据库中未关闭的告警
+ *    - FIRING / UPDATE：更新未关闭的告警，没有时加入待插入列表
+ *    - 无事件（旧版本消息）：直接加入待插入列表
+ * 2. 本批次内已决定插入的告警，后续事件直接合并到待插入的记录上，不访问数据库
+ * 3. 待插入的告警通过一条多值INSERT写入；失败时降级为逐条插入，定位真正失败的告警
+ *
+ * 告警消费者和死信重放共用，调用方根据返回的失败下标决定进入死信队列还是记录重试次数
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LabAlarmWriter {
+
+    private final LabAlarmMapper labAlarmMapper;
+
+    /**
+     * 写入一批告警
+     */
+    public WriteResult write(List<LabAlarm> alarms) {
+        WriteResult result = new WriteResult();
+        List<PendingInsert> inserts = new ArrayList<>();
+        Map<String, PendingInsert> insertsByKey = new HashMap<>();
+
+        for (int i = 0; i < alarms.size(); i++) {
+            LabAlarm alarm = alarms.get(i);
+            if (alarm.getEvent() == null) {
+                inserts.add(new PendingInsert(alarm, i));
+                continue;
+            }
+
+            String key = alarm.getLabId() + ":" + alarm.getAlarmType();
+            PendingInsert pending = insertsByKey.get(key);
+            if (pending != null) {
+                pending.merge(alarm, i);
+                if (alarm.getEvent() == LabAlarm.AlarmEvent.RECOVERED) {
+                    insertsByKey.remove(key);
+                }
+                continue;
+            }
+
+            try {
+                if (alarm.getEvent() == LabAlarm.AlarmEvent.RECOVERED) {
+                    result.resolved += labAlarmMapper.resolveOpenAlarm(alarm);
+                } else if (labAlarmMapper.updateOpenAlarm(alarm) > 0) {
+                    result.updated++;
+                } else {
+                    pending = new PendingInsert(alarm, i);
+                    inserts.add(pending);
+                    insertsByKey.put(key, pending);
+                }
+            } catch (Exception e) {
+                log.error("❌ 告警更新失败 - LabId: {}, AlarmType: {}, Error: {}",
+                        alarm.getLabId(), alarm.getAlarmType(), e.getMessage());
+                result.failures.put(i, e.getMessage());
+            }
+        }
+
+        insertAll(inserts, result);
+        return result;
+    }
+
+    /**
+     * 多值INSERT写入待插入的告警，失败时降级为逐条插入
+     */
+    private void insertAll(List<PendingInsert> inserts, WriteResult result) {
+        if (inserts.isEmpty()) {
+            return;
+        }
+        List<LabAlarm> alarms = new ArrayList<>(inserts.size());
+        for (PendingInsert pending : inserts) {
+            alarms.add(pending.alarm);
+        }
+
+        try {
+            labAlarmMapper.insertBatch(alarms);
+            result.inserted += alarms.size();
+            return;
+        } catch (Exception e) {
+            log.error("❌ 告警批量插入失败，降级为逐条插入 - 数量: {}, Error: {}", alarms.size(), e.getMessage(), e);
+        }
+
+        for (PendingInsert pending : inserts) {
+            try {
+                labAlarmMapper.insert(pending.alarm);
+                result.inserted++;
+            } catch (Exception single) {
+                log.error("❌ 告警保存失败 - LabId: {}, AlarmType: {}, Error: {}",
+                        pending.alarm.getLabId(), pending.alarm.getAlarmType(), single.getMessage());
+                for (Integer index : pending.sourceIndexes) {
+                    result.failures.put(index, single.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 写入结果
+     */
+    @Getter
+    public static class WriteResult {
+        private int inserted;
+        private int updated;
+        private int resolved;
+
+        /**
+         * 失败的告警下标 → 失败原因（按输入顺序）
+         */
+        private final Map<Integer, String> failures = new LinkedHashMap<>();
+    }
+
+    /**
+     * 本批次待插入的告警，以及合并进来的全部告警下标（插入失败时一起标记失败）
+     */
+    private static final class PendingInsert {
+        private final LabAlarm alarm;
+        private final List<Integer> sourceIndexes = new ArrayList<>(1);
+
+        PendingInsert(LabAlarm alarm, int index) {
+            this.alarm = alarm;
+            this.sourceIndexes.add(index);
+            if (alarm.getOccurrenceCount() == null) {
+                alarm.setOccurrenceCount(1);
+            }
+        }
+
+        /**
+         * 合并同一告警的后续事件
+         */
+        void merge(LabAlarm next, int index) {
+            sourceIndexes.add(index);
+            alarm.setOccurrenceCount(alarm.getOccurrenceCount()
+                    + (next.getOccurrenceCount() != null ? next.getOccurrenceCount() : 0));
+            alarm.setLastAlarmTime(next.getLastAlarmTime());
+            if (next.getEvent() == LabAlarm.AlarmEvent.RECOVERED) {
+                alarm.setStatus(next.getStatus());
+                alarm.setResolvedAt(next.getResolvedAt());
+                alarm.setResolvedBy(next.getResolvedBy());
+                alarm.setRemark(next.getRemark());
+            } else {
+                alarm.setAlarmLevel(next.getAlarmLevel());
+                alarm.setAlarmMessage(next.getAlarmMessage());
+                alarm.setAlarmValue(next.getAlarmValue());
+                alarm.setThresholdValue(next.getThresholdValue());
+            }
+        }
+    }
+}
@@ -3,15 +3,24 @@ package com.sewage.monitor.service;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.entity.LabEnvironmentRollup;
 import com.sewage.monitor.mapper.LabEnvironmentDataMapper;
+import com.sewage.monitor.mapper.LabEnvironmentRollupMapper;
+import com.sewage.monitor.util.KeysetPage;
+import com.sewage.monitor.websocket.WebSocketServer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
+import javax.annotation.PostConstruct;
+
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -38,37 +47,45 @@ public class LabEnvironmentDataService {
     private final CacheService cacheService;
     private final AlarmService alarmService;
     private final WebSocketPushService webSocketPushService;
+    private final CacheWriteBehindService cacheWriteBehindService;
+    private final LatestDataNearCache latestDataNearCache;
+    private final LabEnvironmentRollupMapper labEnvironmentRollupMapper;
+
+    /**
+     * 查询最新数据时依次尝试的回看天数：表按 monitor_time 分区后，带时间下界的查询只扫描最近的分区，
+     * 都查不到时才退回全表查询（长期离线的实验室）
+     */
+    @Value("${monitor.partition.latest-lookback-days:1,31}")
+    private int[] latestLookbackDays;
+
+    /**
+     * 历史曲线单次最多返回的点数
+     */
+    @Value("${monitor.rollup.max-points:5000}")
+    private int maxSeriesPoints;
+
+    @PostConstruct
+    public void init() {
+        // WebSocket 第一个订阅者到来时按最新数据重建增量快照
+        WebSocketServer.setLatestDataLoader(this::getLatestData);
+    }
 
     /**
      * 保存监测数据 - 集成Redis缓存
      *
      * 缓存更新策略：
      * 1. 先保存到数据库（保证数据不丢失）
-     * 2. 立即更新实时数据缓存
-     * 3. 异步更新历史数据缓存
-     * 4. 触发告警检查
+     * 2. 实时数据和历史数据缓存提交给CacheWriteBehindService，定时合并成一次Pipeline写入
+     * 3. 触发告警检查
      */
     public void saveMonitorData(LabEnvironmentData data) {
         try {
-            // 1. 设置基础信息
-            data.setCreatedTime(LocalDateTime.now());
-            data.setQualityLevel(calculateEnvironmentLevel(data));
-
-            // 2. 保存到数据库（保证数据持久化）
-            labEnvironmentDataMapper.insert(data);
+            // 1-2. 设置基础信息并保存到数据库（保证数据持久化）
+            persist(data);
             log.info("📥 数据库保存成功 - 实验室ID: {}, 实验室: {}", data.getLabId(), data.getLabName());
 
-            // 3. 更新实时数据缓存（Hash结构）
-            updateRealtimeCache(data);
-
-            // 4. 更新历史数据缓存（Sorted Set结构）
-            updateHistoryCache(data);
-
-            // 5. 触发告警检查
-            alarmService.checkAndSendAlarm(data);
-
-            // 6. 推送WebSocket实时数据
-            webSocketPushService.pushEnvironmentData(data);
+            // 3-6. 更新缓存、触发告警检查、推送WebSocket实时数据
+            processPersisted(data);
 
             log.info("✅ 环境数据处理完成 - 实验室ID: {}", data.getLabId());
 
@@ -78,6 +95,76 @@ public class LabEnvironmentDataService {
         }
     }
 
+    /**
+     * 批量保存监测数据
+     *
+     * 与saveMonitorData的区别：
+     * 1. 整批数据通过一条多值INSERT写入数据库，只有一次数据库往返
+     * 2. 数据库写入成功后，再逐条更新缓存、检查告警、推送WebSocket
+     * 3. 批量写入失败时直接抛出异常，由调用方决定是否降级为逐条写入
+     *
+     * @param dataList 环境数据列表
+     */
+    public void saveMonitorDataBatch(List<LabEnvironmentData> dataList) {
+        if (dataList == null || dataList.isEmpty()) {
+            return;
+        }
+
+        // 1-2. 设置基础信息，一次性写入数据库
+        persistBatch(dataList);
+        log.info("📥 数据库批量保存成功 - 数量: {}", dataList.size());
+
+        // 3. 数据落库后再处理缓存、告警和推送
+        for (LabEnvironmentData data : dataList) {
+            processPersisted(data);
+        }
+    }
+
+    /**
+     * 落库后的处理（非流水线模式）：更新缓存、检查告警、推送WebSocket
+     *
+     * 数据已经写入数据库，调用方在这里失败时不能再重新保存，否则会重复插入
+     */
+    public void processPersisted(LabEnvironmentData data) {
+        // 提交实时数据缓存（Hash结构）和历史数据缓存（Sorted Set结构），由合并写入服务批量刷新
+        updateCaches(data);
+
+        // 触发告警检查
+        alarmService.checkAndSendAlarm(data);
+
+        // 推送WebSocket实时数据
+        webSocketPushService.pushEnvironmentData(data);
+    }
+
+    /**
+     * 只保存到数据库（设置创建时间和环境等级），缓存、告警、推送由调用方处理
+     */
+    public void persist(LabEnvironmentData data) {
+        data.setCreatedTime(LocalDateTime.now());
+        data.setQualityLevel(calculateEnvironmentLevel(data));
+        labEnvironmentDataMapper.insert(data);
+    }
+
+    /**
+     * 只批量保存到数据库（一条多值INSERT），失败时直接抛出异常
+     */
+    public void persistBatch(List<LabEnvironmentData> dataList) {
+        LocalDateTime now = LocalDateTime.now();
+        for (LabEnvironmentData data : dataList) {
+            data.setCreatedTime(now);
+            data.setQualityLevel(calculateEnvironmentLevel(data));
+        }
+        labEnvironmentDataMapper.insertBatch(dataList);
+    }
+
+    /**
+     * 更新缓存：实时/历史缓存提交给合并写入服务，最新数据写入近端缓存
+     */
+    public void updateCaches(LabEnvironmentData data) {
+        cacheWriteBehindService.submit(data, convertToHash(data));
+        latestDataNearCache.put(data);
+    }
+
     /**
      * 更新实时数据缓存
      *
@@ -107,47 +194,13 @@ public class LabEnvironmentDataService {
     }
 
     /**
-     * 更新历史数据缓存
-     *
-     * 使用Sorted Set结构的原因：
-     * 1. 自动按时间戳排序
-     * 2. 支持时间范围查询
-     * 3. 内存效率高，自动去重
-     */
-    private void updateHistoryCache(LabEnvironmentData data) {
-        try {
-            String dateKey = data.getMonitorTime().toLocalDate().toString().replace("-", "");
-            String cacheKey = "lab:history:" + data.getLabId() + ":" + dateKey;
-
-            // 时间戳作为score
-            double score = data.getMonitorTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
-
-            // 添加到Sorted Set
-            cacheService.zAdd(cacheKey, data, score);
-
-            // 保持最近1000条记录，防止内存无限增长
-            long size = cacheService.zSize(cacheKey);
-            if (size > 1000) {
-                cacheService.zRemoveRangeByScore(cacheKey, 0, score - 1000);
-            }
-
-            // 设置10分钟过期时间
-            cacheService.expire(cacheKey, 600);
-
-            log.debug("📚 历史数据缓存更新成功 - key: {}, 当前大小: {}", cacheKey, size);
-
-        } catch (Exception e) {
-            log.error("❌ 历史数据缓存更新失败 - 实验室ID: {}", data.getLabId(), e);
-        }
-    }
-
-    /**
-     * 获取最新监测数据 - 集成Redis缓存
+     * 获取最新监测数据 - 两级缓存
      *
      * 缓存查询策略：
-     * 1. 先查Redis缓存（Hash结构）
-     * 2. 缓存未命中，查询数据库
-     * 3. 将结果写入缓存，防止缓存穿透
+     * 1. 先查本地近端缓存（Caffeine，JVM堆内）
+     * 2. 本地未命中，查Redis缓存（Hash结构）
+     * 3. Redis未命中，查询数据库
+     * 4. 将结果写入缓存，防止缓存穿透
      *
      * @param labId 实验室ID
      * @return 最新环境数据
@@ -156,7 +209,13 @@ public class LabEnvironmentDataService {
         if (labId == null) {
             return null;
         }
+        return latestDataNearCache.get(labId, this::loadLatestData);
+    }
 
+    /**
+     * 从Redis或数据库加载最新监测数据（近端缓存未命中时回源）
+     */
+    private LabEnvironmentData loadLatestData(Long labId) {
         String cacheKey = "lab:latest:" + labId;
 
         try {
@@ -177,7 +236,7 @@ public class LabEnvironmentDataService {
 
             // 3. 缓存未命中，查询数据库
             log.debug("🔍 缓存未命中，查询数据库 - 实验室ID: {}", labId);
-            LabEnvironmentData data = labEnvironmentDataMapper.getLatestData(labId);
+            LabEnvironmentData data = queryLatestData(labId);
 
             // 4. 将结果写入缓存（包括空值）
             if (data != null) {
@@ -192,10 +251,24 @@ public class LabEnvironmentDataService {
         } catch (Exception e) {
             log.error("❌ 获取最新数据失败 - 实验室ID: {}", labId, e);
             // 降级到直接查询数据库
-            return labEnvironmentDataMapper.getLatestData(labId);
+            return queryLatestData(labId);
         }
     }
 
+    /**
+     * 从数据库查询最新数据：先按回看窗口查询（分区裁剪），再退回全表
+     */
+    private LabEnvironmentData queryLatestData(Long labId) {
+        LocalDateTime now = LocalDateTime.now();
+        for (int days : latestLookbackDays) {
+            LabEnvironmentData data = labEnvironmentDataMapper.getLatestDataSince(labId, now.minusDays(days));
+            if (data != null) {
+                return data;
+            }
+        }
+        return labEnvironmentDataMapper.getLatestData(labId);
+    }
+
     /**
      * 查询历史数据 - 集成Redis缓存
      *
@@ -231,6 +304,94 @@ public class LabEnvironmentDataService {
         }
     }
 
+    /**
+     * 查询历史曲线 - 按需要的点数自动选择分辨率
+     *
+     * 分辨率选择（RollupEngine.chooseResolution）：
+     * 1. 范围内至少能得到 points 个点的最粗分辨率：小时汇总 → 分钟汇总
+     * 2. 分钟汇总也不够 points 个点时读取原始数据（短时间范围，走 getHistoryData 的缓存）
+     *
+     * 例如 30 天、720 个点读取约 720 行小时汇总，而不是数百万行原始数据
+     *
+     * @param labId 实验室ID
+     * @param startTime 开始时间
+     * @param endTime 结束时间
+     * @param points 需要的点数（图表宽度）
+     * @return resolution 分辨率（秒，0为原始数据）、points 按时间升序的点（每个指标的 avg/min/max/last）
+     */
+    public Map<String, Object> getHistorySeries(Long labId, LocalDateTime startTime, LocalDateTime endTime, int points) {
+        int requested = Math.max(1, Math.min(points, maxSeriesPoints));
+        int resolution = RollupEngine.chooseResolution(startTime, endTime, requested);
+
+        List<Map<String, Object>> series = new ArrayList<>();
+        if (resolution > 0) {
+            // 桶起始时间早于 startTime 的第一个桶也包含范围内的数据
+            LocalDateTime firstBucket = RollupEngine.bucketStart(startTime, resolution);
+            for (LabEnvironmentRollup rollup : labEnvironmentRollupMapper.selectSeries(labId, resolution, firstBucket, endTime)) {
+                series.add(toSeriesPoint(rollup));
+            }
+        } else {
+            List<LabEnvironmentData> raw = getHistoryData(labId, startTime, endTime);
+            for (int i = raw.size() - 1; i >= 0; i--) {
+                series.add(toSeriesPoint(raw.get(i)));
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("labId", labId);
+        result.put("resolution", resolution);
+        result.put("requestedPoints", requested);
+        result.put("count", series.size());
+        result.put("points", series);
+        log.debug("📈 历史曲线查询 - 实验室ID: {}, 分辨率: {}s, 点数: {}", labId, resolution, series.size());
+        return result;
+    }
+
+    private static Map<String, Object> toSeriesPoint(LabEnvironmentRollup rollup) {
+        Map<String, Object> point = new LinkedHashMap<>();
+        point.put("time", rollup.getBucketTime());
+        point.put("count", rollup.getSampleCount());
+        point.put("temperature", metricPoint(rollup.getTemperatureCount(), rollup.getTemperatureSum(),
+                rollup.getTemperatureMin(), rollup.getTemperatureMax(), rollup.getTemperatureLast()));
+        point.put("humidity", metricPoint(rollup.getHumidityCount(), rollup.getHumiditySum(),
+                rollup.getHumidityMin(), rollup.getHumidityMax(), rollup.getHumidityLast()));
+        point.put("pm25", metricPoint(rollup.getPm25Count(), rollup.getPm25Sum(),
+                rollup.getPm25Min(), rollup.getPm25Max(), rollup.getPm25Last()));
+        point.put("illuminance", metricPoint(rollup.getIlluminanceCount(), rollup.getIlluminanceSum(),
+                rollup.getIlluminanceMin(), rollup.getIlluminanceMax(), rollup.getIlluminanceLast()));
+        point.put("co2", metricPoint(rollup.getCo2Count(), rollup.getCo2Sum(),
+                rollup.getCo2Min(), rollup.getCo2Max(), rollup.getCo2Last()));
+        return point;
+    }
+
+    private static Map<String, Object> toSeriesPoint(LabEnvironmentData data) {
+        Map<String, Object> point = new LinkedHashMap<>();
+        point.put("time", data.getMonitorTime());
+        point.put("count", 1);
+        point.put("temperature", rawMetricPoint(data.getTemperature()));
+        point.put("humidity", rawMetricPoint(data.getHumidity()));
+        point.put("pm25", rawMetricPoint(data.getPm25()));
+        point.put("illuminance", rawMetricPoint(data.getIlluminance()));
+        point.put("co2", rawMetricPoint(data.getCo2()));
+        return point;
+    }
+
+    private static Map<String, Object> rawMetricPoint(Double value) {
+        return value != null ? metricPoint(1, value, value, value, value) : null;
+    }
+
+    private static Map<String, Object> metricPoint(Integer count, Double sum, Double min, Double max, Double last) {
+        if (count == null || count == 0 || sum == null) {
+            return null;
+        }
+        Map<String, Object> metric = new LinkedHashMap<>();
+        metric.put("avg", Math.round(sum / count * 100) / 100.0);
+        metric.put("min", min);
+        metric.put("max", max);
+        metric.put("last", last);
+        return metric;
+    }
+
     /**
      * 从缓存获取历史数据
      */
@@ -257,9 +418,9 @@ public class LabEnvironmentDataService {
         log.debug("🔍 历史数据缓存未命中，查询数据库 - 实验室ID: {}", labId);
         List<LabEnvironmentData> dataList = labEnvironmentDataMapper.getDataByTimeRange(labId, startTime, endTime);
 
-        // 将查询结果写入缓存（可选，根据业务需求决定）
+        // 将查询结果写入缓存（合并成一次Pipeline写入）
         for (LabEnvironmentData data : dataList) {
-            updateHistoryCache(data);
+            cacheWriteBehindService.submitHistory(data);
         }
 
         return dataList;
@@ -267,6 +428,8 @@ public class LabEnvironmentDataService {
 
     /**
      * 分页查询监测数据
+     *
+     * 偏移分页每页都执行 COUNT(*) 并扫描丢弃前面的行，深页请使用 getKeysetPage
      */
     public Page<LabEnvironmentData> getPageData(Long labId, int current, int size) {
         Page<LabEnvironmentData> page = new Page<>(current, size);
@@ -278,6 +441,28 @@ public class LabEnvironmentDataService {
         return labEnvironmentDataMapper.selectPage(page, wrapper);
     }
 
+    /**
+     * 游标分页查询监测数据（按 监测时间, id 倒序）
+     *
+     * @param labId     实验室ID，为空时查询所有实验室
+     * @param token     上一页返回的 nextToken，为空时查询第一页
+     * @param size      每页数量
+     * @param withTotal 是否返回近似总数
+     * @throws IllegalArgumentException 令牌无效
+     */
+    public KeysetPage<LabEnvironmentData> getKeysetPage(Long labId, String token, int size, boolean withTotal) {
+        int pageSize = KeysetPage.clampSize(size);
+        KeysetPage.Position after = KeysetPage.decode(token);
+        List<LabEnvironmentData> rows = labEnvironmentDataMapper.selectKeyset(labId,
+                after != null ? after.getTime() : null, after != null ? after.getId() : null, pageSize + 1);
+        KeysetPage<LabEnvironmentData> page = KeysetPage.of(rows, pageSize,
+                LabEnvironmentData::getMonitorTime, LabEnvironmentData::getId);
+        if (withTotal) {
+            page.setApproximateTotal(KeysetPage.estimatedRows(labEnvironmentDataMapper.explainCount(labId)));
+        }
+        return page;
+    }
+
     /**
      * 计算环境质量等级
      */
@@ -486,9 +671,10 @@ public class LabEnvironmentDataService {
      */
     public void clearLabCache(Long labId) {
         try {
-            // 清理实时数据缓存
+            // 清理实时数据缓存（Redis + 所有实例的近端缓存）
             String realtimeKey = "lab:latest:" + labId;
             cacheService.delete(realtimeKey);
+            latestDataNearCache.publishInvalidate(List.of(labId));
 
             // 清理历史数据缓存（清理最近7天）
             for (int i = 0; i < 7; i++) {
@@ -0,0 +1,165 @@
+package com.sewage.monitor.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 最新数据本地近端缓存（L1 Caffeine + L2 Redis）
+ *
+ * 功能说明：
+ * 1. 在Redis实时数据缓存前增加一层JVM堆内缓存，看板轮询直接命中本地内存
+ * 2. 本实例写入新数据时直接更新本地缓存
+ * 3. 其他实例通过Redis发布订阅收到失效通知，删除本地缓存后回源Redis
+ *
+ * 一致性说明：
+ * - 失效通知与Redis实时数据写入在同一个Pipeline中、且排在写入之后发送，
+ *   其他实例收到通知后回源读到的一定是新数据
+ * - 本地缓存设置较短的TTL兜底，即使通知丢失，脏数据最多保留TTL时长
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LatestDataNearCache implements MessageListener {
+
+    /**
+     * 失效通知频道
+     */
+    public static final String INVALIDATE_CHANNEL = "lab:latest:invalidate";
+
+    /**
+     * 当前实例标识，用于忽略自己发出的失效通知
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${monitor.cache.near.max-size:10000}")
+    private long maxSize;
+
+    @Value("${monitor.cache.near.ttl-ms:5000}")
+    private long ttlMillis;
+
+    private Cache<Long, LabEnvironmentData> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .recordStats()
+                .build();
+
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATE_CHANNEL));
+        log.info("🧊 最新数据近端缓存初始化完成 - 最大容量: {}, TTL: {}ms, 实例: {}", maxSize, ttlMillis, instanceId);
+    }
+
+    /**
+     * 获取最新数据，本地未命中时通过loader回源（同一实验室并发回源只执行一次）
+     *
+     * @param labId  实验室ID
+     * @param loader 回源方法（Redis → 数据库），返回null时不缓存
+     * @return 最新环境数据
+     */
+    public LabEnvironmentData get(Long labId, Function<Long, LabEnvironmentData> loader) {
+        return cache.get(labId, loader);
+    }
+
+    /**
+     * 本实例写入新数据时更新本地缓存，只保留监测时间最新的一条
+     */
+    public void put(LabEnvironmentData data) {
+        if (data == null || data.getLabId() == null) {
+            return;
+        }
+        cache.asMap().merge(data.getLabId(), data, (old, cur) ->
+                old.getMonitorTime() != null && cur.getMonitorTime() != null
+                        && old.getMonitorTime().isAfter(cur.getMonitorTime()) ? old : cur);
+    }
+
+    /**
+     * 删除本地缓存
+     */
+    public void invalidate(Long labId) {
+        cache.invalidate(labId);
+    }
+
+    /**
+     * 构造失效通知内容：实例ID|实验室ID1,实验室ID2...
+     */
+    public String buildInvalidateMessage(Collection<Long> labIds) {
+        return instanceId + "|" + labIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    /**
+     * 发布失效通知（单独发送，用于清理缓存等非Pipeline场景）
+     */
+    public void publishInvalidate(Collection<Long> labIds) {
+        cache.invalidateAll(labIds);
+        try {
+            redisTemplate.convertAndSend(INVALIDATE_CHANNEL, buildInvalidateMessage(labIds));
+        } catch (Exception e) {
+            log.error("❌ 发布近端缓存失效通知失败 - 实验室ID: {}", labIds, e);
+        }
+    }
+
+    /**
+     * 收到其他实例的失效通知
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (body == null) {
+                return;
+            }
+            String content = body.toString();
+            int sep = content.indexOf('|');
+            if (sep < 0 || content.substring(0, sep).equals(instanceId)) {
+                return;
+            }
+            for (String labId : content.substring(sep + 1).split(",")) {
+                if (!labId.isEmpty()) {
+                    cache.invalidate(Long.valueOf(labId));
+                }
+            }
+        } catch (Exception e) {
+            log.error("❌ 处理近端缓存失效通知失败", e);
+        }
+    }
+
+    /**
+     * 获取近端缓存统计信息
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new HashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", String.format("%.2f%%", stats.hitRate() * 100));
+        result.put("evictionCount", stats.evictionCount());
+        result.put("avgLoadMillis", String.format("%.3f", stats.averageLoadPenalty() / 1_000_000.0));
+        return result;
+    }
+}
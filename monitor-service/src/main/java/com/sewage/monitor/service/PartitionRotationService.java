@@ -0,0 +1,309 @@
+package com.sewage.monitor.service;
+
+import com.sewage.monitor.mapper.TablePartitionMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * lab_environment_data 按时间分区的自动轮转
+ *
+ * 功能说明：
+ * 1. 表按 monitor_time 做 RANGE COLUMNS 分区（见 sql/lab_environment_data_partition.sql），
+ *    分区按天（pYYYYMMDD）或按月（pYYYYMM）划分，最后一个分区 p_max 接收超出已建分区的数据
+ * 2. 定时检查：提前创建未来 pre-create 个周期的分区（从空的 p_max 拆分，只改元数据）
+ * 3. 上界早于 (当前时间 - retention-days) 的分区整体过期：
+ *    - drop：直接删除分区，比 DELETE 大量行快几个数量级且不产生碎片
+ *    - archive：先把分区交换到独立的归档表 lab_environment_data_archive_<分区名>，再删除空分区
+ * 4. 表未分区（迁移脚本未执行）时只记录警告，不做任何修改
+ *
+ * 多实例部署时各实例都会执行检查，DDL 冲突的一方本轮失败，下个周期看到的已是最新分区
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class PartitionRotationService {
+
+    public static final String TABLE = "lab_environment_data";
+    public static final String MAX_PARTITION = "p_max";
+    private static final String ARCHIVE_PREFIX = TABLE + "_archive_";
+    private static final DateTimeFormatter BOUND_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * 分区粒度
+     */
+    public enum Granularity {
+        DAY(DateTimeFormatter.ofPattern("yyyyMMdd")),
+        MONTH(DateTimeFormatter.ofPattern("yyyyMM"));
+
+        private final DateTimeFormatter nameFormat;
+
+        Granularity(DateTimeFormatter nameFormat) {
+            this.nameFormat = nameFormat;
+        }
+
+        LocalDate periodStart(LocalDate date) {
+            return this == DAY ? date : date.withDayOfMonth(1);
+        }
+
+        LocalDate next(LocalDate start) {
+            return this == DAY ? start.plusDays(1) : start.plusMonths(1);
+        }
+
+        String partitionName(LocalDate start) {
+            return "p" + start.format(nameFormat);
+        }
+    }
+
+    /**
+     * 已有分区（p_max 之外）
+     */
+    public static final class Partition {
+        private final String name;
+        private final LocalDate upperBound;
+
+        public Partition(String name, LocalDate upperBound) {
+            this.name = name;
+            this.upperBound = upperBound;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public LocalDate getUpperBound() {
+            return upperBound;
+        }
+    }
+
+    /**
+     * 一次轮转的计划：需要新建的分区（名称 → 上界）和需要过期的分区
+     */
+    public static final class Plan {
+        private final Map<String, LocalDate> toCreate = new LinkedHashMap<>();
+        private final List<String> toExpire = new ArrayList<>();
+
+        public Map<String, LocalDate> getToCreate() {
+            return toCreate;
+        }
+
+        public List<String> getToExpire() {
+            return toExpire;
+        }
+    }
+
+    private final TablePartitionMapper tablePartitionMapper;
+
+    @Value("${monitor.partition.enabled:true}")
+    private boolean enabled;
+
+    @Value("${monitor.partition.granularity:MONTH}")
+    private Granularity granularity;
+
+    @Value("${monitor.partition.pre-create:3}")
+    private int preCreate;
+
+    @Value("${monitor.partition.retention-days:365}")
+    private int retentionDays;
+
+    @Value("${monitor.partition.expire-mode:drop}")
+    private String expireMode;
+
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private volatile LocalDateTime lastRotateTime;
+    private volatile String lastResult;
+
+    /**
+     * 定时轮转（启动后延迟执行一次，之后按周期检查，已是最新状态时不执行任何 DDL）
+     */
+    @Scheduled(initialDelayString = "${monitor.partition.initial-delay-ms:30000}",
+            fixedDelayString = "${monitor.partition.check-interval-ms:3600000}")
+    public void scheduledRotate() {
+        if (enabled) {
+            rotate();
+        }
+    }
+
+    /**
+     * 执行一次轮转
+     *
+     * @return 本次执行结果
+     */
+    public synchronized Map<String, Object> rotate() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        lastRotateTime = LocalDateTime.now();
+        try {
+            List<Map<String, Object>> rows = tablePartitionMapper.selectPartitions(TABLE);
+            if (rows.isEmpty() || rows.get(0).get("name") == null) {
+                lastResult = "表未分区，请先执行 sql/lab_environment_data_partition.sql";
+                log.warn("⚠️ {} 未分区，跳过分区轮转", TABLE);
+                result.put("message", lastResult);
+                return result;
+            }
+
+            List<Partition> partitions = new ArrayList<>();
+            boolean hasMaxPartition = false;
+            for (Map<String, Object> row : rows) {
+                String name = String.valueOf(row.get("name"));
+                String bound = String.valueOf(row.get("bound"));
+                if ("MAXVALUE".equalsIgnoreCase(bound)) {
+                    hasMaxPartition = true;
+                } else {
+                    partitions.add(new Partition(name, parseBound(bound)));
+                }
+            }
+
+            Plan plan = plan(partitions, LocalDate.now(), granularity, preCreate, retentionDays);
+            if (!plan.getToCreate().isEmpty()) {
+                tablePartitionMapper.executeDdl(createDdl(plan.getToCreate(), hasMaxPartition));
+                createdCount.addAndGet(plan.getToCreate().size());
+                log.info("🗂️ 已创建分区 - 表: {}, 分区: {}", TABLE, plan.getToCreate().keySet());
+            }
+            for (String name : plan.getToExpire()) {
+                expire(name);
+                expiredCount.incrementAndGet();
+            }
+
+            result.put("created", plan.getToCreate().keySet());
+            result.put("expired", plan.getToExpire());
+            result.put("expireMode", expireMode);
+            lastResult = "创建 " + plan.getToCreate().size() + " 个，过期 " + plan.getToExpire().size() + " 个";
+            return result;
+
+        } catch (Exception e) {
+            failedCount.incrementAndGet();
+            lastResult = "失败: " + e.getMessage();
+            log.error("❌ 分区轮转失败 - 表: {}", TABLE, e);
+            result.put("error", e.getMessage());
+            return result;
+        }
+    }
+
+    /**
+     * 计算轮转计划：
+     * - 从最后一个分区的上界（没有分区时从当前周期）开始，补齐到当前周期之后 preCreate 个周期
+     * - 上界不晚于 (today - retentionDays) 的分区过期，retentionDays 为 0 时不过期
+     */
+    public static Plan plan(List<Partition> partitions, LocalDate today, Granularity granularity,
+                            int preCreate, int retentionDays) {
+        Plan plan = new Plan();
+
+        LocalDate lastBound = null;
+        for (Partition partition : partitions) {
+            if (lastBound == null || partition.getUpperBound().isAfter(lastBound)) {
+                lastBound = partition.getUpperBound();
+            }
+        }
+        LocalDate target = granularity.periodStart(today);
+        for (int i = 0; i <= preCreate; i++) {
+            target = granularity.next(target);
+        }
+        LocalDate start = lastBound != null ? granularity.periodStart(lastBound) : granularity.periodStart(today);
+        if (lastBound != null && start.isBefore(lastBound)) {
+            // 已有分区上界不在周期起点上（如初始化时的历史分区），从下一个周期起点开始
+            start = granularity.next(start);
+            plan.getToCreate().put(granularity.partitionName(lastBound), start);
+        }
+        while (start.isBefore(target)) {
+            LocalDate next = granularity.next(start);
+            plan.getToCreate().put(granularity.partitionName(start), next);
+            start = next;
+        }
+
+        if (retentionDays > 0) {
+            LocalDate cutoff = today.minusDays(retentionDays);
+            for (Partition partition : partitions) {
+                if (!partition.getUpperBound().isAfter(cutoff)) {
+                    plan.getToExpire().add(partition.getName());
+                }
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * 过期一个分区
+     */
+    private void expire(String name) {
+        if ("archive".equalsIgnoreCase(expireMode)) {
+            String archiveTable = ARCHIVE_PREFIX + name;
+            tablePartitionMapper.executeDdl("CREATE TABLE IF NOT EXISTS " + archiveTable + " LIKE " + TABLE);
+            try {
+                tablePartitionMapper.executeDdl("ALTER TABLE " + archiveTable + " REMOVE PARTITIONING");
+            } catch (Exception e) {
+                // 归档表已是普通表（上次归档中断后重试）
+                log.debug("归档表无需移除分区 - 表: {}", archiveTable);
+            }
+            tablePartitionMapper.executeDdl("ALTER TABLE " + TABLE + " EXCHANGE PARTITION " + name
+                    + " WITH TABLE " + archiveTable);
+            log.info("📦 分区已归档 - 分区: {}, 归档表: {}", name, archiveTable);
+        }
+        tablePartitionMapper.executeDdl("ALTER TABLE " + TABLE + " DROP PARTITION " + name);
+        log.info("🗑️ 分区已删除 - 表: {}, 分区: {}", TABLE, name);
+    }
+
+    /**
+     * 生成新建分区的 DDL：有 p_max 时从 p_max 拆分（p_max 为空时只改元数据），否则直接追加
+     */
+    private static String createDdl(Map<String, LocalDate> toCreate, boolean hasMaxPartition) {
+        StringBuilder definitions = new StringBuilder();
+        toCreate.forEach((name, bound) -> {
+            if (definitions.length() > 0) {
+                definitions.append(", ");
+            }
+            definitions.append("PARTITION ").append(name)
+                    .append(" VALUES LESS THAN ('").append(bound.atStartOfDay().format(BOUND_FORMAT)).append("')");
+        });
+        if (hasMaxPartition) {
+            return "ALTER TABLE " + TABLE + " REORGANIZE PARTITION " + MAX_PARTITION + " INTO ("
+                    + definitions + ", PARTITION " + MAX_PARTITION + " VALUES LESS THAN (MAXVALUE))";
+        }
+        return "ALTER TABLE " + TABLE + " ADD PARTITION (" + definitions + ")";
+    }
+
+    /**
+     * 解析分区上界：RANGE COLUMNS 的 PARTITION_DESCRIPTION 形如 '2024-02-01 00:00:00' 或 '2024-02-01'
+     */
+    private static LocalDate parseBound(String bound) {
+        String value = bound.replace("'", "").trim();
+        return value.length() > 10
+                ? LocalDateTime.parse(value, BOUND_FORMAT).toLocalDate()
+                : LocalDate.parse(value);
+    }
+
+    /**
+     * 分区状态
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        status.put("granularity", granularity);
+        status.put("preCreate", preCreate);
+        status.put("retentionDays", retentionDays);
+        status.put("expireMode", expireMode);
+        status.put("createdCount", createdCount.get());
+        status.put("expiredCount", expiredCount.get());
+        status.put("failedCount", failedCount.get());
+        status.put("lastRotateTime", lastRotateTime);
+        status.put("lastResult", lastResult);
+        try {
+            status.put("partitions", tablePartitionMapper.selectPartitions(TABLE));
+        } catch (Exception e) {
+            status.put("partitions", e.getMessage());
+        }
+        return status;
+    }
+}
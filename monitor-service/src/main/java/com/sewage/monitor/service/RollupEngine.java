@@ -0,0 +1,434 @@
+package com.sewage.monitor.service;
+
+import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.entity.LabEnvironmentRollup;
+import com.sewage.monitor.mapper.LabEnvironmentRollupMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 环境数据分钟/小时汇总引擎
+ *
+ * 功能说明：
+ * 1. 每条入库的环境数据按事件时间（monitorTime）归入 1分钟 和 1小时 两个桶，只在内存中累加增量
+ *    （每个指标的条数、总和、最小、最大、最后一个读数）
+ * 2. 定时把增量取出，一条批量UPSERT累加到 lab_environment_rollup，数据库写入量只与活跃的桶数有关
+ * 3. 写入是累加而不是覆盖：乱序补传的数据合并到所属的桶，重启或多实例部署时各自的增量互不覆盖
+ * 4. 分钟汇总保留 minute-retention-days 天，小时汇总永久保留
+ * 5. 历史曲线查询按范围和点数选择分辨率（chooseResolution），长时间范围读取汇总而不是原始数据
+ *
+ * 注意：
+ * - 增量在内存中最多停留一个刷新周期，这段时间内最新的桶还看不到新数据
+ * - Kafka 重复投递的数据会被重复累加（与日统计一致）
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RollupEngine {
+
+    /**
+     * 由粗到细的汇总分辨率（秒）
+     */
+    public static final int[] RESOLUTIONS = {LabEnvironmentRollup.RESOLUTION_HOUR, LabEnvironmentRollup.RESOLUTION_MINUTE};
+
+    /**
+     * 单条UPSERT语句最多包含的行数
+     */
+    private static final int UPSERT_BATCH_SIZE = 500;
+
+    /**
+     * 过期清理每次删除的行数
+     */
+    private static final int DELETE_BATCH_SIZE = 10000;
+
+    private final LabEnvironmentRollupMapper rollupMapper;
+
+    @Value("${monitor.rollup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${monitor.rollup.minute-retention-days:30}")
+    private int minuteRetentionDays;
+
+    @Value("${monitor.rollup.max-pending-buckets:200000}")
+    private int maxPendingBuckets;
+
+    /**
+     * 待写入的增量：(实验室, 分辨率, 桶起始时间) → 增量
+     */
+    private final ConcurrentHashMap<BucketKey, BucketDelta> pending = new ConcurrentHashMap<>();
+
+    // 监控指标
+    private final AtomicLong recordedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong failedFlushCount = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong rowsExpired = new AtomicLong();
+    private volatile int lastFlushRows;
+    private volatile long lastFlushMillis;
+
+    @PostConstruct
+    public void init() {
+        log.info("📈 分钟/小时汇总引擎初始化完成 - 启用: {}, 分钟汇总保留: {}天", enabled, minuteRetentionDays);
+    }
+
+    /**
+     * 记录一条环境数据（可从多个线程并发调用，同一个桶的累加由 ConcurrentHashMap.compute 串行化）
+     */
+    public void record(LabEnvironmentData data) {
+        if (!enabled || data == null || data.getLabId() == null) {
+            return;
+        }
+        if (pending.size() >= maxPendingBuckets) {
+            // 数据库长时间不可用时限制内存占用
+            droppedCount.incrementAndGet();
+            return;
+        }
+        LocalDateTime eventTime = data.getMonitorTime() != null ? data.getMonitorTime() : LocalDateTime.now();
+        for (int resolution : RESOLUTIONS) {
+            BucketKey key = new BucketKey(data.getLabId(), resolution, bucketStart(eventTime, resolution));
+            pending.compute(key, (k, delta) -> {
+                BucketDelta target = delta != null ? delta : new BucketDelta();
+                target.add(data, eventTime);
+                return target;
+            });
+        }
+        recordedCount.incrementAndGet();
+    }
+
+    /**
+     * 定时刷新：取出所有增量，批量累加到汇总表
+     */
+    @Scheduled(fixedDelayString = "${monitor.rollup.flush-interval-ms:5000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+
+        // 1. 逐个取出增量（remove 与 compute 对同一个键互斥，取出后的新数据进入新的增量，不会丢失）
+        Map<BucketKey, BucketDelta> taken = new LinkedHashMap<>();
+        for (BucketKey key : pending.keySet()) {
+            BucketDelta delta = pending.remove(key);
+            if (delta != null) {
+                taken.put(key, delta);
+            }
+        }
+        if (taken.isEmpty()) {
+            return;
+        }
+
+        // 2. 按主键排序后批量UPSERT，多实例同时写入相同的桶时加锁顺序一致
+        List<Map.Entry<BucketKey, BucketDelta>> entries = new ArrayList<>(taken.entrySet());
+        entries.sort(Map.Entry.comparingByKey(BucketKey.ORDER));
+        List<LabEnvironmentRollup> rows = new ArrayList<>(entries.size());
+        entries.forEach(entry -> rows.add(entry.getValue().toEntity(entry.getKey())));
+
+        // 每批单独提交：已提交的批次不能放回，否则下次刷新会重复累加
+        int written = 0;
+        try {
+            while (written < rows.size()) {
+                int to = Math.min(written + UPSERT_BATCH_SIZE, rows.size());
+                rollupMapper.upsertDeltaBatch(rows.subList(written, to));
+                written = to;
+            }
+        } catch (Exception e) {
+            failedFlushCount.incrementAndGet();
+            rowsWritten.addAndGet(written);
+            log.error("❌ 汇总数据批量写入失败，下个周期重试 - 行数: {}, 已写入: {}", rows.size(), written, e);
+            // 只放回失败批次及之后的增量，与期间新到的增量合并
+            for (Map.Entry<BucketKey, BucketDelta> entry : entries.subList(written, entries.size())) {
+                pending.merge(entry.getKey(), entry.getValue(), BucketDelta::merge);
+            }
+            return;
+        }
+
+        long elapsed = System.currentTimeMillis() - startTime;
+        flushCount.incrementAndGet();
+        rowsWritten.addAndGet(rows.size());
+        lastFlushRows = rows.size();
+        lastFlushMillis = elapsed;
+        log.debug("📈 汇总数据刷新完成 - 行数: {}, 耗时: {}ms", rows.size(), elapsed);
+    }
+
+    /**
+     * 定时清理过期的分钟汇总
+     */
+    @Scheduled(initialDelayString = "${monitor.rollup.cleanup-initial-delay-ms:60000}",
+            fixedDelayString = "${monitor.rollup.cleanup-interval-ms:3600000}")
+    public void cleanup() {
+        if (!enabled || minuteRetentionDays <= 0) {
+            return;
+        }
+        LocalDateTime before = LocalDateTime.now().truncatedTo(ChronoUnit.DAYS).minusDays(minuteRetentionDays);
+        try {
+            int deleted;
+            long total = 0;
+            do {
+                deleted = rollupMapper.deleteBefore(LabEnvironmentRollup.RESOLUTION_MINUTE, before, DELETE_BATCH_SIZE);
+                total += deleted;
+            } while (deleted >= DELETE_BATCH_SIZE);
+            if (total > 0) {
+                rowsExpired.addAndGet(total);
+                log.info("🧹 过期分钟汇总已清理 - 早于: {}, 行数: {}", before, total);
+            }
+        } catch (Exception e) {
+            log.error("❌ 清理过期分钟汇总失败", e);
+        }
+    }
+
+    /**
+     * 从原始数据重建时间范围内的分钟和小时汇总（覆盖已有值），按天分段执行
+     *
+     * 结束时间不晚于当前整点：最近的桶可能还有未刷新的增量，重建后再累加会重复计数
+     *
+     * @return 各分辨率受影响的行数（覆盖已有行时 MySQL 按2行计）
+     */
+    public Map<String, Object> rebuild(Long labId, LocalDateTime startTime, LocalDateTime endTime) {
+        LocalDateTime start = startTime.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime latestEnd = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime end = endTime.isAfter(latestEnd) ? latestEnd : endTime.truncatedTo(ChronoUnit.HOURS);
+
+        long startMillis = System.currentTimeMillis();
+        long minuteRows = 0;
+        long hourRows = 0;
+        for (LocalDateTime from = start; from.isBefore(end); from = from.plusDays(1)) {
+            LocalDateTime to = from.plusDays(1).isBefore(end) ? from.plusDays(1) : end;
+            minuteRows += rollupMapper.rebuildFromRaw(LabEnvironmentRollup.RESOLUTION_MINUTE, labId, from, to);
+            hourRows += rollupMapper.rebuildFromRaw(LabEnvironmentRollup.RESOLUTION_HOUR, labId, from, to);
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("labId", labId);
+        result.put("startTime", start);
+        result.put("endTime", end);
+        result.put("minuteRows", minuteRows);
+        result.put("hourRows", hourRows);
+        result.put("costMillis", System.currentTimeMillis() - startMillis);
+        log.info("📈 汇总数据重建完成 - {}", result);
+        return result;
+    }
+
+    /**
+     * 选择分辨率：范围内至少能得到 points 个点的最粗分辨率；分钟分辨率也不够时返回 0（读取原始数据）
+     *
+     * 例：30天 / 720个点 → 小时（720个桶）；6小时 / 300个点 → 分钟（360个桶）；1小时 / 300个点 → 原始数据
+     */
+    public static int chooseResolution(LocalDateTime startTime, LocalDateTime endTime, int points) {
+        long rangeSeconds = Duration.between(startTime, endTime).getSeconds();
+        for (int resolution : RESOLUTIONS) {
+            if (rangeSeconds / resolution >= points) {
+                return resolution;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 桶起始时间（分辨率为整分钟/整小时，直接截断）
+     */
+    static LocalDateTime bucketStart(LocalDateTime time, int resolution) {
+        return time.truncatedTo(resolution == LabEnvironmentRollup.RESOLUTION_HOUR ? ChronoUnit.HOURS : ChronoUnit.MINUTES);
+    }
+
+    /**
+     * 关闭时写入剩余增量
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * 获取汇总引擎监控指标
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("pendingBuckets", pending.size());
+        stats.put("recordedCount", recordedCount.get());
+        stats.put("droppedCount", droppedCount.get());
+        stats.put("flushCount", flushCount.get());
+        stats.put("failedFlushCount", failedFlushCount.get());
+        stats.put("rowsWritten", rowsWritten.get());
+        stats.put("rowsExpired", rowsExpired.get());
+        stats.put("lastFlushRows", lastFlushRows);
+        stats.put("lastFlushMillis", lastFlushMillis);
+        stats.put("minuteRetentionDays", minuteRetentionDays);
+        return stats;
+    }
+
+    // =============================内部类=============================
+
+    private static final class BucketKey {
+        private static final Comparator<BucketKey> ORDER = Comparator
+                .comparing((BucketKey key) -> key.labId)
+                .thenComparingInt(key -> key.resolution)
+                .thenComparing(key -> key.bucketTime);
+
+        private final Long labId;
+        private final int resolution;
+        private final LocalDateTime bucketTime;
+
+        BucketKey(Long labId, int resolution, LocalDateTime bucketTime) {
+            this.labId = labId;
+            this.resolution = resolution;
+            this.bucketTime = bucketTime;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof BucketKey)) {
+                return false;
+            }
+            BucketKey that = (BucketKey) o;
+            return resolution == that.resolution && labId.equals(that.labId) && bucketTime.equals(that.bucketTime);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(labId, resolution, bucketTime);
+        }
+    }
+
+    /**
+     * 单个指标的增量
+     */
+    private static final class MetricDelta {
+        private int count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private Double last;
+        private LocalDateTime lastTime;
+
+        void add(Double value, LocalDateTime time) {
+            if (value == null) {
+                return;
+            }
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            if (lastTime == null || !time.isBefore(lastTime)) {
+                last = value;
+                lastTime = time;
+            }
+        }
+
+        void merge(MetricDelta other) {
+            if (other.count == 0) {
+                return;
+            }
+            count += other.count;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            if (lastTime == null || !other.lastTime.isBefore(lastTime)) {
+                last = other.last;
+                lastTime = other.lastTime;
+            }
+        }
+
+        Double sumValue() {
+            return count > 0 ? sum : null;
+        }
+
+        Double minValue() {
+            return count > 0 ? min : null;
+        }
+
+        Double maxValue() {
+            return count > 0 ? max : null;
+        }
+    }
+
+    /**
+     * 一个桶的增量
+     */
+    private static final class BucketDelta {
+        private int sampleCount;
+        private LocalDateTime lastTime;
+        private final MetricDelta temperature = new MetricDelta();
+        private final MetricDelta humidity = new MetricDelta();
+        private final MetricDelta pm25 = new MetricDelta();
+        private final MetricDelta illuminance = new MetricDelta();
+        private final MetricDelta co2 = new MetricDelta();
+
+        void add(LabEnvironmentData data, LocalDateTime eventTime) {
+            sampleCount++;
+            if (lastTime == null || eventTime.isAfter(lastTime)) {
+                lastTime = eventTime;
+            }
+            temperature.add(data.getTemperature(), eventTime);
+            humidity.add(data.getHumidity(), eventTime);
+            pm25.add(data.getPm25(), eventTime);
+            illuminance.add(data.getIlluminance(), eventTime);
+            co2.add(data.getCo2(), eventTime);
+        }
+
+        BucketDelta merge(BucketDelta other) {
+            sampleCount += other.sampleCount;
+            if (lastTime == null || other.lastTime.isAfter(lastTime)) {
+                lastTime = other.lastTime;
+            }
+            temperature.merge(other.temperature);
+            humidity.merge(other.humidity);
+            pm25.merge(other.pm25);
+            illuminance.merge(other.illuminance);
+            co2.merge(other.co2);
+            return this;
+        }
+
+        LabEnvironmentRollup toEntity(BucketKey key) {
+            LabEnvironmentRollup rollup = LabEnvironmentRollup.builder()
+                    .labId(key.labId)
+                    .resolution(key.resolution)
+                    .bucketTime(key.bucketTime)
+                    .sampleCount(sampleCount)
+                    .lastTime(lastTime)
+                    .build();
+            fill(temperature, rollup::setTemperatureCount, rollup::setTemperatureSum, rollup::setTemperatureMin,
+                    rollup::setTemperatureMax, rollup::setTemperatureLast);
+            fill(humidity, rollup::setHumidityCount, rollup::setHumiditySum, rollup::setHumidityMin,
+                    rollup::setHumidityMax, rollup::setHumidityLast);
+            fill(pm25, rollup::setPm25Count, rollup::setPm25Sum, rollup::setPm25Min,
+                    rollup::setPm25Max, rollup::setPm25Last);
+            fill(illuminance, rollup::setIlluminanceCount, rollup::setIlluminanceSum, rollup::setIlluminanceMin,
+                    rollup::setIlluminanceMax, rollup::setIlluminanceLast);
+            fill(co2, rollup::setCo2Count, rollup::setCo2Sum, rollup::setCo2Min,
+                    rollup::setCo2Max, rollup::setCo2Last);
+            return rollup;
+        }
+
+        private static void fill(MetricDelta metric, Consumer<Integer> count, Consumer<Double> sum,
+                                 Consumer<Double> min, Consumer<Double> max, Consumer<Double> last) {
+            count.accept(metric.count);
+            sum.accept(metric.sumValue());
+            min.accept(metric.minValue());
+            max.accept(metric.maxValue());
+            last.accept(metric.last);
+        }
+    }
+}
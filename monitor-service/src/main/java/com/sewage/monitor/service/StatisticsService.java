@@ -3,19 +3,23 @@ package com.sewage.monitor.service;
 import com.sewage.monitor.entity.LabDailyStatistics;
 import com.sewage.monitor.entity.LabEnvironmentData;
 import com.sewage.monitor.mapper.LabDailyStatisticsMapper;
+import com.sewage.monitor.util.KeysetPage;
+import com.sewage.monitor.util.QuantileSketch;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Base64;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 
 /**
  * 统计服务 - 集成Redis缓存
@@ -23,13 +27,14 @@ import java.util.Map;
  * 功能说明：
  * 1. 实验室日统计数据更新
  * 2. 统计数据缓存（Hash结构）
- * 3. 异步统计更新，提升性能
+ * 3. 内存聚合 + 定时批量写入（DailyStatisticsEngine）
  * 4. 缓存预热和降级策略
+ * 5. 温度/湿度/PM2.5/CO2分位数草图，支持任意日期范围、实验室范围的p50/p95/p99查询
  *
  * 缓存策略：
  * 1. 日统计数据：1小时TTL，Hash结构
  * 2. 统计概览：30分钟TTL，String结构
- * 3. 批量更新：减少数据库压力
+ * 3. 批量更新：每个刷新周期每个实验室一行UPSERT，写入后清理缓存
  */
 @Slf4j
 @Service
@@ -38,55 +43,20 @@ public class StatisticsService {
 
     private final LabDailyStatisticsMapper dailyStatisticsMapper;
     private final CacheService cacheService;
+    private final DailyStatisticsEngine dailyStatisticsEngine;
+    private final RollupEngine rollupEngine;
 
     /**
-     * 异步更新统计数据 - 集成Redis缓存
+     * 更新统计数据
      *
-     * 异步处理的原因：
-     * 1. 统计计算复杂，不阻塞主流程
-     * 2. 减少数据库写入压力
-     * 3. 提升系统响应速度
+     * 只更新内存中的聚合值（按实验室分片单线程处理），由 DailyStatisticsEngine 定时批量写入数据库；
+     * 同时累加分钟/小时汇总增量，由 RollupEngine 定时写入汇总表
      *
      * @param data 环境数据
      */
-    @Async("statisticsExecutor")
-    @Transactional
     public void updateStatistics(LabEnvironmentData data) {
-        try {
-            LocalDate today = data.getMonitorTime().toLocalDate();
-            Long labId = data.getLabId();
-            String cacheKey = "lab:stats:daily:" + labId + ":" + today.format(DateTimeFormatter.BASIC_ISO_DATE);
-
-            log.debug("📊 开始异步更新统计 - 实验室ID: {}, 日期: {}", labId, today);
-
-            // 1. 先从Redis缓存获取统计数据
-            LabDailyStatistics stats = getStatisticsFromCache(labId, today);
-
-            if (stats == null) {
-                // 2. Redis中没有，查询数据库
-                stats = dailyStatisticsMapper.selectByLabAndDate(labId, today);
-            }
-
-            if (stats == null) {
-                // 3. 数据库中也没有，创建新记录
-                stats = createNewStatistics(data, today);
-                dailyStatisticsMapper.insert(stats);
-                log.info("📊 创建新统计记录 - 实验室: {}, 日期: {}", data.getLabName(), today);
-            } else {
-                // 4. 更新现有记录
-                updateExistingStatistics(stats, data);
-                dailyStatisticsMapper.updateById(stats);
-                log.debug("📊 更新统计记录 - 实验室: {}, 日期: {}", data.getLabName(), today);
-            }
-
-            // 5. 更新Redis缓存
-            updateStatisticsCache(stats);
-
-            log.debug("✅ 统计更新完成 - 实验室ID: {}", labId);
-
-        } catch (Exception e) {
-            log.error("❌ 统计更新失败 - 实验室ID: {}", data.getLabId(), e);
-        }
+        dailyStatisticsEngine.record(data);
+        rollupEngine.record(data);
     }
 
     /**
@@ -142,168 +112,6 @@ public class StatisticsService {
         }
     }
 
-    /**
-     * 创建新的统计记录
-     */
-    private LabDailyStatistics createNewStatistics(LabEnvironmentData data, LocalDate date) {
-        return LabDailyStatistics.builder()
-                .stationId(data.getLabId())  // 使用实验室ID
-                .stationName(data.getLabName()) // 使用实验室名称
-                .statDate(date)
-                // 温度统计
-                .avgTemperature(data.getTemperature() != null ? BigDecimal.valueOf(data.getTemperature()) : null)
-                .maxTemperature(data.getTemperature() != null ? BigDecimal.valueOf(data.getTemperature()) : null)
-                .minTemperature(data.getTemperature() != null ? BigDecimal.valueOf(data.getTemperature()) : null)
-                // 湿度统计
-                .avgHumidity(data.getHumidity() != null ? BigDecimal.valueOf(data.getHumidity()) : null)
-                .maxHumidity(data.getHumidity() != null ? BigDecimal.valueOf(data.getHumidity()) : null)
-                .minHumidity(data.getHumidity() != null ? BigDecimal.valueOf(data.getHumidity()) : null)
-                // PM2.5统计
-                .avgPm25(data.getPm25() != null ? BigDecimal.valueOf(data.getPm25()) : null)
-                .maxPm25(data.getPm25() != null ? BigDecimal.valueOf(data.getPm25()) : null)
-                // CO2统计
-                .avgCo2(data.getCo2() != null ? BigDecimal.valueOf(data.getCo2()) : null)
-                .maxCo2(data.getCo2() != null ? BigDecimal.valueOf(data.getCo2()) : null)
-                // 人员统计
-                .maxPeopleCount(data.getCurrentPeopleCount())
-                // 设备统计
-                .avgOnlineDevices(BigDecimal.valueOf(data.getOnlineDeviceCount()))
-                // 其他统计
-                .dataCount(1)
-                .alarmCount(data.getAlarmStatus() != null && data.getAlarmStatus() > 0 ? 1 : 0)
-                .normalRate(data.getAlarmStatus() != null && data.getAlarmStatus() > 0 ?
-                        BigDecimal.ZERO : new BigDecimal("100"))
-                .createdTime(LocalDateTime.now())
-                .updatedTime(LocalDateTime.now())
-                .build();
-    }
-
-    /**
-     * 更新已有的统计记录
-     * 使用增量计算公式：新平均值 = (旧平均值 * 旧数量 + 新值) / 新数量
-     */
-    private void updateExistingStatistics(LabDailyStatistics stats, LabEnvironmentData data) {
-        int oldCount = stats.getDataCount();
-        int newCount = oldCount + 1;
-
-        // 更新温度统计
-        if (data.getTemperature() != null) {
-            BigDecimal tempValue = BigDecimal.valueOf(data.getTemperature());
-            stats.setAvgTemperature(calculateNewAverage(
-                    stats.getAvgTemperature(), tempValue, oldCount));
-            stats.setMaxTemperature(max(stats.getMaxTemperature(), tempValue));
-            stats.setMinTemperature(min(stats.getMinTemperature(), tempValue));
-        }
-
-        // 更新湿度统计
-        if (data.getHumidity() != null) {
-            BigDecimal humidityValue = BigDecimal.valueOf(data.getHumidity());
-            stats.setAvgHumidity(calculateNewAverage(stats.getAvgHumidity(), humidityValue, oldCount));
-            stats.setMaxHumidity(max(stats.getMaxHumidity(), humidityValue));
-            stats.setMinHumidity(min(stats.getMinHumidity(), humidityValue));
-        }
-
-        // 更新PM2.5统计
-        if (data.getPm25() != null) {
-            BigDecimal pm25Value = BigDecimal.valueOf(data.getPm25());
-            stats.setAvgPm25(calculateNewAverage(stats.getAvgPm25(), pm25Value, oldCount));
-            stats.setMaxPm25(max(stats.getMaxPm25(), pm25Value));
-        }
-
-        // 更新CO2统计
-        if (data.getCo2() != null) {
-            BigDecimal co2Value = BigDecimal.valueOf(data.getCo2());
-            stats.setAvgCo2(calculateNewAverage(stats.getAvgCo2(), co2Value, oldCount));
-            stats.setMaxCo2(max(stats.getMaxCo2(), co2Value));
-        }
-
-        // 更新最大在线人数
-        if (data.getCurrentPeopleCount() != null) {
-            stats.setMaxPeopleCount(Math.max(stats.getMaxPeopleCount(), data.getCurrentPeopleCount()));
-        }
-
-        // 更新设备平均在线数量
-        if (data.getOnlineDeviceCount() != null) {
-            BigDecimal onlineCount = BigDecimal.valueOf(data.getOnlineDeviceCount());
-            stats.setAvgOnlineDevices(calculateNewAverage(stats.getAvgOnlineDevices(), onlineCount, oldCount));
-        }
-
-        // 更新数据条数
-        stats.setDataCount(newCount);
-
-        // 更新告警次数
-        if (data.getAlarmStatus() != null && data.getAlarmStatus() > 0) {
-            stats.setAlarmCount(stats.getAlarmCount() + 1);
-        }
-
-        // 更新环境达标率 = (总数 - 告警数) / 总数 * 100
-        BigDecimal normalRate = BigDecimal.valueOf(newCount - stats.getAlarmCount())
-                .divide(BigDecimal.valueOf(newCount), 4, RoundingMode.HALF_UP)
-                .multiply(BigDecimal.valueOf(100))
-                .setScale(2, RoundingMode.HALF_UP);
-        stats.setNormalRate(normalRate);
-
-        // 更新时间
-        stats.setUpdatedTime(LocalDateTime.now());
-    }
-
-    /**
-     * 计算新平均值
-     * 公式：新平均值 = (旧平均值 * 旧数量 + 新值) / 新数量
-     */
-    private BigDecimal calculateNewAverage(BigDecimal oldAvg, BigDecimal newValue, int oldCount) {
-        if (oldAvg == null) return newValue;
-        if (newValue == null) return oldAvg;
-
-        return oldAvg.multiply(BigDecimal.valueOf(oldCount))
-                .add(newValue)
-                .divide(BigDecimal.valueOf(oldCount + 1), 2, RoundingMode.HALF_UP);
-    }
-
-    /**
-     * 计算新平均值（Integer版本）
-     */
-    private BigDecimal calculateNewAverage(BigDecimal oldAvg, Integer newValue, int oldCount) {
-        if (newValue == null) return oldAvg;
-        return calculateNewAverage(oldAvg, BigDecimal.valueOf(newValue), oldCount);
-    }
-
-    /**
-     * 取最大值
-     */
-    private BigDecimal max(BigDecimal a, BigDecimal b) {
-        if (a == null) return b;
-        if (b == null) return a;
-        return a.compareTo(b) > 0 ? a : b;
-    }
-
-    /**
-     * 取最大值（Integer版本）
-     */
-    private Integer max(Integer a, Integer b) {
-        if (a == null) return b;
-        if (b == null) return a;
-        return Math.max(a, b);
-    }
-
-    /**
-     * 取最小值
-     */
-    private BigDecimal min(BigDecimal a, BigDecimal b) {
-        if (a == null) return b;
-        if (b == null) return a;
-        return a.compareTo(b) < 0 ? a : b;
-    }
-
-    /**
-     * 取最小值（Integer版本）
-     */
-    private Integer min(Integer a, Integer b) {
-        if (a == null) return b;
-        if (b == null) return a;
-        return Math.min(a, b);
-    }
-
     // =============================数据转换方法=============================
 
     /**
@@ -357,6 +165,10 @@ public class StatisticsService {
         if (stats.getUpdatedTime() != null) {
             hash.put("updatedTime", stats.getUpdatedTime().toString());
         }
+        putSketch(hash, "temperatureSketch", stats.getTemperatureSketch());
+        putSketch(hash, "humiditySketch", stats.getHumiditySketch());
+        putSketch(hash, "pm25Sketch", stats.getPm25Sketch());
+        putSketch(hash, "co2Sketch", stats.getCo2Sketch());
 
         // 添加更新时间戳
         hash.put("updateTime", String.valueOf(System.currentTimeMillis()));
@@ -449,9 +261,116 @@ public class StatisticsService {
             stats.setUpdatedTime(LocalDateTime.parse(updatedTimeObj.toString()));
         }
 
+        stats.setTemperatureSketch(getSketch(hash, "temperatureSketch"));
+        stats.setHumiditySketch(getSketch(hash, "humiditySketch"));
+        stats.setPm25Sketch(getSketch(hash, "pm25Sketch"));
+        stats.setCo2Sketch(getSketch(hash, "co2Sketch"));
+
         return stats;
     }
 
+    /**
+     * 草图以Base64字符串存入Hash
+     */
+    private void putSketch(Map<String, Object> hash, String field, byte[] sketch) {
+        if (sketch != null) {
+            hash.put(field, Base64.getEncoder().encodeToString(sketch));
+        }
+    }
+
+    private byte[] getSketch(Map<Object, Object> hash, String field) {
+        Object value = hash.get(field);
+        return value != null ? Base64.getDecoder().decode(value.toString()) : null;
+    }
+
+    // =============================分位数查询=============================
+
+    /**
+     * 查询指定日期范围内某项指标的分位数
+     *
+     * 直接合并每天、每个实验室存储的草图，不扫描原始环境数据
+     *
+     * @param labId     实验室ID，为空时统计所有实验室
+     * @param metric    指标：temperature / humidity / pm25 / co2
+     * @param startDate 开始日期（含）
+     * @param endDate   结束日期（含）
+     * @return 数据条数、最小/最大/平均值及p50/p90/p95/p99
+     */
+    public Map<String, Object> getPercentiles(Long labId, String metric, LocalDate startDate, LocalDate endDate) {
+        Function<LabDailyStatistics, byte[]> sketchGetter = sketchGetter(metric);
+
+        List<LabDailyStatistics> rows = dailyStatisticsMapper.selectSketches(labId, startDate, endDate);
+        QuantileSketch merged = new QuantileSketch();
+        long sketchBytes = 0;
+        for (LabDailyStatistics row : rows) {
+            byte[] bytes = sketchGetter.apply(row);
+            if (bytes != null) {
+                merged.merge(QuantileSketch.fromBytes(bytes));
+                sketchBytes += bytes.length;
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("labId", labId);
+        result.put("metric", metric);
+        result.put("startDate", startDate);
+        result.put("endDate", endDate);
+        result.put("sketchCount", rows.size());
+        result.put("sketchBytes", sketchBytes);
+        result.put("count", merged.getCount());
+        if (merged.getCount() > 0) {
+            result.put("min", round(merged.getMin()));
+            result.put("max", round(merged.getMax()));
+            result.put("avg", round(merged.getMean()));
+            result.put("p50", round(merged.quantile(0.50)));
+            result.put("p90", round(merged.quantile(0.90)));
+            result.put("p95", round(merged.quantile(0.95)));
+            result.put("p99", round(merged.quantile(0.99)));
+        }
+        result.put("relativeAccuracy", merged.getRelativeAccuracy());
+        return result;
+    }
+
+    private Function<LabDailyStatistics, byte[]> sketchGetter(String metric) {
+        switch (metric == null ? "" : metric.toLowerCase()) {
+            case "temperature":
+                return LabDailyStatistics::getTemperatureSketch;
+            case "humidity":
+                return LabDailyStatistics::getHumiditySketch;
+            case "pm25":
+                return LabDailyStatistics::getPm25Sketch;
+            case "co2":
+                return LabDailyStatistics::getCo2Sketch;
+            default:
+                throw new IllegalArgumentException("不支持的指标: " + metric);
+        }
+    }
+
+    private BigDecimal round(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * 游标分页查询日统计（按 统计日期, id 倒序）
+     *
+     * @param token     上一页返回的 nextToken，为空时查询第一页
+     * @param size      每页数量
+     * @param withTotal 是否返回近似总数
+     * @throws IllegalArgumentException 令牌无效
+     */
+    public KeysetPage<LabDailyStatistics> getKeysetPage(String token, int size, boolean withTotal) {
+        int pageSize = KeysetPage.clampSize(size);
+        KeysetPage.Position after = KeysetPage.decode(token);
+        List<LabDailyStatistics> rows = dailyStatisticsMapper.selectKeyset(after != null ? after.getDate() : null,
+                after != null ? after.getId() : null, pageSize + 1);
+        KeysetPage<LabDailyStatistics> page = KeysetPage.of(rows, pageSize,
+                LabDailyStatistics::getStatDate, LabDailyStatistics::getId);
+        if (withTotal) {
+            page.setApproximateTotal(KeysetPage.estimatedRows(dailyStatisticsMapper.explainCount()));
+        }
+        return page;
+    }
+
     // =============================缓存管理方法=============================
 
     /**
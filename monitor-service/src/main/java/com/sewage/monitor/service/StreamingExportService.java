@@ -0,0 +1,323 @@
+package com.sewage.monitor.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sewage.monitor.entity.LabDailyStatistics;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.mapper.LabDailyStatisticsMapper;
+import com.sewage.monitor.mapper.LabEnvironmentDataMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ResultHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 大范围数据流式导出（CSV / JSON）
+ *
+ * 功能说明：
+ * 1. 通过 MyBatis ResultHandler 逐行读取（MySQL 流式结果集），每读到一行立即写入输出流，
+ *    不在内存中保留结果列表，导出一年的数据与导出一天的数据内存占用相同
+ * 2. 每写 flush-rows 行刷出一次，客户端边查询边接收（分块传输），不需要等整个查询结束
+ * 3. CSV 带 UTF-8 BOM，Excel 直接打开中文表头不乱码；JSON 为一个数组，每行一个对象
+ * 4. 导出中途失败（客户端断开、数据库异常）时不写结尾，客户端收到的是不完整的文件而不是看似完整的截断数据
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StreamingExportService {
+
+    /**
+     * 导出格式
+     */
+    public enum Format {
+        CSV("text/csv;charset=UTF-8", "csv"),
+        JSON("application/json;charset=UTF-8", "json");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    private static final List<Column<LabEnvironmentData>> ENVIRONMENT_COLUMNS = List.of(
+            new Column<>("labId", "实验室ID", LabEnvironmentData::getLabId),
+            new Column<>("labName", "实验室名称", LabEnvironmentData::getLabName),
+            new Column<>("monitorTime", "监测时间", LabEnvironmentData::getMonitorTime),
+            new Column<>("temperature", "温度(℃)", LabEnvironmentData::getTemperature),
+            new Column<>("humidity", "湿度(%)", LabEnvironmentData::getHumidity),
+            new Column<>("pm25", "PM2.5(μg/m³)", LabEnvironmentData::getPm25),
+            new Column<>("illuminance", "照度(lux)", LabEnvironmentData::getIlluminance),
+            new Column<>("co2", "CO2(ppm)", LabEnvironmentData::getCo2),
+            new Column<>("onlineDeviceCount", "在线设备数", LabEnvironmentData::getOnlineDeviceCount),
+            new Column<>("totalDeviceCount", "设备总数", LabEnvironmentData::getTotalDeviceCount),
+            new Column<>("currentPeopleCount", "在线人数", LabEnvironmentData::getCurrentPeopleCount),
+            new Column<>("alarmStatus", "告警状态", LabEnvironmentData::getAlarmStatus),
+            new Column<>("alarmMessage", "告警信息", LabEnvironmentData::getAlarmMessage),
+            new Column<>("qualityLevel", "质量等级", LabEnvironmentData::getQualityLevel),
+            new Column<>("dataSource", "数据来源", LabEnvironmentData::getDataSource));
+
+    private static final List<Column<LabDailyStatistics>> DAILY_STATISTICS_COLUMNS = List.of(
+            new Column<>("statDate", "日期", LabDailyStatistics::getStatDate),
+            new Column<>("labId", "实验室ID", LabDailyStatistics::getStationId),
+            new Column<>("labName", "实验室名称", LabDailyStatistics::getStationName),
+            new Column<>("avgTemperature", "平均温度(℃)", LabDailyStatistics::getAvgTemperature),
+            new Column<>("maxTemperature", "最高温度(℃)", LabDailyStatistics::getMaxTemperature),
+            new Column<>("minTemperature", "最低温度(℃)", LabDailyStatistics::getMinTemperature),
+            new Column<>("avgHumidity", "平均湿度(%)", LabDailyStatistics::getAvgHumidity),
+            new Column<>("avgPm25", "平均PM2.5(μg/m³)", LabDailyStatistics::getAvgPm25),
+            new Column<>("maxPm25", "最高PM2.5(μg/m³)", LabDailyStatistics::getMaxPm25),
+            new Column<>("avgCo2", "平均CO2(ppm)", LabDailyStatistics::getAvgCo2),
+            new Column<>("maxCo2", "最高CO2(ppm)", LabDailyStatistics::getMaxCo2),
+            new Column<>("dataCount", "数据条数", LabDailyStatistics::getDataCount),
+            new Column<>("alarmCount", "告警次数", LabDailyStatistics::getAlarmCount),
+            new Column<>("reservationCount", "预约人数", LabDailyStatistics::getReservationCount),
+            new Column<>("attendanceCount", "签到人数", LabDailyStatistics::getAttendanceCount),
+            new Column<>("maxPeopleCount", "最大在线人数", LabDailyStatistics::getMaxPeopleCount),
+            new Column<>("usageRate", "使用率", LabDailyStatistics::getUsageRate),
+            new Column<>("normalRate", "环境达标率", LabDailyStatistics::getNormalRate));
+
+    private final LabEnvironmentDataMapper labEnvironmentDataMapper;
+    private final LabDailyStatisticsMapper dailyStatisticsMapper;
+
+    @Value("${monitor.export.flush-rows:1000}")
+    private int flushRows;
+
+    /**
+     * 导出实验室时间范围内的原始环境数据（按时间升序）
+     *
+     * @return 导出的行数
+     */
+    public long exportEnvironmentData(Long labId, LocalDateTime startTime, LocalDateTime endTime,
+                                      Format format, OutputStream out) throws IOException {
+        long startMillis = System.currentTimeMillis();
+        long rows = export(format, ENVIRONMENT_COLUMNS, out,
+                handler -> labEnvironmentDataMapper.exportByTimeRange(labId, startTime, endTime, handler));
+        log.info("📤 环境数据导出完成 - 实验室ID: {}, 格式: {}, 行数: {}, 耗时: {}ms",
+                labId, format, rows, System.currentTimeMillis() - startMillis);
+        return rows;
+    }
+
+    /**
+     * 导出日期范围内所有实验室的日统计
+     *
+     * @return 导出的行数
+     */
+    public long exportDailyStatistics(LocalDate startDate, LocalDate endDate,
+                                      Format format, OutputStream out) throws IOException {
+        long startMillis = System.currentTimeMillis();
+        long rows = export(format, DAILY_STATISTICS_COLUMNS, out,
+                handler -> dailyStatisticsMapper.exportByDateRange(startDate, endDate, handler));
+        log.info("📤 日统计导出完成 - 日期范围: {} 到 {}, 格式: {}, 行数: {}, 耗时: {}ms",
+                startDate, endDate, format, rows, System.currentTimeMillis() - startMillis);
+        return rows;
+    }
+
+    private <T> long export(Format format, List<Column<T>> columns, OutputStream out,
+                            Consumer<ResultHandler<T>> query) throws IOException {
+        RowWriter<T> writer = format == Format.JSON
+                ? new JsonRowWriter<>(columns, out)
+                : new CsvRowWriter<>(columns, out);
+        writer.begin();
+        // 写出失败（客户端断开）时抛出 UncheckedIOException，经 MyBatis 包装后中止查询
+        query.accept(context -> writer.write(context.getResultObject(), flushRows));
+        writer.end();
+        return writer.rowCount;
+    }
+
+    // =============================列定义=============================
+
+    private static final class Column<T> {
+        private final String field;
+        private final String header;
+        private final Function<T, Object> getter;
+
+        Column(String field, String header, Function<T, Object> getter) {
+            this.field = field;
+            this.header = header;
+            this.getter = getter;
+        }
+    }
+
+    // =============================行写入=============================
+
+    private abstract static class RowWriter<T> {
+        protected final List<Column<T>> columns;
+        private long rowCount;
+
+        RowWriter(List<Column<T>> columns) {
+            this.columns = columns;
+        }
+
+        void write(T row, int flushRows) {
+            try {
+                writeRow(row);
+                if (++rowCount % flushRows == 0) {
+                    flush();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        abstract void begin() throws IOException;
+
+        abstract void writeRow(T row) throws IOException;
+
+        abstract void flush() throws IOException;
+
+        abstract void end() throws IOException;
+    }
+
+    private static final class CsvRowWriter<T> extends RowWriter<T> {
+        private final OutputStream out;
+        private final Writer writer;
+
+        CsvRowWriter(List<Column<T>> columns, OutputStream out) {
+            super(columns);
+            this.out = out;
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16 * 1024);
+        }
+
+        @Override
+        void begin() throws IOException {
+            out.write(UTF8_BOM);
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeCell(columns.get(i).header);
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        void writeRow(T row) throws IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Object value = columns.get(i).getter.apply(row);
+                if (value != null) {
+                    writeCell(toText(value));
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        /**
+         * 含逗号、引号、换行的值用双引号包裹，内部引号写两次
+         */
+        private void writeCell(String text) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < text.length() && !quote; i++) {
+                char c = text.charAt(i);
+                quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+            }
+            if (!quote) {
+                writer.write(text);
+                return;
+            }
+            writer.write('"');
+            writer.write(text.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        void end() throws IOException {
+            writer.flush();
+        }
+    }
+
+    private static final class JsonRowWriter<T> extends RowWriter<T> {
+        private final JsonGenerator generator;
+
+        JsonRowWriter(List<Column<T>> columns, OutputStream out) throws IOException {
+            super(columns);
+            this.generator = JSON_FACTORY.createGenerator(out);
+        }
+
+        @Override
+        void begin() throws IOException {
+            generator.writeStartArray();
+        }
+
+        @Override
+        void writeRow(T row) throws IOException {
+            generator.writeStartObject();
+            for (Column<T> column : columns) {
+                generator.writeFieldName(column.field);
+                Object value = column.getter.apply(row);
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof BigDecimal) {
+                    generator.writeNumber((BigDecimal) value);
+                } else if (value instanceof Double) {
+                    generator.writeNumber((Double) value);
+                } else if (value instanceof Long || value instanceof Integer) {
+                    generator.writeNumber(((Number) value).longValue());
+                } else {
+                    generator.writeString(toText(value));
+                }
+            }
+            generator.writeEndObject();
+        }
+
+        @Override
+        void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        void end() throws IOException {
+            generator.writeEndArray();
+            generator.close();
+        }
+    }
+
+    private static String toText(Object value) {
+        if (value instanceof LocalDateTime) {
+            return ((LocalDateTime) value).format(DATE_TIME_FORMAT);
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,358 @@
+package com.sewage.monitor.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.kafka.codec.LabPayloadCodec;
+import com.sewage.monitor.kafka.producer.LabEnvironmentProducer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 环境数据流式批量上传
+ *
+ * 功能说明：
+ * 1. 网关断线重连后补传积压数据：从请求输入流逐条解析，不把整个请求体读入内存
+ * 2. 支持两种格式：
+ *    - ndjson：每行一条 JSON 记录，空行忽略；单行超过 max-line-bytes 或解析失败的行计为拒绝，不影响后续行
+ *    - binary：每条记录为 4 字节长度（大端序）+ LabPayloadCodec 二进制编码；帧长度异常时无法定位下一帧，终止上传
+ * 3. 每凑满 chunk-size 条整批发送到 Kafka，等待全部确认后再读取下一批，内存占用只与 chunk-size 有关
+ * 4. 每批发送完成后回调一次确认（行号范围、接受/拒绝/发送失败条数），网关据此判断断点
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StreamingIngestService {
+
+    public static final String FORMAT_NDJSON = "ndjson";
+    public static final String FORMAT_BINARY = "binary";
+
+    /**
+     * 单条记录拒绝原因最多返回的条数（每批）
+     */
+    private static final int MAX_ERRORS_PER_CHUNK = 10;
+
+    private final LabEnvironmentProducer labEnvironmentProducer;
+    private final LabPayloadCodec labPayloadCodec;
+    private final ObjectMapper objectMapper;
+
+    @Value("${monitor.ingest.stream.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${monitor.ingest.stream.max-line-bytes:65536}")
+    private int maxLineBytes;
+
+    @Value("${monitor.ingest.stream.ack-timeout-ms:30000}")
+    private long ackTimeoutMs;
+
+    /**
+     * 流式解析并分批发送
+     *
+     * @param input  请求输入流
+     * @param format ndjson / binary
+     * @param ackSink 每批确认回调
+     * @return 汇总结果
+     */
+    public Map<String, Object> ingest(InputStream input, String format, Consumer<Map<String, Object>> ackSink) {
+        long startTime = System.currentTimeMillis();
+        RecordSource source = FORMAT_BINARY.equalsIgnoreCase(format)
+                ? new BinarySource(new BufferedInputStream(input, 65536))
+                : new NdjsonSource(new BufferedInputStream(input, 65536));
+
+        Chunk chunk = new Chunk(1, 1);
+        long accepted = 0;
+        long rejected = 0;
+        long failed = 0;
+        int chunks = 0;
+        String abortReason = null;
+
+        while (true) {
+            try {
+                LabEnvironmentData data = source.next();
+                if (data == null) {
+                    break;
+                }
+                chunk.add(data);
+            } catch (RecordException e) {
+                chunk.reject(source.position(), e.getMessage());
+            } catch (IOException e) {
+                abortReason = e.getMessage();
+                break;
+            }
+            if (chunk.size() >= chunkSize) {
+                chunk.lastRecord = source.position();
+                failed += flush(chunk, ackSink);
+                accepted += chunk.records.size();
+                rejected += chunk.rejected;
+                chunks++;
+                chunk = new Chunk(chunks + 1, source.position() + 1);
+            }
+        }
+
+        if (chunk.size() > 0) {
+            chunk.lastRecord = source.position();
+            failed += flush(chunk, ackSink);
+            accepted += chunk.records.size();
+            rejected += chunk.rejected;
+            chunks++;
+        }
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("done", abortReason == null);
+        summary.put("format", source.format());
+        summary.put("records", source.position());
+        summary.put("chunks", chunks);
+        summary.put("accepted", accepted - failed);
+        summary.put("rejected", rejected);
+        summary.put("failed", failed);
+        summary.put("costMillis", System.currentTimeMillis() - startTime);
+        if (abortReason != null) {
+            summary.put("error", abortReason);
+        }
+
+        log.info("📦 流式上传完成 - 格式: {}, 记录: {}, 批次: {}, 接受: {}, 拒绝: {}, 发送失败: {}, 耗时: {}ms",
+                source.format(), source.position(), chunks, accepted - failed, rejected, failed,
+                summary.get("costMillis"));
+        return summary;
+    }
+
+    /**
+     * 发送一批数据并等待确认，返回发送失败条数
+     */
+    private int flush(Chunk chunk, Consumer<Map<String, Object>> ackSink) {
+        int failed = 0;
+        if (!chunk.records.isEmpty()) {
+            try {
+                failed = labEnvironmentProducer.sendEnvironmentDataBatch(chunk.records)
+                        .get(ackTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                log.error("❌ 流式上传批次发送未确认 - 批次: {}, 数量: {}, Error: {}",
+                        chunk.index, chunk.records.size(), e.getMessage());
+                failed = chunk.records.size();
+            }
+        }
+
+        Map<String, Object> ack = new LinkedHashMap<>();
+        ack.put("chunk", chunk.index);
+        ack.put("firstRecord", chunk.firstRecord);
+        ack.put("lastRecord", chunk.lastRecord);
+        ack.put("accepted", chunk.records.size() - failed);
+        ack.put("rejected", chunk.rejected);
+        ack.put("failed", failed);
+        if (!chunk.errors.isEmpty()) {
+            ack.put("errors", chunk.errors);
+        }
+        ackSink.accept(ack);
+        return failed;
+    }
+
+    /**
+     * 补全网关未填写的字段（与 /data/batch 一致）
+     */
+    private static LabEnvironmentData normalize(LabEnvironmentData data) {
+        if (data.getMonitorTime() == null) {
+            data.setMonitorTime(LocalDateTime.now());
+        }
+        if (data.getDataSource() == null) {
+            data.setDataSource("SENSOR");
+        }
+        return data;
+    }
+
+    // =============================批次=============================
+
+    private static final class Chunk {
+        private final int index;
+        private final long firstRecord;
+        private long lastRecord;
+        private final List<LabEnvironmentData> records = new ArrayList<>();
+        private final List<String> errors = new ArrayList<>();
+        private int rejected;
+
+        Chunk(int index, long firstRecord) {
+            this.index = index;
+            this.firstRecord = firstRecord;
+        }
+
+        void add(LabEnvironmentData data) {
+            records.add(data);
+        }
+
+        void reject(long position, String reason) {
+            rejected++;
+            if (errors.size() < MAX_ERRORS_PER_CHUNK) {
+                errors.add("#" + position + ": " + reason);
+            }
+        }
+
+        int size() {
+            return records.size() + rejected;
+        }
+    }
+
+    // =============================记录解析=============================
+
+    /**
+     * 单条记录无效（跳过该条，继续读取）
+     */
+    private static final class RecordException extends Exception {
+        RecordException(String message) {
+            super(message);
+        }
+    }
+
+    private interface RecordSource {
+
+        /**
+         * 读取下一条记录，输入结束时返回 null
+         *
+         * @throws RecordException 当前记录无效，可以继续读取
+         * @throws IOException     输入流异常或格式错误，无法继续读取
+         */
+        LabEnvironmentData next() throws RecordException, IOException;
+
+        /**
+         * 已读取的记录序号（ndjson 为非空行序号，binary 为帧序号）
+         */
+        long position();
+
+        String format();
+    }
+
+    /**
+     * NDJSON：逐字节读到换行，行缓冲区复用，超长行丢弃剩余部分
+     */
+    private final class NdjsonSource implements RecordSource {
+        private final InputStream in;
+        private final ObjectReader reader = objectMapper.readerFor(LabEnvironmentData.class);
+        private final byte[] line = new byte[maxLineBytes];
+        private long position;
+
+        NdjsonSource(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public LabEnvironmentData next() throws RecordException, IOException {
+            while (true) {
+                int length = 0;
+                boolean overflow = false;
+                int b;
+                while ((b = in.read()) != -1 && b != '\n') {
+                    if (length < line.length) {
+                        line[length++] = (byte) b;
+                    } else {
+                        overflow = true;
+                    }
+                }
+                if (b == -1 && length == 0 && !overflow) {
+                    return null;
+                }
+                // 去掉行尾的 \r 和空白
+                while (length > 0 && (line[length - 1] == '\r' || line[length - 1] == ' ' || line[length - 1] == '\t')) {
+                    length--;
+                }
+                if (length == 0 && !overflow) {
+                    continue;
+                }
+                position++;
+                if (overflow) {
+                    throw new RecordException("行长度超过 " + line.length + " 字节");
+                }
+                try {
+                    return normalize(reader.readValue(line, 0, length));
+                } catch (JsonProcessingException e) {
+                    throw new RecordException("JSON解析失败: " + e.getOriginalMessage());
+                }
+            }
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public String format() {
+            return FORMAT_NDJSON;
+        }
+    }
+
+    /**
+     * 二进制：4 字节长度 + LabPayloadCodec 编码
+     */
+    private final class BinarySource implements RecordSource {
+        private final InputStream in;
+        private final byte[] frame = new byte[maxLineBytes];
+        private long position;
+
+        BinarySource(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public LabEnvironmentData next() throws RecordException, IOException {
+            int b0 = in.read();
+            if (b0 == -1) {
+                return null;
+            }
+            int length = (b0 << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+            position++;
+            if (length <= 0 || length > frame.length) {
+                throw new IOException("第 " + position + " 帧长度异常: " + length);
+            }
+            int read = 0;
+            while (read < length) {
+                int n = in.read(frame, read, length - read);
+                if (n == -1) {
+                    throw new EOFException("第 " + position + " 帧数据不完整");
+                }
+                read += n;
+            }
+            Object decoded;
+            try {
+                decoded = labPayloadCodec.decode(Arrays.copyOf(frame, length));
+            } catch (RuntimeException e) {
+                throw new RecordException("二进制解码失败: " + e.getMessage());
+            }
+            if (!(decoded instanceof LabEnvironmentData)) {
+                throw new RecordException("不是环境数据记录");
+            }
+            return normalize((LabEnvironmentData) decoded);
+        }
+
+        private int readByte() throws IOException {
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("第 " + (position + 1) + " 帧长度不完整");
+            }
+            return b;
+        }
+
+        @Override
+        public long position() {
+            return position;
+        }
+
+        @Override
+        public String format() {
+            return FORMAT_BINARY;
+        }
+    }
+}
@@ -4,14 +4,24 @@ import com.sewage.monitor.entity.LabEnvironmentData;
 import com.sewage.monitor.entity.LabAlarm;
 import com.sewage.monitor.websocket.WebSocketServer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * WebSocket推送服务
  * 负责将各种数据通过WebSocket实时推送给前端
  *
+ * 实时环境数据限流：
+ * - 每个实验室最多每 1000 / max-frames-per-second 毫秒推送一帧
+ * - 间隔内到达的数据只保留最新一条，间隔结束后补发，突发上报时前端收到的是平稳的最新快照
+ * - 告警、统计数据不限流，立即推送
+ *
  * @author system
  */
 @Slf4j
@@ -19,15 +29,109 @@ import java.util.Map;
 public class WebSocketPushService {
 
     /**
-     * 推送环境数据
+     * 每个会话的发送队列容量
+     */
+    @Value("${monitor.websocket.send-queue-capacity:64}")
+    private int sendQueueCapacity;
+
+    /**
+     * 单帧发送超时时间，超时的会话视为慢消费者断开
+     */
+    @Value("${monitor.websocket.send-timeout-ms:10000}")
+    private long sendTimeoutMillis;
+
+    /**
+     * 每个实验室每秒最多推送的环境数据帧数，0表示不限流
+     */
+    @Value("${monitor.websocket.max-frames-per-second:2}")
+    private double maxFramesPerSecond;
+
+    /**
+     * 每个实验室的限流状态
+     */
+    private final Map<Long, LabPushState> pushStates = new ConcurrentHashMap<>();
+
+    private long minIntervalMillis;
+    private final AtomicLong throttledCount = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        minIntervalMillis = maxFramesPerSecond > 0 ? (long) (1000 / maxFramesPerSecond) : 0;
+        WebSocketServer.configure(sendQueueCapacity, sendTimeoutMillis);
+    }
+
+    /**
+     * 定时清理慢消费者
+     */
+    @Scheduled(fixedDelayString = "${monitor.websocket.evict-interval-ms:5000}")
+    public void evictSlowConsumers() {
+        int evicted = WebSocketServer.evictSlowConsumers();
+        if (evicted > 0) {
+            log.warn("🐢 已断开WebSocket慢消费者 - 数量: {}", evicted);
+        }
+    }
+
+    /**
+     * 推送环境数据（按实验室限流，间隔内的数据合并为最新一条）
      */
     public void pushEnvironmentData(LabEnvironmentData data) {
-        try {
-            if (data != null && data.getLabId() != null) {
-                WebSocketServer.pushEnvironmentData(data);
-                log.debug("📡 WebSocket环境数据推送成功 - 实验室ID: {}, 时间: {}",
-                    data.getLabId(), data.getMonitorTime());
+        if (data == null || data.getLabId() == null) {
+            return;
+        }
+        if (minIntervalMillis <= 0) {
+            sendEnvironmentData(data);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        LabEnvironmentData toSend;
+        while (true) {
+            LabPushState state = pushStates.computeIfAbsent(data.getLabId(), key -> new LabPushState());
+            synchronized (state) {
+                if (state.retired) {
+                    // 该状态刚被清理，重新获取
+                    continue;
+                }
+                toSend = state.offer(data, now, minIntervalMillis);
+            }
+            break;
+        }
+        if (toSend != null) {
+            sendEnvironmentData(toSend);
+        } else {
+            throttledCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 定时补发限流间隔内被合并的最新数据，并清理长时间没有数据的实验室
+     */
+    @Scheduled(fixedDelayString = "${monitor.websocket.throttle-tick-ms:50}")
+    public void flushThrottledPushes() {
+        if (pushStates.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        pushStates.forEach((labId, state) -> {
+            LabEnvironmentData due;
+            synchronized (state) {
+                due = state.pollDue(now, minIntervalMillis);
+                if (due == null && state.isIdle(now)) {
+                    state.retired = true;
+                    pushStates.remove(labId, state);
+                }
+            }
+            if (due != null) {
+                sendEnvironmentData(due);
             }
+        });
+    }
+
+    private void sendEnvironmentData(LabEnvironmentData data) {
+        try {
+            WebSocketServer.pushEnvironmentData(data);
+            log.debug("📡 WebSocket环境数据推送成功 - 实验室ID: {}, 时间: {}",
+                data.getLabId(), data.getMonitorTime());
         } catch (Exception e) {
             log.error("❌ WebSocket环境数据推送失败", e);
         }
@@ -48,6 +152,21 @@ public class WebSocketPushService {
         }
     }
 
+    /**
+     * 推送告警恢复通知
+     */
+    public void pushAlarmRecovered(LabAlarm alarm) {
+        try {
+            if (alarm != null && alarm.getLabId() != null) {
+                WebSocketServer.pushAlarmRecovered(alarm);
+                log.info("✅ WebSocket告警恢复推送成功 - 实验室ID: {}, 告警类型: {}",
+                    alarm.getLabId(), alarm.getAlarmType());
+            }
+        } catch (Exception e) {
+            log.error("❌ WebSocket告警恢复推送失败", e);
+        }
+    }
+
     /**
      * 推送统计数据
      */
@@ -70,7 +189,10 @@ public class WebSocketPushService {
             String statsJson = WebSocketServer.getConnectionStats();
             return Map.of(
                 "totalOnlineCount", WebSocketServer.getOnlineCount(),
-                "labConnectionStats", statsJson
+                "labConnectionStats", statsJson,
+                "pushStats", WebSocketServer.getPushStats(),
+                "throttledCount", throttledCount.get(),
+                "maxFramesPerSecond", maxFramesPerSecond
             );
         } catch (Exception e) {
             log.error("❌ 获取WebSocket连接统计失败", e);
@@ -106,4 +228,57 @@ public class WebSocketPushService {
             log.error("❌ 广播消息失败", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 单个实验室的推送限流状态（调用方需持有该对象的锁）
+     */
+    private static final class LabPushState {
+
+        /**
+         * 超过该时间没有新数据的实验室从限流表中移除
+         */
+        private static final long IDLE_MILLIS = 60_000;
+
+        private long lastSentAt;
+        private LabEnvironmentData pending;
+        private boolean retired;
+
+        /**
+         * 提交一条数据
+         *
+         * @return 可以立即推送时返回该数据，否则暂存为待补发的最新数据并返回null
+         */
+        LabEnvironmentData offer(LabEnvironmentData data, long now, long minInterval) {
+            if (pending == null && now - lastSentAt >= minInterval) {
+                lastSentAt = now;
+                return data;
+            }
+            if (pending == null || !isOlder(data, pending)) {
+                pending = data;
+            }
+            return null;
+        }
+
+        /**
+         * 取出到期的待补发数据
+         */
+        LabEnvironmentData pollDue(long now, long minInterval) {
+            if (pending == null || now - lastSentAt < minInterval) {
+                return null;
+            }
+            LabEnvironmentData due = pending;
+            pending = null;
+            lastSentAt = now;
+            return due;
+        }
+
+        boolean isIdle(long now) {
+            return pending == null && now - lastSentAt > IDLE_MILLIS;
+        }
+
+        private static boolean isOlder(LabEnvironmentData a, LabEnvironmentData b) {
+            return a.getMonitorTime() != null && b.getMonitorTime() != null
+                    && a.getMonitorTime().isBefore(b.getMonitorTime());
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.sewage.monitor.util;
+
+import lombok.Data;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 游标（keyset）分页结果
+ *
+ * 功能说明：
+ * 1. 按 (排序时间, id) 倒序翻页，下一页条件为 (时间, id) 小于上一页最后一行，数据库直接从索引定位，
+ *    第 N 页与第 1 页代价相同；不执行 COUNT(*)，也不扫描再丢弃前面的行
+ * 2. nextToken 为不透明的续页令牌（Base64 编码的最后一行位置），为空表示没有下一页
+ * 3. approximateTotal 为可选的近似总数（EXPLAIN 估算行数），只用于展示量级
+ *
+ * 查询时多取一行（size + 1）判断是否还有下一页
+ */
+@Data
+public class KeysetPage<T> {
+
+    public static final int MAX_SIZE = 500;
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * 当前页数据
+     */
+    private List<T> records;
+
+    /**
+     * 每页数量
+     */
+    private int size;
+
+    /**
+     * 是否还有下一页
+     */
+    private boolean hasMore;
+
+    /**
+     * 下一页令牌
+     */
+    private String nextToken;
+
+    /**
+     * 近似总数（请求 withTotal 时返回）
+     */
+    private Long approximateTotal;
+
+    /**
+     * 每页数量限制在 [1, MAX_SIZE]
+     */
+    public static int clampSize(int size) {
+        return Math.max(1, Math.min(size, MAX_SIZE));
+    }
+
+    /**
+     * 由多取一行的查询结果构造分页结果
+     *
+     * @param rows    按 (排序值, id) 倒序查询的结果，最多 size + 1 行
+     * @param size    每页数量
+     * @param sortKey 排序值（LocalDateTime / LocalDate）
+     * @param idKey   主键
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int size, Function<T, Object> sortKey, Function<T, Long> idKey) {
+        KeysetPage<T> page = new KeysetPage<>();
+        page.setSize(size);
+        page.setHasMore(rows.size() > size);
+        page.setRecords(page.isHasMore() ? rows.subList(0, size) : rows);
+        if (page.isHasMore()) {
+            T last = page.getRecords().get(size - 1);
+            page.setNextToken(encode(sortKey.apply(last), idKey.apply(last)));
+        }
+        return page;
+    }
+
+    /**
+     * 解析续页令牌
+     *
+     * @return 上一页最后一行的位置，token 为空时返回 null（第一页）
+     * @throws IllegalArgumentException 令牌无效
+     */
+    public static Position decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String text = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int index = text.lastIndexOf(SEPARATOR);
+            if (index <= 0) {
+                throw new IllegalArgumentException("无效的分页令牌");
+            }
+            return new Position(text.substring(0, index), Long.parseLong(text.substring(index + 1)));
+        } catch (IllegalArgumentException e) {
+            // 包括 Base64 解码失败和 NumberFormatException
+            throw new IllegalArgumentException("无效的分页令牌", e);
+        }
+    }
+
+    static String encode(Object sortValue, Long id) {
+        String text = sortValue + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 从 EXPLAIN 结果中取估算行数
+     */
+    public static Long estimatedRows(List<Map<String, Object>> explain) {
+        if (explain == null || explain.isEmpty()) {
+            return null;
+        }
+        Object rows = explain.get(0).get("rows");
+        return rows instanceof Number ? ((Number) rows).longValue() : null;
+    }
+
+    /**
+     * 上一页最后一行的位置
+     */
+    public static final class Position {
+        private final String value;
+        private final long id;
+
+        Position(String value, long id) {
+            this.value = value;
+            this.id = id;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public LocalDateTime getTime() {
+            try {
+                return LocalDateTime.parse(value);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("无效的分页令牌", e);
+            }
+        }
+
+        public LocalDate getDate() {
+            try {
+                return LocalDate.parse(value);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("无效的分页令牌", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.sewage.monitor.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 耗时直方图（固定分桶，无锁）
+ *
+ * 功能说明：
+ * 1. 按固定的毫秒边界分桶计数，记录一次只是一次原子自增，可在多个消费线程中并发调用
+ * 2. 分位数按桶上界估算（精度为桶宽），用于观察批处理耗时分布，不用于精确统计
+ * 3. 同时记录总次数、总耗时和最大值
+ */
+public class LatencyHistogram {
+
+    /**
+     * 桶上界（毫秒），最后一个桶收集超过最大边界的数据
+     */
+    private static final long[] BOUNDS_MILLIS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000};
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_MILLIS.length + 1);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMillis = new AtomicLong();
+    private final AtomicLong maxMillis = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     */
+    public void record(long millis) {
+        int index = 0;
+        while (index < BOUNDS_MILLIS.length && millis > BOUNDS_MILLIS[index]) {
+            index++;
+        }
+        buckets.incrementAndGet(index);
+        count.incrementAndGet();
+        totalMillis.addAndGet(millis);
+        maxMillis.accumulateAndGet(millis, Math::max);
+    }
+
+    /**
+     * 估算分位数（返回所在桶的上界，超过最大边界时返回最大值）
+     */
+    public long percentile(double q) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return BOUNDS_MILLIS[i];
+            }
+        }
+        return maxMillis.get();
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * 统计快照：次数、平均值、最大值、p50/p95/p99 以及各桶计数（键为 "≤上界ms"）
+     */
+    public Map<String, Object> snapshot() {
+        long total = count.get();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", total);
+        result.put("avgMillis", total > 0 ? totalMillis.get() / total : 0);
+        result.put("maxMillis", maxMillis.get());
+        result.put("p50Millis", percentile(0.50));
+        result.put("p95Millis", percentile(0.95));
+        result.put("p99Millis", percentile(0.99));
+
+        Map<String, Long> bucketCounts = new LinkedHashMap<>();
+        for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+            bucketCounts.put("≤" + BOUNDS_MILLIS[i] + "ms", buckets.get(i));
+        }
+        bucketCounts.put(">" + BOUNDS_MILLIS[BOUNDS_MILLIS.length - 1] + "ms", buckets.get(BOUNDS_MILLIS.length));
+        result.put("buckets", bucketCounts);
+        return result;
+    }
+}
@@ -0,0 +1,175 @@
+package com.sewage.monitor.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 处理流水线的一个阶段（有界队列 + 固定数量的工作线程）
+ *
+ * 功能说明：
+ * 1. 每个工作线程一个有界队列，按 key（如实验室ID）固定分配工作线程，同一 key 的数据按提交顺序处理
+ * 2. 队列满时阻塞提交方形成背压，不交给调用线程执行（会破坏同一 key 的顺序）；
+ *    只有阶段已关闭或提交线程在等待时被中断才丢弃数据，丢弃时计数并记录 key
+ * 3. 单条处理失败只记录日志和计数，不影响后续数据
+ * 4. 统计提交数、处理数、失败数、丢弃数、积压量、处理耗时，以及两次查询之间的吞吐量
+ *
+ * @param <T> 数据类型
+ */
+@Slf4j
+public class PipelineStage<T> {
+
+    private final String name;
+    private final Consumer<T> handler;
+    private final ThreadPoolExecutor[] workers;
+    private final int queueCapacity;
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong processedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong blockedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * 上次查询统计时的处理数和时间（用于计算吞吐量）
+     */
+    private long lastStatsProcessed;
+    private long lastStatsNanos = System.nanoTime();
+
+    public PipelineStage(String name, int workerCount, int queueCapacity, Consumer<T> handler) {
+        this.name = name;
+        this.handler = handler;
+        this.queueCapacity = queueCapacity;
+        this.workers = new ThreadPoolExecutor[Math.max(1, workerCount)];
+        for (int i = 0; i < workers.length; i++) {
+            String threadName = "pipeline-" + name + "-" + i;
+            workers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, threadName);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    (runnable, pool) -> {
+                        // 阶段已关闭：无法再处理
+                        if (pool.isShutdown()) {
+                            dropped(runnable, "阶段已关闭");
+                            return;
+                        }
+                        // 队列已满：阻塞提交方
+                        blockedCount.incrementAndGet();
+                        try {
+                            pool.getQueue().put(runnable);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            dropped(runnable, "等待队列空位时被中断");
+                        }
+                    });
+        }
+    }
+
+    /**
+     * 提交一条数据，key 相同的数据由同一个工作线程按顺序处理
+     */
+    public void submit(long key, T item) {
+        submittedCount.incrementAndGet();
+        workers[Math.floorMod(Long.hashCode(key), workers.length)].execute(new Task(key, item));
+    }
+
+    private void dropped(Runnable runnable, String reason) {
+        droppedCount.incrementAndGet();
+        Object key = runnable instanceof PipelineStage.Task ? ((PipelineStage<?>.Task) runnable).key : null;
+        log.warn("⚠️ 流水线阶段丢弃数据（{}） - 阶段: {}, key: {}", reason, name, key);
+    }
+
+    /**
+     * 当前积压量（所有工作线程队列中等待处理的条数）
+     */
+    public int backlog() {
+        int backlog = 0;
+        for (ThreadPoolExecutor worker : workers) {
+            backlog += worker.getQueue().size();
+        }
+        return backlog;
+    }
+
+    /**
+     * 停止接收新数据，等待已提交的数据处理完
+     */
+    public void shutdown(long timeoutMillis) {
+        for (ThreadPoolExecutor worker : workers) {
+            worker.shutdown();
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (ThreadPoolExecutor worker : workers) {
+            try {
+                if (!worker.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                    log.warn("⚠️ 流水线阶段关闭超时，剩余 {} 条未处理 - 阶段: {}", worker.getQueue().size(), name);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 统计快照
+     */
+    public synchronized Map<String, Object> getStats() {
+        long processed = processedCount.get();
+        long now = System.nanoTime();
+        double seconds = (now - lastStatsNanos) / 1e9;
+        double throughput = seconds > 0 ? (processed - lastStatsProcessed) / seconds : 0;
+        lastStatsProcessed = processed;
+        lastStatsNanos = now;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workers", workers.length);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("backlog", backlog());
+        stats.put("submittedCount", submittedCount.get());
+        stats.put("processedCount", processed);
+        stats.put("failedCount", failedCount.get());
+        stats.put("blockedCount", blockedCount.get());
+        stats.put("droppedCount", droppedCount.get());
+        stats.put("throughputPerSecond", Math.round(throughput * 10) / 10.0);
+        stats.put("latency", latency.snapshot());
+        return stats;
+    }
+
+    /**
+     * 一条数据的处理任务（保留 key，丢弃时用于定位数据）
+     */
+    private final class Task implements Runnable {
+        private final long key;
+        private final T item;
+
+        Task(long key, T item) {
+            this.key = key;
+            this.item = item;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                handler.accept(item);
+                processedCount.incrementAndGet();
+            } catch (Exception e) {
+                failedCount.incrementAndGet();
+                log.error("❌ 流水线阶段处理失败 - 阶段: {}, key: {}, Error: {}", name, key, e.getMessage(), e);
+            } finally {
+                latency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        }
+    }
+}
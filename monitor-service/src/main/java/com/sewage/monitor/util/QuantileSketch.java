@@ -0,0 +1,292 @@
+package com.sewage.monitor.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * 可合并的分位数草图（对数分桶）
+ *
+ * 原理：
+ * 1. 按相对误差alpha把数值映射到对数桶：index = ceil(ln|v| / ln(gamma))，gamma = (1 + alpha) / (1 - alpha)
+ * 2. 每个桶只记录落入的数据条数，任意分位数的相对误差不超过alpha
+ * 3. 两个草图合并 = 对应桶计数相加，合并结果与直接统计全部原始数据得到的草图完全一致，
+ *    因此按天、按实验室存储的草图可以任意组合查询
+ *
+ * 存储格式（变长整数编码，一天的数据通常只有几十到几百字节）：
+ * 版本 | 相对误差 | 总数 | 最小值 | 最大值 | 总和 | 零值计数 | 正数桶 | 负数桶
+ * 桶列表 = 桶数量 + (下标差值, 计数)...
+ */
+public class QuantileSketch {
+
+    /**
+     * 默认相对误差 1%
+     */
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    private static final byte FORMAT_VERSION = 1;
+
+    /**
+     * 绝对值小于该值的数据统一计入零值桶
+     */
+    private static final double MIN_INDEXABLE_VALUE = 1e-6;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+
+    private final TreeMap<Integer, Long> positiveBuckets = new TreeMap<>();
+    private final TreeMap<Integer, Long> negativeBuckets = new TreeMap<>();
+    private long zeroCount;
+
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("相对误差必须在(0, 1)之间: " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    /**
+     * 记录一个数值（NaN和无穷大直接忽略）
+     */
+    public void add(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return;
+        }
+        if (value > MIN_INDEXABLE_VALUE) {
+            positiveBuckets.merge(index(value), 1L, Long::sum);
+        } else if (value < -MIN_INDEXABLE_VALUE) {
+            negativeBuckets.merge(index(-value), 1L, Long::sum);
+        } else {
+            zeroCount++;
+        }
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * 合并另一个草图（两者相对误差必须一致）
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other == null || other.count == 0) {
+            return this;
+        }
+        if (Double.compare(relativeAccuracy, other.relativeAccuracy) != 0) {
+            throw new IllegalArgumentException("相对误差不一致，无法合并: "
+                    + relativeAccuracy + " / " + other.relativeAccuracy);
+        }
+        other.positiveBuckets.forEach((index, bucketCount) -> positiveBuckets.merge(index, bucketCount, Long::sum));
+        other.negativeBuckets.forEach((index, bucketCount) -> negativeBuckets.merge(index, bucketCount, Long::sum));
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    /**
+     * 查询分位数
+     *
+     * @param quantile 分位点，取值[0, 1]，例如0.95表示p95
+     * @return 分位数估计值，草图为空时返回NaN
+     */
+    public double quantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("分位点必须在[0, 1]之间: " + quantile);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        if (quantile == 0) {
+            return min;
+        }
+        if (quantile == 1) {
+            return max;
+        }
+
+        long rank = (long) (quantile * (count - 1));
+        long seen = 0;
+
+        // 负数：下标越大数值越小，按下标降序遍历
+        for (Map.Entry<Integer, Long> entry : negativeBuckets.descendingMap().entrySet()) {
+            seen += entry.getValue();
+            if (seen > rank) {
+                return clamp(-bucketValue(entry.getKey()));
+            }
+        }
+
+        seen += zeroCount;
+        if (seen > rank) {
+            return clamp(0);
+        }
+
+        for (Map.Entry<Integer, Long> entry : positiveBuckets.entrySet()) {
+            seen += entry.getValue();
+            if (seen > rank) {
+                return clamp(bucketValue(entry.getKey()));
+            }
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    // =============================序列化=============================
+
+    /**
+     * 序列化为紧凑的二进制格式
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeByte(FORMAT_VERSION);
+            out.writeDouble(relativeAccuracy);
+            writeVarLong(out, count);
+            if (count > 0) {
+                out.writeDouble(min);
+                out.writeDouble(max);
+                out.writeDouble(sum);
+                writeVarLong(out, zeroCount);
+                writeBuckets(out, positiveBuckets);
+                writeBuckets(out, negativeBuckets);
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 从二进制格式还原，null或空数组返回空草图
+     */
+    public static QuantileSketch fromBytes(byte[] data) {
+        if (data == null || data.length == 0) {
+            return new QuantileSketch();
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("不支持的草图版本: " + version);
+            }
+            QuantileSketch sketch = new QuantileSketch(in.readDouble());
+            sketch.count = readVarLong(in);
+            if (sketch.count > 0) {
+                sketch.min = in.readDouble();
+                sketch.max = in.readDouble();
+                sketch.sum = in.readDouble();
+                sketch.zeroCount = readVarLong(in);
+                readBuckets(in, sketch.positiveBuckets);
+                readBuckets(in, sketch.negativeBuckets);
+            }
+            return sketch;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("草图数据损坏", e);
+        }
+    }
+
+    // =============================内部方法=============================
+
+    private int index(double absValue) {
+        return (int) Math.ceil(Math.log(absValue) / logGamma);
+    }
+
+    /**
+     * 桶的代表值：取桶区间 (gamma^(i-1), gamma^i] 中相对误差最小的点
+     */
+    private double bucketValue(int index) {
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    private double clamp(double value) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static void writeBuckets(DataOutput out, NavigableMap<Integer, Long> buckets) throws IOException {
+        writeVarLong(out, buckets.size());
+        int previous = 0;
+        for (Map.Entry<Integer, Long> entry : buckets.entrySet()) {
+            int delta = entry.getKey() - previous;
+            // ZigZag编码，第一个下标可能为负数
+            writeVarLong(out, (delta << 1) ^ (delta >> 31));
+            writeVarLong(out, entry.getValue());
+            previous = entry.getKey();
+        }
+    }
+
+    private static void readBuckets(DataInput in, NavigableMap<Integer, Long> buckets) throws IOException {
+        long size = readVarLong(in);
+        int previous = 0;
+        for (long i = 0; i < size; i++) {
+            int zigzag = (int) readVarLong(in);
+            int index = previous + ((zigzag >>> 1) ^ -(zigzag & 1));
+            buckets.put(index, readVarLong(in));
+            previous = index;
+        }
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 63) {
+                throw new IOException("变长整数过长");
+            }
+            b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,323 @@
+package com.sewage.monitor.util;
+
+import java.util.Arrays;
+
+/**
+ * 时间序列流式降采样
+ *
+ * 功能说明：
+ * 1. 按时间顺序逐点输入（add），不需要预先知道总点数，内存占用与原始数据量无关
+ * 2. 时间范围 [start, end] 按时间等分成桶（传感器基本等间隔上报，按时间分桶与按条数分桶效果接近）
+ * 3. 两种算法：
+ *    - LTTB（Largest-Triangle-Three-Buckets）：每个桶选出与上一个选中点、下一个桶平均点构成三角形面积最大的点，
+ *      保留曲线形状，输出不超过 maxPoints 个点；只需缓存当前桶和下一个桶的点
+ *    - MIN_MAX：每个桶输出最小值和最大值两个点（按时间先后），保证尖峰不丢失，只保存每个桶的两个点
+ * 4. 结果为列式数组（时间戳毫秒 + 数值），首尾原始点始终保留
+ *
+ * 非线程安全，每个查询每个指标一个实例
+ */
+public abstract class TimeSeriesDownsampler {
+
+    public enum Mode {
+        LTTB, MIN_MAX
+    }
+
+    protected final long start;
+    protected final double bucketWidth;
+    protected final int bucketCount;
+    private final PointBuffer output = new PointBuffer(64);
+    private long inputCount;
+
+    protected TimeSeriesDownsampler(long start, long end, int bucketCount) {
+        this.start = start;
+        this.bucketCount = Math.max(1, bucketCount);
+        this.bucketWidth = Math.max(1.0, (double) (end - start) / this.bucketCount);
+    }
+
+    /**
+     * 创建降采样器
+     *
+     * @param mode      算法
+     * @param start     时间范围起点（毫秒）
+     * @param end       时间范围终点（毫秒）
+     * @param maxPoints 最多输出的点数（至少 4）
+     */
+    public static TimeSeriesDownsampler create(Mode mode, long start, long end, int maxPoints) {
+        int points = Math.max(4, maxPoints);
+        return mode == Mode.MIN_MAX
+                ? new MinMax(start, end, (points - 2) / 2)
+                : new Lttb(start, end, points - 2);
+    }
+
+    /**
+     * 输入一个点（需按时间升序；空值由调用方跳过）
+     */
+    public final void add(long time, double value) {
+        inputCount++;
+        accept(time, value);
+    }
+
+    /**
+     * 输入结束，返回降采样结果
+     */
+    public final TimeSeriesDownsampler finish() {
+        complete();
+        return this;
+    }
+
+    public long getInputCount() {
+        return inputCount;
+    }
+
+    public long[] times() {
+        return Arrays.copyOf(output.times, output.size);
+    }
+
+    public double[] values() {
+        return Arrays.copyOf(output.values, output.size);
+    }
+
+    public int size() {
+        return output.size;
+    }
+
+    protected abstract void accept(long time, double value);
+
+    protected abstract void complete();
+
+    protected final int bucketOf(long time) {
+        int bucket = (int) ((time - start) / bucketWidth);
+        return Math.max(0, Math.min(bucketCount - 1, bucket));
+    }
+
+    protected final void emit(long time, double value) {
+        output.add(time, value);
+    }
+
+    /**
+     * 最后输出的点的时间，尚未输出时为 Long.MIN_VALUE
+     */
+    protected final long lastEmittedTime() {
+        return output.size > 0 ? output.times[output.size - 1] : Long.MIN_VALUE;
+    }
+
+    // =============================LTTB=============================
+
+    private static final class Lttb extends TimeSeriesDownsampler {
+        private boolean started;
+        private long selectedTime;
+        private double selectedValue;
+
+        /**
+         * 等待选点的桶（需要下一个桶的平均点）
+         */
+        private PointBuffer pending = new PointBuffer(256);
+
+        /**
+         * 正在累积的桶
+         */
+        private PointBuffer current = new PointBuffer(256);
+        private int currentBucket = -1;
+
+        Lttb(long start, long end, int bucketCount) {
+            super(start, end, bucketCount);
+        }
+
+        @Override
+        protected void accept(long time, double value) {
+            if (!started) {
+                // 第一个点原样保留，作为第一个三角形的顶点
+                started = true;
+                select(time, value);
+                return;
+            }
+            int bucket = bucketOf(time);
+            if (current.size > 0 && bucket > currentBucket) {
+                // 当前桶已完整：用它的平均点为上一个桶选点
+                if (pending.size > 0) {
+                    selectFrom(pending, current.avgTime(), current.avgValue());
+                }
+                PointBuffer recycled = pending;
+                pending = current;
+                current = recycled;
+                current.clear();
+            }
+            if (current.size == 0) {
+                currentBucket = bucket;
+            }
+            current.add(time, value);
+        }
+
+        @Override
+        protected void complete() {
+            if (current.size == 0) {
+                // 只有一个点，或最后一个桶已在 accept 中交换出去
+                if (pending.size > 0) {
+                    emitLastOf(pending);
+                }
+                return;
+            }
+            if (pending.size > 0) {
+                selectFrom(pending, current.avgTime(), current.avgValue());
+            }
+            emitLastOf(current);
+        }
+
+        /**
+         * 最后一个桶：除最后一个点外选面积最大的点（以最后一个点为第三个顶点），再保留最后一个点
+         */
+        private void emitLastOf(PointBuffer bucket) {
+            int last = bucket.size - 1;
+            long lastTime = bucket.times[last];
+            double lastValue = bucket.values[last];
+            if (last > 0) {
+                bucket.size = last;
+                selectFrom(bucket, lastTime, lastValue);
+            }
+            select(lastTime, lastValue);
+        }
+
+        private void selectFrom(PointBuffer bucket, double nextTime, double nextValue) {
+            int best = 0;
+            double bestArea = -1;
+            for (int i = 0; i < bucket.size; i++) {
+                // 三角形面积的2倍（只比较大小）
+                double area = Math.abs((selectedTime - nextTime) * (bucket.values[i] - selectedValue)
+                        - (selectedTime - bucket.times[i]) * (nextValue - selectedValue));
+                if (area > bestArea) {
+                    bestArea = area;
+                    best = i;
+                }
+            }
+            select(bucket.times[best], bucket.values[best]);
+        }
+
+        private void select(long time, double value) {
+            selectedTime = time;
+            selectedValue = value;
+            emit(time, value);
+        }
+    }
+
+    // =============================MIN_MAX=============================
+
+    private static final class MinMax extends TimeSeriesDownsampler {
+        private int currentBucket = -1;
+        private long minTime;
+        private double minValue;
+        private long maxTime;
+        private double maxValue;
+        private boolean first = true;
+        private long lastTime;
+        private double lastValue;
+
+        MinMax(long start, long end, int bucketCount) {
+            super(start, end, bucketCount);
+        }
+
+        @Override
+        protected void accept(long time, double value) {
+            if (first) {
+                first = false;
+                emit(time, value);
+            }
+            int bucket = bucketOf(time);
+            if (bucket != currentBucket) {
+                flushBucket();
+                currentBucket = bucket;
+                minTime = maxTime = time;
+                minValue = maxValue = value;
+            } else {
+                if (value < minValue) {
+                    minValue = value;
+                    minTime = time;
+                }
+                if (value > maxValue) {
+                    maxValue = value;
+                    maxTime = time;
+                }
+            }
+            lastTime = time;
+            lastValue = value;
+        }
+
+        @Override
+        protected void complete() {
+            flushBucket();
+            if (size() > 0 && lastEmittedTime() != lastTime) {
+                emit(lastTime, lastValue);
+            }
+        }
+
+        private void flushBucket() {
+            if (currentBucket < 0) {
+                return;
+            }
+            long previous = lastEmittedTime();
+            if (minTime == maxTime) {
+                emitAfter(previous, minTime, minValue);
+            } else if (minTime < maxTime) {
+                emitAfter(previous, minTime, minValue);
+                emitAfter(previous, maxTime, maxValue);
+            } else {
+                emitAfter(previous, maxTime, maxValue);
+                emitAfter(previous, minTime, minValue);
+            }
+        }
+
+        /**
+         * 第一个点已单独输出，同一时间的点不重复输出
+         */
+        private void emitAfter(long previous, long time, double value) {
+            if (time != previous) {
+                emit(time, value);
+            }
+        }
+    }
+
+    // =============================点缓冲区=============================
+
+    /**
+     * 可增长的基本类型数组，避免逐点装箱
+     */
+    private static final class PointBuffer {
+        private long[] times;
+        private double[] values;
+        private int size;
+
+        PointBuffer(int capacity) {
+            times = new long[capacity];
+            values = new double[capacity];
+        }
+
+        void add(long time, double value) {
+            if (size == times.length) {
+                times = Arrays.copyOf(times, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            times[size] = time;
+            values[size] = value;
+            size++;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        double avgTime() {
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += times[i];
+            }
+            return sum / size;
+        }
+
+        double avgValue() {
+            double sum = 0;
+            for (int i = 0; i < size; i++) {
+                sum += values[i];
+            }
+            return sum / size;
+        }
+    }
+}
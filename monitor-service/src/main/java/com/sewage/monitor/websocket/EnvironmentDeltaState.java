@@ -0,0 +1,98 @@
+package com.sewage.monitor.websocket;
+
+import com.sewage.monitor.entity.LabEnvironmentData;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * 实验室实时环境数据的增量编码状态（每个实验室一份）
+ *
+ * 增量协议：
+ * 1. 客户端连接时（或请求RESYNC时）收到完整快照 ENV_SNAPSHOT，带当前序号
+ * 2. 之后每次推送只发送变化的字段 ENV_DELTA：[字段ID, 值, 字段ID, 值...]，序号加1
+ * 3. 客户端发现序号不连续时发送 {"type":"RESYNC"}，服务端回复最新快照
+ *
+ * 字段ID = FIELDS下标 + 1，必须与前端 src/utils/websocket.js 中的 ENV_FIELDS 保持一致，只能在末尾追加
+ *
+ * 线程安全：调用方需持有该对象的锁（更新状态与向订阅者入队需要在同一把锁内完成，保证序号顺序）
+ */
+public class EnvironmentDeltaState {
+
+    static final List<Function<LabEnvironmentData, Object>> FIELDS = List.of(
+            LabEnvironmentData::getId,                 // 1
+            LabEnvironmentData::getLabName,            // 2
+            LabEnvironmentData::getTemperature,        // 3
+            LabEnvironmentData::getHumidity,           // 4
+            LabEnvironmentData::getPm25,               // 5
+            LabEnvironmentData::getIlluminance,        // 6
+            LabEnvironmentData::getCo2,                // 7
+            LabEnvironmentData::getOnlineDeviceCount,  // 8
+            LabEnvironmentData::getTotalDeviceCount,   // 9
+            LabEnvironmentData::getMonitorTime,        // 10
+            LabEnvironmentData::getDataSource,         // 11
+            LabEnvironmentData::getAlarmStatus,        // 12
+            LabEnvironmentData::getAlarmMessage,       // 13
+            LabEnvironmentData::getQualityLevel,       // 14
+            LabEnvironmentData::getCurrentPeopleCount, // 15
+            LabEnvironmentData::getCreatedTime,        // 16
+            LabEnvironmentData::getRemark              // 17
+    );
+
+    private final Long labId;
+    private final Object[] values = new Object[FIELDS.size()];
+    private final int[] changedIds = new int[FIELDS.size()];
+    private int changedCount;
+
+    private LabEnvironmentData latest;
+    private long seq;
+    private String deltaFrame;
+    private String snapshotFrame;
+
+    public EnvironmentDeltaState(Long labId) {
+        this.labId = labId;
+    }
+
+    /**
+     * 记录一条新数据：比较各字段得到变化列表，序号加1（不编码，没有订阅者时开销很小）
+     */
+    public void update(LabEnvironmentData data) {
+        changedCount = 0;
+        for (int i = 0; i < values.length; i++) {
+            Object value = FIELDS.get(i).apply(data);
+            if (!Objects.equals(value, values[i])) {
+                values[i] = value;
+                changedIds[changedCount++] = i + 1;
+            }
+        }
+        latest = data;
+        seq++;
+        deltaFrame = null;
+        snapshotFrame = null;
+    }
+
+    /**
+     * 当前序号的增量帧（首次调用时编码，之后复用）
+     */
+    public String deltaFrame() {
+        if (deltaFrame == null) {
+            deltaFrame = WebSocketFrameEncoder.encodeDelta(labId, seq, changedIds, values, changedCount);
+        }
+        return deltaFrame;
+    }
+
+    /**
+     * 当前序号的完整快照帧（首次调用时编码，之后复用）；还没有数据时 data 为 null
+     */
+    public String snapshotFrame() {
+        if (snapshotFrame == null) {
+            snapshotFrame = WebSocketFrameEncoder.encodeSnapshot(labId, seq, latest);
+        }
+        return snapshotFrame;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+}
@@ -0,0 +1,216 @@
+package com.sewage.monitor.websocket;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.websocket.CloseReason;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 单个WebSocket会话的异步发送器
+ *
+ * 功能说明：
+ * 1. 每个会话一个有界发送队列，推送方只入队，不等待浏览器接收
+ * 2. 通过 getAsyncRemote() 异步发送，同一会话同时只有一帧在发送中，发送完成回调里继续发下一帧
+ * 3. 队列策略：
+ *    - 可合并的帧（ENVIRONMENT_DATA）只保留最新一帧，旧的直接被替换
+ *    - 其他帧（告警、统计等）按顺序排队，队列满时丢弃最旧的一帧
+ * 4. 发送失败或长时间发不出去（慢消费者）时关闭连接，由客户端重连
+ * 5. 增量协议会话：增量帧不能直接合并（会跳号），合并时改为发送该实验室的完整快照
+ */
+@Slf4j
+public class SessionSender {
+
+    // 全局统计
+    static final AtomicLong SENT_COUNT = new AtomicLong();
+    static final AtomicLong DROPPED_COUNT = new AtomicLong();
+    static final AtomicLong COALESCED_COUNT = new AtomicLong();
+    static final AtomicLong EVICTED_COUNT = new AtomicLong();
+
+    private final Session session;
+    private final Long labId;
+    private final int capacity;
+    private final Runnable onEvict;
+    private final boolean deltaMode;
+
+    private final ArrayDeque<String> queue = new ArrayDeque<>();
+    private String latestCoalesced;
+    private boolean sending;
+    private long sendStartedAt;
+    private volatile boolean closed;
+
+    public SessionSender(Session session, Long labId, int capacity, Runnable onEvict) {
+        this(session, labId, capacity, onEvict, false);
+    }
+
+    public SessionSender(Session session, Long labId, int capacity, Runnable onEvict, boolean deltaMode) {
+        this.session = session;
+        this.labId = labId;
+        this.capacity = capacity;
+        this.onEvict = onEvict;
+        this.deltaMode = deltaMode;
+    }
+
+    /**
+     * 入队一帧并尝试发送（不阻塞调用方）
+     *
+     * @param frame    消息帧
+     * @param coalesce 是否可合并（只保留最新一帧）
+     */
+    public void enqueue(String frame, boolean coalesce) {
+        String next;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (coalesce) {
+                if (latestCoalesced != null) {
+                    COALESCED_COUNT.incrementAndGet();
+                }
+                latestCoalesced = frame;
+            } else {
+                if (queue.size() >= capacity) {
+                    queue.pollFirst();
+                    DROPPED_COUNT.incrementAndGet();
+                }
+                queue.offerLast(frame);
+            }
+            if (sending) {
+                return;
+            }
+            next = pollNext();
+            sending = true;
+            sendStartedAt = System.currentTimeMillis();
+        }
+        doSend(next);
+    }
+
+    /**
+     * 入队一帧增量数据
+     *
+     * 上一帧增量还没发出时不能直接替换（客户端会发现跳号），改为替换成最新的完整快照
+     *
+     * @param delta    增量帧
+     * @param snapshot 当前最新快照帧（与增量帧同一序号）
+     */
+    public void enqueueDelta(String delta, Supplier<String> snapshot) {
+        String next;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (latestCoalesced != null) {
+                COALESCED_COUNT.incrementAndGet();
+                latestCoalesced = snapshot.get();
+            } else {
+                latestCoalesced = delta;
+            }
+            if (sending) {
+                return;
+            }
+            next = pollNext();
+            sending = true;
+            sendStartedAt = System.currentTimeMillis();
+        }
+        doSend(next);
+    }
+
+    /**
+     * 是否有一帧发送超过指定时间仍未完成
+     */
+    public synchronized boolean isStalled(long now, long timeoutMillis) {
+        return sending && now - sendStartedAt > timeoutMillis;
+    }
+
+    /**
+     * 当前排队的帧数
+     */
+    public synchronized int pendingCount() {
+        return queue.size() + (latestCoalesced != null ? 1 : 0);
+    }
+
+    /**
+     * 慢消费者/发送失败时关闭连接
+     */
+    public void evict(String reason) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.clear();
+            latestCoalesced = null;
+        }
+        EVICTED_COUNT.incrementAndGet();
+        onEvict.run();
+        log.warn("🐢 WebSocket慢消费者已断开 - 实验室ID: {}, 会话ID: {}, 原因: {}", labId, session.getId(), reason);
+        try {
+            session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, reason));
+        } catch (Exception e) {
+            log.debug("关闭WebSocket会话失败 - 会话ID: {}", session.getId(), e);
+        }
+    }
+
+    /**
+     * 连接正常关闭时调用，丢弃未发送的帧
+     */
+    public synchronized void close() {
+        closed = true;
+        queue.clear();
+        latestCoalesced = null;
+    }
+
+    public Session getSession() {
+        return session;
+    }
+
+    public Long getLabId() {
+        return labId;
+    }
+
+    public boolean isDeltaMode() {
+        return deltaMode;
+    }
+
+    /**
+     * 顺序帧优先，然后是合并后的最新数据帧
+     */
+    private String pollNext() {
+        String frame = queue.pollFirst();
+        if (frame == null) {
+            frame = latestCoalesced;
+            latestCoalesced = null;
+        }
+        return frame;
+    }
+
+    private void doSend(String frame) {
+        try {
+            session.getAsyncRemote().sendText(frame, this::onSendResult);
+        } catch (Exception e) {
+            evict("发送失败: " + e.getMessage());
+        }
+    }
+
+    private void onSendResult(SendResult result) {
+        if (!result.isOK()) {
+            evict("发送失败: " + (result.getException() != null ? result.getException().getMessage() : "unknown"));
+            return;
+        }
+        SENT_COUNT.incrementAndGet();
+
+        String next;
+        synchronized (this) {
+            next = closed ? null : pollNext();
+            if (next == null) {
+                sending = false;
+                return;
+            }
+            sendStartedAt = System.currentTimeMillis();
+        }
+        doSend(next);
+    }
+}
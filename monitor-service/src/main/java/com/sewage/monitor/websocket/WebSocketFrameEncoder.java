@@ -0,0 +1,109 @@
+package com.sewage.monitor.websocket;
+
+import com.alibaba.fastjson.serializer.JSONSerializer;
+import com.alibaba.fastjson.serializer.SerializeWriter;
+
+/**
+ * WebSocket消息帧编码器
+ *
+ * 功能说明：
+ * 1. 直接按固定字段顺序写出统一消息格式 {type, message, labId, timestamp, data}，
+ *    不再为每次推送创建 Map 信封对象
+ * 2. 每个线程复用同一个 SerializeWriter（字符缓冲区），每次编码新建 JSONSerializer：
+ *    序列化器的循环引用表会记住写过的对象，跨帧复用会让对象一直无法回收，
+ *    并把之前写过的对象输出为 {"$ref":...}，客户端无法解析
+ * 3. 编码结果由所有订阅者共享，分配量与订阅人数无关
+ */
+public final class WebSocketFrameEncoder {
+
+    /**
+     * 线程本地字符缓冲区，随线程复用，不归还
+     */
+    private static final ThreadLocal<SerializeWriter> WRITER = ThreadLocal.withInitial(SerializeWriter::new);
+
+    private WebSocketFrameEncoder() {
+    }
+
+    /**
+     * 编码统一格式的消息帧
+     */
+    public static String encode(String type, String message, Long labId, Object data) {
+        return encode(type, message, labId, null, data);
+    }
+
+    /**
+     * 编码带序号的完整快照帧（增量协议）
+     */
+    public static String encodeSnapshot(Long labId, long seq, Object data) {
+        return encode("ENV_SNAPSHOT", "环境数据快照", labId, seq, data);
+    }
+
+    /**
+     * 编码增量帧（增量协议）
+     *
+     * 格式：{"type":"ENV_DELTA","labId":1,"seq":42,"timestamp":...,"d":[字段ID,值,字段ID,值...]}
+     *
+     * @param fieldIds 变化的字段ID
+     * @param values   全部字段的当前值（按字段ID - 1 下标）
+     * @param count    变化的字段数
+     */
+    public static String encodeDelta(Long labId, long seq, int[] fieldIds, Object[] values, int count) {
+        SerializeWriter out = WRITER.get();
+        out.reset();
+        JSONSerializer serializer = new JSONSerializer(out);
+        try {
+            out.write("{\"type\":\"ENV_DELTA\",\"labId\":");
+            out.writeLong(labId);
+            out.write(",\"seq\":");
+            out.writeLong(seq);
+            out.write(",\"timestamp\":");
+            out.writeLong(System.currentTimeMillis());
+            out.write(",\"d\":[");
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.writeInt(fieldIds[i]);
+                out.write(',');
+                serializer.write(values[fieldIds[i] - 1]);
+            }
+            out.write("]}");
+            return out.toString();
+        } catch (RuntimeException e) {
+            WRITER.remove();
+            throw e;
+        }
+    }
+
+    private static String encode(String type, String message, Long labId, Long seq, Object data) {
+        SerializeWriter out = WRITER.get();
+        out.reset();
+        JSONSerializer serializer = new JSONSerializer(out);
+        try {
+            out.write("{\"type\":");
+            out.writeString(type);
+            out.write(",\"message\":");
+            out.writeString(message);
+            out.write(",\"labId\":");
+            if (labId != null) {
+                out.writeLong(labId);
+            } else {
+                out.writeNull();
+            }
+            if (seq != null) {
+                out.write(",\"seq\":");
+                out.writeLong(seq);
+            }
+            out.write(",\"timestamp\":");
+            out.writeLong(System.currentTimeMillis());
+            out.write(",\"data\":");
+            serializer.write(data);
+            out.write('}');
+            return out.toString();
+        } catch (RuntimeException e) {
+            // 序列化中途失败时缓冲区状态可能不完整，丢弃当前线程的缓冲区
+            WRITER.remove();
+            throw e;
+        }
+    }
+}
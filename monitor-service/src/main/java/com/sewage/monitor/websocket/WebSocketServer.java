@@ -1,6 +1,7 @@
 package com.sewage.monitor.websocket;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
 import com.sewage.common.context.UserContext;
 import com.sewage.monitor.entity.LabEnvironmentData;
 import com.sewage.monitor.entity.LabAlarm;
@@ -10,14 +11,28 @@ import org.springframework.stereotype.Component;
 import javax.websocket.*;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
  * WebSocket服务端
  * 实现实时数据推送功能
  *
+ * 推送方式：
+ * - 推送方（Kafka消费线程等）只把消息帧放入每个会话的有界队列，立即返回
+ * - 每个会话由 SessionSender 异步发送，浏览器卡顿不会阻塞推送方
+ * - 长时间发不出去的慢消费者由 WebSocketPushService 定时清理
+ *
+ * 环境数据协议（连接参数 protocol）：
+ * - 默认：每次推送完整的 ENVIRONMENT_DATA
+ * - protocol=delta：连接时发送完整快照 ENV_SNAPSHOT，之后只发送变化字段 ENV_DELTA，
+ *   客户端发现序号不连续时发送 {"type":"RESYNC"} 重新获取快照，详见 EnvironmentDeltaState
+ * - 增量状态只为有订阅者的实验室维护：最后一个订阅者离开时删除，第一个订阅者到来时按最新数据重建
+ *
  * @author system
  */
 @Slf4j
@@ -26,20 +41,46 @@ import java.util.concurrent.CopyOnWriteArraySet;
 public class WebSocketServer {
 
     /**
-     * 静态变量，用来记录当前在线连接数
+     * 会话注册表，按实验室ID索引，同时维护在线连接计数
+     */
+    private static final WebSocketSessionRegistry<SessionSender> REGISTRY = new WebSocketSessionRegistry<>();
+
+    /**
+     * 每个会话的发送队列容量
+     */
+    private static volatile int sendQueueCapacity = 64;
+
+    /**
+     * 单帧发送超时时间（毫秒）
+     */
+    private static volatile long sendTimeoutMillis = 10000;
+
+    /**
+     * 每个实验室的增量编码状态（只保留有订阅者的实验室）
      */
-    private static int onlineCount = 0;
+    private static final Map<Long, EnvironmentDeltaState> DELTA_STATES = new ConcurrentHashMap<>();
 
     /**
-     * concurrent包的线程安全Set，用来存放每个客户端对应的WebSocket对象。
+     * 最新环境数据加载方法，重建增量状态时使用（由 LabEnvironmentDataService 启动时设置）
      */
-    private static CopyOnWriteArraySet<WebSocketServer> webSocketSet = new CopyOnWriteArraySet<>();
+    private static volatile Function<Long, LabEnvironmentData> latestDataLoader = labId -> null;
+
+    // 环境数据帧编码统计（每次推送编码一次，与订阅人数无关）
+    private static final AtomicLong FULL_FRAME_COUNT = new AtomicLong();
+    private static final AtomicLong FULL_FRAME_BYTES = new AtomicLong();
+    private static final AtomicLong DELTA_FRAME_COUNT = new AtomicLong();
+    private static final AtomicLong DELTA_FRAME_BYTES = new AtomicLong();
 
     /**
      * 与客户端的连接会话，需要通过它来给客户端发送数据
      */
     private Session session;
 
+    /**
+     * 当前会话的异步发送器
+     */
+    private SessionSender sender;
+
     /**
      * 实验室ID
      */
@@ -57,8 +98,15 @@ public class WebSocketServer {
     public void onOpen(Session session, @PathParam("labId") Long labId) {
         this.session = session;
         this.labId = labId;
-        webSocketSet.add(this);
-        addOnlineCount();
+        session.getAsyncRemote().setSendTimeout(sendTimeoutMillis);
+        List<String> protocol = session.getRequestParameterMap().get("protocol");
+        boolean deltaMode = protocol != null && protocol.contains("delta");
+        this.sender = new SessionSender(session, labId, sendQueueCapacity,
+                () -> unsubscribe(labId, this.sender), deltaMode);
+        REGISTRY.register(labId, sender);
+
+        // 第一个订阅者：按最新数据重建该实验室的增量状态
+        deltaStateOf(labId);
 
         // 从session中获取用户信息
         String userIdHeader = session.getUserProperties().get("X-User-Id") != null ?
@@ -70,10 +118,11 @@ public class WebSocketServer {
         log.info("有新连接加入！当前在线人数为：{}, 实验室ID：{}, 用户ID：{}", getOnlineCount(), labId, userId);
 
         // 发送连接成功消息
-        try {
-            sendMessage(JSON.toJSONString(createMessage("CONNECTION", "连接成功", labId, null)));
-        } catch (IOException e) {
-            log.error("WebSocket发送消息失败", e);
+        sendMessage(WebSocketFrameEncoder.encode("CONNECTION", "连接成功", labId, null));
+
+        // 增量协议：订阅时先发送完整快照
+        if (deltaMode) {
+            sendSnapshot();
         }
     }
 
@@ -82,8 +131,10 @@ public class WebSocketServer {
      */
     @OnClose
     public void onClose() {
-        webSocketSet.remove(this);
-        subOnlineCount();
+        if (sender != null) {
+            unsubscribe(labId, sender);
+            sender.close();
+        }
         log.info("有一连接关闭！当前在线人数为：{}, 实验室ID：{}, 用户ID：{}", getOnlineCount(), labId, userId);
     }
 
@@ -94,12 +145,17 @@ public class WebSocketServer {
      */
     @OnMessage
     public void onMessage(String message, Session session) {
-        log.info("来自客户端的消息：{}, 实验室ID：{}", message, labId);
+        log.debug("来自客户端的消息：{}, 实验室ID：{}", message, labId);
 
-        // 可以处理客户端发送的命令，比如订阅特定类型的数据
         try {
-            // 这里可以添加对客户端命令的处理逻辑
-            // 例如：订阅/取消订阅某些数据类型
+            JSONObject command = JSON.parseObject(message);
+            String type = command != null ? command.getString("type") : null;
+
+            // 增量协议：客户端发现序号不连续，重新发送快照
+            if ("RESYNC".equals(type) && sender.isDeltaMode()) {
+                log.debug("客户端请求重新同步，实验室ID：{}", labId);
+                sendSnapshot();
+            }
         } catch (Exception e) {
             log.error("处理客户端消息失败", e);
         }
@@ -114,96 +170,175 @@ public class WebSocketServer {
     }
 
     /**
-     * 实现服务器主动推送
+     * 实现服务器主动推送（异步入队，不阻塞）
      */
-    public void sendMessage(String message) throws IOException {
-        this.session.getBasicRemote().sendText(message);
+    public void sendMessage(String message) {
+        sender.enqueue(message, false);
+    }
+
+    /**
+     * 向当前会话发送该实验室的最新快照（与增量推送使用同一把锁，保证序号顺序）
+     */
+    private void sendSnapshot() {
+        EnvironmentDeltaState state = deltaStateOf(labId);
+        synchronized (state) {
+            sender.enqueue(state.snapshotFrame(), true);
+        }
+    }
+
+    /**
+     * 取消订阅：该实验室没有订阅者后删除增量状态，不再为它维护
+     */
+    private static void unsubscribe(Long labId, SessionSender sender) {
+        REGISTRY.unregister(labId, sender);
+        if (REGISTRY.count(labId) == 0) {
+            DELTA_STATES.remove(labId);
+        }
+    }
+
+    /**
+     * 获取实验室的增量状态，不存在时（第一个订阅者到来）按最新数据重建，快照不会是空的或过期的
+     */
+    private static EnvironmentDeltaState deltaStateOf(Long labId) {
+        EnvironmentDeltaState state = DELTA_STATES.get(labId);
+        if (state != null) {
+            return state;
+        }
+        EnvironmentDeltaState created = new EnvironmentDeltaState(labId);
+        try {
+            LabEnvironmentData latest = latestDataLoader.apply(labId);
+            if (latest != null) {
+                created.update(latest);
+            }
+        } catch (Exception e) {
+            log.warn("加载实验室最新数据失败，快照暂为空，实验室ID：{}, Error: {}", labId, e.getMessage());
+        }
+        state = DELTA_STATES.putIfAbsent(labId, created);
+        return state != null ? state : created;
+    }
+
+    /**
+     * 配置发送队列容量和发送超时
+     */
+    public static void configure(int queueCapacity, long timeoutMillis) {
+        sendQueueCapacity = queueCapacity;
+        sendTimeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 设置最新环境数据加载方法（重建增量状态时使用）
+     */
+    public static void setLatestDataLoader(Function<Long, LabEnvironmentData> loader) {
+        latestDataLoader = loader;
     }
 
     /**
      * 群发自定义消息
+     *
+     * 只遍历订阅了该实验室的会话，不扫描全部连接
      */
     public static void sendInfo(Long labId, String message) {
-        for (WebSocketServer item : webSocketSet) {
-            // 只向订阅了该实验室的客户端推送数据
-            if (item.labId.equals(labId)) {
-                try {
-                    item.sendMessage(message);
-                    log.info("向实验室{}的客户端推送消息成功：{}", labId, message);
-                } catch (IOException e) {
-                    log.error("向实验室{}的客户端推送消息失败：{}", labId, message, e);
-                }
-            }
+        sendInfo(labId, message, false);
+    }
+
+    /**
+     * 群发消息
+     *
+     * @param coalesce 是否可合并：true时每个会话只保留最新一帧（用于实时环境数据）
+     */
+    public static void sendInfo(Long labId, String message, boolean coalesce) {
+        for (SessionSender item : REGISTRY.sessionsOf(labId)) {
+            item.enqueue(message, coalesce);
         }
+        log.debug("向实验室{}的客户端推送消息完成：{}", labId, message);
     }
 
     /**
      * 推送环境数据
+     *
+     * 1. 没有订阅者时直接返回，不维护增量状态（第一个订阅者到来时按最新数据重建）
+     * 2. 有订阅者时先更新该实验室的增量状态，再向各会话入队
+     * 3. 完整帧、增量帧各自最多编码一次，所有同协议的会话共享同一帧
      */
     public static void pushEnvironmentData(LabEnvironmentData data) {
-        String message = JSON.toJSONString(createMessage("ENVIRONMENT_DATA", "环境数据更新", data.getLabId(), data));
-        sendInfo(data.getLabId(), message);
+        Long labId = data.getLabId();
+        if (REGISTRY.count(labId) == 0) {
+            return;
+        }
+        EnvironmentDeltaState state = deltaStateOf(labId);
+        synchronized (state) {
+            state.update(data);
+            String fullFrame = null;
+            String deltaFrame = null;
+            for (SessionSender item : REGISTRY.sessionsOf(labId)) {
+                if (item.isDeltaMode()) {
+                    if (deltaFrame == null) {
+                        deltaFrame = state.deltaFrame();
+                        DELTA_FRAME_COUNT.incrementAndGet();
+                        DELTA_FRAME_BYTES.addAndGet(deltaFrame.length());
+                    }
+                    item.enqueueDelta(deltaFrame, state::snapshotFrame);
+                } else {
+                    if (fullFrame == null) {
+                        fullFrame = WebSocketFrameEncoder.encode("ENVIRONMENT_DATA", "环境数据更新", labId, data);
+                        FULL_FRAME_COUNT.incrementAndGet();
+                        FULL_FRAME_BYTES.addAndGet(fullFrame.length());
+                    }
+                    item.enqueue(fullFrame, true);
+                }
+            }
+        }
     }
 
     /**
      * 推送告警信息
      */
     public static void pushAlarm(LabAlarm alarm) {
-        String message = JSON.toJSONString(createMessage("ALARM", "新告警", alarm.getLabId(), alarm));
+        if (REGISTRY.count(alarm.getLabId()) == 0) {
+            return;
+        }
+        String message = WebSocketFrameEncoder.encode("ALARM", "新告警", alarm.getLabId(), alarm);
         sendInfo(alarm.getLabId(), message);
     }
 
     /**
-     * 推送统计数据
+     * 推送告警恢复通知
      */
-    public static void pushStatistics(Long labId, Object statistics) {
-        String message = JSON.toJSONString(createMessage("STATISTICS", "统计数据更新", labId, statistics));
-        sendInfo(labId, message);
+    public static void pushAlarmRecovered(LabAlarm alarm) {
+        if (REGISTRY.count(alarm.getLabId()) == 0) {
+            return;
+        }
+        String message = WebSocketFrameEncoder.encode("ALARM_RESOLVED", "告警已恢复", alarm.getLabId(), alarm);
+        sendInfo(alarm.getLabId(), message);
     }
 
     /**
-     * 创建统一格式的消息
+     * 推送统计数据
      */
-    private static Object createMessage(String type, String message, Long labId, Object data) {
-        ConcurrentHashMap<String, Object> msgObj = new ConcurrentHashMap<>();
-        msgObj.put("type", type);
-        msgObj.put("message", message);
-        msgObj.put("labId", labId);
-        msgObj.put("timestamp", System.currentTimeMillis());
-        msgObj.put("data", data);
-        return msgObj;
-    }
-
-    public static synchronized int getOnlineCount() {
-        return onlineCount;
-    }
-
-    public static synchronized void addOnlineCount() {
-        WebSocketServer.onlineCount++;
+    public static void pushStatistics(Long labId, Object statistics) {
+        if (REGISTRY.count(labId) == 0) {
+            return;
+        }
+        String message = WebSocketFrameEncoder.encode("STATISTICS", "统计数据更新", labId, statistics);
+        sendInfo(labId, message);
     }
 
-    public static synchronized void subOnlineCount() {
-        WebSocketServer.onlineCount--;
+    public static int getOnlineCount() {
+        return REGISTRY.totalCount();
     }
 
     /**
      * 获取当前实验室的在线连接数
      */
-    public static synchronized int getLabOnlineCount(Long labId) {
-        return (int) webSocketSet.stream()
-                .filter(item -> item.labId.equals(labId))
-                .count();
+    public static int getLabOnlineCount(Long labId) {
+        return REGISTRY.count(labId);
     }
 
     /**
      * 获取所有实验室的在线连接数统计
      */
     public static String getConnectionStats() {
-        ConcurrentHashMap<Long, Integer> labStats = new ConcurrentHashMap<>();
-        for (WebSocketServer item : webSocketSet) {
-            labStats.put(item.labId, labStats.getOrDefault(item.labId, 0) + 1);
-        }
-        return JSON.toJSONString(labStats);
+        return JSON.toJSONString(REGISTRY.countsByLab());
     }
 
     /**
@@ -212,22 +347,60 @@ public class WebSocketServer {
      * @param message 消息对象
      */
     public static void broadcastToAll(Object message) {
+        if (REGISTRY.totalCount() == 0) {
+            return;
+        }
+        // 只序列化一次，所有会话共享同一帧
         String jsonMessage = JSON.toJSONString(message);
-        log.info("📢 开始广播消息到所有客户端 - 当前在线: {} 人", webSocketSet.size());
-
-        int successCount = 0;
-        int failCount = 0;
-
-        for (WebSocketServer item : webSocketSet) {
-            try {
-                item.sendMessage(jsonMessage);
-                successCount++;
-            } catch (Exception e) {
-                failCount++;
-                log.error("❌ 广播消息失败 - 实验室ID: {}", item.labId, e);
+        log.info("📢 开始广播消息到所有客户端 - 当前在线: {} 人", REGISTRY.totalCount());
+
+        int[] count = {0};
+        REGISTRY.forEach(item -> {
+            item.enqueue(jsonMessage, false);
+            count[0]++;
+        });
+
+        log.info("✅ 广播完成 - 已入队: {}", count[0]);
+    }
+
+    /**
+     * 断开发送超时的慢消费者
+     *
+     * @return 断开的连接数
+     */
+    public static int evictSlowConsumers() {
+        long now = System.currentTimeMillis();
+        int[] evicted = {0};
+        REGISTRY.forEach(item -> {
+            if (item.isStalled(now, sendTimeoutMillis)) {
+                item.evict("发送超时");
+                evicted[0]++;
             }
-        }
+        });
+        return evicted[0];
+    }
+
+    /**
+     * 获取推送统计
+     */
+    public static Map<String, Object> getPushStats() {
+        int[] pending = {0};
+        REGISTRY.forEach(item -> pending[0] += item.pendingCount());
 
-        log.info("✅ 广播完成 - 成功: {}, 失败: {}", successCount, failCount);
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("sentCount", SessionSender.SENT_COUNT.get());
+        stats.put("droppedCount", SessionSender.DROPPED_COUNT.get());
+        stats.put("coalescedCount", SessionSender.COALESCED_COUNT.get());
+        stats.put("evictedCount", SessionSender.EVICTED_COUNT.get());
+        stats.put("pendingFrames", pending[0]);
+        stats.put("queueCapacity", sendQueueCapacity);
+        stats.put("sendTimeoutMillis", sendTimeoutMillis);
+        long fullFrames = FULL_FRAME_COUNT.get();
+        long deltaFrames = DELTA_FRAME_COUNT.get();
+        stats.put("fullFrameCount", fullFrames);
+        stats.put("avgFullFrameChars", fullFrames > 0 ? FULL_FRAME_BYTES.get() / fullFrames : 0);
+        stats.put("deltaFrameCount", deltaFrames);
+        stats.put("avgDeltaFrameChars", deltaFrames > 0 ? DELTA_FRAME_BYTES.get() / deltaFrames : 0);
+        return stats;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+package com.sewage.monitor.websocket;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * WebSocket会话注册表（按实验室ID索引）
+ *
+ * 功能说明：
+ * 1. 按实验室ID分组保存会话，推送时只遍历订阅了该实验室的会话
+ * 2. 每个实验室维护独立计数器，查询在线数不需要遍历
+ * 3. 连接/断开只修改所属实验室的分组，不复制整个集合
+ *
+ * 复杂度：
+ * - 推送、查询实验室在线数：O(该实验室订阅数)
+ * - 连接、断开：O(1)
+ *
+ * @param <S> 会话类型（Session 或包装了发送队列的 SessionSender）
+ */
+public class WebSocketSessionRegistry<S> {
+
+    private final ConcurrentHashMap<Long, LabSessions<S>> labSessions = new ConcurrentHashMap<>();
+    private final AtomicInteger totalCount = new AtomicInteger();
+
+    /**
+     * 注册会话
+     */
+    public void register(Long labId, S session) {
+        labSessions.compute(labId, (key, group) -> {
+            LabSessions<S> target = group != null ? group : new LabSessions<>();
+            if (target.sessions.add(session)) {
+                target.count.incrementAndGet();
+                totalCount.incrementAndGet();
+            }
+            return target;
+        });
+    }
+
+    /**
+     * 注销会话，实验室没有会话时移除整个分组
+     */
+    public void unregister(Long labId, S session) {
+        labSessions.computeIfPresent(labId, (key, group) -> {
+            if (group.sessions.remove(session)) {
+                group.count.decrementAndGet();
+                totalCount.decrementAndGet();
+            }
+            return group.sessions.isEmpty() ? null : group;
+        });
+    }
+
+    /**
+     * 获取订阅了某实验室的会话（只读视图）
+     */
+    public Set<S> sessionsOf(Long labId) {
+        LabSessions<S> group = labSessions.get(labId);
+        return group != null ? Collections.unmodifiableSet(group.sessions) : Collections.emptySet();
+    }
+
+    /**
+     * 遍历所有会话
+     */
+    public void forEach(Consumer<S> action) {
+        for (LabSessions<S> group : labSessions.values()) {
+            group.sessions.forEach(action);
+        }
+    }
+
+    /**
+     * 某实验室的在线连接数
+     */
+    public int count(Long labId) {
+        LabSessions<S> group = labSessions.get(labId);
+        return group != null ? group.count.get() : 0;
+    }
+
+    /**
+     * 总在线连接数
+     */
+    public int totalCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * 各实验室在线连接数快照
+     */
+    public Map<Long, Integer> countsByLab() {
+        Map<Long, Integer> counts = new HashMap<>();
+        labSessions.forEach((labId, group) -> counts.put(labId, group.count.get()));
+        return counts;
+    }
+
+    private static final class LabSessions<S> {
+        private final Set<S> sessions = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger count = new AtomicInteger();
+    }
+}
@@ -0,0 +1,23 @@
+-- 死信记录表：死信消费者把死信 Topic 的消息落库，管理接口按条件筛选后分批限速重放
+-- (dlq_topic, dlq_partition, dlq_offset) 唯一，死信消息重复投递时 INSERT IGNORE 只保留一条
+-- 重放按 id 递增分批读取 PENDING 记录，成功后置为 REPLAYED，失败时 attempt_count + 1 并记录失败原因
+CREATE TABLE IF NOT EXISTS dead_letter_record (
+    id                BIGINT        NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    dlq_topic         VARCHAR(64)   NOT NULL COMMENT '死信Topic',
+    dlq_partition     INT           NOT NULL COMMENT '死信分区',
+    dlq_offset        BIGINT        NOT NULL COMMENT '死信位点',
+    source_topic      VARCHAR(64)   NOT NULL COMMENT '原始Topic',
+    source_partition  INT           NULL COMMENT '原始分区，旧消息没有消息头时为空',
+    source_offset     BIGINT        NULL COMMENT '原始位点，旧消息没有消息头时为空',
+    message_key       VARCHAR(128)  NULL COMMENT '消息Key',
+    payload           MEDIUMTEXT    NOT NULL COMMENT '原始消息内容',
+    payload_encoding  VARCHAR(16)   NULL COMMENT '消息内容编码：为空表示JSON，BASE64表示无法解码的原始二进制消息',
+    error_message     VARCHAR(1000) NULL COMMENT '最近一次的失败原因',
+    attempt_count     INT           NOT NULL DEFAULT 1 COMMENT '处理尝试次数',
+    status            VARCHAR(16)   NOT NULL DEFAULT 'PENDING' COMMENT '状态：PENDING/REPLAYED/DISCARDED',
+    created_time      DATETIME      NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '进入死信队列的时间',
+    last_attempt_time DATETIME      NULL COMMENT '最近一次处理时间',
+    UNIQUE KEY uk_dlq_position (dlq_topic, dlq_partition, dlq_offset),
+    KEY idx_status_topic (status, source_topic, id),
+    KEY idx_created_time (created_time)
+) COMMENT '死信记录';
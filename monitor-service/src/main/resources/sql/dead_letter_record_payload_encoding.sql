@@ -0,0 +1,4 @@
+-- 死信记录增加消息内容编码列（已按 dead_letter_record.sql 建表的库执行）
+-- 无法解码的二进制消息（如实验室名称编号无法解析）以 Base64 保存原始字节，修复原因后可原样解码重放
+ALTER TABLE dead_letter_record
+    ADD COLUMN payload_encoding VARCHAR(16) NULL COMMENT '消息内容编码：为空表示JSON，BASE64表示无法解码的原始二进制消息' AFTER payload;
@@ -0,0 +1,11 @@
+-- 游标（keyset）分页索引：按 (时间, id) 倒序翻页时从索引直接定位到上一页最后一行，深页与第一页代价相同
+-- 1. lab_environment_data 按实验室翻页使用已有的 idx_lab_time（InnoDB 二级索引隐含主键 id），这里补充不限实验室时的索引
+-- 2. 已有同名索引时跳过对应的语句
+ALTER TABLE lab_environment_data
+    ADD KEY idx_time_id (monitor_time, id);
+
+ALTER TABLE lab_alarm
+    ADD KEY idx_alarm_time_id (alarm_time, id);
+
+ALTER TABLE lab_daily_statistics
+    ADD KEY idx_stat_date_id (stat_date, id);
@@ -0,0 +1,6 @@
+-- 告警去重：同一实验室同一类型的告警在恢复前只保留一条未关闭记录，持续超限时更新该记录
+-- occurrence_count 累计超限次数，last_alarm_time 为最近一次超限时间；索引用于查找未关闭的告警
+ALTER TABLE lab_alarm
+    ADD COLUMN occurrence_count INT      NOT NULL DEFAULT 1 COMMENT '告警持续期间的超限次数',
+    ADD COLUMN last_alarm_time  DATETIME NULL COMMENT '最近一次超限时间',
+    ADD KEY idx_lab_type_open (lab_id, alarm_type, resolved_at);
@@ -0,0 +1,34 @@
+-- 告警规则表，AlarmRuleEngine 按实验室编译为扁平比较数组，定时检查 COUNT + MAX(updated_time) 热加载
+-- lab_id 为空表示全局默认规则；实验室配置了某个指标的规则时，该指标不再使用默认规则
+-- 同一指标按 priority 从小到大匹配，命中第一条即停止（严重级别的规则排在前面）
+CREATE TABLE IF NOT EXISTS lab_alarm_rule (
+    id               BIGINT       NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    lab_id           BIGINT       NULL COMMENT '实验室ID，为空表示全局默认规则',
+    metric           VARCHAR(32)  NOT NULL COMMENT '指标：TEMPERATURE/HUMIDITY/PM25/CO2/ILLUMINANCE/PEOPLE_COUNT',
+    operator         VARCHAR(8)   NOT NULL COMMENT '运算符：GT/GE/LT/LE',
+    threshold        DOUBLE       NOT NULL COMMENT '阈值',
+    alarm_type       VARCHAR(32)  NOT NULL COMMENT '告警类型',
+    alarm_level      VARCHAR(16)  NOT NULL COMMENT '告警级别',
+    message_template VARCHAR(255) NULL COMMENT '告警消息模板，支持 {value}、{threshold}',
+    priority         INT          NOT NULL DEFAULT 100 COMMENT '同一指标内的匹配顺序，越小越先匹配',
+    enabled          TINYINT(1)   NOT NULL DEFAULT 1 COMMENT '是否启用',
+    updated_time     DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+    KEY idx_lab_metric (lab_id, metric, priority)
+) COMMENT '实验室告警规则';
+
+-- 默认规则（与原 AlarmService 中的固定阈值一致）
+INSERT INTO lab_alarm_rule (lab_id, metric, operator, threshold, alarm_type, alarm_level, message_template, priority) VALUES
+(NULL, 'TEMPERATURE',  'LT', 10.0,   'TEMP_LOW',        'DANGER',  '温度严重异常: {value}°C',         10),
+(NULL, 'TEMPERATURE',  'GT', 35.0,   'TEMP_HIGH',       'DANGER',  '温度严重异常: {value}°C',         20),
+(NULL, 'TEMPERATURE',  'LT', 18.0,   'TEMP_LOW',        'WARNING', '温度超出正常范围: {value}°C',     30),
+(NULL, 'TEMPERATURE',  'GT', 28.0,   'TEMP_HIGH',       'WARNING', '温度超出正常范围: {value}°C',     40),
+(NULL, 'HUMIDITY',     'LT', 20.0,   'HUMIDITY_LOW',    'DANGER',  '湿度严重异常: {value}%',          10),
+(NULL, 'HUMIDITY',     'GT', 90.0,   'HUMIDITY_HIGH',   'DANGER',  '湿度严重异常: {value}%',          20),
+(NULL, 'HUMIDITY',     'LT', 40.0,   'HUMIDITY_LOW',    'WARNING', '湿度超出正常范围: {value}%',      30),
+(NULL, 'HUMIDITY',     'GT', 70.0,   'HUMIDITY_HIGH',   'WARNING', '湿度超出正常范围: {value}%',      40),
+(NULL, 'PM25',         'GT', 150.0,  'PM25_HIGH',       'DANGER',  'PM2.5严重超标: {value} μg/m³',    10),
+(NULL, 'PM25',         'GT', 75.0,   'PM25_HIGH',       'WARNING', 'PM2.5超标: {value} μg/m³',        20),
+(NULL, 'CO2',          'GT', 2000.0, 'CO2_HIGH',        'DANGER',  'CO2浓度严重过高: {value} ppm',    10),
+(NULL, 'CO2',          'GT', 1000.0, 'CO2_HIGH',        'WARNING', 'CO2浓度过高: {value} ppm',        20),
+(NULL, 'ILLUMINANCE',  'LT', 300.0,  'ILLUMINANCE_LOW', 'WARNING', '照度过低: {value} lux',           10),
+(NULL, 'PEOPLE_COUNT', 'GT', 30.0,   'PEOPLE_EXCEED',   'WARNING', '人数超载: {value}人',             10);
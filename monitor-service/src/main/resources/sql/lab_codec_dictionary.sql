@@ -0,0 +1,9 @@
+-- 实验室名称字典：二进制消息用整数编号代替实验室名称（LabPayloadCodec），编号由自增主键分配，一经分配不再改变
+-- 字典必须持久保存：生产者会缓存已分配的编号，字典丢失后重新分配的编号会与缓存的编号冲突，消息被解码成错误的实验室
+-- 旧版本保存在 Redis（lab:codec:dict:code2name）的编号由 DatabaseLabNameDictionary 启动时按原编号导入
+CREATE TABLE IF NOT EXISTS lab_codec_dictionary (
+    code         INT          NOT NULL AUTO_INCREMENT PRIMARY KEY COMMENT '编号',
+    lab_name     VARCHAR(100) NOT NULL COMMENT '实验室名称',
+    created_time DATETIME     NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '分配时间',
+    UNIQUE KEY uk_lab_name (lab_name)
+) COMMENT '实验室名称字典';
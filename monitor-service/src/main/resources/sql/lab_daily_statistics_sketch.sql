@@ -0,0 +1,7 @@
+-- 日统计表增加分位数草图列（QuantileSketch二进制序列化，通常几十到几百字节）
+-- 用于按任意日期范围、实验室范围合并查询 p50/p95/p99，无需扫描 lab_environment_data 原始数据
+ALTER TABLE lab_daily_statistics
+    ADD COLUMN temperature_sketch BLOB NULL COMMENT '温度分位数草图',
+    ADD COLUMN humidity_sketch    BLOB NULL COMMENT '湿度分位数草图',
+    ADD COLUMN pm25_sketch        BLOB NULL COMMENT 'PM2.5分位数草图',
+    ADD COLUMN co2_sketch         BLOB NULL COMMENT 'CO2分位数草图';
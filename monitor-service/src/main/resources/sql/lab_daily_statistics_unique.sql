@@ -0,0 +1,4 @@
+-- 日统计表按 实验室 + 日期 唯一，供 DailyStatisticsEngine 批量 UPSERT（INSERT ... ON DUPLICATE KEY UPDATE）使用
+-- 执行前如有重复数据，需要先合并/清理同一实验室同一天的多条记录
+ALTER TABLE lab_daily_statistics
+    ADD UNIQUE KEY uk_lab_date (lab_id, stat_date);
@@ -0,0 +1,19 @@
+-- 环境数据表按 monitor_time 做 RANGE COLUMNS 分区，之后由 PartitionRotationService 定时创建未来分区、删除/归档过期分区
+-- 1. MySQL 要求分区列包含在每个唯一键（含主键）中，因此主键改为 (id, monitor_time)，monitor_time 不能为空
+-- 2. 初始只建两个分区：p_history 存放已有数据，p_max 接收之后的数据；服务启动后会从 p_max 拆分出按天/按月的分区
+--    p_history 的上界改为下一个周期的起点（按月分区填下月1日，按天分区填明天），之后的分区名按该起点依次生成
+-- 3. 分区会重建整张表，数据量大时请在低峰期执行，或使用 pt-online-schema-change / gh-ost
+-- 4. 已有 (lab_id, monitor_time) 索引时跳过 ADD KEY 一行
+UPDATE lab_environment_data SET monitor_time = created_time WHERE monitor_time IS NULL;
+
+ALTER TABLE lab_environment_data
+    MODIFY monitor_time DATETIME NOT NULL,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, monitor_time),
+    ADD KEY idx_lab_time (lab_id, monitor_time);
+
+ALTER TABLE lab_environment_data
+    PARTITION BY RANGE COLUMNS (monitor_time) (
+        PARTITION p_history VALUES LESS THAN ('2025-01-01 00:00:00'),
+        PARTITION p_max VALUES LESS THAN (MAXVALUE)
+    );
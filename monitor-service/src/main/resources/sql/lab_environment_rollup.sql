@@ -0,0 +1,39 @@
+-- 环境数据多分辨率汇总表：RollupEngine 从入库数据流增量维护 1分钟 / 1小时 两种分辨率
+-- 每个 (实验室, 分辨率, 桶起始时间) 一行，保存每个指标的 条数/总和/最小/最大/最后一个读数，平均值 = 总和 / 条数
+-- 写入为增量合并（INSERT ... ON DUPLICATE KEY UPDATE 累加），乱序补传的数据直接合并到所属的桶
+-- 历史曲线按时间范围和需要的点数选择分辨率，30天范围读取约720行小时数据而不是数百万行原始数据
+CREATE TABLE IF NOT EXISTS lab_environment_rollup (
+    lab_id              BIGINT   NOT NULL COMMENT '实验室ID',
+    resolution          INT      NOT NULL COMMENT '分辨率（秒）：60 / 3600',
+    bucket_time         DATETIME NOT NULL COMMENT '桶起始时间',
+    sample_count        INT      NOT NULL DEFAULT 0 COMMENT '桶内数据条数',
+    last_time           DATETIME NOT NULL COMMENT '桶内最后一条数据的时间',
+    temperature_count   INT      NOT NULL DEFAULT 0 COMMENT '温度有效读数条数',
+    temperature_sum     DOUBLE   NULL COMMENT '温度总和',
+    temperature_min     DOUBLE   NULL COMMENT '温度最小值',
+    temperature_max     DOUBLE   NULL COMMENT '温度最大值',
+    temperature_last    DOUBLE   NULL COMMENT '温度桶内最后一个读数',
+    humidity_count      INT      NOT NULL DEFAULT 0 COMMENT '湿度有效读数条数',
+    humidity_sum        DOUBLE   NULL COMMENT '湿度总和',
+    humidity_min        DOUBLE   NULL COMMENT '湿度最小值',
+    humidity_max        DOUBLE   NULL COMMENT '湿度最大值',
+    humidity_last       DOUBLE   NULL COMMENT '湿度桶内最后一个读数',
+    pm25_count          INT      NOT NULL DEFAULT 0 COMMENT 'PM2.5有效读数条数',
+    pm25_sum            DOUBLE   NULL COMMENT 'PM2.5总和',
+    pm25_min            DOUBLE   NULL COMMENT 'PM2.5最小值',
+    pm25_max            DOUBLE   NULL COMMENT 'PM2.5最大值',
+    pm25_last           DOUBLE   NULL COMMENT 'PM2.5桶内最后一个读数',
+    illuminance_count   INT      NOT NULL DEFAULT 0 COMMENT '光照有效读数条数',
+    illuminance_sum     DOUBLE   NULL COMMENT '光照总和',
+    illuminance_min     DOUBLE   NULL COMMENT '光照最小值',
+    illuminance_max     DOUBLE   NULL COMMENT '光照最大值',
+    illuminance_last    DOUBLE   NULL COMMENT '光照桶内最后一个读数',
+    co2_count           INT      NOT NULL DEFAULT 0 COMMENT 'CO2有效读数条数',
+    co2_sum             DOUBLE   NULL COMMENT 'CO2总和',
+    co2_min             DOUBLE   NULL COMMENT 'CO2最小值',
+    co2_max             DOUBLE   NULL COMMENT 'CO2最大值',
+    co2_last            DOUBLE   NULL COMMENT 'CO2桶内最后一个读数',
+    updated_time        DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+    PRIMARY KEY (lab_id, resolution, bucket_time),
+    KEY idx_resolution_time (resolution, bucket_time)
+) COMMENT '环境数据分钟/小时汇总';
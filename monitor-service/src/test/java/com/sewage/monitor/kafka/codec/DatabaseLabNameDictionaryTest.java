@@ -0,0 +1,63 @@
+package com.sewage.monitor.kafka.codec;
+
+import com.sewage.monitor.mapper.LabCodecDictionaryMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * DatabaseLabNameDictionary测试类
+ * 验证新名称按数据库自增编号分配并缓存、未知编号和数据库不可用时返回 null、启动时按原编号导入旧 Redis 字典
+ */
+class DatabaseLabNameDictionaryTest {
+
+    private final LabCodecDictionaryMapper mapper = mock(LabCodecDictionaryMapper.class);
+    @SuppressWarnings("unchecked")
+    private final RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final HashOperations<String, Object, Object> hashOperations = mock(HashOperations.class);
+    private final DatabaseLabNameDictionary dictionary = new DatabaseLabNameDictionary(mapper, redisTemplate);
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+    }
+
+    @Test
+    void newNameIsAssignedOnceAndCached() {
+        when(mapper.selectCode("化学实验室")).thenReturn(null, 5);
+
+        assertEquals(5, dictionary.codeOf("化学实验室"));
+        assertEquals(5, dictionary.codeOf("化学实验室"));
+        assertEquals("化学实验室", dictionary.nameOf(5));
+
+        verify(mapper).insertIgnore("化学实验室");
+        verify(mapper, times(2)).selectCode("化学实验室");
+        verify(mapper, never()).selectName(5);
+    }
+
+    @Test
+    void unknownCodeAndDatabaseFailureReturnNull() {
+        assertNull(dictionary.nameOf(9));
+
+        when(mapper.selectName(10)).thenThrow(new RuntimeException("db down"));
+        when(mapper.selectCode("物理实验室")).thenThrow(new RuntimeException("db down"));
+        assertNull(dictionary.nameOf(10));
+        assertNull(dictionary.codeOf("物理实验室"));
+    }
+
+    @Test
+    void legacyRedisCodesAreImportedWithOriginalCodes() {
+        when(hashOperations.entries("lab:codec:dict:code2name")).thenReturn(Map.of("3", "生物实验室"));
+
+        dictionary.init();
+
+        verify(mapper).insertIgnoreWithCode(3, "生物实验室");
+    }
+}
@@ -0,0 +1,117 @@
+package com.sewage.monitor.kafka.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sewage.monitor.entity.LabAlarm;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LabPayloadCodec测试类
+ * 验证二进制编码往返一致、空字段不写入、字典不可用时直接写名称、JSON 消息回退为字符串、
+ * 未知名称编号解码失败并保留原始字节
+ */
+class LabPayloadCodecTest {
+
+    private final InMemoryDictionary dictionary = new InMemoryDictionary();
+    private final LabPayloadCodec codec = new LabPayloadCodec(dictionary,
+            new ObjectMapper().registerModule(new JavaTimeModule()));
+
+    @Test
+    void testEnvironmentRoundTrip() {
+        LabEnvironmentData data = LabEnvironmentData.builder()
+                .labId(3L)
+                .labName("化学实验室A")
+                .temperature(23.5)
+                .humidity(48.2)
+                .co2(812.0)
+                .onlineDeviceCount(18)
+                .totalDeviceCount(20)
+                .monitorTime(LocalDateTime.of(2024, 3, 1, 8, 30, 15, 123_000_000))
+                .dataSource("SENSOR")
+                .build();
+
+        byte[] bytes = codec.encodeEnvironment(data);
+        assertTrue(LabPayloadCodec.isBinary(bytes));
+        assertEquals(data, codec.decode(bytes));
+    }
+
+    @Test
+    void testAlarmRoundTripWithoutDictionary() {
+        dictionary.available = false;
+        LabAlarm alarm = LabAlarm.builder()
+                .labId(1L)
+                .labName("物理实验室B")
+                .alarmType("TEMP_HIGH")
+                .alarmLevel("DANGER")
+                .alarmValue(36.1)
+                .thresholdValue(35.0)
+                .alarmTime(LocalDateTime.of(2024, 3, 1, 9, 0))
+                .status(LabAlarm.HandleStatus.PENDING)
+                .occurrenceCount(4)
+                .event(LabAlarm.AlarmEvent.UPDATE)
+                .build();
+
+        assertEquals(alarm, codec.decode(codec.encodeAlarm(alarm)));
+    }
+
+    @Test
+    void testJsonFallsBackToString() throws Exception {
+        LabPayloadDeserializer deserializer = new LabPayloadDeserializer(codec);
+        String json = "{\"labId\":2,\"labName\":\"生物实验室C\",\"temperature\":21.0}";
+
+        Object value = deserializer.deserialize("lab-environment-data", json.getBytes(StandardCharsets.UTF_8));
+        assertEquals(json, value);
+        assertEquals(21.0, codec.read(value, LabEnvironmentData.class).getTemperature());
+    }
+
+    @Test
+    void testUnknownLabCodeFailsAndKeepsRawBytes() {
+        byte[] bytes = codec.encodeEnvironment(LabEnvironmentData.builder()
+                .labId(3L)
+                .labName("化学实验室A")
+                .temperature(23.5)
+                .build());
+        // 字典丢失：编号无法解析
+        dictionary.names.clear();
+
+        assertThrows(IllegalStateException.class, () -> codec.decode(bytes));
+        Object value = new LabPayloadDeserializer(codec).deserialize("lab-environment-data", bytes);
+        UndecodedPayload undecoded = assertInstanceOf(UndecodedPayload.class, value);
+        assertArrayEquals(bytes, undecoded.getBytes());
+        assertThrows(IOException.class, () -> codec.read(value, LabEnvironmentData.class));
+    }
+
+    /**
+     * 内存字典，可模拟字典不可用
+     */
+    private static class InMemoryDictionary implements LabNameDictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final Map<Integer, String> names = new HashMap<>();
+        private boolean available = true;
+
+        @Override
+        public Integer codeOf(String labName) {
+            if (!available) {
+                return null;
+            }
+            return codes.computeIfAbsent(labName, name -> {
+                names.put(codes.size() + 1, name);
+                return codes.size() + 1;
+            });
+        }
+
+        @Override
+        public String nameOf(int code) {
+            return names.get(code);
+        }
+    }
+}
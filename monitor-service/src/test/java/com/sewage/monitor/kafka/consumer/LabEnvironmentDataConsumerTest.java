@@ -0,0 +1,86 @@
+package com.sewage.monitor.kafka.consumer;
+
+import com.sewage.monitor.config.KafkaConfig;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.kafka.codec.LabPayloadCodec;
+import com.sewage.monitor.kafka.producer.DeadLetterPublisher;
+import com.sewage.monitor.service.EnvironmentPipeline;
+import com.sewage.monitor.service.LabEnvironmentDataService;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * LabEnvironmentDataConsumer测试类
+ * 验证只有写入失败才降级为逐条写入，落库后的处理失败不会重复插入，也不会进入死信队列
+ */
+class LabEnvironmentDataConsumerTest {
+
+    private final LabEnvironmentDataService dataService = mock(LabEnvironmentDataService.class);
+    private final EnvironmentPipeline pipeline = mock(EnvironmentPipeline.class);
+    private final LabPayloadCodec codec = mock(LabPayloadCodec.class);
+    private final DeadLetterPublisher deadLetterPublisher = mock(DeadLetterPublisher.class);
+    private LabEnvironmentDataConsumer consumer;
+
+    private final LabEnvironmentData first = LabEnvironmentData.builder().labId(1L).build();
+    private final LabEnvironmentData second = LabEnvironmentData.builder().labId(2L).build();
+    private final List<ConsumerRecord<String, Object>> records = List.of(
+            new ConsumerRecord<>(KafkaConfig.TOPIC_LAB_ENV_DATA, 0, 0L, "1", first),
+            new ConsumerRecord<>(KafkaConfig.TOPIC_LAB_ENV_DATA, 0, 1L, "2", second));
+
+    @BeforeEach
+    void setUp() throws Exception {
+        consumer = new LabEnvironmentDataConsumer(dataService, pipeline, codec, deadLetterPublisher);
+        ReflectionTestUtils.setField(consumer, "pipelineEnabled", true);
+        when(codec.read(any(), eq(LabEnvironmentData.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void dispatchFailureAfterBatchInsertDoesNotInsertAgain() {
+        doThrow(new IllegalStateException("队列已关闭")).when(pipeline).dispatch(first);
+
+        consumer.consumeBatch(records);
+
+        verify(dataService).persistBatch(List.of(first, second));
+        verify(dataService, never()).persist(any());
+        verify(pipeline).dispatch(second);
+        verifyNoInteractions(deadLetterPublisher);
+    }
+
+    @Test
+    void batchInsertFailureFallsBackToSingleInsertAndDlqOnlyFailedRecord() throws Exception {
+        doThrow(new RuntimeException("批量写入失败")).when(dataService).persistBatch(any());
+        doThrow(new RuntimeException("数据异常")).when(dataService).persist(second);
+
+        consumer.consumeBatch(records);
+
+        verify(dataService).persist(first);
+        verify(pipeline).dispatch(first);
+        verify(pipeline, never()).dispatch(second);
+        verify(deadLetterPublisher).publish(anyString(), eq(records.get(1)), anyString());
+        verify(deadLetterPublisher, never()).publish(anyString(), eq(records.get(0)), anyString());
+    }
+
+    @Test
+    void nonPipelinePostProcessingFailureDoesNotInsertAgain() {
+        ReflectionTestUtils.setField(consumer, "pipelineEnabled", false);
+        doThrow(new RuntimeException("Redis不可用")).when(dataService).processPersisted(first);
+
+        consumer.consumeBatch(records);
+
+        verify(dataService).persistBatch(List.of(first, second));
+        verify(dataService, never()).persist(any());
+        verify(dataService, never()).saveMonitorData(any());
+        verify(dataService).processPersisted(second);
+        verifyNoInteractions(deadLetterPublisher);
+    }
+}
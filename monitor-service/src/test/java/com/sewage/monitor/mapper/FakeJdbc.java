@@ -0,0 +1,265 @@
+package com.sewage.monitor.mapper;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.MybatisSqlSessionFactoryBuilder;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.SqlSessionManager;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 内存中的假 JDBC 驱动，用于在没有数据库的情况下执行真实的 MyBatis 映射
+ *
+ * 功能说明：
+ * 1. 按 SQL 片段登记查询结果（列名 → 值），映射器执行 SELECT 时返回匹配的结果集
+ * 2. 记录每条执行过的 SQL 和绑定参数，用于检查 INSERT / UPSERT 写入的值
+ * 3. 映射器由 MybatisConfiguration 解析注解生成，与运行时的结果映射一致
+ */
+public final class FakeJdbc {
+
+    /**
+     * 执行过的语句
+     */
+    public static final class Executed {
+        private final String sql;
+        private final Map<Integer, Object> parameters = new TreeMap<>();
+
+        Executed(String sql) {
+            this.sql = sql;
+        }
+
+        public String getSql() {
+            return sql;
+        }
+
+        public Object getParameter(int index) {
+            return parameters.get(index);
+        }
+    }
+
+    private final Map<String, List<Map<String, Object>>> results = new LinkedHashMap<>();
+    private final List<Executed> executed = Collections.synchronizedList(new ArrayList<>());
+    private final DataSource dataSource = proxy(DataSource.class, (proxy, method, args) ->
+            "getConnection".equals(method.getName()) ? connection() : null);
+
+    /**
+     * 登记查询结果：SQL 包含 sqlFragment 的查询返回这些行（每行为 列名 → 值）
+     */
+    @SafeVarargs
+    public final FakeJdbc returning(String sqlFragment, Map<String, Object>... rows) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        Collections.addAll(list, rows);
+        results.put(sqlFragment, list);
+        return this;
+    }
+
+    /**
+     * 执行过的 SQL 包含 sqlFragment 的语句
+     */
+    public List<Executed> executed(String sqlFragment) {
+        List<Executed> matched = new ArrayList<>();
+        synchronized (executed) {
+            for (Executed statement : executed) {
+                if (statement.sql.contains(sqlFragment)) {
+                    matched.add(statement);
+                }
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 创建映射器（每次调用自动开启、提交并关闭会话，可在多个线程中使用）
+     */
+    public <T> T mapper(Class<T> type) {
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        configuration.setEnvironment(new Environment("fake", new JdbcTransactionFactory(), dataSource));
+        configuration.addMapper(type);
+        return SqlSessionManager.newInstance(new MybatisSqlSessionFactoryBuilder().build(configuration)).getMapper(type);
+    }
+
+    /**
+     * 一行结果
+     */
+    public static Map<String, Object> row(Object... columnsAndValues) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < columnsAndValues.length; i += 2) {
+            row.put((String) columnsAndValues[i], columnsAndValues[i + 1]);
+        }
+        return row;
+    }
+
+    // =============================JDBC 代理=============================
+
+    private Connection connection() {
+        DatabaseMetaData metaData = proxy(DatabaseMetaData.class, (proxy, method, args) -> null);
+        Connection[] holder = new Connection[1];
+        holder[0] = proxy(Connection.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    return statement((String) args[0], holder[0]);
+                case "getMetaData":
+                    return metaData;
+                case "getAutoCommit":
+                    return true;
+                default:
+                    return null;
+            }
+        });
+        return holder[0];
+    }
+
+    private PreparedStatement statement(String sql, Connection connection) {
+        Executed statement = new Executed(sql.replaceAll("\\s+", " ").trim());
+        executed.add(statement);
+        return proxy(PreparedStatement.class, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                statement.parameters.put((Integer) args[0], name.equals("setNull") ? null : args[1]);
+                return null;
+            }
+            switch (name) {
+                case "execute":
+                    return true;
+                case "getResultSet":
+                    return resultSet(rowsFor(statement.sql));
+                case "getUpdateCount":
+                    return 1;
+                case "getConnection":
+                    return connection;
+                default:
+                    return null;
+            }
+        });
+    }
+
+    private List<Map<String, Object>> rowsFor(String sql) {
+        for (Map.Entry<String, List<Map<String, Object>>> entry : results.entrySet()) {
+            if (sql.contains(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static ResultSet resultSet(List<Map<String, Object>> rows) {
+        List<String> columns = rows.isEmpty() ? Collections.emptyList() : new ArrayList<>(rows.get(0).keySet());
+        ResultSetMetaData metaData = proxy(ResultSetMetaData.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getColumnCount":
+                    return columns.size();
+                case "getColumnLabel":
+                case "getColumnName":
+                    return columns.get((Integer) args[0] - 1);
+                case "getColumnClassName":
+                    Object value = rows.get(0).get(columns.get((Integer) args[0] - 1));
+                    return value != null ? value.getClass().getName() : Object.class.getName();
+                case "getColumnType":
+                    return Types.OTHER;
+                default:
+                    return null;
+            }
+        });
+        int[] cursor = {-1};
+        Object[] last = new Object[1];
+        return proxy(ResultSet.class, (proxy, method, args) -> {
+            String name = method.getName();
+            switch (name) {
+                case "next":
+                    return ++cursor[0] < rows.size();
+                case "getMetaData":
+                    return metaData;
+                case "getType":
+                    return ResultSet.TYPE_FORWARD_ONLY;
+                case "wasNull":
+                    return last[0] == null;
+                default:
+                    break;
+            }
+            if (!name.startsWith("get") || args == null || args.length == 0) {
+                return null;
+            }
+            String column = args[0] instanceof Integer ? columns.get((Integer) args[0] - 1) : (String) args[0];
+            Object value = rows.get(cursor[0]).get(column);
+            last[0] = value;
+            return convert(value, method.getReturnType());
+        });
+    }
+
+    private static Object convert(Object value, Class<?> type) {
+        if (type == long.class) {
+            return value != null ? ((Number) value).longValue() : 0L;
+        }
+        if (type == int.class) {
+            return value != null ? ((Number) value).intValue() : 0;
+        }
+        if (type == double.class) {
+            return value != null ? ((Number) value).doubleValue() : 0.0;
+        }
+        if (type == boolean.class) {
+            return value != null && (Boolean) value;
+        }
+        if (type == String.class) {
+            return value != null ? value.toString() : null;
+        }
+        if (type == BigDecimal.class && value instanceof Number && !(value instanceof BigDecimal)) {
+            return new BigDecimal(value.toString());
+        }
+        return value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return objectMethod(proxy, method, args);
+            }
+            Object result = handler.invoke(proxy, method, args);
+            return result != null ? result : defaultValue(method.getReturnType());
+        });
+    }
+
+    private static Object objectMethod(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+                return "FakeJdbc";
+        }
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0.0;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,64 @@
+package com.sewage.monitor.mapper;
+
+import com.sewage.monitor.entity.LabDailyStatistics;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static com.sewage.monitor.mapper.FakeJdbc.row;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LabDailyStatisticsMapper测试类
+ * 通过假 JDBC 执行真实的注解映射，验证列名与字段名不一致的列（lab_id、lab_name、environment_normal_rate）被正确映射
+ */
+class LabDailyStatisticsMapperTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 3, 1);
+
+    @Test
+    void selectByLabAndDateMapsRenamedColumns() {
+        FakeJdbc jdbc = new FakeJdbc().returning("FROM lab_daily_statistics", storedRow());
+        LabDailyStatisticsMapper mapper = jdbc.mapper(LabDailyStatisticsMapper.class);
+
+        assertStoredRow(mapper.selectByLabAndDate(7L, DATE));
+    }
+
+    @Test
+    void selectKeysetMapsRenamedColumns() {
+        FakeJdbc jdbc = new FakeJdbc().returning("FROM lab_daily_statistics", storedRow());
+        LabDailyStatisticsMapper mapper = jdbc.mapper(LabDailyStatisticsMapper.class);
+
+        List<LabDailyStatistics> rows = mapper.selectKeyset(DATE.plusDays(1), 99L, 21);
+
+        assertEquals(1, rows.size());
+        assertStoredRow(rows.get(0));
+        FakeJdbc.Executed query = jdbc.executed("ORDER BY stat_date DESC, id DESC").get(0);
+        assertEquals(DATE.plusDays(1), query.getParameter(1));
+        assertEquals(21, query.getParameter(4));
+    }
+
+    /**
+     * 数据库中的一行（列名为表中的实际列名）
+     */
+    static Map<String, Object> storedRow() {
+        return row("id", 11L, "lab_id", 7L, "lab_name", "物理实验室", "stat_date", DATE,
+                "avg_temperature", new BigDecimal("21.50"), "data_count", 1440, "alarm_count", 12,
+                "reservation_count", 20, "attendance_count", 18,
+                "environment_normal_rate", new BigDecimal("99.17"));
+    }
+
+    static void assertStoredRow(LabDailyStatistics stats) {
+        assertNotNull(stats);
+        assertEquals(11L, stats.getId());
+        assertEquals(7L, stats.getStationId());
+        assertEquals("物理实验室", stats.getStationName());
+        assertEquals(DATE, stats.getStatDate());
+        assertEquals(new BigDecimal("21.50"), stats.getAvgTemperature());
+        assertEquals(1440, stats.getDataCount());
+        assertEquals(new BigDecimal("99.17"), stats.getNormalRate());
+    }
+}
@@ -0,0 +1,59 @@
+package com.sewage.monitor.service;
+
+import com.sewage.monitor.entity.LabAlarmRule;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AlarmRuleSet测试类
+ * 验证默认规则与原固定阈值一致、同一指标只命中一条、消息渲染
+ */
+class AlarmRuleSetTest {
+
+    private final AlarmRuleSet rules = AlarmRuleSet.compile(AlarmRuleEngine.builtinRules());
+
+    @Test
+    void testSeverestRuleWinsPerMetric() {
+        LabEnvironmentData data = new LabEnvironmentData();
+        data.setTemperature(36.0);
+        data.setCo2(1500.0);
+        data.setCurrentPeopleCount(31);
+
+        List<LabAlarmRule> matched = new ArrayList<>();
+        int count = rules.evaluate(data, (d, rule, value) -> matched.add(rule));
+
+        assertEquals(3, count);
+        assertEquals("TEMP_HIGH", matched.get(0).getAlarmType());
+        assertEquals("DANGER", matched.get(0).getAlarmLevel());
+        assertEquals("CO2_HIGH", matched.get(1).getAlarmType());
+        assertEquals("WARNING", matched.get(1).getAlarmLevel());
+        assertEquals("PEOPLE_EXCEED", matched.get(2).getAlarmType());
+    }
+
+    @Test
+    void testNormalAndMissingValuesDoNotMatch() {
+        LabEnvironmentData data = new LabEnvironmentData();
+        data.setTemperature(22.0);
+        data.setHumidity(50.0);
+        data.setIlluminance(500.0);
+
+        assertEquals(0, rules.evaluate(data, (d, rule, value) -> fail("不应命中: " + rule)));
+    }
+
+    @Test
+    void testRenderMessage() {
+        LabEnvironmentData data = new LabEnvironmentData();
+        data.setHumidity(15.04);
+        data.setCurrentPeopleCount(45);
+
+        List<String> messages = new ArrayList<>();
+        rules.evaluate(data, (d, rule, value) -> messages.add(AlarmRuleSet.renderMessage(rule, value)));
+
+        assertEquals(List.of("湿度严重异常: 15.0%", "人数超载: 45人"), messages);
+    }
+}
@@ -0,0 +1,77 @@
+package com.sewage.monitor.service;
+
+import com.sewage.monitor.entity.LabEnvironmentData;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AlarmStateTracker测试类
+ * 验证持续超限只告警一次、级别升高立即提醒、回差范围内不恢复
+ */
+class AlarmStateTrackerTest {
+
+    private AlarmStateTracker tracker;
+    private final List<String> events = new ArrayList<>();
+    private final AlarmStateTracker.TransitionListener listener = (data, state, event) ->
+            events.add(event + ":" + state.getRule().getAlarmLevel() + ":" + state.getPendingOccurrences());
+
+    @BeforeEach
+    void setUp() {
+        // 规则表不可用时使用内置默认规则（CO2 > 1000 WARNING，> 2000 DANGER）
+        tracker = new AlarmStateTracker(new AlarmRuleEngine(null));
+        ReflectionTestUtils.setField(tracker, "hysteresisRatio", 0.02);
+        ReflectionTestUtils.setField(tracker, "renotifyIntervalMillis", 300000L);
+        ReflectionTestUtils.setField(tracker, "clearReadings", 2);
+    }
+
+    @Test
+    void testStormProducesSingleFiring() {
+        for (int i = 0; i < 1000; i++) {
+            tracker.evaluate(co2(1200), listener);
+        }
+        assertEquals(List.of("FIRING:WARNING:1"), events);
+        assertEquals(999L, tracker.getStats().get("suppressedCount"));
+    }
+
+    @Test
+    void testEscalationNotifiesOnce() {
+        tracker.evaluate(co2(1200), listener);
+        tracker.evaluate(co2(2500), listener);
+        tracker.evaluate(co2(1500), listener);
+        tracker.evaluate(co2(2500), listener);
+
+        assertEquals(List.of("FIRING:WARNING:1", "UPDATE:DANGER:1"), events);
+    }
+
+    @Test
+    void testRecoveryRespectsHysteresis() {
+        tracker.evaluate(co2(1200), listener);
+        // 低于阈值但在回差（1000 × 2% = 20）范围内，不恢复
+        tracker.evaluate(co2(990), listener);
+        tracker.evaluate(co2(990), listener);
+        tracker.evaluate(co2(990), listener);
+        assertEquals(1, events.size());
+
+        tracker.evaluate(co2(900), listener);
+        assertEquals(1, events.size());
+        tracker.evaluate(co2(900), listener);
+        assertEquals(List.of("FIRING:WARNING:1", "RECOVERED:WARNING:0"), events);
+
+        tracker.evaluate(co2(1200), listener);
+        assertEquals("FIRING:WARNING:1", events.get(2));
+        assertEquals(1, tracker.getActiveAlarms().size());
+    }
+
+    private static LabEnvironmentData co2(double value) {
+        LabEnvironmentData data = new LabEnvironmentData();
+        data.setLabId(1L);
+        data.setCo2(value);
+        return data;
+    }
+}
@@ -0,0 +1,176 @@
+package com.sewage.monitor.service;
+
+import com.sewage.monitor.entity.LabAttendanceEvent;
+import com.sewage.monitor.entity.LabDailyStatistics;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.mapper.FakeJdbc;
+import com.sewage.monitor.mapper.LabDailyStatisticsMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * DailyStatisticsEngine测试类
+ * 验证按事件时间归入所属日期、允许延迟内的乱序数据计入统计、早于水位线的数据丢弃、
+ * 从数据库已有统计恢复后继续累加
+ */
+class DailyStatisticsEngineTest {
+
+    private final LabDailyStatisticsMapper mapper = mock(LabDailyStatisticsMapper.class);
+    private DailyStatisticsEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = engineWith(mapper);
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    void testLateDataLandsInEventDay() {
+        // 以昨天零点为界，避免测试时间接近零点时数据落在未来
+        LocalDateTime midnight = LocalDate.now().minusDays(1).atStartOfDay();
+        engine.record(reading(midnight.plusHours(1), 20.0));
+        // 网关补传：前一天 23:00 的数据，在6小时允许延迟内
+        engine.record(reading(midnight.minusHours(1), 30.0));
+        // 比最大事件时间早7小时，早于水位线
+        engine.record(reading(midnight.minusHours(6), 40.0));
+
+        Map<Long, LabDailyStatistics> rows = flushRows();
+        assertEquals(1, rows.get(-1L).getDataCount());
+        assertEquals(20.0, rows.get(-1L).getAvgTemperature().doubleValue());
+        assertEquals(30.0, rows.get(-2L).getAvgTemperature().doubleValue());
+        assertEquals(2, rows.size());
+
+        Map<String, Object> stats = engine.getStats();
+        assertEquals(1L, stats.get("lateAcceptedCount"));
+        assertEquals(1L, stats.get("lateDroppedCount"));
+    }
+
+    @Test
+    void testFutureTimestampIgnored() {
+        engine.record(reading(LocalDateTime.now().plusHours(2), 25.0));
+        assertTrue(flushRows().isEmpty());
+        assertEquals(1L, engine.getStats().get("futureDroppedCount"));
+        assertTrue(engine.getWatermarks().isEmpty());
+    }
+
+    @Test
+    void testRestoredAggregateKeepsLabIdAndContinues() {
+        LocalDateTime time = LocalDate.now().minusDays(1).atStartOfDay().plusHours(1);
+        FakeJdbc jdbc = storedStatistics(time.toLocalDate());
+        DailyStatisticsEngine restored = engineWith(jdbc.mapper(LabDailyStatisticsMapper.class));
+        try {
+            restored.record(reading(time, 31.0));
+            restored.flush();
+        } finally {
+            restored.shutdown();
+        }
+
+        List<FakeJdbc.Executed> upserts = jdbc.executed("INSERT INTO lab_daily_statistics");
+        assertEquals(1, upserts.size());
+        FakeJdbc.Executed upsert = upserts.get(0);
+        // 参数顺序见 LabDailyStatisticsMapper.upsertBatch：lab_id, lab_name, stat_date, avg_temperature ... data_count(19)
+        assertEquals(1L, upsert.getParameter(1));
+        assertEquals("化学实验室A", upsert.getParameter(2));
+        assertEquals(time.toLocalDate(), upsert.getParameter(3));
+        assertEquals(new BigDecimal("21.00"), upsert.getParameter(4));
+        assertEquals(11, upsert.getParameter(19));
+        assertEquals(0L, restored.getStats().get("failedFlushCount"));
+    }
+
+    @Test
+    void testRestoredAttendanceCountsContinueFromStoredValues() {
+        LocalDateTime time = LocalDate.now().minusDays(1).atStartOfDay().plusHours(9);
+        FakeJdbc jdbc = storedStatistics(time.toLocalDate());
+        DailyStatisticsEngine restored = engineWith(jdbc.mapper(LabDailyStatisticsMapper.class));
+        try {
+            // 考勤事件不带实验室名称，名称来自已有统计
+            restored.recordAttendance(List.of(
+                    attendance("u1", LabAttendanceEvent.EventType.RESERVATION, time),
+                    attendance("u1", LabAttendanceEvent.EventType.CHECK_IN, time),
+                    attendance("u1", LabAttendanceEvent.EventType.CHECK_IN, time.plusMinutes(1))));
+            restored.flush();
+        } finally {
+            restored.shutdown();
+        }
+
+        List<FakeJdbc.Executed> upserts = jdbc.executed("INSERT INTO lab_daily_statistics");
+        assertEquals(1, upserts.size());
+        FakeJdbc.Executed upsert = upserts.get(0);
+        // lab_id(1), lab_name(2), reservation_count(16), attendance_count(17)
+        assertEquals(1L, upsert.getParameter(1));
+        assertEquals("化学实验室A", upsert.getParameter(2));
+        assertEquals(21, upsert.getParameter(16));
+        assertEquals(19, upsert.getParameter(17));
+        assertEquals(0L, restored.getStats().get("failedFlushCount"));
+    }
+
+    private static LabAttendanceEvent attendance(String userId, LabAttendanceEvent.EventType type, LocalDateTime time) {
+        return LabAttendanceEvent.builder().labId(1L).userId(userId).eventType(type).eventTime(time).build();
+    }
+
+    /**
+     * 数据库中已有的日统计：10条数据，平均温度20，预约20人，签到18人（通过真实的结果映射读取）
+     */
+    private static FakeJdbc storedStatistics(LocalDate date) {
+        return new FakeJdbc().returning("FROM lab_daily_statistics WHERE lab_id",
+                FakeJdbc.row("id", 5L, "lab_id", 1L, "lab_name", "化学实验室A", "stat_date", date,
+                        "avg_temperature", new BigDecimal("20.00"), "max_temperature", new BigDecimal("22.00"),
+                        "min_temperature", new BigDecimal("18.00"), "data_count", 10, "alarm_count", 0,
+                        "reservation_count", 20, "attendance_count", 18,
+                        "environment_normal_rate", new BigDecimal("100.00")));
+    }
+
+    private static DailyStatisticsEngine engineWith(LabDailyStatisticsMapper mapper) {
+        DailyStatisticsEngine engine = new DailyStatisticsEngine(mapper, mock(CacheService.class));
+        ReflectionTestUtils.setField(engine, "shardCount", 1);
+        ReflectionTestUtils.setField(engine, "queueCapacity", 100);
+        ReflectionTestUtils.setField(engine, "retainDays", 1);
+        ReflectionTestUtils.setField(engine, "allowedLatenessMs", 6 * 3600_000L);
+        ReflectionTestUtils.setField(engine, "maxFutureSkewMs", 300_000L);
+        engine.init();
+        return engine;
+    }
+
+    /**
+     * 刷新并按相对今天的天数返回写入的行
+     */
+    private Map<Long, LabDailyStatistics> flushRows() {
+        engine.flush();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<LabDailyStatistics>> captor = ArgumentCaptor.forClass(List.class);
+        verify(mapper, atMost(1)).upsertBatch(captor.capture());
+        List<LabDailyStatistics> rows = captor.getAllValues().isEmpty() ? new ArrayList<>() : captor.getValue();
+        Map<Long, LabDailyStatistics> byDay = new HashMap<>();
+        for (LabDailyStatistics row : rows) {
+            byDay.put(row.getStatDate().toEpochDay() - LocalDate.now().toEpochDay(), row);
+        }
+        return byDay;
+    }
+
+    private static LabEnvironmentData reading(LocalDateTime time, double temperature) {
+        return LabEnvironmentData.builder()
+                .labId(1L)
+                .labName("化学实验室A")
+                .temperature(temperature)
+                .monitorTime(time)
+                .build();
+    }
+}
@@ -0,0 +1,139 @@
+package com.sewage.monitor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sewage.monitor.config.KafkaConfig;
+import com.sewage.monitor.entity.DeadLetterRecord;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.kafka.codec.LabNameDictionary;
+import com.sewage.monitor.kafka.codec.LabPayloadCodec;
+import com.sewage.monitor.kafka.producer.DeadLetterPublisher;
+import com.sewage.monitor.mapper.DeadLetterRecordMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * DeadLetterService测试类
+ * 验证环境数据重放只有写入失败才降级为逐条写入，落库后的处理失败不会重复插入、也不会重复标记，
+ * 流水线模式下重放的数据交给 EnvironmentPipeline 分发，Base64 保存的原始二进制消息重新解码后重放
+ */
+class DeadLetterServiceTest {
+
+    private final DeadLetterRecordMapper recordMapper = mock(DeadLetterRecordMapper.class);
+    private final LabEnvironmentDataService dataService = mock(LabEnvironmentDataService.class);
+    private final EnvironmentPipeline pipeline = mock(EnvironmentPipeline.class);
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+    private final LabPayloadCodec codec = new LabPayloadCodec(new LabNameDictionary() {
+        @Override
+        public Integer codeOf(String labName) {
+            return 7;
+        }
+
+        @Override
+        public String nameOf(int code) {
+            return code == 7 ? "化学实验室" : null;
+        }
+    }, objectMapper);
+    private final DeadLetterService service = new DeadLetterService(recordMapper, dataService, pipeline,
+            mock(LabAlarmWriter.class), mock(AsyncTaskManager.class), objectMapper, codec);
+
+    private final List<DeadLetterRecord> batch = List.of(envRecord(1L, 10L), envRecord(2L, 20L));
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "pipelineEnabled", false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void postInsertFailureDoesNotInsertAgain() {
+        doThrow(new RuntimeException("Redis不可用")).when(dataService).processPersisted(argThat(data -> data.getLabId() == 10L));
+
+        int failed = replay();
+
+        assertEquals(0, failed);
+        verify(dataService).persistBatch(argThat(list -> list.size() == 2));
+        verify(dataService, never()).persist(any());
+        verify(dataService, times(2)).processPersisted(any());
+        verify(recordMapper).updateStatus(eq(List.of(1L, 2L)), anyString(), anyString(), any());
+        verify(recordMapper, never()).recordFailure(any(), any(), any());
+    }
+
+    @Test
+    void batchInsertFailureFallsBackToSingleInserts() {
+        doThrow(new RuntimeException("批量写入失败")).when(dataService).persistBatch(any());
+        doThrow(new RuntimeException("数据异常")).when(dataService).persist(argThat(data -> data.getLabId() == 20L));
+
+        int failed = replay();
+
+        assertEquals(1, failed);
+        verify(dataService, times(2)).persist(any());
+        verify(dataService, times(1)).processPersisted(any());
+        verify(recordMapper).updateStatus(eq(List.of(1L)), anyString(), anyString(), any());
+        verify(recordMapper).recordFailure(eq(2L), eq("数据异常"), any());
+    }
+
+    @Test
+    void pipelineModeDispatchesReplayedReadings() {
+        ReflectionTestUtils.setField(service, "pipelineEnabled", true);
+        doThrow(new IllegalStateException("队列已关闭")).when(pipeline).dispatch(argThat(data -> data.getLabId() == 10L));
+
+        int failed = replay();
+
+        assertEquals(0, failed);
+        verify(dataService).persistBatch(argThat(list -> list.size() == 2));
+        verify(pipeline, times(2)).dispatch(any());
+        verify(dataService, never()).persist(any());
+        verify(dataService, never()).processPersisted(any());
+        verify(recordMapper).updateStatus(eq(List.of(1L, 2L)), anyString(), anyString(), any());
+    }
+
+    @Test
+    void base64PayloadIsDecodedFromRawBytes() {
+        byte[] bytes = codec.encodeEnvironment(LabEnvironmentData.builder().labId(30L).labName("化学实验室").temperature(23.5).build());
+        DeadLetterRecord record = DeadLetterRecord.builder()
+                .id(3L)
+                .sourceTopic(KafkaConfig.TOPIC_LAB_ENV_DATA)
+                .payload(Base64.getEncoder().encodeToString(bytes))
+                .payloadEncoding(DeadLetterPublisher.ENCODING_BASE64)
+                .status(DeadLetterRecord.Status.PENDING.name())
+                .build();
+
+        Integer failed = ReflectionTestUtils.invokeMethod(service, "replayBatch", List.of(record));
+
+        assertEquals(0, failed);
+        verify(dataService).persistBatch(argThat(list -> list.size() == 1
+                && "化学实验室".equals(list.get(0).getLabName()) && list.get(0).getTemperature() == 23.5));
+        verify(recordMapper).updateStatus(eq(List.of(3L)), anyString(), anyString(), any());
+    }
+
+    private int replay() {
+        Integer failed = ReflectionTestUtils.invokeMethod(service, "replayBatch", batch);
+        return failed != null ? failed : -1;
+    }
+
+    private static DeadLetterRecord envRecord(Long id, Long labId) {
+        return DeadLetterRecord.builder()
+                .id(id)
+                .sourceTopic(KafkaConfig.TOPIC_LAB_ENV_DATA)
+                .payload("{\"labId\":" + labId + ",\"labName\":\"实验室" + labId + "\"}")
+                .status(DeadLetterRecord.Status.PENDING.name())
+                .build();
+    }
+}
@@ -0,0 +1,72 @@
+package com.sewage.monitor.service;
+
+import com.sewage.monitor.service.PartitionRotationService.Granularity;
+import com.sewage.monitor.service.PartitionRotationService.Partition;
+import com.sewage.monitor.service.PartitionRotationService.Plan;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PartitionRotationService测试类
+ * 验证未来分区的补齐、已是最新时不生成DDL、过期分区的判定
+ */
+class PartitionRotationServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 1, 20);
+
+    @Test
+    void initialHistoryPartitionIsFollowedByCurrentAndFutureMonths() {
+        List<Partition> partitions = Collections.singletonList(
+                new Partition("p_history", LocalDate.of(2025, 1, 1)));
+
+        Plan plan = PartitionRotationService.plan(partitions, TODAY, Granularity.MONTH, 3, 0);
+
+        assertEquals(Arrays.asList("p202501", "p202502", "p202503", "p202504"),
+                List.copyOf(plan.getToCreate().keySet()));
+        assertEquals(LocalDate.of(2025, 5, 1), plan.getToCreate().get("p202504"));
+        assertTrue(plan.getToExpire().isEmpty());
+    }
+
+    @Test
+    void nothingToDoWhenFuturePartitionsExist() {
+        List<Partition> partitions = Arrays.asList(
+                new Partition("p20250120", LocalDate.of(2025, 1, 21)),
+                new Partition("p20250121", LocalDate.of(2025, 1, 22)));
+
+        Plan plan = PartitionRotationService.plan(partitions, TODAY, Granularity.DAY, 1, 0);
+
+        assertTrue(plan.getToCreate().isEmpty());
+        assertTrue(plan.getToExpire().isEmpty());
+    }
+
+    @Test
+    void unalignedBoundIsClosedToNextPeriodStart() {
+        List<Partition> partitions = Collections.singletonList(
+                new Partition("p_history", LocalDate.of(2025, 1, 15)));
+
+        Plan plan = PartitionRotationService.plan(partitions, TODAY, Granularity.MONTH, 1, 0);
+
+        assertEquals(LocalDate.of(2025, 2, 1), plan.getToCreate().get("p202501"));
+        assertEquals(LocalDate.of(2025, 3, 1), plan.getToCreate().get("p202502"));
+        assertEquals(2, plan.getToCreate().size());
+    }
+
+    @Test
+    void partitionsEntirelyBeforeRetentionExpire() {
+        List<Partition> partitions = Arrays.asList(
+                new Partition("p20250110", LocalDate.of(2025, 1, 11)),
+                new Partition("p20250111", LocalDate.of(2025, 1, 12)),
+                new Partition("p20250121", LocalDate.of(2025, 1, 22)));
+
+        Plan plan = PartitionRotationService.plan(partitions, TODAY, Granularity.DAY, 1, 9);
+
+        // 截止日期 01-11：上界 01-11 的分区数据全部早于截止日期，上界 01-12 的分区仍包含保留期内的数据
+        assertEquals(Collections.singletonList("p20250110"), plan.getToExpire());
+    }
+}
@@ -0,0 +1,138 @@
+package com.sewage.monitor.service;
+
+import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.entity.LabEnvironmentRollup;
+import com.sewage.monitor.mapper.LabEnvironmentRollupMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * RollupEngine测试类
+ * 验证分钟/小时桶的增量累加、写入失败后重试不丢增量也不重复累加已提交的批次、按点数选择分辨率
+ */
+class RollupEngineTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 1, 10, 0);
+
+    private final LabEnvironmentRollupMapper mapper = mock(LabEnvironmentRollupMapper.class);
+    private RollupEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        engine = new RollupEngine(mapper);
+        ReflectionTestUtils.setField(engine, "enabled", true);
+        ReflectionTestUtils.setField(engine, "maxPendingBuckets", 1000);
+    }
+
+    @Test
+    void readingsAreMergedIntoMinuteAndHourBuckets() {
+        engine.record(reading(BASE.plusSeconds(10), 20.0));
+        engine.record(reading(BASE.plusSeconds(50), 24.0));
+        // 乱序到达的更早读数不改变“最后一个读数”
+        engine.record(reading(BASE.plusSeconds(5), 30.0));
+        engine.record(reading(BASE.plusMinutes(1), 22.0));
+
+        engine.flush();
+
+        List<LabEnvironmentRollup> rows = captureRows();
+        LabEnvironmentRollup firstMinute = find(rows, LabEnvironmentRollup.RESOLUTION_MINUTE, BASE);
+        assertEquals(3, firstMinute.getSampleCount());
+        assertEquals(74.0, firstMinute.getTemperatureSum(), 1e-9);
+        assertEquals(20.0, firstMinute.getTemperatureMin());
+        assertEquals(30.0, firstMinute.getTemperatureMax());
+        assertEquals(24.0, firstMinute.getTemperatureLast());
+        assertEquals(BASE.plusSeconds(50), firstMinute.getLastTime());
+        assertEquals(0, firstMinute.getHumidityCount());
+        assertNull(firstMinute.getHumiditySum());
+
+        LabEnvironmentRollup hour = find(rows, LabEnvironmentRollup.RESOLUTION_HOUR, BASE);
+        assertEquals(4, hour.getSampleCount());
+        assertEquals(22.0, hour.getTemperatureLast());
+        assertEquals(3, rows.size());
+    }
+
+    @Test
+    void failedFlushKeepsDeltasForNextCycle() {
+        doThrow(new RuntimeException("db down")).doReturn(2).when(mapper).upsertDeltaBatch(anyList());
+        engine.record(reading(BASE, 20.0));
+        engine.flush();
+        engine.record(reading(BASE.plusSeconds(30), 26.0));
+        engine.flush();
+
+        List<LabEnvironmentRollup> rows = captureRows();
+        LabEnvironmentRollup minute = find(rows, LabEnvironmentRollup.RESOLUTION_MINUTE, BASE);
+        assertEquals(2, minute.getSampleCount());
+        assertEquals(46.0, minute.getTemperatureSum(), 1e-9);
+        assertEquals(26.0, minute.getTemperatureLast());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedChunkPutsBackOnlyUnwrittenBuckets() {
+        // 600个分钟桶 + 10个小时桶 = 610行，分两批写入，第二批失败
+        doReturn(500).doThrow(new RuntimeException("db down")).doReturn(110).when(mapper).upsertDeltaBatch(anyList());
+        for (int i = 0; i < 600; i++) {
+            engine.record(reading(BASE.plusMinutes(i), 20.0));
+        }
+        engine.flush();
+        engine.flush();
+
+        ArgumentCaptor<List<LabEnvironmentRollup>> captor = ArgumentCaptor.forClass(List.class);
+        verify(mapper, times(3)).upsertDeltaBatch(captor.capture());
+        List<List<LabEnvironmentRollup>> calls = captor.getAllValues();
+        assertEquals(500, calls.get(0).size());
+        assertEquals(110, calls.get(1).size());
+        // 重试只包含失败的那一批，已提交的第一批不再累加
+        assertEquals(110, calls.get(2).size());
+        for (LabEnvironmentRollup row : calls.get(2)) {
+            assertTrue(calls.get(1).contains(row));
+            assertFalse(calls.get(0).stream().anyMatch(written -> written.getResolution().equals(row.getResolution())
+                    && written.getBucketTime().equals(row.getBucketTime())));
+            assertEquals(row.getResolution() == LabEnvironmentRollup.RESOLUTION_HOUR ? 60 : 1, row.getSampleCount());
+        }
+    }
+
+    @Test
+    void coarsestResolutionThatStillYieldsRequestedPoints() {
+        assertEquals(LabEnvironmentRollup.RESOLUTION_HOUR,
+                RollupEngine.chooseResolution(BASE, BASE.plusDays(30), 720));
+        assertEquals(LabEnvironmentRollup.RESOLUTION_MINUTE,
+                RollupEngine.chooseResolution(BASE, BASE.plusDays(30), 1000));
+        assertEquals(LabEnvironmentRollup.RESOLUTION_MINUTE,
+                RollupEngine.chooseResolution(BASE, BASE.plusHours(6), 300));
+        assertEquals(0, RollupEngine.chooseResolution(BASE, BASE.plusHours(1), 300));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<LabEnvironmentRollup> captureRows() {
+        ArgumentCaptor<List<LabEnvironmentRollup>> captor = ArgumentCaptor.forClass(List.class);
+        verify(mapper, atLeastOnce()).upsertDeltaBatch(captor.capture());
+        return new ArrayList<>(captor.getValue());
+    }
+
+    private static LabEnvironmentRollup find(List<LabEnvironmentRollup> rows, int resolution, LocalDateTime bucket) {
+        return rows.stream()
+                .filter(row -> row.getResolution() == resolution && row.getBucketTime().equals(bucket))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("缺少桶 " + resolution + "s " + bucket));
+    }
+
+    private static LabEnvironmentData reading(LocalDateTime time, Double temperature) {
+        return LabEnvironmentData.builder()
+                .labId(1L)
+                .labName("化学实验室")
+                .temperature(temperature)
+                .monitorTime(time)
+                .build();
+    }
+}
@@ -0,0 +1,203 @@
+package com.sewage.monitor.service;
+
+import com.sewage.monitor.entity.LabDailyStatistics;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import com.sewage.monitor.mapper.FakeJdbc;
+import com.sewage.monitor.mapper.LabDailyStatisticsMapper;
+import com.sewage.monitor.mapper.LabEnvironmentDataMapper;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * StreamingExportService测试类
+ * 验证CSV/JSON格式、转义、日统计列映射，以及500万行在小堆内存（surefire small-heap-test 执行，-Xmx64m）下流式导出
+ */
+class StreamingExportServiceTest {
+
+    private static final int LARGE_ROWS = 5_000_000;
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final LocalDateTime END = BASE.plusYears(1);
+
+    private final LabEnvironmentDataMapper environmentMapper = mock(LabEnvironmentDataMapper.class);
+    private final LabDailyStatisticsMapper dailyMapper = mock(LabDailyStatisticsMapper.class);
+    private StreamingExportService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new StreamingExportService(environmentMapper, dailyMapper);
+        ReflectionTestUtils.setField(service, "flushRows", 1000);
+    }
+
+    @Test
+    void csvHasBomHeaderAndEscapedCells() throws IOException {
+        LabEnvironmentData row = reading(0);
+        row.setLabName("化学实验室,A区");
+        row.setAlarmMessage("温度\"偏高\"");
+        row.setHumidity(null);
+        emitEnvironmentRows(1, i -> row);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = service.exportEnvironmentData(1L, BASE, END, StreamingExportService.Format.CSV, out);
+
+        assertEquals(1, rows);
+        byte[] bytes = out.toByteArray();
+        assertEquals((byte) 0xEF, bytes[0]);
+        String[] lines = new String(bytes, 3, bytes.length - 3, StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("实验室ID,实验室名称,监测时间,温度(℃),湿度(%)"));
+        assertEquals("1,\"化学实验室,A区\",2025-01-01 00:00:00,22.5,,35.0,500.0,600.0,3,4,5,1,\"温度\"\"偏高\"\"\",GOOD,SENSOR",
+                lines[1]);
+    }
+
+    @Test
+    void jsonIsCompleteArrayWithTypedValues() throws IOException {
+        LabDailyStatistics statistics = LabDailyStatistics.builder()
+                .stationId(2L).stationName("物理实验室").statDate(LocalDate.of(2025, 3, 1))
+                .avgTemperature(new BigDecimal("21.50")).dataCount(1440).build();
+        doAnswer(invocation -> {
+            ResultHandler<LabDailyStatistics> handler = invocation.getArgument(2);
+            DefaultResultContext<LabDailyStatistics> context = new DefaultResultContext<>();
+            context.nextResultObject(statistics);
+            handler.handleResult(context);
+            return null;
+        }).when(dailyMapper).exportByDateRange(any(), any(), any());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.exportDailyStatistics(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 1),
+                StreamingExportService.Format.JSON, out);
+
+        String json = out.toString(StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("[{\"statDate\":\"2025-03-01\",\"labId\":2,\"labName\":\"物理实验室\",\"avgTemperature\":21.50,"));
+        assertTrue(json.contains("\"dataCount\":1440"));
+        assertTrue(json.endsWith("}]"));
+    }
+
+    @Test
+    void dailyExportMapsRenamedColumnsThroughRealMapper() throws IOException {
+        // 经过真实的注解映射：lab_id / lab_name / environment_normal_rate 与实体字段名不一致
+        FakeJdbc jdbc = new FakeJdbc().returning("FROM lab_daily_statistics",
+                FakeJdbc.row("id", 3L, "lab_id", 2L, "lab_name", "物理实验室", "stat_date", LocalDate.of(2025, 3, 1),
+                        "avg_temperature", new BigDecimal("21.50"), "data_count", 1440,
+                        "environment_normal_rate", new BigDecimal("99.17")));
+        StreamingExportService realMapping = new StreamingExportService(environmentMapper,
+                jdbc.mapper(LabDailyStatisticsMapper.class));
+        ReflectionTestUtils.setField(realMapping, "flushRows", 1000);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = realMapping.exportDailyStatistics(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 1),
+                StreamingExportService.Format.JSON, out);
+
+        assertEquals(1, rows);
+        String json = out.toString(StandardCharsets.UTF_8);
+        assertTrue(json.startsWith("[{\"statDate\":\"2025-03-01\",\"labId\":2,\"labName\":\"物理实验室\","), json);
+        assertTrue(json.contains("\"normalRate\":99.17"), json);
+    }
+
+    @Test
+    void fiveMillionRowsStreamWithBoundedMemory() throws IOException {
+        // 每行约 200 字节、对象约 300 字节：全部读入内存需要 1GB 以上，在 -Xmx64m 下只有逐行写出才能完成
+        emitEnvironmentRows(LARGE_ROWS, StreamingExportServiceTest::reading);
+
+        CountingOutputStream csv = new CountingOutputStream();
+        long rows = service.exportEnvironmentData(1L, BASE, END, StreamingExportService.Format.CSV, csv);
+        assertEquals(LARGE_ROWS, rows);
+        assertEquals(LARGE_ROWS + 1, csv.lines);
+        assertTrue(csv.flushes >= LARGE_ROWS / 1000);
+
+        CountingOutputStream json = new CountingOutputStream();
+        rows = service.exportEnvironmentData(1L, BASE, END, StreamingExportService.Format.JSON, json);
+        assertEquals(LARGE_ROWS, rows);
+        assertEquals(']', json.last);
+        assertTrue(json.bytes > 100L * LARGE_ROWS);
+    }
+
+    @Test
+    void writeFailureAbortsWithoutClosingJson() {
+        emitEnvironmentRows(10_000, StreamingExportServiceTest::reading);
+        OutputStream broken = new OutputStream() {
+            private int written;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (++written > 50_000) {
+                    throw new IOException("Broken pipe");
+                }
+            }
+        };
+
+        assertThrows(RuntimeException.class, () ->
+                service.exportEnvironmentData(1L, BASE, END, StreamingExportService.Format.JSON, broken));
+    }
+
+    /**
+     * 模拟 MyBatis 流式结果集：逐行生成并回调 handler，不保留已回调的行
+     */
+    private void emitEnvironmentRows(int count, IntFunction<LabEnvironmentData> generator) {
+        doAnswer(invocation -> {
+            ResultHandler<LabEnvironmentData> handler = invocation.getArgument(3);
+            DefaultResultContext<LabEnvironmentData> context = new DefaultResultContext<>();
+            for (int i = 0; i < count; i++) {
+                context.nextResultObject(generator.apply(i));
+                handler.handleResult(context);
+            }
+            return null;
+        }).when(environmentMapper).exportByTimeRange(any(), any(), any(), any());
+    }
+
+    private static LabEnvironmentData reading(int index) {
+        return LabEnvironmentData.builder()
+                .id((long) index).labId(1L).labName("化学实验室")
+                .monitorTime(BASE.plusSeconds(index * 5L))
+                .temperature(22.5).humidity(45.0).pm25(35.0).illuminance(500.0).co2(600.0)
+                .onlineDeviceCount(3).totalDeviceCount(4).currentPeopleCount(5)
+                .alarmStatus(1).qualityLevel("GOOD").dataSource("SENSOR")
+                .build();
+    }
+
+    /**
+     * 只计数、不保存内容的输出流
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private long bytes;
+        private long lines;
+        private long flushes;
+        private int last;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+            last = b;
+            if (b == '\n') {
+                lines++;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+}
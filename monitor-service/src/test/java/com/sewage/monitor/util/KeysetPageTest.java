@@ -0,0 +1,74 @@
+package com.sewage.monitor.util;
+
+import com.sewage.monitor.entity.LabAlarm;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * KeysetPage测试类
+ * 验证多取一行判断下一页、续页令牌往返、无效令牌
+ */
+class KeysetPageTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 1, 10, 0);
+
+    @Test
+    void extraRowMeansNextPageFromLastReturnedRow() {
+        List<LabAlarm> rows = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            rows.add(alarm(100L - i, BASE.minusSeconds(i)));
+        }
+
+        KeysetPage<LabAlarm> page = KeysetPage.of(rows, 3, LabAlarm::getAlarmTime, LabAlarm::getId);
+
+        assertTrue(page.isHasMore());
+        assertEquals(3, page.getRecords().size());
+        KeysetPage.Position next = KeysetPage.decode(page.getNextToken());
+        assertEquals(98L, next.getId());
+        assertEquals(BASE.minusSeconds(2), next.getTime());
+    }
+
+    @Test
+    void lastPageHasNoToken() {
+        List<LabAlarm> rows = List.of(alarm(1L, BASE), alarm(2L, BASE));
+
+        KeysetPage<LabAlarm> page = KeysetPage.of(rows, 3, LabAlarm::getAlarmTime, LabAlarm::getId);
+
+        assertFalse(page.isHasMore());
+        assertEquals(2, page.getRecords().size());
+        assertNull(page.getNextToken());
+    }
+
+    @Test
+    void tokenRoundTripsDatesAndSubSecondTimes() {
+        LocalDateTime time = LocalDateTime.of(2025, 6, 30, 23, 59, 59, 123_000_000);
+        assertEquals(time, KeysetPage.decode(KeysetPage.encode(time, 7L)).getTime());
+
+        KeysetPage.Position date = KeysetPage.decode(KeysetPage.encode(LocalDate.of(2025, 6, 30), 9L));
+        assertEquals(LocalDate.of(2025, 6, 30), date.getDate());
+        assertEquals(9L, date.getId());
+
+        assertNull(KeysetPage.decode(null));
+        assertNull(KeysetPage.decode(""));
+    }
+
+    @Test
+    void invalidTokenIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> KeysetPage.decode("not base64!"));
+        assertThrows(IllegalArgumentException.class, () -> KeysetPage.decode(KeysetPage.encode("x", null)));
+        assertThrows(IllegalArgumentException.class, () -> KeysetPage.decode(KeysetPage.encode("x", 1L)).getTime());
+    }
+
+    private static LabAlarm alarm(Long id, LocalDateTime time) {
+        LabAlarm alarm = new LabAlarm();
+        alarm.setId(id);
+        alarm.setAlarmTime(time);
+        return alarm;
+    }
+}
@@ -0,0 +1,53 @@
+package com.sewage.monitor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PipelineStage测试类
+ * 验证阶段关闭后提交、等待队列空位时被中断的数据计入丢弃数
+ */
+class PipelineStageTest {
+
+    @Test
+    void submitAfterShutdownIsCountedAsDropped() {
+        PipelineStage<Long> stage = new PipelineStage<>("test", 1, 10, item -> { });
+        stage.shutdown(1000);
+
+        stage.submit(7L, 7L);
+
+        assertEquals(1L, stage.getStats().get("droppedCount"));
+        assertEquals(1L, stage.getStats().get("submittedCount"));
+    }
+
+    @Test
+    void interruptedWhileBlockedIsCountedAsDropped() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PipelineStage<Long> stage = new PipelineStage<>("test", 1, 1, item -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // 第一条占住工作线程，第二条占满队列，第三条需要等待空位
+        stage.submit(1L, 1L);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        stage.submit(1L, 2L);
+        Thread.currentThread().interrupt();
+        stage.submit(1L, 3L);
+
+        assertTrue(Thread.interrupted());
+        release.countDown();
+        stage.shutdown(5000);
+        assertEquals(1L, stage.getStats().get("droppedCount"));
+        assertEquals(2L, stage.getStats().get("processedCount"));
+    }
+}
@@ -0,0 +1,72 @@
+package com.sewage.monitor.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * QuantileSketch测试类
+ * 验证分位数误差、合并和序列化
+ */
+class QuantileSketchTest {
+
+    @Test
+    void testQuantileWithinRelativeAccuracy() {
+        Random random = new Random(42);
+        double[] values = new double[10000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = 400 + random.nextGaussian() * 150;
+            sketch.add(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double q : new double[]{0.5, 0.9, 0.95, 0.99}) {
+            double expected = values[(int) (q * (values.length - 1))];
+            assertEquals(expected, sketch.quantile(q), Math.abs(expected) * 0.011, "q=" + q);
+        }
+        assertEquals(values[0], sketch.getMin());
+        assertEquals(values[values.length - 1], sketch.getMax());
+    }
+
+    @Test
+    void testMergeEqualsSingleSketch() {
+        QuantileSketch all = new QuantileSketch();
+        QuantileSketch day1 = new QuantileSketch();
+        QuantileSketch day2 = new QuantileSketch();
+        for (int i = -50; i < 150; i++) {
+            double value = i * 0.5;
+            all.add(value);
+            (i % 2 == 0 ? day1 : day2).add(value);
+        }
+
+        QuantileSketch merged = day1.merge(day2);
+        assertEquals(all.getCount(), merged.getCount());
+        for (double q : new double[]{0.01, 0.25, 0.5, 0.95, 0.99}) {
+            assertEquals(all.quantile(q), merged.quantile(q), "q=" + q);
+        }
+    }
+
+    @Test
+    void testSerializationRoundTrip() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < 1440; i++) {
+            sketch.add(20 + Math.sin(i / 100.0) * 5);
+        }
+        sketch.add(0);
+        sketch.add(-3.5);
+
+        byte[] bytes = sketch.toBytes();
+        QuantileSketch restored = QuantileSketch.fromBytes(bytes);
+
+        assertTrue(bytes.length < 512, "一天的温度数据草图应小于512字节，实际: " + bytes.length);
+        assertEquals(sketch.getCount(), restored.getCount());
+        assertEquals(sketch.getMean(), restored.getMean(), 1e-9);
+        assertEquals(sketch.quantile(0.5), restored.quantile(0.5));
+        assertEquals(sketch.quantile(0.01), restored.quantile(0.01));
+        assertEquals(0, QuantileSketch.fromBytes(null).getCount());
+    }
+}
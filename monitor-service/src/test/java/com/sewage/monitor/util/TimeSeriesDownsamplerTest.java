@@ -0,0 +1,86 @@
+package com.sewage.monitor.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TimeSeriesDownsampler测试类
+ * 验证输出点数上限、首尾点保留、时间有序，以及尖峰不会被降采样丢掉
+ */
+class TimeSeriesDownsamplerTest {
+
+    private static final long START = 1_700_000_000_000L;
+    private static final long STEP = 10_000L;
+    private static final int RAW_POINTS = 100_000;
+    private static final int SPIKE_INDEX = 54_321;
+
+    @Test
+    void lttbStaysWithinMaxPointsAndKeepsEndpointsAndSpike() {
+        TimeSeriesDownsampler sampler = feed(TimeSeriesDownsampler.Mode.LTTB, 500);
+
+        assertEquals(RAW_POINTS, sampler.getInputCount());
+        assertTrue(sampler.size() <= 500, "输出点数: " + sampler.size());
+        assertTrue(sampler.size() > 400, "输出点数: " + sampler.size());
+        assertEndpointsAndOrder(sampler);
+        assertContainsSpike(sampler);
+    }
+
+    @Test
+    void minMaxStaysWithinMaxPointsAndKeepsExtremes() {
+        TimeSeriesDownsampler sampler = feed(TimeSeriesDownsampler.Mode.MIN_MAX, 500);
+
+        assertTrue(sampler.size() <= 500, "输出点数: " + sampler.size());
+        assertEndpointsAndOrder(sampler);
+        assertContainsSpike(sampler);
+        double min = Double.MAX_VALUE;
+        for (double v : sampler.values()) {
+            min = Math.min(min, v);
+        }
+        assertEquals(20.0 - 5.0, min, 0.01);
+    }
+
+    @Test
+    void fewPointsArePassedThrough() {
+        TimeSeriesDownsampler sampler = TimeSeriesDownsampler.create(TimeSeriesDownsampler.Mode.LTTB,
+                START, START + 3 * STEP, 100);
+        sampler.add(START, 1.0);
+        sampler.add(START + STEP, 2.0);
+        sampler.add(START + 2 * STEP, 3.0);
+        sampler.finish();
+
+        assertArrayEquals(new double[]{1.0, 2.0, 3.0}, sampler.values());
+    }
+
+    private static TimeSeriesDownsampler feed(TimeSeriesDownsampler.Mode mode, int maxPoints) {
+        long end = START + (RAW_POINTS - 1) * STEP;
+        TimeSeriesDownsampler sampler = TimeSeriesDownsampler.create(mode, START, end, maxPoints);
+        for (int i = 0; i < RAW_POINTS; i++) {
+            double value = i == SPIKE_INDEX ? 80.0 : 20.0 + 5.0 * Math.sin(i / 500.0);
+            sampler.add(START + i * STEP, value);
+        }
+        return sampler.finish();
+    }
+
+    private static void assertEndpointsAndOrder(TimeSeriesDownsampler sampler) {
+        long[] times = sampler.times();
+        assertEquals(START, times[0]);
+        assertEquals(START + (RAW_POINTS - 1) * STEP, times[times.length - 1]);
+        for (int i = 1; i < times.length; i++) {
+            assertTrue(times[i] > times[i - 1], "时间未严格递增: " + i);
+        }
+    }
+
+    private static void assertContainsSpike(TimeSeriesDownsampler sampler) {
+        long spikeTime = START + SPIKE_INDEX * STEP;
+        long[] times = sampler.times();
+        double[] values = sampler.values();
+        for (int i = 0; i < times.length; i++) {
+            if (times[i] == spikeTime) {
+                assertEquals(80.0, values[i]);
+                return;
+            }
+        }
+        fail("尖峰被降采样丢弃");
+    }
+}
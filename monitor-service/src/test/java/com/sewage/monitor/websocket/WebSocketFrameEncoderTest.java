@@ -0,0 +1,34 @@
+package com.sewage.monitor.websocket;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import com.sewage.monitor.entity.LabEnvironmentData;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WebSocketFrameEncoder测试类
+ * 验证同一线程上重复编码同一对象时，后面的帧仍输出完整对象而不是 {"$ref":...}
+ */
+class WebSocketFrameEncoderTest {
+
+    @Test
+    void sameObjectInLaterFramesIsWrittenInFull() {
+        LabEnvironmentData latest = LabEnvironmentData.builder().labId(1L).labName("化学实验室").temperature(23.5).build();
+        Map<String, Object> statistics = new HashMap<>();
+        statistics.put("latest", latest);
+
+        WebSocketFrameEncoder.encode("STATISTICS", "统计数据更新", 1L, statistics);
+        String second = WebSocketFrameEncoder.encode("STATISTICS", "统计数据更新", 1L, statistics);
+        String delta = WebSocketFrameEncoder.encodeDelta(1L, 2L, new int[]{1}, new Object[]{latest}, 1);
+
+        assertFalse(second.contains("$ref"), second);
+        assertFalse(delta.contains("$ref"), delta);
+        JSONObject frame = JSON.parseObject(second);
+        assertEquals("化学实验室", frame.getJSONObject("data").getJSONObject("latest").getString("labName"));
+    }
+}
@@ -0,0 +1,72 @@
+package com.sewage.monitor.websocket;
+
+import com.sewage.monitor.entity.LabEnvironmentData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.websocket.Session;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * WebSocketServer测试类
+ * 验证没有订阅者时不维护增量状态，第一个订阅者到来时按最新数据重建，最后一个订阅者离开时删除
+ */
+class WebSocketServerTest {
+
+    private static final Long LAB_ID = 901L;
+
+    @AfterEach
+    void tearDown() {
+        WebSocketServer.setLatestDataLoader(labId -> null);
+        deltaStates().remove(LAB_ID);
+    }
+
+    @Test
+    void pushWithoutSubscribersKeepsNoDeltaState() {
+        WebSocketServer.pushEnvironmentData(reading(22.0));
+
+        assertFalse(deltaStates().containsKey(LAB_ID));
+    }
+
+    @Test
+    void firstSubscriberRebuildsStateFromLatestData() {
+        WebSocketServer.pushEnvironmentData(reading(22.0));
+        WebSocketServer.setLatestDataLoader(labId -> reading(25.0));
+
+        WebSocketServer server = new WebSocketServer();
+        server.onOpen(deltaSession(), LAB_ID);
+
+        EnvironmentDeltaState state = deltaStates().get(LAB_ID);
+        assertNotNull(state);
+        assertEquals(1, state.getSeq());
+        assertTrue(state.snapshotFrame().contains("25.0"), state.snapshotFrame());
+
+        WebSocketServer.pushEnvironmentData(reading(26.0));
+        assertEquals(2, state.getSeq());
+
+        server.onClose();
+        assertFalse(deltaStates().containsKey(LAB_ID));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Long, EnvironmentDeltaState> deltaStates() {
+        return (Map<Long, EnvironmentDeltaState>) ReflectionTestUtils.getField(WebSocketServer.class, "DELTA_STATES");
+    }
+
+    private static Session deltaSession() {
+        Session session = mock(Session.class, RETURNS_DEEP_STUBS);
+        when(session.getRequestParameterMap()).thenReturn(Map.of("protocol", List.of("delta")));
+        when(session.getUserProperties()).thenReturn(new HashMap<>());
+        return session;
+    }
+
+    private static LabEnvironmentData reading(double temperature) {
+        return LabEnvironmentData.builder().labId(LAB_ID).labName("化学实验室").temperature(temperature).build();
+    }
+}
@@ -36,6 +36,15 @@ export const monitorApi = {
     })
   },
 
+  // 查询历史曲线（params: startTime, endTime, points；按点数自动选择小时/分钟汇总或原始数据）
+  getHistorySeries(labId, params) {
+    return request({
+      url: `/monitor-service/lab-monitor/history/${labId}/series`,
+      method: 'get',
+      params
+    })
+  },
+
   // 分页查询监测数据
   getPageData(params) {
     return request({
@@ -45,6 +54,15 @@ export const monitorApi = {
     })
   },
 
+  // 游标分页查询监测数据（params: plantId, size, token, withTotal；下一页传上一页返回的 nextToken）
+  getKeysetPageData(params) {
+    return request({
+      url: '/monitor-service/lab-monitor/page/keyset',
+      method: 'get',
+      params
+    })
+  },
+
   // 获取告警列表
   getAlarmList(params) {
     return request({
@@ -54,6 +72,15 @@ export const monitorApi = {
     })
   },
 
+  // 游标分页查询告警（params: size, token, withTotal）
+  getKeysetAlarms(params) {
+    return request({
+      url: '/monitor-service/lab-monitor/alarms/keyset',
+      method: 'get',
+      params
+    })
+  },
+
   // 获取未处理告警
   getUnhandledAlarms() {
     return request({
@@ -104,6 +131,15 @@ export const monitorApi = {
     })
   },
 
+  // 游标分页查询日统计（params: size, token, withTotal）
+  getKeysetStats(params) {
+    return request({
+      url: '/monitor-service/lab-monitor/stats/keyset',
+      method: 'get',
+      params
+    })
+  },
+
   // 健康检查
   health() {
     return request({
@@ -1,11 +1,22 @@
 /**
  * WebSocket连接管理类
  * 功能：实时接收后端推送的环境数据、告警信息、统计数据
- * 特性：自动重连、心跳检测、消息类型分发
+ * 特性：自动重连、心跳检测、消息类型分发、环境数据增量协议
  */
 
 import { ElMessage } from 'element-plus'
 
+/**
+ * 增量协议字段表：字段ID = 下标 + 1
+ * 必须与后端 EnvironmentDeltaState.FIELDS 保持一致，只能在末尾追加
+ */
+const ENV_FIELDS = [
+  'id', 'labName', 'temperature', 'humidity', 'pm25', 'illuminance', 'co2',
+  'onlineDeviceCount', 'totalDeviceCount', 'monitorTime', 'dataSource',
+  'alarmStatus', 'alarmMessage', 'qualityLevel', 'currentPeopleCount',
+  'createdTime', 'remark'
+]
+
 class WebSocketManager {
   constructor() {
     this.ws = null
@@ -18,6 +29,11 @@ class WebSocketManager {
     this.heartbeatInterval = 30000 // 30秒心跳
     this.isManualClose = false
 
+    // 增量协议状态：最近一次的完整环境数据和序号
+    this.envState = null
+    this.envSeq = -1
+    this.resyncPending = false
+
     // 消息监听器
     this.listeners = {
       'ENVIRONMENT_DATA': [],
@@ -47,7 +63,7 @@ class WebSocketManager {
     const protocol = window.location.protocol === 'https:' ? 'wss:' : 'ws:'
     const host = window.location.hostname
     const port = import.meta.env.DEV ? '8083' : window.location.port
-    this.url = `${protocol}//${host}:${port}/ws/realtime/${labId}`
+    this.url = `${protocol}//${host}:${port}/ws/realtime/${labId}?protocol=delta`
 
     console.log('正在连接WebSocket:', this.url)
     this.isManualClose = false
@@ -98,6 +114,9 @@ class WebSocketManager {
       // 停止心跳
       this.stopHeartbeat()
 
+      // 重连后服务端会重新发送快照
+      this.resetEnvState()
+
       // 触发断开连接回调
       this.onDisconnectCallbacks.forEach(callback => callback())
 
@@ -115,6 +134,14 @@ class WebSocketManager {
    * 分发消息到对应的监听器
    */
   dispatchMessage(message) {
+    // 增量协议：还原成完整的 ENVIRONMENT_DATA 再分发，监听方无需感知
+    if (message.type === 'ENV_SNAPSHOT') {
+      message = this.applySnapshot(message)
+    } else if (message.type === 'ENV_DELTA') {
+      message = this.applyDelta(message)
+    }
+    if (!message) return
+
     const { type, data } = message
 
     if (this.listeners[type]) {
@@ -130,6 +157,64 @@ class WebSocketManager {
     }
   }
 
+  /**
+   * 处理完整快照：重置本地状态和序号
+   */
+  applySnapshot(message) {
+    this.envSeq = message.seq
+    this.resyncPending = false
+    if (!message.data) {
+      // 服务端还没有该实验室的数据
+      this.envState = null
+      return null
+    }
+    this.envState = { ...message.data }
+    return { ...message, type: 'ENVIRONMENT_DATA', data: { ...this.envState } }
+  }
+
+  /**
+   * 处理增量帧：序号连续时合并变化字段，出现跳号时请求重新同步
+   */
+  applyDelta(message) {
+    if (message.seq <= this.envSeq) {
+      // 重复或过期的增量（快照已包含）
+      return null
+    }
+    if (!this.envState || message.seq !== this.envSeq + 1) {
+      if (!this.resyncPending) {
+        console.warn(`环境数据序号不连续(${this.envSeq} -> ${message.seq})，请求重新同步`)
+        this.resyncPending = true
+        this.send({ type: 'RESYNC' })
+      }
+      return null
+    }
+
+    const pairs = message.d || []
+    for (let i = 0; i + 1 < pairs.length; i += 2) {
+      const field = ENV_FIELDS[pairs[i] - 1]
+      if (field) {
+        this.envState[field] = pairs[i + 1]
+      }
+    }
+    this.envSeq = message.seq
+    return {
+      type: 'ENVIRONMENT_DATA',
+      message: '环境数据更新',
+      labId: message.labId,
+      timestamp: message.timestamp,
+      data: { ...this.envState }
+    }
+  }
+
+  /**
+   * 重置增量协议状态
+   */
+  resetEnvState() {
+    this.envState = null
+    this.envSeq = -1
+    this.resyncPending = false
+  }
+
   /**
    * 添加消息监听器
    * @param {string} type - 消息类型